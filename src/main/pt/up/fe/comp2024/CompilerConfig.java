@@ -1,7 +1,11 @@
 package pt.up.fe.comp2024;
 
+import pt.up.fe.specs.util.SpecsIo;
+
 import java.io.File;
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.Optional;
 
@@ -10,6 +14,27 @@ public class CompilerConfig {
     private static final String INPUT_FILE = "input";
     private static final String OPTIMIZE = "optimize";
     private static final String REGISTER = "registerAllocation";
+    private static final String BATCH = "batch";
+    private static final String OUTPUT_DIR = "outputDir";
+    private static final String SERVER = "server";
+    private static final String CACHE = "cache";
+    private static final String CACHE_SIZE = "cacheSize";
+    private static final String PROFILE = "profile";
+    private static final String VERBOSITY = "verbosity";
+    private static final String TRACE = "trace";
+    private static final String PIPELINE = "pipeline";
+    private static final String EMIT = "emit";
+    private static final String RUN = "run";
+    private static final String DFA_SNAPSHOT = "dfaSnapshot";
+    private static final String PROFILE_PARSER = "profileParser";
+    private static final String PARSER = "parser";
+    private static final String MAP_INPUT = "mapInput";
+    private static final String COMPACT_AST = "compactAst";
+    private static final String WATCH = "watch";
+    private static final String PARALLEL_ANALYSIS = "parallelAnalysis";
+
+    public static final int DEFAULT_SERVER_PORT = 7797;
+    public static final long DEFAULT_CACHE_SIZE_MB = 256;
 
 
     static Map<String, String> shortToLong = new HashMap<>();
@@ -18,6 +43,24 @@ public class CompilerConfig {
         shortToLong.put("i", CompilerConfig.INPUT_FILE);
         shortToLong.put("o", CompilerConfig.OPTIMIZE);
         shortToLong.put("r", CompilerConfig.REGISTER);
+        shortToLong.put("b", CompilerConfig.BATCH);
+        shortToLong.put("d", CompilerConfig.OUTPUT_DIR);
+        shortToLong.put("s", CompilerConfig.SERVER);
+        shortToLong.put("c", CompilerConfig.CACHE);
+        shortToLong.put("z", CompilerConfig.CACHE_SIZE);
+        shortToLong.put("p", CompilerConfig.PROFILE);
+        shortToLong.put("v", CompilerConfig.VERBOSITY);
+        shortToLong.put("t", CompilerConfig.TRACE);
+        shortToLong.put("l", CompilerConfig.PIPELINE);
+        shortToLong.put("e", CompilerConfig.EMIT);
+        shortToLong.put("x", CompilerConfig.RUN);
+        shortToLong.put("a", CompilerConfig.DFA_SNAPSHOT);
+        shortToLong.put("g", CompilerConfig.PROFILE_PARSER);
+        shortToLong.put("f", CompilerConfig.PARSER);
+        shortToLong.put("m", CompilerConfig.MAP_INPUT);
+        shortToLong.put("k", CompilerConfig.COMPACT_AST);
+        shortToLong.put("w", CompilerConfig.WATCH);
+        shortToLong.put("j", CompilerConfig.PARALLEL_ANALYSIS);
     }
 
 
@@ -32,6 +75,298 @@ public class CompilerConfig {
         return Optional.of(new File(inputFile));
     }
 
+    /**
+     * Expands the batch option into the list of sources to compile. The option is a comma-separated list where each
+     * entry is either a .jmm file or a folder, which is searched recursively for .jmm files.
+     *
+     * @param config
+     * @return the sources to compile, or an empty list if batch mode was not requested
+     */
+    public static List<File> getBatchInputs(Map<String, String> config) {
+        var inputs = new ArrayList<File>();
+
+        for (var file : getBatchEntries(config)) {
+            if (file.isDirectory()) {
+                inputs.addAll(SpecsIo.getFilesRecursive(file, "jmm"));
+            } else {
+                inputs.add(file);
+            }
+        }
+
+        return inputs;
+    }
+
+    /**
+     * @param config
+     * @return the files and folders of the batch option as given, without searching the folders
+     */
+    private static List<File> getBatchEntries(Map<String, String> config) {
+        var batch = config.get(BATCH);
+
+        var entries = new ArrayList<File>();
+        if (batch == null) {
+            return entries;
+        }
+
+        for (var entry : batch.split(",")) {
+            if (entry.isBlank()) {
+                continue;
+            }
+
+            var file = new File(entry.strip());
+            if (!file.isDirectory() && !file.isFile()) {
+                throw new RuntimeException("Could not find batch input '" + file + "'");
+            }
+            entries.add(file);
+        }
+
+        return entries;
+    }
+
+    public static boolean isBatch(Map<String, String> config) {
+        return config.containsKey(BATCH);
+    }
+
+    /**
+     * @param config
+     * @return true if the files of a batch should be compiled as a pipeline of stages ('-l') instead of one task per
+     * file
+     */
+    public static boolean isPipeline(Map<String, String> config) {
+        return config.containsKey(PIPELINE);
+    }
+
+    public static Optional<File> getOutputDir(Map<String, String> config) {
+        var outputDir = config.get(OUTPUT_DIR);
+
+        if (outputDir == null) {
+            return Optional.empty();
+        }
+
+        return Optional.of(new File(outputDir));
+    }
+
+    /**
+     * Creates a copy of the given config that compiles the given input file.
+     *
+     * @param config
+     * @param inputFile
+     * @return
+     */
+    public static Map<String, String> forInput(Map<String, String> config, File inputFile) {
+        var fileConfig = new HashMap<>(config);
+        fileConfig.remove(BATCH);
+        fileConfig.remove(SERVER);
+        fileConfig.put(INPUT_FILE, inputFile.getAbsolutePath());
+
+        return fileConfig;
+    }
+
+    public static boolean isServer(Map<String, String> config) {
+        return config.containsKey(SERVER);
+    }
+
+    /**
+     * @param config
+     * @return the loopback port of the compiler daemon, given as '-s=PORT', or the default port if just '-s' is used
+     */
+    public static int getServerPort(Map<String, String> config) {
+        var port = config.getOrDefault(SERVER, "true");
+
+        return port.equals("true") ? DEFAULT_SERVER_PORT : Integer.parseInt(port);
+    }
+
+    public static Optional<File> getCacheDir(Map<String, String> config) {
+        var cacheDir = config.get(CACHE);
+
+        if (cacheDir == null) {
+            return Optional.empty();
+        }
+
+        return Optional.of(new File(cacheDir));
+    }
+
+    /**
+     * @param config
+     * @return the maximum size of the compilation cache in bytes, given in megabytes as '-z=SIZE'
+     */
+    public static long getCacheSize(Map<String, String> config) {
+        var sizeMb = Long.parseLong(config.getOrDefault(CACHE_SIZE, Long.toString(DEFAULT_CACHE_SIZE_MB)));
+
+        return sizeMb * 1024 * 1024;
+    }
+
+    public static boolean isProfile(Map<String, String> config) {
+        return config.containsKey(PROFILE);
+    }
+
+    /**
+     * @param config
+     * @return the file where the profile is written as JSON, given as '-p=FILE', or empty if just '-p' is used
+     */
+    public static Optional<File> getProfileFile(Map<String, String> config) {
+        var profileFile = config.get(PROFILE);
+
+        if (profileFile == null || profileFile.equals("true")) {
+            return Optional.empty();
+        }
+
+        return Optional.of(new File(profileFile));
+    }
+
+    /**
+     * @param config
+     * @return the level of the diagnostics (off, info, debug or trace), given as '-v=LEVEL'
+     */
+    public static Optional<String> getVerbosity(Map<String, String> config) {
+        return Optional.ofNullable(config.get(VERBOSITY));
+    }
+
+    public static Optional<File> getTraceFile(Map<String, String> config) {
+        var traceFile = config.get(TRACE);
+
+        if (traceFile == null) {
+            return Optional.empty();
+        }
+
+        return Optional.of(new File(traceFile));
+    }
+
+    /**
+     * @param config
+     * @return true if the backend generates class files directly ('-e=class') instead of Jasmin code ('-e=jasmin', the
+     * default)
+     */
+    public static boolean isEmitClass(Map<String, String> config) {
+        var emit = config.getOrDefault(EMIT, "jasmin");
+
+        return switch (emit) {
+            case "class" -> true;
+            case "jasmin" -> false;
+            default -> throw new RuntimeException("Unknown backend output '" + emit + "', expected jasmin or class");
+        };
+    }
+
+    /**
+     * @param config
+     * @return true if the compiled program should be run in the compiler JVM ('-x')
+     */
+    public static boolean isRun(Map<String, String> config) {
+        return config.containsKey(RUN);
+    }
+
+    /**
+     * @param config
+     * @return the arguments passed to the main method of the compiled program, given as '-x=ARG1,ARG2', or an empty
+     * list if just '-x' is used
+     */
+    public static List<String> getRunArgs(Map<String, String> config) {
+        var runArgs = config.get(RUN);
+
+        if (runArgs == null || runArgs.equals("true")) {
+            return List.of();
+        }
+
+        return List.of(runArgs.split(","));
+    }
+
+    /**
+     * @param config
+     * @return the file where the prediction DFA of the parser is saved after compiling and restored before the first
+     * parse ('-a=FILE')
+     */
+    public static Optional<File> getDfaSnapshot(Map<String, String> config) {
+        var snapshotFile = config.get(DFA_SNAPSHOT);
+
+        if (snapshotFile == null || snapshotFile.equals("true")) {
+            return Optional.empty();
+        }
+
+        return Optional.of(new File(snapshotFile));
+    }
+
+    /**
+     * @param config
+     * @return true if the prediction of each grammar decision should be profiled ('-g')
+     */
+    public static boolean isProfileParser(Map<String, String> config) {
+        return config.containsKey(PROFILE_PARSER);
+    }
+
+    /**
+     * @param config
+     * @return true if the code is parsed by the hand-written parser ('-f=handwritten') instead of the ANTLR parser
+     * ('-f=antlr', the default)
+     */
+    public static boolean isHandwrittenParser(Map<String, String> config) {
+        var parser = config.getOrDefault(PARSER, "antlr");
+
+        return switch (parser) {
+            case "handwritten" -> true;
+            case "antlr" -> false;
+            default -> throw new RuntimeException("Unknown parser '" + parser + "', expected antlr or handwritten");
+        };
+    }
+
+    /**
+     * @param config
+     * @return true if the source files are memory-mapped ('-m') instead of read to a String
+     */
+    public static boolean isMapInput(Map<String, String> config) {
+        return config.containsKey(MAP_INPUT);
+    }
+
+    /**
+     * @param config
+     * @return true if the AST is converted to compact nodes ('-k') before the semantic analysis
+     */
+    public static boolean isCompactAst(Map<String, String> config) {
+        return config.containsKey(COMPACT_AST);
+    }
+
+    /**
+     * @param config
+     * @return true if the methods of a class are analysed concurrently ('-j')
+     */
+    public static boolean isParallelAnalysis(Map<String, String> config) {
+        return config.containsKey(PARALLEL_ANALYSIS);
+    }
+
+    public static boolean isWatch(Map<String, String> config) {
+        return config.containsKey(WATCH);
+    }
+
+    /**
+     * @param config
+     * @return the files and folders to watch, given as a comma-separated list '-w=PATHS', or the batch inputs ('-b')
+     * or the input file ('-i') if just '-w' is used
+     */
+    public static List<File> getWatchPaths(Map<String, String> config) {
+        var watch = config.getOrDefault(WATCH, "true");
+        if (watch.equals("true")) {
+            watch = config.containsKey(BATCH) ? config.get(BATCH) : config.get(INPUT_FILE);
+        }
+
+        var paths = new ArrayList<File>();
+        if (watch == null) {
+            return paths;
+        }
+
+        for (var entry : watch.split(",")) {
+            if (entry.isBlank()) {
+                continue;
+            }
+
+            var file = new File(entry.strip());
+            if (!file.exists()) {
+                throw new RuntimeException("Could not find watched path '" + file + "'");
+            }
+            paths.add(file);
+        }
+
+        return paths;
+    }
+
     public static boolean getOptimize(Map<String, String> config) {
         return Boolean.parseBoolean(config.getOrDefault(OPTIMIZE, "false"));
     }
@@ -89,19 +424,40 @@ public class CompilerConfig {
             config.put(getLongOpt(shortOption), value);
         }
 
-        if (!config.containsKey(INPUT_FILE)) {
+        if (config.containsKey(BATCH)) {
+            // batch mode compiles a list of files instead of the input file, the folders are only searched when
+            // compiling
+            getBatchEntries(config);
+        } else if (config.containsKey(WATCH) && !config.containsKey(INPUT_FILE)) {
+            // watch mode compiles the files in the watched paths
+            if (getWatchPaths(config).isEmpty()) {
+                throw new RuntimeException("Expected paths to watch, use '-w=<PATHS>', '-b=<PATHS>' or '-i'");
+            }
+        } else if (config.containsKey(SERVER) && !config.containsKey(INPUT_FILE)) {
+            // the daemon receives the input files with each request
+            getServerPort(config);
+        } else {
+            if (!config.containsKey(INPUT_FILE)) {
 
-            throw new RuntimeException("Expected an input file, use '-i=<PATH_TO_FILE>'");
-        }
+                throw new RuntimeException("Expected an input file, use '-i=<PATH_TO_FILE>', '-b=<PATHS>' or '-s'");
+            }
+
+            // make sure we save the absolute path of the input file
+            var inputFile = new File(config.get(INPUT_FILE));
+            if (!inputFile.isFile()) {
+                throw new RuntimeException("Could not find input file '" + inputFile + "'");
+            }
 
-        // make sure we save the absolute path of the input file
-        var inputFile = new File(config.get(INPUT_FILE));
-        if (!inputFile.isFile()) {
-            throw new RuntimeException("Could not find input file '" + inputFile + "'");
+            var absolutePath = inputFile.getAbsolutePath();
+            config.put(INPUT_FILE, absolutePath);
         }
 
-        var absolutePath = inputFile.getAbsolutePath();
-        config.put(INPUT_FILE, absolutePath);
+        // the other paths are also saved absolute, e.g., for a daemon running in another folder
+        getOutputDir(config).ifPresent(outputDir -> config.put(OUTPUT_DIR, outputDir.getAbsolutePath()));
+        getCacheDir(config).ifPresent(cacheDir -> config.put(CACHE, cacheDir.getAbsolutePath()));
+        getTraceFile(config).ifPresent(traceFile -> config.put(TRACE, traceFile.getAbsolutePath()));
+        getProfileFile(config).ifPresent(profileFile -> config.put(PROFILE, profileFile.getAbsolutePath()));
+        getDfaSnapshot(config).ifPresent(snapshotFile -> config.put(DFA_SNAPSHOT, snapshotFile.getAbsolutePath()));
 
         // Verify if values are valid
         getOptimize(config);
@@ -1,63 +1,181 @@
 package pt.up.fe.comp2024;
 
-import pt.up.fe.comp.TestUtils;
-import pt.up.fe.comp.jmm.analysis.JmmSemanticsResult;
-import pt.up.fe.comp.jmm.jasmin.JasminResult;
-import pt.up.fe.comp.jmm.ollir.OllirResult;
-import pt.up.fe.comp.jmm.parser.JmmParserResult;
-import pt.up.fe.comp2024.analysis.JmmAnalysisImpl;
-import pt.up.fe.comp2024.backend.JasminBackendImpl;
-import pt.up.fe.comp2024.optimization.JmmOptimizationImpl;
+import com.google.gson.JsonArray;
+import com.google.gson.JsonObject;
+import pt.up.fe.comp2024.driver.BatchCompiler;
+import pt.up.fe.comp2024.driver.CompilationResult;
+import pt.up.fe.comp2024.driver.CompilerDaemon;
+import pt.up.fe.comp2024.driver.InProcessRunner;
+import pt.up.fe.comp2024.driver.JmmCompiler;
+import pt.up.fe.comp2024.driver.PipelinedCompiler;
+import pt.up.fe.comp2024.driver.WatchCompiler;
 import pt.up.fe.comp2024.parser.JmmParserImpl;
+import pt.up.fe.comp2024.parser.ParserProfile;
+import pt.up.fe.comp2024.utils.Diagnostics;
+import pt.up.fe.comp2024.utils.StageProfiler;
 import pt.up.fe.specs.util.SpecsIo;
 import pt.up.fe.specs.util.SpecsSystem;
 
+import java.io.File;
+import java.io.IOException;
+import java.util.List;
 import java.util.Map;
 
 public class Launcher {
 
-    public static void main(String[] args) {
+    public static void main(String[] args) throws IOException {
         SpecsSystem.programStandardInit();
 
         Map<String, String> config = CompilerConfig.parseArgs(args);
+        Diagnostics.configure(config);
+
+        if (CompilerConfig.isWatch(config)) {
+            new WatchCompiler(config).watch(CompilerConfig.getWatchPaths(config));
+            return;
+        }
+
+        if (CompilerConfig.isBatch(config)) {
+            var status = compileBatch(config);
+            JmmParserImpl.saveDfaSnapshot(config);
+            System.exit(status);
+        }
+
+        if (CompilerConfig.isServer(config) && CompilerConfig.getInputFile(config).isEmpty()) {
+            new CompilerDaemon(CompilerConfig.getServerPort(config)).serve();
+            return;
+        }
 
         var inputFile = CompilerConfig.getInputFile(config).orElseThrow();
         if (!inputFile.isFile()) {
             throw new RuntimeException("Option '-i' expects a path to an existing input file, got '" + args[0] + "'.");
         }
-        String code = SpecsIo.read(inputFile);
 
-        // Parsing stage
-        JmmParserImpl parser = new JmmParserImpl();
-        JmmParserResult parserResult = parser.parse(code, config);
-        TestUtils.noErrors(parserResult.getReports());
-        System.out.println(parserResult.getRootNode().toTree());
+        var status = compileSingle(inputFile, config);
+        JmmParserImpl.saveDfaSnapshot(config);
+        System.exit(status);
+    }
+
+    private static int compileSingle(File inputFile, Map<String, String> config) {
+        var result = new JmmCompiler().compile(inputFile, config);
+
+        for (var report : result.getReports()) {
+            System.out.println(report);
+        }
 
-        //Semantic Analysis stage
-        JmmAnalysisImpl sema = new JmmAnalysisImpl();
-        JmmSemanticsResult semanticsResult = sema.semanticAnalysis(parserResult);
-        TestUtils.noErrors(semanticsResult.getReports());
+        printProfile(List.of(result), config);
+        printParserProfile(config);
 
-        // Print AST
-        System.out.println(parserResult.getRootNode().toTree());
+        if (!result.isSuccess()) {
+            return 1;
+        }
 
-        // Optimization stage
+        if (result.isCached()) {
+            Diagnostics.info(() -> "Reusing cached compilation of '" + inputFile + "'");
+        }
 
-        JmmOptimizationImpl ollirGen = new JmmOptimizationImpl();
-        OllirResult ollirResult = ollirGen.toOllir(semanticsResult);
-        TestUtils.noErrors(ollirResult.getReports());
+        CompilerConfig.getOutputDir(config).ifPresent(outputDir -> JmmCompiler.writeOutput(result, outputDir));
 
+        if (CompilerConfig.isRun(config)) {
+            return run(result, config);
+        }
 
         // Print OLLIR code
-        System.out.println(ollirResult.getOllirCode());
+        System.out.println(result.getOllirCode());
 
-        // Code generation stage
-        JasminBackendImpl jasminGen = new JasminBackendImpl();
-        JasminResult jasminResult = jasminGen.toJasmin(ollirResult);
-        TestUtils.noErrors(jasminResult.getReports());
+        // Print Jasmin code, unless the class file was generated directly
+        if (result.getJasminCode() != null) {
+            System.out.println(result.getJasminCode());
+        }
 
-        // Print Jasmin code
-        System.out.println(jasminResult.getJasminCode());
+        return 0;
     }
 
+    /**
+     * Runs the compiled program in this JVM and prints its output, instead of the generated code.
+     */
+    private static int run(CompilationResult result, Map<String, String> config) {
+        var programOutput = new InProcessRunner().run(result, CompilerConfig.getRunArgs(config));
+
+        System.out.print(programOutput.output());
+
+        if (programOutput.exception() instanceof InProcessRunner.ProgramExit exit) {
+            return exit.getStatus();
+        }
+
+        if (!programOutput.isSuccess()) {
+            programOutput.exception().printStackTrace();
+            return 1;
+        }
+
+        return 0;
+    }
+
+    private static int compileBatch(Map<String, String> config) {
+        var inputFiles = CompilerConfig.getBatchInputs(config);
+        var results = CompilerConfig.isPipeline(config) ?
+                new PipelinedCompiler(config).compile(inputFiles) :
+                new BatchCompiler(config).compile(inputFiles);
+
+        for (var result : results) {
+            System.out.println((result.isSuccess() ? "OK     " : "FAILED ") + result.getInputFile());
+            for (var report : result.getReports()) {
+                System.out.println("   " + report);
+            }
+        }
+
+        var failed = results.stream().filter(result -> !result.isSuccess()).count();
+        System.out.println("Compiled " + results.size() + " files, " + failed + " failed");
+
+        printProfile(results, config);
+        printParserProfile(config);
+
+        return BatchCompiler.getExitStatus(results);
+    }
+
+    /**
+     * Prints the grammar decisions that took the longest to predict, if the parser was profiled ('-g').
+     */
+    private static void printParserProfile(Map<String, String> config) {
+        var profile = ParserProfile.getGlobal();
+        if (!CompilerConfig.isProfileParser(config) || profile.isEmpty()) {
+            return;
+        }
+
+        System.out.println();
+        System.out.print(profile.toTable());
+    }
+
+    /**
+     * Prints the table of the time spent in each stage, summed over all results, and writes the profile of each file
+     * as JSON if a file was given to '-p'.
+     */
+    private static void printProfile(List<CompilationResult> results, Map<String, String> config) {
+        if (!CompilerConfig.isProfile(config)) {
+            return;
+        }
+
+        var profiles = results.stream()
+                .flatMap(result -> result.getProfile().stream())
+                .toList();
+        var total = StageProfiler.merge(profiles);
+
+        System.out.println();
+        System.out.print(total.toTable());
+
+        CompilerConfig.getProfileFile(config).ifPresent(profileFile -> {
+            var files = new JsonArray();
+            for (var result : results) {
+                var json = new JsonObject();
+                json.addProperty("file", result.getInputFile().getPath());
+                json.addProperty("cached", result.isCached());
+                json.add("stages", result.getProfile().map(StageProfiler::toJson).orElseGet(JsonArray::new));
+                files.add(json);
+            }
+
+            var json = new JsonObject();
+            json.add("files", files);
+            json.add("total", total.toJson());
+            SpecsIo.write(profileFile, json.toString());
+        });
+    }
 }
@@ -5,6 +5,7 @@ import pt.up.fe.comp.jmm.ast.JmmNode;
 import pt.up.fe.comp.jmm.report.Report;
 
 import java.util.List;
+import java.util.Set;
 
 /**
  * Represents an analysis pass.
@@ -20,4 +21,22 @@ public interface AnalysisPass {
      */
     List<Report> analyze(JmmNode root, SymbolTable table);
 
+    /**
+     * @return what the passes before this one must have computed, e.g., the types of the expressions
+     * @see PassScheduler
+     */
+    default Set<PassProperty> getInputs() {
+        return Set.of();
+    }
+
+    /**
+     * A pass writes nothing the passes after it read but its outputs. A pass whose outputs are all still valid from a
+     * previous analysis of the tree is not run again, and adds no reports.
+     *
+     * @return what the pass computes for the passes after it and for the later stages
+     * @see PassScheduler
+     */
+    default Set<PassProperty> getOutputs() {
+        return Set.of();
+    }
 }
\ No newline at end of file
@@ -2,9 +2,8 @@ package pt.up.fe.comp2024.analysis;
 
 import pt.up.fe.comp.jmm.analysis.table.SymbolTable;
 import pt.up.fe.comp.jmm.ast.JmmNode;
-import pt.up.fe.comp.jmm.ast.PostorderJmmVisitor;
-import pt.up.fe.comp.jmm.ast.PreorderJmmVisitor;
 import pt.up.fe.comp.jmm.report.Report;
+import pt.up.fe.comp2024.ast.PostorderKindVisitor;
 
 import java.util.ArrayList;
 import java.util.List;
@@ -12,7 +11,7 @@ import java.util.List;
 /**
  *
  */
-public abstract class AnalysisPosVisitor extends PostorderJmmVisitor<SymbolTable, Void> implements AnalysisPass {
+public abstract class AnalysisPosVisitor extends PostorderKindVisitor<SymbolTable, Void> implements FusablePass {
 
     private List<Report> reports;
 
@@ -25,10 +24,25 @@ public abstract class AnalysisPosVisitor extends PostorderJmmVisitor<SymbolTable
         reports.add(report);
     }
 
-    protected List<Report> getReports() {
+    @Override
+    public List<Report> getReports() {
         return reports;
     }
 
+    @Override
+    public void enter(JmmNode node, SymbolTable table) {
+    }
+
+    @Override
+    public void exit(JmmNode node, SymbolTable table) {
+        getVisit(node).apply(node, table);
+    }
+
+    @Override
+    public boolean isPostorder() {
+        return true;
+    }
+
 
     @Override
     public List<Report> analyze(JmmNode root, SymbolTable table) {
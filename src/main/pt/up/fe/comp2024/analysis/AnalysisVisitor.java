@@ -2,19 +2,26 @@ package pt.up.fe.comp2024.analysis;
 
 import pt.up.fe.comp.jmm.analysis.table.SymbolTable;
 import pt.up.fe.comp.jmm.ast.JmmNode;
-import pt.up.fe.comp.jmm.ast.PreorderJmmVisitor;
 import pt.up.fe.comp.jmm.report.Report;
+import pt.up.fe.comp2024.ast.PreorderKindVisitor;
 
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
 import java.util.List;
+import java.util.Set;
+import java.util.function.BiFunction;
 
 /**
  *
  */
-public abstract class AnalysisVisitor extends PreorderJmmVisitor<SymbolTable, Void> implements AnalysisPass {
+public abstract class AnalysisVisitor extends PreorderKindVisitor<SymbolTable, Void> implements FusablePass {
 
     private List<Report> reports;
 
+    // Not initialized in the declaration, buildVisitor runs before the fields of this class are initialized
+    private Set<BiFunction<JmmNode, SymbolTable, Void>> exitVisits;
+
     public AnalysisVisitor() {
         reports = new ArrayList<>();
         setDefaultValue(() -> null);
@@ -24,10 +31,55 @@ public abstract class AnalysisVisitor extends PreorderJmmVisitor<SymbolTable, Vo
         reports.add(report);
     }
 
-    protected List<Report> getReports() {
+    @Override
+    public List<Report> getReports() {
         return reports;
     }
 
+    /**
+     * Adds a visit that reads what the passes before this one computed for the children of the node. On its own, the
+     * pass still visits the node before its children; in a {@link FusedAnalysis}, the node is visited after them, when
+     * the other passes are done with them.
+     *
+     * @param kind
+     * @param method
+     */
+    protected void addExitVisit(Object kind, BiFunction<JmmNode, SymbolTable, Void> method) {
+        if (exitVisits == null) {
+            exitVisits = Collections.newSetFromMap(new IdentityHashMap<>());
+        }
+
+        exitVisits.add(method);
+        addVisit(kind, method);
+    }
+
+    @Override
+    public void enter(JmmNode node, SymbolTable table) {
+        var visit = getVisit(node);
+
+        if (!isExitVisit(visit)) {
+            visit.apply(node, table);
+        }
+    }
+
+    @Override
+    public void exit(JmmNode node, SymbolTable table) {
+        var visit = getVisit(node);
+
+        if (isExitVisit(visit)) {
+            visit.apply(node, table);
+        }
+    }
+
+    @Override
+    public boolean isPostorder() {
+        return false;
+    }
+
+    private boolean isExitVisit(BiFunction<JmmNode, SymbolTable, Void> visit) {
+        return exitVisits != null && exitVisits.contains(visit);
+    }
+
 
     @Override
     public List<Report> analyze(JmmNode root, SymbolTable table) {
@@ -0,0 +1,32 @@
+package pt.up.fe.comp2024.analysis;
+
+import pt.up.fe.comp.jmm.analysis.table.SymbolTable;
+import pt.up.fe.comp.jmm.ast.JmmNode;
+import pt.up.fe.comp.jmm.report.Report;
+
+import java.util.List;
+
+/**
+ * An analysis pass that can share a single traversal of the tree with other passes, in a {@link FusedAnalysis}.
+ * <p>
+ * The traversal calls {@link #enter} on each node before its children, and {@link #exit} after them. On each node, the
+ * passes run in the order they were given, so a pass sees what the passes before it computed for the node and for the
+ * nodes already traversed, but not for the nodes below the node, unless it waits for {@link #exit}.
+ */
+public interface FusablePass extends AnalysisPass {
+
+    void enter(JmmNode node, SymbolTable table);
+
+    void exit(JmmNode node, SymbolTable table);
+
+    /**
+     * @return true if the reports of the pass follow the order the nodes are exited in, false if they follow the order
+     * they are entered in, i.e., the order of {@link #analyze}
+     */
+    boolean isPostorder();
+
+    /**
+     * @return every report added by the pass so far
+     */
+    List<Report> getReports();
+}
@@ -0,0 +1,301 @@
+package pt.up.fe.comp2024.analysis;
+
+import pt.up.fe.comp.jmm.analysis.table.SymbolTable;
+import pt.up.fe.comp.jmm.ast.JmmNode;
+import pt.up.fe.comp.jmm.report.Report;
+import pt.up.fe.comp.jmm.report.Stage;
+import pt.up.fe.comp2024.utils.StageProfiler;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Supplier;
+
+/**
+ * Runs several analysis passes in a single traversal of the tree, instead of one traversal per pass.
+ * <p>
+ * The result is the one of running the passes one after the other: the reports of each pass, in the order the pass
+ * would add them on its own, one pass after the other. A pass can add reports out of that order when it waits for the
+ * children of a node (e.g., a pre-order pass that checks a node in {@link FusablePass#exit}), so each report is tagged
+ * with the position of its node in the order of the pass, and the reports of each pass are sorted by it at the end.
+ * <p>
+ * Like when the passes run one by one, a pass that throws an exception stops, its reports are replaced by an error, and
+ * the other passes go on. The traversal keeps the nodes in a stack of its own, so the depth of the tree is not limited
+ * by the size of the thread stack.
+ * <p>
+ * While a stage is profiled, the time each pass takes in its hooks is added to the totals of the stage, under the name
+ * of the pass ({@link StageProfiler.Totals}).
+ */
+public class FusedAnalysis implements AnalysisPass {
+
+    private final List<FusablePass> passes;
+    private final StageProfiler.Totals totals;
+
+    public FusedAnalysis(List<? extends FusablePass> passes) {
+        this(passes, null);
+    }
+
+    /**
+     * @param totals where the time of each pass is added, for an analysis on a thread other than the one of the stage,
+     *               or null for the totals of the stage the analysing thread is in
+     */
+    FusedAnalysis(List<? extends FusablePass> passes, StageProfiler.Totals totals) {
+        this.passes = List.copyOf(passes);
+        this.totals = totals;
+    }
+
+    /**
+     * The reports of a pass in a traversal, in the order of the pass, or the error that stopped the pass.
+     */
+    record PassReports(List<Report> reports, Report failure) {
+    }
+
+    /**
+     * A report, or a detached node whose reports go in its place.
+     */
+    private record Entry(int tag, Report report, JmmNode detached) {
+    }
+
+    /**
+     * A node whose children are being traversed.
+     */
+    private static class Frame {
+        private final JmmNode node;
+        private final int preorderIndex;
+        private List<JmmNode> children;
+        private int nextChild;
+
+        private Frame(JmmNode node, int preorderIndex) {
+            this.node = node;
+            this.preorderIndex = preorderIndex;
+        }
+    }
+
+    /**
+     * The reports a pass adds during the traversal, and the position of the node each one was added at.
+     */
+    private static class PassState {
+        private final FusablePass pass;
+        private final int index;
+        private final int firstReport;
+        private final List<Entry> entries;
+        private final StageProfiler.Timer timer;
+        private int reportCount;
+        private Report failure;
+        private int failureTag;
+
+        private PassState(FusablePass pass, int index, StageProfiler.Totals totals) {
+            this.pass = pass;
+            this.index = index;
+            this.firstReport = pass.getReports().size();
+            this.entries = new ArrayList<>();
+            this.timer = totals == null ? null : totals.newTimer(pass.getClass().getSimpleName());
+            this.reportCount = 0;
+        }
+
+        private void startTimer() {
+            if (timer != null) {
+                timer.start();
+            }
+        }
+
+        private void stopTimer() {
+            if (timer != null) {
+                timer.stop();
+            }
+        }
+
+        private boolean isRunning() {
+            return failure == null;
+        }
+
+        private void tagNewReports(int tag) {
+            var reports = pass.getReports();
+            var added = reports.size() - firstReport;
+
+            while (reportCount < added) {
+                entries.add(new Entry(tag, reports.get(firstReport + reportCount++), null));
+            }
+        }
+
+        private void addDetached(JmmNode node, int tag) {
+            entries.add(new Entry(tag, null, node));
+        }
+
+        private void fail(Exception e, int tag) {
+            failure = newFailure(pass, e);
+            failureTag = tag;
+        }
+
+        private PassReports getReports(Map<JmmNode, Supplier<List<PassReports>>> detached) {
+            var reports = new ArrayList<Report>();
+
+            // Stable, so the reports of the same node keep the order they were added in
+            entries.sort(Comparator.comparingInt(Entry::tag));
+
+            for (var entry : entries) {
+                if (entry.report() != null) {
+                    reports.add(entry.report());
+                    continue;
+                }
+
+                // A detached node traversed before the pass failed can have failed first
+                if (failure != null && entry.tag() > failureTag) {
+                    continue;
+                }
+
+                var detachedReports = detached.get(entry.detached()).get().get(index);
+                if (detachedReports.failure() != null) {
+                    return detachedReports;
+                }
+
+                reports.addAll(detachedReports.reports());
+            }
+
+            return failure != null ? new PassReports(List.of(), failure) : new PassReports(reports, null);
+        }
+    }
+
+    /**
+     * @return the error that replaces the reports of a pass that threw an exception
+     */
+    static Report newFailure(AnalysisPass pass, Exception e) {
+        return Report.newError(Stage.SEMANTIC,
+                -1,
+                -1,
+                "Problem while executing analysis pass '" + pass.getClass() + "'",
+                e);
+    }
+
+    @Override
+    public List<Report> analyze(JmmNode root, SymbolTable table) {
+        return analyze(root, table, Map.of());
+    }
+
+    /**
+     * Same as {@link #analyze(JmmNode, SymbolTable)}, except that the detached nodes are not traversed; their reports,
+     * which are only asked for after the traversal, are merged where traversing them would have added them.
+     *
+     * @param detached the reports of each pass for each detached node, e.g., computed by other threads
+     */
+    List<Report> analyze(JmmNode root, SymbolTable table, Map<JmmNode, Supplier<List<PassReports>>> detached) {
+        var reports = new ArrayList<Report>();
+
+        for (var passReports : analyzeByPass(root, table, detached)) {
+            if (passReports.failure() != null) {
+                reports.add(passReports.failure());
+            } else {
+                reports.addAll(passReports.reports());
+            }
+        }
+
+        return reports;
+    }
+
+    /**
+     * Same as {@link #analyze(JmmNode, SymbolTable, Map)}, with the reports of each pass apart.
+     */
+    List<PassReports> analyzeByPass(JmmNode root, SymbolTable table,
+                                    Map<JmmNode, Supplier<List<PassReports>>> detached) {
+        var passTotals = totals != null ? totals : StageProfiler.getTotals();
+        var states = new ArrayList<PassState>();
+        for (int i = 0; i < passes.size(); i++) {
+            states.add(new PassState(passes.get(i), i, passTotals));
+        }
+
+        var preorderIndex = 0;
+        var postorderIndex = 0;
+
+        var frames = new ArrayDeque<Frame>();
+        var rootFrame = new Frame(root, preorderIndex++);
+        enter(states, rootFrame, postorderIndex, table);
+        frames.push(rootFrame);
+
+        while (!frames.isEmpty()) {
+            var frame = frames.peek();
+
+            // Read after the node is entered, like the pre-order visitors do
+            if (frame.children == null) {
+                frame.children = frame.node.getChildren();
+            }
+
+            if (frame.nextChild < frame.children.size()) {
+                var child = new Frame(frame.children.get(frame.nextChild++), preorderIndex++);
+
+                if (detached.containsKey(child.node)) {
+                    addDetached(states, child, postorderIndex++);
+                    continue;
+                }
+
+                enter(states, child, postorderIndex, table);
+                frames.push(child);
+                continue;
+            }
+
+            frames.pop();
+            exit(states, frame, postorderIndex++, table);
+        }
+
+        for (var state : states) {
+            if (state.timer != null) {
+                state.timer.addToTotals();
+            }
+        }
+
+        return states.stream().map(state -> state.getReports(detached)).toList();
+    }
+
+    /**
+     * @param postorderIndex the position the next node to exit will have
+     */
+    private static void enter(List<PassState> states, Frame frame, int postorderIndex, SymbolTable table) {
+        for (var state : states) {
+            if (!state.isRunning()) {
+                continue;
+            }
+
+            // Reports of a post-order pass added before the children come before the ones added for them
+            var tag = state.pass.isPostorder() ? postorderIndex : frame.preorderIndex;
+
+            state.startTimer();
+            try {
+                state.pass.enter(frame.node, table);
+                state.tagNewReports(tag);
+            } catch (Exception e) {
+                state.fail(e, tag);
+            } finally {
+                state.stopTimer();
+            }
+        }
+    }
+
+    private static void exit(List<PassState> states, Frame frame, int postorderIndex, SymbolTable table) {
+        for (var state : states) {
+            if (!state.isRunning()) {
+                continue;
+            }
+
+            var tag = state.pass.isPostorder() ? postorderIndex : frame.preorderIndex;
+
+            state.startTimer();
+            try {
+                state.pass.exit(frame.node, table);
+                state.tagNewReports(tag);
+            } catch (Exception e) {
+                state.fail(e, tag);
+            } finally {
+                state.stopTimer();
+            }
+        }
+    }
+
+    private static void addDetached(List<PassState> states, Frame frame, int postorderIndex) {
+        for (var state : states) {
+            if (state.isRunning()) {
+                state.addDetached(frame.node, state.pass.isPostorder() ? postorderIndex : frame.preorderIndex);
+            }
+        }
+    }
+}
@@ -0,0 +1,311 @@
+package pt.up.fe.comp2024.analysis;
+
+import pt.up.fe.comp.jmm.analysis.JmmSemanticsResult;
+import pt.up.fe.comp.jmm.ast.JmmNode;
+import pt.up.fe.comp.jmm.ast.NodePosition;
+import pt.up.fe.comp.jmm.parser.JmmParserResult;
+import pt.up.fe.comp.jmm.report.Report;
+import pt.up.fe.comp2024.analysis.FusedAnalysis.PassReports;
+import pt.up.fe.comp2024.ast.Kind;
+import pt.up.fe.comp2024.ast.NodeUtils;
+import pt.up.fe.comp2024.ast.TypeTable;
+import pt.up.fe.comp2024.symboltable.JmmSymbolTableBuilder;
+import pt.up.fe.comp2024.utils.StageProfiler;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HexFormat;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+/**
+ * Analyses the successive versions of a class, analysing again only the methods that changed.
+ * <p>
+ * Each version is fingerprinted in two parts: the declarations of the class (imports, the class, its fields and the
+ * signatures of its methods), and each method on its own. The analysis of a method only depends on the declarations
+ * and on the method itself (see {@link ParallelAnalysis}), so while the declarations stay the same, a method that did
+ * not change keeps its reports, and only the other methods are analysed. The rest of the class (e.g., the fields) is
+ * traversed every time, with the methods detached ({@link FusedAnalysis}), so the reports are the same, and in the
+ * same order, as analysing the whole class. If the declarations changed, every method is analysed again.
+ * <p>
+ * A method did not change if it is the same node as in the previous version (e.g., kept by
+ * {@link pt.up.fe.comp2024.parser.IncrementalJmmParser}) and starts at the same column, or if it has the fingerprint
+ * of a method of the previous version. The lines of the positions are part of the fingerprint relative to the line the
+ * method starts at, so a method that only moved down keeps its reports, moved by as many lines. A new node with the
+ * fingerprint of an old one gets what the analysis left in the old nodes.
+ * <p>
+ * While the declarations stay the same, the symbol table of each version keeps the {@link TypeTable} of the previous
+ * one, so the types of the methods that did not change are not computed again, and previous results should not be
+ * used anymore. A method analysed again after the declarations changed keeps the symbols resolved for the names that
+ * are not declared anymore, which are errors. Not thread-safe, each file has its own instance.
+ */
+public class IncrementalAnalysis {
+
+    private static final Set<String> LINES = Set.of(NodePosition.LINE_START.getKey(), NodePosition.LINE_END.getKey());
+    private static final Set<String> COLUMNS = Set.of(NodePosition.COL_START.getKey(), NodePosition.COL_END.getKey());
+
+    private final Supplier<List<? extends FusablePass>> newPasses;
+
+    // What the analysis of the previous version left
+    private String declarationsFingerprint;
+    private TypeTable types;
+    private Map<JmmNode, AnalysedMethod> methodsByNode;
+    private Map<String, AnalysedMethod> methodsByFingerprint;
+
+    private final List<JmmNode> reusedMethods;
+
+    /**
+     * A method and its reports, by pass.
+     *
+     * @param line   where the method starts, the line of the positions of the fingerprint and of the reports
+     * @param column where the method starts
+     */
+    private record AnalysedMethod(JmmNode node, String fingerprint, int line, int column, List<PassReports> reports) {
+    }
+
+    public IncrementalAnalysis() {
+        this(JmmAnalysisImpl::newPasses);
+    }
+
+    /**
+     * @param newPasses creates the passes for each analysis, always the same passes in the same order
+     */
+    public IncrementalAnalysis(Supplier<List<? extends FusablePass>> newPasses) {
+        this.newPasses = newPasses;
+        this.methodsByNode = new IdentityHashMap<>();
+        this.methodsByFingerprint = new HashMap<>();
+        this.reusedMethods = new ArrayList<>();
+    }
+
+    /**
+     * @return the methods of the last version whose reports were kept from the previous one
+     */
+    public List<JmmNode> getReusedMethods() {
+        return reusedMethods;
+    }
+
+    /**
+     * Analyses a new version of the class.
+     *
+     * @param parserResult
+     * @return the same result as {@link JmmAnalysisImpl#semanticAnalysis}
+     */
+    public JmmSemanticsResult analyze(JmmParserResult parserResult) {
+        var root = parserResult.getRootNode();
+        reusedMethods.clear();
+
+        var fingerprint = fingerprint(root, -1);
+        var incremental = fingerprint.equals(declarationsFingerprint);
+        var newTypes = incremental ? types : new TypeTable();
+
+        var builder = StageProfiler.measure("symbolTable", () -> new JmmSymbolTableBuilder(root, newTypes));
+        var table = builder.getTable();
+        if (!builder.getReports().isEmpty()) {
+            return new JmmSemanticsResult(parserResult, table, builder.getReports());
+        }
+
+        if (!incremental) {
+            methodsByNode.clear();
+            methodsByFingerprint.clear();
+        }
+
+        var analysis = new FusedAnalysis(newPasses.get());
+        Map<JmmNode, AnalysedMethod> analysed = new IdentityHashMap<>();
+        Map<JmmNode, Supplier<List<PassReports>>> detached = new IdentityHashMap<>();
+
+        for (var method : ParallelAnalysis.getMethods(root)) {
+            var line = NodeUtils.getLine(method);
+            var column = NodeUtils.getColumn(method);
+
+            var current = methodsByNode.get(method);
+            var reused = true;
+            if (current == null || current.column() != column) {
+                var methodFingerprint = fingerprint(method, line);
+                current = methodsByFingerprint.get(methodFingerprint);
+
+                if (current == null) {
+                    reused = false;
+                    current = new AnalysedMethod(method, methodFingerprint, line, column,
+                            analysis.analyzeByPass(method, table, Map.of()));
+                } else if (current.node() != method) {
+                    copyAnalysis(current.node(), method, newTypes);
+                }
+            }
+
+            if (current.node() != method || current.line() != line) {
+                current = new AnalysedMethod(method, current.fingerprint(), line, column,
+                        moveReports(current.reports(), line - current.line()));
+            }
+
+            if (reused) {
+                reusedMethods.add(method);
+            }
+
+            var reports = current.reports();
+            analysed.put(method, current);
+            detached.put(method, () -> reports);
+        }
+
+        // The types of the methods that are not in the tree anymore
+        for (var method : methodsByNode.keySet()) {
+            if (!analysed.containsKey(method)) {
+                forEachNode(method, newTypes::remove);
+            }
+        }
+
+        var reports = new FusedAnalysis(newPasses.get()).analyze(root, table, detached);
+
+        declarationsFingerprint = fingerprint;
+        types = newTypes;
+        methodsByNode = analysed;
+        methodsByFingerprint = new HashMap<>();
+        analysed.values().forEach(method -> methodsByFingerprint.put(method.fingerprint(), method));
+
+        return new JmmSemanticsResult(parserResult, table, reports);
+    }
+
+    /**
+     * Hashes the kinds and the attributes of the nodes of a tree, except what the analysis adds to them.
+     *
+     * @param firstLine the line the lines of the positions are relative to, or -1 to hash the declarations of a class,
+     *                  without the bodies of the methods nor the positions
+     */
+    private static String fingerprint(JmmNode root, int firstLine) {
+        MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new RuntimeException("SHA-256 is not available", e);
+        }
+
+        var declarations = firstLine < 0;
+        var pending = new ArrayDeque<JmmNode>();
+        pending.push(root);
+
+        while (!pending.isEmpty()) {
+            var node = pending.pop();
+            var body = Kind.METHOD_CODE_BLOCK.check(node) || Kind.METHOD_CODE_BLOCK_WITHOUT_RETURN.check(node);
+
+            update(digest, node.getKind());
+            if (declarations && body) {
+                // Only the kind, which tells if the method returns void
+                continue;
+            }
+
+            var attributes = new ArrayList<>(node.getAttributes());
+            attributes.sort(null);
+
+            for (var attribute : attributes) {
+                // The analysis only adds objects, e.g., the symbols it resolved
+                if (!(node.getObject(attribute) instanceof String value)) {
+                    continue;
+                }
+
+                if (LINES.contains(attribute) || COLUMNS.contains(attribute)) {
+                    if (declarations) {
+                        continue;
+                    }
+
+                    if (LINES.contains(attribute)) {
+                        value = Integer.toString(Integer.parseInt(value) - firstLine);
+                    }
+                }
+
+                update(digest, attribute);
+                update(digest, value);
+            }
+
+            update(digest, Integer.toString(node.getNumChildren()));
+            for (int i = node.getNumChildren() - 1; i >= 0; i--) {
+                pending.push(node.getJmmChild(i));
+            }
+        }
+
+        return HexFormat.of().formatHex(digest.digest());
+    }
+
+    private static void update(MessageDigest digest, String string) {
+        digest.update(string.getBytes(StandardCharsets.UTF_8));
+        digest.update((byte) 0);
+    }
+
+    /**
+     * Gives each node of a method the type and the objects the analysis left in the same node of an equal method.
+     */
+    private static void copyAnalysis(JmmNode from, JmmNode to, TypeTable types) {
+        var pendingFrom = new ArrayDeque<JmmNode>();
+        var pendingTo = new ArrayDeque<JmmNode>();
+        pendingFrom.push(from);
+        pendingTo.push(to);
+
+        while (!pendingFrom.isEmpty()) {
+            var fromNode = pendingFrom.pop();
+            var toNode = pendingTo.pop();
+
+            var type = types.find(fromNode);
+            if (type != null) {
+                types.put(toNode, type);
+            }
+
+            for (var attribute : fromNode.getAttributes()) {
+                if (!toNode.hasAttribute(attribute)) {
+                    toNode.putObject(attribute, fromNode.getObject(attribute));
+                }
+            }
+
+            for (int i = 0; i < fromNode.getNumChildren(); i++) {
+                pendingFrom.push(fromNode.getJmmChild(i));
+                pendingTo.push(toNode.getJmmChild(i));
+            }
+        }
+    }
+
+    private static void forEachNode(JmmNode root, Consumer<JmmNode> action) {
+        var pending = new ArrayDeque<JmmNode>();
+        pending.push(root);
+
+        while (!pending.isEmpty()) {
+            var node = pending.pop();
+            action.accept(node);
+            node.getChildren().forEach(pending::push);
+        }
+    }
+
+    /**
+     * @return the reports of a method that moved by the given lines
+     */
+    private static List<PassReports> moveReports(List<PassReports> reports, int lines) {
+        if (lines == 0) {
+            return reports;
+        }
+
+        var moved = new ArrayList<PassReports>(reports.size());
+        for (var pass : reports) {
+            var passReports = pass.reports().stream().map(report -> moveReport(report, lines)).toList();
+            var failure = pass.failure() != null ? moveReport(pass.failure(), lines) : null;
+            moved.add(new PassReports(passReports, failure));
+        }
+
+        return moved;
+    }
+
+    private static Report moveReport(Report report, int lines) {
+        if (report.getLine() < 0) {
+            return report;
+        }
+
+        var moved = new Report(report.getType(), report.getStage(), report.getLine() + lines, report.getColumn(),
+                report.getMessage());
+        report.getException().ifPresent(moved::setException);
+
+        return moved;
+    }
+}
@@ -2,33 +2,47 @@ package pt.up.fe.comp2024.analysis;
 
 import pt.up.fe.comp.jmm.analysis.JmmAnalysis;
 import pt.up.fe.comp.jmm.analysis.JmmSemanticsResult;
+import pt.up.fe.comp.jmm.analysis.table.SymbolTable;
 import pt.up.fe.comp.jmm.ast.JmmNode;
 import pt.up.fe.comp.jmm.parser.JmmParserResult;
 import pt.up.fe.comp.jmm.report.Report;
 import pt.up.fe.comp.jmm.report.Stage;
+import pt.up.fe.comp2024.CompilerConfig;
 import pt.up.fe.comp2024.analysis.passes.*;
 import pt.up.fe.comp2024.symboltable.JmmSymbolTable;
 import pt.up.fe.comp2024.symboltable.JmmSymbolTableBuilder;
+import pt.up.fe.comp2024.utils.Diagnostics;
+import pt.up.fe.comp2024.utils.StageProfiler;
 
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Set;
 import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
 
 public class JmmAnalysisImpl implements JmmAnalysis {
 
 
-    private final List<AnalysisPass> analysisPasses;
+    private final List<FusablePass> analysisPasses;
 
     public JmmAnalysisImpl() {
 
-        this.analysisPasses = List.of(
+        this.analysisPasses = newPasses();
+
+    }
+
+    /**
+     * Each analysis of the methods in parallel creates its own passes, which keep the state of a traversal.
+     */
+    static List<FusablePass> newPasses() {
+        return List.of(
+                new TypeInference(),
                 new UndeclaredVariable(),
                 new UndeclaredMethod(),
                 new IntLit(),
                 new ReturnType(),
                 new StaticMethod()
         );
-
     }
 
     @Override
@@ -37,7 +51,7 @@ public class JmmAnalysisImpl implements JmmAnalysis {
         JmmNode rootNode = parserResult.getRootNode();
         JmmSymbolTableBuilder builder = null;
         try {
-            builder = new JmmSymbolTableBuilder(rootNode);
+            builder = StageProfiler.measure("symbolTable", () -> new JmmSymbolTableBuilder(rootNode));
             var tableReports = builder.getReports();
             reports.addAll(tableReports);
         } catch (Exception e) {
@@ -55,42 +69,46 @@ public class JmmAnalysisImpl implements JmmAnalysis {
             return new JmmSemanticsResult(parserResult, table, reports);
         }
 
-        System.out.println("\n\nPrinting Symbol Table:");
+        Diagnostics.debug(() -> toString(table));
 
-        System.out.println("\nImports:");
-        System.out.println(table.getImports());
-
-        System.out.println("\nClass Name: " + table.getClassName());
+        // Visit all nodes in the AST
+        if (CompilerConfig.isParallelAnalysis(parserResult.getConfig())) {
+            var analysis = new ParallelAnalysis(JmmAnalysisImpl::newPasses, ForkJoinPool.commonPool());
+            reports.addAll(StageProfiler.measure("analysisPasses", () -> analysis.analyze(rootNode, table)));
+        } else {
+            reports.addAll(runPasses(rootNode, table));
+        }
 
-        System.out.println("\nSuper: " + table.getSuper());
+        return new JmmSemanticsResult(parserResult, table, reports);
+    }
 
-        System.out.println("\nFields: " + table.getFields());
+    /**
+     * Runs the passes in the order of their inputs and outputs, those that can in a single traversal of the tree, with
+     * the same reports as running them one after the other.
+     */
+    private List<Report> runPasses(JmmNode node, SymbolTable table) {
+        var analysis = new PassScheduler(analysisPasses, Set.of(), ForkJoinPool.commonPool());
 
-        System.out.println("\nMethods: " + table.getMethods());
+        return StageProfiler.measure("analysisPasses", () -> analysis.analyze(node, table));
+    }
 
-        for (var method : table.getMethods()) {
-            System.out.println("\nMethod: " + method);
-            System.out.println("Return Type: " + table.getReturnType(method));
-            System.out.println("Parameters: " + table.getParameters(method));
-            System.out.println("Local Variables: " + table.getLocalVariables(method));
-        }
+    private static String toString(JmmSymbolTable table) {
+        var string = new StringBuilder();
 
-        // Visit all nodes in the AST
-        for (var analysisPass : analysisPasses) {
-            try {
-                var passReports = analysisPass.analyze(rootNode, table);
-                reports.addAll(passReports);
-            } catch (Exception e) {
-                reports.add(Report.newError(Stage.SEMANTIC,
-                        -1,
-                        -1,
-                        "Problem while executing analysis pass '" + analysisPass.getClass() + "'",
-                        e)
-                );
-            }
+        string.append("\n\nPrinting Symbol Table:\n");
+        string.append("\nImports:\n").append(table.getImports()).append("\n");
+        string.append("\nClass Name: ").append(table.getClassName()).append("\n");
+        string.append("\nSuper: ").append(table.getSuper()).append("\n");
+        string.append("\nFields: ").append(table.getFields()).append("\n");
+        string.append("\nMethods: ").append(table.getMethods()).append("\n");
 
+        for (var method : table.getMethods()) {
+            string.append("\nMethod: ").append(method).append("\n");
+            string.append("Return Type: ").append(table.getReturnType(method)).append("\n");
+            string.append("Parameters: ").append(table.getParameters(method)).append("\n");
+            string.append("Local Variables: ").append(table.getLocalVariables(method)).append("\n");
         }
 
-        return new JmmSemanticsResult(parserResult, table, reports);
+        return string.toString();
     }
 }
\ No newline at end of file
@@ -0,0 +1,138 @@
+package pt.up.fe.comp2024.analysis;
+
+import pt.up.fe.comp.jmm.analysis.table.SymbolTable;
+import pt.up.fe.comp.jmm.ast.JmmNode;
+import pt.up.fe.comp.jmm.report.Report;
+import pt.up.fe.comp2024.analysis.FusedAnalysis.PassReports;
+import pt.up.fe.comp2024.ast.Kind;
+import pt.up.fe.comp2024.utils.StageProfiler;
+
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.function.Supplier;
+
+/**
+ * Runs the analysis passes on the methods of a class concurrently, on a fork-join pool ('-j').
+ * <p>
+ * Once the symbol table is built, the passes analyse each method on its own: they only read the table, and only
+ * annotate the nodes of the method. The methods are split in halves until each task has a few of them, and each task
+ * analyses its methods with its own instances of the passes, in a {@link FusedAnalysis}. Meanwhile, the calling thread
+ * analyses the rest of the class (e.g., the fields), and merges the reports of each method where traversing the method
+ * would have added them, so the reports are the same, and in the same order, as analysing the whole class in a single
+ * thread.
+ * <p>
+ * If a pass throws an exception in a method, the result has the same error, but the pass still analyses the methods
+ * of the other tasks.
+ */
+public class ParallelAnalysis implements AnalysisPass {
+
+    /**
+     * Tasks per thread of the pool, so that threads that finish early can steal from the others.
+     */
+    private static final int TASKS_PER_THREAD = 4;
+
+    private final Supplier<List<? extends FusablePass>> newPasses;
+    private final ForkJoinPool pool;
+
+    /**
+     * @param newPasses creates the passes for each task, always the same passes in the same order
+     * @param pool
+     */
+    public ParallelAnalysis(Supplier<List<? extends FusablePass>> newPasses, ForkJoinPool pool) {
+        this.newPasses = newPasses;
+        this.pool = pool;
+    }
+
+    /**
+     * Analyses a range of methods, each one into its own position of the results.
+     */
+    private class MethodsTask extends RecursiveAction {
+        private final List<JmmNode> methods;
+        private final List<List<PassReports>> results;
+        private final SymbolTable table;
+        private final StageProfiler.Totals totals;
+        private final int start;
+        private final int end;
+        private final int threshold;
+
+        private MethodsTask(List<JmmNode> methods, List<List<PassReports>> results, SymbolTable table,
+                            StageProfiler.Totals totals, int start, int end, int threshold) {
+            this.methods = methods;
+            this.results = results;
+            this.table = table;
+            this.totals = totals;
+            this.start = start;
+            this.end = end;
+            this.threshold = threshold;
+        }
+
+        @Override
+        protected void compute() {
+            if (end - start > threshold) {
+                var middle = (start + end) >>> 1;
+                invokeAll(new MethodsTask(methods, results, table, totals, start, middle, threshold),
+                        new MethodsTask(methods, results, table, totals, middle, end, threshold));
+                return;
+            }
+
+            var analysis = new FusedAnalysis(newPasses.get(), totals);
+            for (int i = start; i < end; i++) {
+                results.set(i, analysis.analyzeByPass(methods.get(i), table, Map.of()));
+            }
+        }
+    }
+
+    @Override
+    public List<Report> analyze(JmmNode root, SymbolTable table) {
+        var methods = getMethods(root);
+        if (methods.size() < 2) {
+            return new FusedAnalysis(newPasses.get()).analyze(root, table);
+        }
+
+        var results = new ArrayList<List<PassReports>>(methods.size());
+        for (int i = 0; i < methods.size(); i++) {
+            results.add(null);
+        }
+
+        var threshold = Math.max(1, methods.size() / (pool.getParallelism() * TASKS_PER_THREAD));
+        // The tasks add the time of each pass to the stage of the calling thread
+        var totals = StageProfiler.getTotals();
+        var task = pool.submit(new MethodsTask(methods, results, table, totals, 0, methods.size(), threshold));
+
+        Map<JmmNode, Supplier<List<PassReports>>> detached = new IdentityHashMap<>();
+        for (int i = 0; i < methods.size(); i++) {
+            var index = i;
+            detached.put(methods.get(i), () -> {
+                task.join();
+                return results.get(index);
+            });
+        }
+
+        return new FusedAnalysis(newPasses.get()).analyze(root, table, detached);
+    }
+
+    /**
+     * @return the methods of the class, if the node is the root of a program
+     */
+    static List<JmmNode> getMethods(JmmNode root) {
+        if (Kind.ofOrNull(root) != Kind.PROGRAM) {
+            return List.of();
+        }
+
+        var methods = new ArrayList<JmmNode>();
+        // Program: importDecl* classDecl, ClassDeclaration: classBody
+        var classBody = root.getJmmChild(root.getNumChildren() - 1).getJmmChild(0);
+        for (var child : classBody.getChildren()) {
+            var childKind = Kind.ofOrNull(child);
+            if (childKind == Kind.METHOD_DECLARATION || childKind == Kind.MAIN_METHOD_DECLARATION) {
+                methods.add(child);
+            }
+        }
+
+        return methods;
+    }
+}
@@ -0,0 +1,34 @@
+package pt.up.fe.comp2024.analysis;
+
+import pt.up.fe.comp2024.ast.TypeTable;
+import pt.up.fe.comp2024.symboltable.SymbolIndex;
+
+/**
+ * Something a pass computes for the passes after it, and that other passes need as input.
+ */
+public enum PassProperty {
+
+    /**
+     * The symbol each variable refers to, kept in the nodes of the variables ({@link SymbolIndex#setResolved}).
+     */
+    SYMBOLS_RESOLVED(true),
+
+    /**
+     * The type of each expression, in the {@link TypeTable}.
+     */
+    TYPES_ANNOTATED(false);
+
+    private final boolean keptInTree;
+
+    PassProperty(boolean keptInTree) {
+        this.keptInTree = keptInTree;
+    }
+
+    /**
+     * @return true if the property is written to the nodes, which are not safe to read while other threads write
+     * to them
+     */
+    public boolean isKeptInTree() {
+        return keptInTree;
+    }
+}
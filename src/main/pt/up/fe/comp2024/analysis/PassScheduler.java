@@ -0,0 +1,197 @@
+package pt.up.fe.comp2024.analysis;
+
+import pt.up.fe.comp.jmm.analysis.table.SymbolTable;
+import pt.up.fe.comp.jmm.ast.JmmNode;
+import pt.up.fe.comp.jmm.report.Report;
+import pt.up.fe.comp2024.utils.StageProfiler;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.stream.Collectors;
+
+/**
+ * Runs passes in the order their inputs and outputs ask for, instead of the order they are listed in.
+ * <p>
+ * A pass depends on the passes that output what it takes as input ({@link AnalysisPass#getInputs}), and runs in the
+ * level after the last of them. The passes of a level do not depend on each other, so they run at the same time, on
+ * a fork-join pool. Fusable passes that only depend on other fusable passes are the exception: they stay in the level
+ * of those passes, after them in a single traversal of the tree ({@link FusedAnalysis}), where they see what those
+ * passes computed for the nodes already traversed. If a pass of a level writes its outputs to the tree, the passes of
+ * the level run one after the other.
+ * <p>
+ * Passes whose outputs are all still valid, e.g., from a previous analysis of the same tree, are skipped. The reports
+ * are the ones of running the other passes one after the other, in the order they were given.
+ */
+public class PassScheduler implements AnalysisPass {
+
+    private final List<AnalysisPass> passes;
+    private final List<List<AnalysisPass>> levels;
+    private final ForkJoinPool pool;
+
+    /**
+     * @param passes the passes, in the order of their reports
+     * @param valid  what is still valid from a previous analysis of the tree, e.g., nothing
+     * @param pool
+     * @throws IllegalArgumentException if a pass needs something no other pass outputs, or passes depend on each
+     *                                  other
+     */
+    public PassScheduler(List<? extends AnalysisPass> passes, Set<PassProperty> valid, ForkJoinPool pool) {
+        this.passes = passes.stream()
+                .filter(pass -> pass.getOutputs().isEmpty() || !valid.containsAll(pass.getOutputs()))
+                .collect(Collectors.toList());
+        this.levels = computeLevels(this.passes, valid);
+        this.pool = pool;
+    }
+
+    /**
+     * @return the passes that are not skipped, level by level, each pass after the passes it depends on
+     */
+    public List<List<AnalysisPass>> getLevels() {
+        return levels;
+    }
+
+    private static List<List<AnalysisPass>> computeLevels(List<AnalysisPass> passes, Set<PassProperty> valid) {
+        Map<AnalysisPass, List<AnalysisPass>> dependencies = new IdentityHashMap<>();
+
+        for (var pass : passes) {
+            var providers = new ArrayList<AnalysisPass>();
+
+            for (var input : pass.getInputs()) {
+                var provided = false;
+                for (var other : passes) {
+                    if (other != pass && other.getOutputs().contains(input)) {
+                        providers.add(other);
+                        provided = true;
+                    }
+                }
+
+                if (!provided && !valid.contains(input)) {
+                    throw new IllegalArgumentException("Pass '" + pass.getClass().getSimpleName() + "' needs "
+                            + input + ", which no pass outputs");
+                }
+            }
+
+            dependencies.put(pass, providers);
+        }
+
+        // The passes are placed in the order given, unless they must wait for a pass given after them
+        Map<AnalysisPass, Integer> passLevels = new IdentityHashMap<>();
+        var levels = new ArrayList<List<AnalysisPass>>();
+        var pending = new ArrayList<>(passes);
+
+        while (!pending.isEmpty()) {
+            var next = pending.stream()
+                    .filter(pass -> dependencies.get(pass).stream().allMatch(passLevels::containsKey))
+                    .findFirst()
+                    .orElseThrow(() -> new IllegalArgumentException("Passes depend on each other: " + pending.stream()
+                            .map(pass -> pass.getClass().getSimpleName())
+                            .toList()));
+            pending.remove(next);
+
+            var level = 0;
+            for (var provider : dependencies.get(next)) {
+                var sameTraversal = next instanceof FusablePass && provider instanceof FusablePass;
+                level = Math.max(level, passLevels.get(provider) + (sameTraversal ? 0 : 1));
+            }
+
+            passLevels.put(next, level);
+            while (levels.size() <= level) {
+                levels.add(new ArrayList<>());
+            }
+            levels.get(level).add(next);
+        }
+
+        return levels.stream().map(Collections::unmodifiableList).toList();
+    }
+
+    @Override
+    public List<Report> analyze(JmmNode root, SymbolTable table) {
+        Map<AnalysisPass, List<Report>> passReports = new IdentityHashMap<>();
+        // The jobs on the pool add the time of each pass to the stage of the calling thread
+        var totals = StageProfiler.getTotals();
+
+        for (var level : levels) {
+            var fusable = new ArrayList<FusablePass>();
+            var jobs = new ArrayList<Runnable>();
+
+            for (var pass : level) {
+                if (pass instanceof FusablePass fusablePass) {
+                    fusable.add(fusablePass);
+                } else {
+                    jobs.add(() -> {
+                        var reports = runAlone(pass, root, table, totals);
+                        synchronized (passReports) {
+                            passReports.put(pass, reports);
+                        }
+                    });
+                }
+            }
+
+            if (!fusable.isEmpty()) {
+                jobs.add(() -> {
+                    var reports = new FusedAnalysis(fusable, totals).analyzeByPass(root, table, Map.of());
+                    synchronized (passReports) {
+                        for (int i = 0; i < fusable.size(); i++) {
+                            var pass = reports.get(i);
+                            passReports.put(fusable.get(i),
+                                    pass.failure() != null ? List.of(pass.failure()) : pass.reports());
+                        }
+                    }
+                });
+            }
+
+            run(jobs, writesTree(level));
+        }
+
+        var reports = new ArrayList<Report>();
+        for (var pass : passes) {
+            reports.addAll(passReports.get(pass));
+        }
+
+        return reports;
+    }
+
+    private void run(List<Runnable> jobs, boolean sequential) {
+        if (sequential || jobs.size() == 1) {
+            jobs.forEach(Runnable::run);
+            return;
+        }
+
+        var tasks = jobs.stream().map(job -> pool.submit(ForkJoinTask.adapt(job))).toList();
+        tasks.forEach(ForkJoinTask::join);
+    }
+
+    /**
+     * Like {@link FusedAnalysis}, a pass that throws an exception has its reports replaced by an error.
+     */
+    private static List<Report> runAlone(AnalysisPass pass, JmmNode root, SymbolTable table,
+                                         StageProfiler.Totals totals) {
+        var timer = totals == null ? null : totals.newTimer(pass.getClass().getSimpleName());
+        if (timer != null) {
+            timer.start();
+        }
+
+        try {
+            return pass.analyze(root, table);
+        } catch (Exception e) {
+            return List.of(FusedAnalysis.newFailure(pass, e));
+        } finally {
+            if (timer != null) {
+                timer.stop();
+                timer.addToTotals();
+            }
+        }
+    }
+
+    private static boolean writesTree(List<AnalysisPass> level) {
+        return level.stream()
+                .flatMap(pass -> pass.getOutputs().stream())
+                .anyMatch(PassProperty::isKeptInTree);
+    }
+}
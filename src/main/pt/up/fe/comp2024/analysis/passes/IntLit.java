@@ -5,65 +5,51 @@ import pt.up.fe.comp.jmm.ast.JmmNode;
 import pt.up.fe.comp.jmm.report.Report;
 import pt.up.fe.comp.jmm.report.Stage;
 import pt.up.fe.comp2024.analysis.AnalysisPosVisitor;
+import pt.up.fe.comp2024.analysis.PassProperty;
 import pt.up.fe.comp2024.ast.Kind;
 import pt.up.fe.comp2024.ast.NodeUtils;
+import pt.up.fe.comp2024.ast.TypeTable;
+import pt.up.fe.comp2024.ast.TypeUtils;
+import pt.up.fe.comp2024.symboltable.SymbolIndex;
 
 import java.util.Objects;
-import java.util.Optional;
+import java.util.Set;
 
 public class IntLit extends AnalysisPosVisitor {
 
     @Override
     public void buildVisitor() {
-        addVisit(Kind.INTEGER_LITERAL, this::visitIntLit);
-        addVisit("BooleanLiteral", this::visitBoolLit);
-        addVisit("ThisExpr", this::visitThisExpr);
         addVisit(Kind.BINARY_EXPR, this::visitBinaryExpr);
-        addVisit("LogicalExpr", this::visitLogicalExpr);
-        addVisit("NegationExpr", this::visitNegationExpr);
-        addVisit("ParenthesisExpr", this::visitParenthesisExpr);
-        addVisit("IfStmt", this::visitIfStmt);
-        addVisit("WhileStmt", this::visitWhileStmt);
-        addVisit("ArrayExpr", this::visitArrayExpr);
-        addVisit("ArrayAccessExpr", this::visitArrayAccessExpr);
-        addVisit("ArrayLengthExpr", this::visitArrayLengthExpr);
-        addVisit("ArrayAssignStmt", this::visitArrayAssignStmt);
+        addVisit(Kind.LOGICAL_EXPR, this::visitLogicalExpr);
+        addVisit(Kind.NEGATION_EXPR, this::visitNegationExpr);
+        addVisit(Kind.IF_STMT, this::visitIfStmt);
+        addVisit(Kind.WHILE_STMT, this::visitWhileStmt);
+        addVisit(Kind.ARRAY_EXPR, this::visitArrayExpr);
+        addVisit(Kind.ARRAY_ACCESS_EXPR, this::visitArrayAccessExpr);
+        addVisit(Kind.ARRAY_LENGTH_EXPR, this::visitArrayLengthExpr);
+        addVisit(Kind.ARRAY_ASSIGN_STMT, this::visitArrayAssignStmt);
         addVisit(Kind.ASSIGN_STMT, this::visitAssignStmt);
-        addVisit("NewObjectExpr", this::visitNewObjectExpr);
-        addVisit("MethodClassCallExpr", this::visitMethodClassCallExpr);
-        addVisit("NewArrayExpr", this::visitNewArrayExpr);
+        addVisit(Kind.NEW_OBJECT_EXPR, this::visitNewObjectExpr);
+        addVisit(Kind.METHOD_CLASS_CALL_EXPR, this::visitMethodClassCallExpr);
+        addVisit(Kind.NEW_ARRAY_EXPR, this::visitNewArrayExpr);
     }
 
-    private Void visitBoolLit(JmmNode node, SymbolTable table){
-        node.put("type", "boolean");
-        node.put("isArray", "false");
-        return null;
-    }
-
-    private Void visitIntLit(JmmNode node, SymbolTable table){
-        node.put("type","int");
-        node.put("isArray", "false");
-        return null;
-    }
-
-    private Void visitThisExpr(JmmNode node, SymbolTable table){
-        node.put("type", table.getClassName());
-        node.put("isArray", "false");
-        return null;
+    @Override
+    public Set<PassProperty> getInputs() {
+        return Set.of(PassProperty.TYPES_ANNOTATED);
     }
 
     private Void visitBinaryExpr(JmmNode node, SymbolTable table){
-        node.put("type", "int");
-        node.put("isArray", "false");
+        var types = TypeTable.of(table);
 
         String operator = node.get("op");
-        if(!node.getChild(0).hasAttribute("type") || !node.getChild(1).hasAttribute("type")){
+        if(!types.hasType(node.getChild(0)) || !types.hasType(node.getChild(1))){
             return null;
         }
-        else if(node.getChild(0).get("type").equals("null") || node.getChild(1).get("type").equals("null")) {
+        else if(types.get(node.getChild(0)).getName().equals("null") || types.get(node.getChild(1)).getName().equals("null")) {
             return null;
         }
-        else if(node.getChild(0).get("type").equals("int") && node.getChild( 1).get("type").equals("int") && node.getChild(0).get("isArray").equals("false") && node.getChild(1).get("isArray").equals("false")){
+        else if(types.get(node.getChild(0)) == TypeUtils.INT && types.get(node.getChild(1)) == TypeUtils.INT){
             return null;
         }
         else {
@@ -79,10 +65,9 @@ public class IntLit extends AnalysisPosVisitor {
     }
 
     private Void visitLogicalExpr(JmmNode node, SymbolTable table){
-        node.put("type", "boolean");
-        node.put("isArray", "false");
+        var types = TypeTable.of(table);
         if(node.get("op").equals("&&")){
-            if(node.getChild(0).get("type").equals("boolean") && node.getChild(1).get("type").equals("boolean")){
+            if(types.get(node.getChild(0)).getName().equals("boolean") && types.get(node.getChild(1)).getName().equals("boolean")){
                 return null;
             }else {
                 String message = "Invalid AND operation between types!";
@@ -95,7 +80,7 @@ public class IntLit extends AnalysisPosVisitor {
             }
         }
         else if(node.get("op").equals("<")){
-            if (node.getChild(0).get("type").equals("int") && node.getChild(1).get("type").equals("int") && node.getChild(0).get("isArray").equals("false") && node.getChild(1).get("isArray").equals("false")) {
+            if (types.get(node.getChild(0)) == TypeUtils.INT && types.get(node.getChild(1)) == TypeUtils.INT) {
                 return null;
             }else {
                 String message = "Invalid LT operation between types!";
@@ -111,9 +96,7 @@ public class IntLit extends AnalysisPosVisitor {
     }
 
     private Void visitNegationExpr(JmmNode node, SymbolTable table){
-        node.put("type", "boolean");
-        node.put("isArray", "false");
-        if(!node.getChild(0).get("type").equals("boolean")){
+        if(!TypeTable.of(table).get(node.getChild(0)).getName().equals("boolean")){
             String message = "Negation Operation '!' is invalid on a not boolean type";
             addReport(Report.newError(
                     Stage.SEMANTIC,
@@ -125,18 +108,10 @@ public class IntLit extends AnalysisPosVisitor {
         return null;
     }
 
-    private Void visitParenthesisExpr(JmmNode node, SymbolTable table){
-        String childType = node.getChild(0).get("type");
-        node.put("type", childType);
-        node.put("isArray", node.getChild(0).get("isArray"));
-        return null;
-    }
-
     private Void visitArrayExpr(JmmNode node, SymbolTable table){
-        node.put("type", "int");
-        node.put("isArray", "true");
+        var types = TypeTable.of(table);
         for(JmmNode number : node.getChildren()){
-            if(!number.get("type").equals("int") || number.get("isArray").equals("true")){
+            if(types.get(number) != TypeUtils.INT){
                 String message = "Array elements must be of type int";
                 addReport(Report.newError(
                         Stage.SEMANTIC,
@@ -150,9 +125,8 @@ public class IntLit extends AnalysisPosVisitor {
     }
 
     private Void visitArrayAccessExpr(JmmNode node, SymbolTable table){
-        node.put("type", "int");
-        node.put("isArray", "false");
-        if(!node.getChild(0).get("isArray").equals("true")){
+        var types = TypeTable.of(table);
+        if(!types.get(node.getChild(0)).isArray()){
             String message = "Array access index must be type int[]";
             addReport(Report.newError(
                     Stage.SEMANTIC,
@@ -161,7 +135,7 @@ public class IntLit extends AnalysisPosVisitor {
                     message,
                     null));
         }
-        if(!node.getChild(1).get("type").equals("int") || node.getChild(1).get("isArray").equals("true")){
+        if(types.get(node.getChild(1)) != TypeUtils.INT){
             String message = "Array access index must be type int";
             addReport(Report.newError(
                     Stage.SEMANTIC,
@@ -175,7 +149,8 @@ public class IntLit extends AnalysisPosVisitor {
     }
 
     private Void visitArrayAssignStmt(JmmNode node, SymbolTable table){
-        if (!node.get("isArray").equals("true")){
+        var types = TypeTable.of(table);
+        if (!types.get(node).isArray()){
             String message = "Variable must be of type array to be accessed";
             addReport(Report.newError(
                     Stage.SEMANTIC,
@@ -184,7 +159,7 @@ public class IntLit extends AnalysisPosVisitor {
                     message,
                     null));
         }
-        if(!node.getChild(0).get("type").equals("int") || node.getChild(0).get("isArray").equals("true")){
+        if(types.get(node.getChild(0)) != TypeUtils.INT){
             String message = "Array assignment must be of type int[]";
             addReport(Report.newError(
                     Stage.SEMANTIC,
@@ -193,7 +168,7 @@ public class IntLit extends AnalysisPosVisitor {
                     message,
                     null));
         }
-        if(!node.getChild(1).get("type").equals("int") || node.getChild(1).get("isArray").equals("true")){
+        if(types.get(node.getChild(1)) != TypeUtils.INT){
             String message = "Array assignment must be of type int";
             addReport(Report.newError(
                     Stage.SEMANTIC,
@@ -206,8 +181,9 @@ public class IntLit extends AnalysisPosVisitor {
     }
 
     private  Void visitArrayLengthExpr(JmmNode node, SymbolTable table){
-        if(!node.getChild(0).get("isArray").equals("true")){
-            String message = "Length can not be used on type" + node.getChild(0).get("type");
+        var childType = TypeTable.of(table).get(node.getChild(0));
+        if(!childType.isArray()){
+            String message = "Length can not be used on type" + childType.getName();
             addReport(Report.newError(
                     Stage.SEMANTIC,
                     NodeUtils.getLine(node),
@@ -215,13 +191,11 @@ public class IntLit extends AnalysisPosVisitor {
                     message,
                     null));
         }
-        node.put("type","int");
-        node.put("isArray", "false");
         return null;
     }
 
     private Void visitIfStmt(JmmNode node, SymbolTable table){
-        if(!node.getChild(0).get("type").equals("boolean")){
+        if(!TypeTable.of(table).get(node.getChild(0)).getName().equals("boolean")){
             String message = "This If statement is not boolean type";
             addReport(Report.newError(
                     Stage.SEMANTIC,
@@ -234,7 +208,7 @@ public class IntLit extends AnalysisPosVisitor {
     }
 
     private Void visitNewArrayExpr(JmmNode node, SymbolTable table){
-        if(!node.getChild(0).get("type").equals("int") || node.getChild(0).get("isArray").equals("true")){
+        if(TypeTable.of(table).get(node.getChild(0)) != TypeUtils.INT){
             String message = "Array size must be of type int";
             addReport(Report.newError(
                     Stage.SEMANTIC,
@@ -243,13 +217,11 @@ public class IntLit extends AnalysisPosVisitor {
                     message,
                     null));
         }
-        node.put("type", "int");
-        node.put("isArray", "true");
         return null;
     }
 
     private Void visitWhileStmt(JmmNode node, SymbolTable table){
-        if(!node.getChild(0).get("type").equals("boolean")){
+        if(!TypeTable.of(table).get(node.getChild(0)).getName().equals("boolean")){
             String message = "The While statement is not boolean type";
             addReport(Report.newError(
                     Stage.SEMANTIC,
@@ -262,21 +234,24 @@ public class IntLit extends AnalysisPosVisitor {
     }
 
     private Void visitAssignStmt(JmmNode node, SymbolTable table){
+        var types = TypeTable.of(table);
         // in case of a static method call from an import
-        if(node.getChild(0).getKind().equals("MethodClassCallExpr")){
+        if(Kind.METHOD_CLASS_CALL_EXPR.check(node.getChild(0))){
             var child = node.getChild(0).getChild(0);
-            if((child.getKind().equals("VarRefExpr") &&
-                    (Objects.equals(child.get("name"), child.get("type"))
-                    || table.getImports().contains(child.get("type"))))
-                || (child.getKind().equals("ParenthesisExpr")
-                    && child.getChild(0).getKind().equals("NewObjectExpr"))){
+            if((Kind.VAR_REF_EXPR.check(child) &&
+                    (Objects.equals(child.get("name"), types.get(child).getName())
+                    || SymbolIndex.of(table).isImported(types.get(child).getName())))
+                || (Kind.PARENTHESIS_EXPR.check(child)
+                    && Kind.NEW_OBJECT_EXPR.check(child.getChild(0)))){
                 return null;
             }
         }
 
-        String childType = node.getChild(0).get("type");
-        if( (node.get("type").equals(childType) && node.get("isArray").equals(node.getChild(0).get("isArray")))
-                || (node.get("type").equals(table.getSuper()) && childType.equals(table.getClassName()))){
+        // Canonical, the same type only if the same instance
+        var type = types.get(node);
+        var childType = types.get(node.getChild(0));
+        if(type == childType
+                || (type.getName().equals(table.getSuper()) && childType.getName().equals(table.getClassName()))){
             return null;
         } else {
             String message = "Invalid = operation between types!";
@@ -292,7 +267,7 @@ public class IntLit extends AnalysisPosVisitor {
 
 
     private Void visitNewObjectExpr(JmmNode node, SymbolTable table){
-        if(table.getImports().stream().noneMatch(name -> name.equals(node.get("name"))) && !(node.get("name").equals(table.getClassName()))){
+        if(SymbolIndex.of(table).resolveClass(node.get("name")).isEmpty()){
             var message = String.format("Class '%s' is not defined", node);
             addReport(Report.newError(
                     Stage.SEMANTIC,
@@ -302,28 +277,27 @@ public class IntLit extends AnalysisPosVisitor {
                     null)
             );
         }
-        node.put("type", node.get("name"));
-        node.put("isArray", "false");
         return null;
     }
 
     private Void visitMethodClassCallExpr(JmmNode node, SymbolTable table){
         var nodeName = node.get("name");
 
-        Optional<String> method = table.getMethods().stream().filter(param->param.equals(nodeName)).findFirst();
-        if(method.isEmpty()){
+        if(!SymbolIndex.of(table).hasMethod(nodeName)){
             return null;
         }
 
         var child = node.getChild(0);
 
         // in case of a static method call from an import
-        if((child.getKind().equals("VarRefExpr") &&
-                (Objects.equals(child.get("name"), child.get("type"))
-                || table.getImports().contains(child.get("type"))
+        var types = TypeTable.of(table);
+
+        if((Kind.VAR_REF_EXPR.check(child) &&
+                (Objects.equals(child.get("name"), types.get(child).getName())
+                || SymbolIndex.of(table).isImported(types.get(child).getName())
                 ))
-            || (child.getKind().equals("ParenthesisExpr")
-                && child.getChild(0).getKind().equals("NewObjectExpr"))){
+            || (Kind.PARENTHESIS_EXPR.check(child)
+                && Kind.NEW_OBJECT_EXPR.check(child.getChild(0)))){
             return null;
         }
 
@@ -346,9 +320,9 @@ public class IntLit extends AnalysisPosVisitor {
                 if(node.getNumChildren() > table.getParameters(nodeName).size()+1){
                     for (int i = 1; i < node.getNumChildren(); i++) {
                         if(i < table.getParameters(nodeName).size()){
-                            if(node.getChild(i).get("type").equals(table.getParameters(nodeName).get(i - 1).getType().getName()) && node.getChild(i).get("isArray").equals(String.valueOf(table.getParameters(nodeName).get(i - 1).getType().isArray()))){
+                            if(table.getParameters(nodeName).get(i - 1).getType().equals(types.get(node.getChild(i)))){
                             }else {
-                                String message = "It doesnt match the parameter " + i + " in method " + node.get("name") + ". Expected " + table.getParameters(node.get("name")).get(i-1).getType().getName() + ". Found " + node.getChild(i).get("type");
+                                String message = "It doesnt match the parameter " + i + " in method " + node.get("name") + ". Expected " + table.getParameters(node.get("name")).get(i-1).getType().getName() + ". Found " + types.get(node.getChild(i)).getName();
                                 addReport(Report.newError(
                                         Stage.SEMANTIC,
                                         NodeUtils.getLine(node),
@@ -358,9 +332,9 @@ public class IntLit extends AnalysisPosVisitor {
                                 break;
                             }
                         }else {
-                            if(node.getChild(i).get("type").equals(table.getParameters(nodeName).get(table.getParameters(nodeName).size()-1).getType().getName()) && node.getChild(i).get("isArray").equals("false")){
+                            if(types.get(node.getChild(i)) == TypeUtils.getType(table.getParameters(nodeName).get(table.getParameters(nodeName).size()-1).getType().getName(), false)){
                             }else {
-                                String message = "It doesnt match the parameter " + i + " in method " + node.get("name") + ". Expected " + table.getParameters(nodeName).get(table.getParameters(nodeName).size()-1).getType().getName() + ". Found " + node.getChild(i).get("type");
+                                String message = "It doesnt match the parameter " + i + " in method " + node.get("name") + ". Expected " + table.getParameters(nodeName).get(table.getParameters(nodeName).size()-1).getType().getName() + ". Found " + types.get(node.getChild(i)).getName();
                                 addReport(Report.newError(
                                         Stage.SEMANTIC,
                                         NodeUtils.getLine(node),
@@ -394,12 +368,12 @@ public class IntLit extends AnalysisPosVisitor {
         } else{
             if(hasVarArg){
                 for(int i = 1; i < node.getNumChildren(); i++){
-                    if(i == node.getNumChildren()-1 && node.getChild(i).get("type").equals("int")){
+                    if(i == node.getNumChildren()-1 && types.get(node.getChild(i)).getName().equals("int")){
                         continue;
                     }
-                    if(node.getChild(i).get("type").equals(table.getParameters(nodeName).get(i - 1).getType().getName()) && node.getChild(i).get("isArray").equals(String.valueOf(table.getParameters(nodeName).get(i - 1).getType().isArray()))){
+                    if(table.getParameters(nodeName).get(i - 1).getType().equals(types.get(node.getChild(i)))){
                     } else {
-                        String message = "It doesnt match the parameter " + i + " in method " + node.get("name") + ". Expected " + table.getParameters(node.get("name")).get(i-1).getType().getName() + ". Found " + node.getChild(i).get("type");
+                        String message = "It doesnt match the parameter " + i + " in method " + node.get("name") + ". Expected " + table.getParameters(node.get("name")).get(i-1).getType().getName() + ". Found " + types.get(node.getChild(i)).getName();
                         addReport(Report.newError(
                                 Stage.SEMANTIC,
                                 NodeUtils.getLine(node),
@@ -411,9 +385,9 @@ public class IntLit extends AnalysisPosVisitor {
                 }
             }else {
                 for(int i = 1; i < node.getNumChildren(); i++){
-                    if(node.getChild(i).get("type").equals(table.getParameters(nodeName).get(i - 1).getType().getName()) && node.getChild(i).get("isArray").equals(String.valueOf(table.getParameters(nodeName).get(i - 1).getType().isArray()))){
+                    if(table.getParameters(nodeName).get(i - 1).getType().equals(types.get(node.getChild(i)))){
                     } else {
-                        String message = "It doesnt match the parameter " + i + " in method " + node.get("name") + ". Expected " + table.getParameters(node.get("name")).get(i-1).getType().getName() + ". Found " + node.getChild(i).get("type");
+                        String message = "It doesnt match the parameter " + i + " in method " + node.get("name") + ". Expected " + table.getParameters(node.get("name")).get(i-1).getType().getName() + ". Found " + types.get(node.getChild(i)).getName();
                         addReport(Report.newError(
                                 Stage.SEMANTIC,
                                 NodeUtils.getLine(node),
@@ -5,10 +5,14 @@ import pt.up.fe.comp.jmm.ast.JmmNode;
 import pt.up.fe.comp.jmm.report.Report;
 import pt.up.fe.comp.jmm.report.Stage;
 import pt.up.fe.comp2024.analysis.AnalysisVisitor;
+import pt.up.fe.comp2024.analysis.PassProperty;
 import pt.up.fe.comp2024.ast.Kind;
 import pt.up.fe.comp2024.ast.NodeUtils;
+import pt.up.fe.comp2024.ast.TypeTable;
 
 
+import java.util.Set;
+
 /**
  * Checks if the type of the expression in a return statement is compatible with the method return type.
  *
@@ -21,7 +25,13 @@ public class ReturnType extends AnalysisVisitor {
     @Override
     public void buildVisitor() {
         addVisit(Kind.METHOD_DECL, this::visitMethodDecl);
-        addVisit(Kind.RETURN_STMT, this::visitReturnStmt);
+        // Reads the type of the returned expression
+        addExitVisit(Kind.RETURN_STMT, this::visitReturnStmt);
+    }
+
+    @Override
+    public Set<PassProperty> getInputs() {
+        return Set.of(PassProperty.TYPES_ANNOTATED);
     }
 
 
@@ -31,10 +41,11 @@ public class ReturnType extends AnalysisVisitor {
     }
 
     private Void visitReturnStmt(JmmNode node, SymbolTable table){
-        if(node.getChild(0).get("type").equals(table.getReturnType(currentMethod).getName()) && node.getChild(0).get("isArray").equals(String.valueOf(table.getReturnType(currentMethod).isArray()))){
+        var type = TypeTable.of(table).get(node.getChild(0));
+        if(table.getReturnType(currentMethod).equals(type)){
             return null;
         } else {
-            String message = "It doesnt match the method " + currentMethod + " Expected: " + table.getReturnType(currentMethod) + " found: " + node.getChild(0).get("type");
+            String message = "It doesnt match the method " + currentMethod + " Expected: " + table.getReturnType(currentMethod) + " found: " + type.getName();
             addReport(Report.newError(
                     Stage.SEMANTIC,
                     NodeUtils.getLine(node),
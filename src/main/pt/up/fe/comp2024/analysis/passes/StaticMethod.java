@@ -15,8 +15,8 @@ public class StaticMethod extends AnalysisVisitor {
     @Override
     public void buildVisitor() {
         addVisit(Kind.METHOD_DECL, this::visitMethodDecl);
-        addVisit("ThisExpr", this::visitThisExpr);
-        addVisit("MainMethodDeclaration", this::visitMainMethodDeclaration);
+        addVisit(Kind.THIS_EXPR, this::visitThisExpr);
+        addVisit(Kind.MAIN_METHOD_DECLARATION, this::visitMainMethodDeclaration);
     }
 
     private Void visitMethodDecl(JmmNode method, SymbolTable table) {
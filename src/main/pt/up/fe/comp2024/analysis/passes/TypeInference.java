@@ -0,0 +1,179 @@
+package pt.up.fe.comp2024.analysis.passes;
+
+import pt.up.fe.comp.jmm.analysis.table.SymbolTable;
+import pt.up.fe.comp.jmm.analysis.table.Type;
+import pt.up.fe.comp.jmm.ast.JmmNode;
+import pt.up.fe.comp.jmm.report.Report;
+import pt.up.fe.comp2024.analysis.AnalysisVisitor;
+import pt.up.fe.comp2024.analysis.FusedAnalysis;
+import pt.up.fe.comp2024.analysis.PassProperty;
+import pt.up.fe.comp2024.ast.Kind;
+import pt.up.fe.comp2024.ast.TypeTable;
+import pt.up.fe.comp2024.ast.TypeUtils;
+import pt.up.fe.comp2024.symboltable.SymbolIndex;
+import pt.up.fe.comp2024.symboltable.SymbolIndex.SymbolKind;
+
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Computes the type of every expression once, into the {@link TypeTable} of the symbol table, for the passes after it
+ * and for the code generation to read.
+ * <p>
+ * Variables (and the variables assigned) are typed before their children, and the other expressions after them, from
+ * the types of their children. Expressions whose type cannot be computed, e.g., calls to methods that do not exist,
+ * are left without a type; the passes that check them report the error. The pass itself reports nothing.
+ */
+public class TypeInference extends AnalysisVisitor {
+
+    private String currentMethod;
+
+    @Override
+    public void buildVisitor() {
+        addVisit(Kind.METHOD_DECL, this::visitMethodDecl);
+        addVisit(Kind.MAIN_METHOD_DECLARATION, this::visitMainMethodDecl);
+        addVisit(Kind.VAR_REF_EXPR, this::visitVarRefExpr);
+        addVisit(Kind.ASSIGN_STMT, this::visitVarRefExpr);
+        addVisit(Kind.ARRAY_ASSIGN_STMT, this::visitVarRefExpr);
+
+        addExitVisit(Kind.INTEGER_LITERAL, (node, table) -> putType(node, table, TypeUtils.INT));
+        addExitVisit(Kind.BOOLEAN_LITERAL, (node, table) -> putType(node, table, TypeUtils.BOOLEAN));
+        addExitVisit(Kind.THIS_EXPR, (node, table) -> putType(node, table,
+                TypeUtils.getType(table.getClassName(), false)));
+        addExitVisit(Kind.BINARY_EXPR, (node, table) -> putType(node, table, TypeUtils.INT));
+        addExitVisit(Kind.LOGICAL_EXPR, (node, table) -> putType(node, table, TypeUtils.BOOLEAN));
+        addExitVisit(Kind.NEGATION_EXPR, (node, table) -> putType(node, table, TypeUtils.BOOLEAN));
+        addExitVisit(Kind.PARENTHESIS_EXPR, this::visitParenthesisExpr);
+        addExitVisit(Kind.ARRAY_EXPR, (node, table) -> putType(node, table, TypeUtils.INT_ARRAY));
+        addExitVisit(Kind.ARRAY_ACCESS_EXPR, (node, table) -> putType(node, table, TypeUtils.INT));
+        addExitVisit(Kind.ARRAY_LENGTH_EXPR, (node, table) -> putType(node, table, TypeUtils.INT));
+        addExitVisit(Kind.NEW_OBJECT_EXPR, (node, table) -> putType(node, table,
+                TypeUtils.getType(node.get("name"), false)));
+        addExitVisit(Kind.NEW_ARRAY_EXPR, (node, table) -> putType(node, table, TypeUtils.INT_ARRAY));
+        addExitVisit(Kind.METHOD_CLASS_CALL_EXPR, this::visitMethodClassCallExpr);
+    }
+
+    @Override
+    public Set<PassProperty> getOutputs() {
+        return Set.of(PassProperty.TYPES_ANNOTATED);
+    }
+
+    /**
+     * On its own, the pass still types each expression after its children.
+     */
+    @Override
+    public List<Report> analyze(JmmNode root, SymbolTable table) {
+        return new FusedAnalysis(List.of(this)).analyze(root, table);
+    }
+
+    private static Void putType(JmmNode node, SymbolTable table, Type type) {
+        TypeTable.of(table).put(node, type);
+        return null;
+    }
+
+    private Void visitMethodDecl(JmmNode method, SymbolTable table) {
+        currentMethod = method.get("name");
+        return null;
+    }
+
+    private Void visitMainMethodDecl(JmmNode method, SymbolTable table) {
+        currentMethod = "main";
+        return null;
+    }
+
+    private Void visitVarRefExpr(JmmNode varRefExpr, SymbolTable table) {
+        var index = SymbolIndex.of(table);
+        var types = TypeTable.of(table);
+        var varRefName = varRefExpr.get("name");
+        var resolved = index.resolve(currentMethod, varRefName);
+
+        // Undeclared, or a field in a static method
+        if (resolved.isEmpty() || (resolved.get().isField() && "main".equals(currentMethod))) {
+            types.put(varRefExpr, TypeUtils.UNKNOWN);
+            return null;
+        }
+
+        var symbol = resolved.get();
+        if (symbol.kind() == SymbolKind.IMPORT) {
+            types.put(varRefExpr, TypeUtils.getType(varRefName, false));
+            return null;
+        }
+
+        // Parameter, local variable or field
+        var type = symbol.type();
+        var parent = varRefExpr.getParent();
+        if (Kind.ASSIGN_STMT.check(parent) && index.isImported(type.getName())) {
+            types.put(varRefExpr, TypeUtils.getType(types.get(parent).getName(), type.isArray()));
+        } else {
+            types.put(varRefExpr, TypeUtils.getType(type));
+        }
+
+        return null;
+    }
+
+    private Void visitParenthesisExpr(JmmNode node, SymbolTable table) {
+        var types = TypeTable.of(table);
+        var childType = types.find(node.getChild(0));
+
+        if (childType != null) {
+            types.put(node, childType);
+        }
+
+        return null;
+    }
+
+    private Void visitMethodClassCallExpr(JmmNode node, SymbolTable table) {
+        var types = TypeTable.of(table);
+        var receiver = node.getChild(0);
+
+        if (Kind.PARENTHESIS_EXPR.check(receiver)) {
+            var parent = node.getParent();
+            types.put(node, Kind.ASSIGN_STMT.check(parent) ?
+                    TypeUtils.getType(types.get(parent).getName(), false) :
+                    TypeUtils.INT);
+            return null;
+        }
+
+        var method = SymbolIndex.of(table).getMethod(node.get("name"));
+        if (method.isPresent()) {
+            types.put(node, TypeUtils.getType(method.get().returnType()));
+            return null;
+        }
+
+        if (!Kind.THIS_EXPR.check(receiver) && !types.hasType(receiver)) {
+            return null;
+        }
+
+        if (UndeclaredMethod.isDeclaredOutsideClass(node, table)) {
+            types.put(node, getTypeFromContext(node, types));
+        }
+
+        return null;
+    }
+
+    /**
+     * @return the type a call to a method declared outside the class must have where it is used
+     */
+    private static Type getTypeFromContext(JmmNode node, TypeTable types) {
+        var parent = node.getParent();
+
+        if (Kind.LOGICAL_EXPR.check(parent) && parent.get("op").equals("&&")) {
+            return TypeUtils.BOOLEAN;
+        }
+
+        if (Kind.ASSIGN_STMT.check(parent)) {
+            return TypeUtils.getType(types.get(parent).getName(), false);
+        }
+
+        if (Kind.IF_STMT.check(parent) || Kind.WHILE_STMT.check(parent)) {
+            return TypeUtils.BOOLEAN;
+        }
+
+        if (Kind.ARRAY_LENGTH_EXPR.check(parent)
+                || (Kind.ARRAY_ACCESS_EXPR.check(parent) && node.getIndexOfSelf() == 0)) {
+            return TypeUtils.INT_ARRAY;
+        }
+
+        return TypeUtils.INT;
+    }
+}
@@ -6,12 +6,14 @@ import pt.up.fe.comp.jmm.ast.JmmNode;
 import pt.up.fe.comp.jmm.report.Report;
 import pt.up.fe.comp.jmm.report.Stage;
 import pt.up.fe.comp2024.analysis.AnalysisVisitor;
+import pt.up.fe.comp2024.analysis.PassProperty;
 import pt.up.fe.comp2024.ast.Kind;
 import pt.up.fe.comp2024.ast.NodeUtils;
+import pt.up.fe.comp2024.ast.TypeTable;
+import pt.up.fe.comp2024.symboltable.SymbolIndex;
 
 
 import java.util.HashSet;
-import java.util.Optional;
 import java.util.Set;
 
 /**
@@ -23,59 +25,30 @@ public class UndeclaredMethod extends AnalysisVisitor {
 
     @Override
     public void buildVisitor() {
-        addVisit("MethodClassCallExpr", this::visitMethodClassCallExpr);
-        addVisit("FunctionParameters", this::checkFunctionParameters);
+        // Reads the type of the object the method is called on
+        addExitVisit(Kind.METHOD_CLASS_CALL_EXPR, this::visitMethodClassCallExpr);
+        addVisit(Kind.FUNCTION_PARAMETERS, this::checkFunctionParameters);
         addVisit(Kind.METHOD_DECL,this::checkMethodtype);
     }
 
+    @Override
+    public Set<PassProperty> getInputs() {
+        return Set.of(PassProperty.TYPES_ANNOTATED);
+    }
+
     //todo add fluid type to method parameters
     private Void visitMethodClassCallExpr(JmmNode node, SymbolTable table) {
         var newNode = node.getChild(0);
-        if(newNode.getKind().equals("ParenthesisExpr")){
+        if(Kind.PARENTHESIS_EXPR.check(newNode)){
             var newNewNode = newNode.getChild(0);
-            if(node.getJmmParent().getKind().equals("AssignStmt")){
-                node.put("type", node.getJmmParent().get("type"));
-            }
-            else {
-                node.put("type", "int");
-            }
-            newNode.put("name", "parenthesis");
-            node.put("isArray", "false");
             visit(newNewNode, table);
             return null;
         }
 
         // Check if exists a parameter or variable declaration with the same name as the variable reference
         var nodeName = node.get("name");
-        Optional<String> method = table.getMethods().stream().filter(param->param.equals(nodeName)).findFirst();
-        if(method.isPresent()){
-            node.put("type",table.getReturnType(nodeName).getName());
-            node.put("isArray",String.valueOf(table.getReturnType(nodeName).isArray()));
-            return null;
-        }
         //todo: missing valid function retrun for retrun, and parameters; alse e carefull with assigns
-        else if((!table.getSuper().equals("not extended") && node.getChild(0).getKind().equals("ThisExpr")) ||
-                (!node.getChild(0).getKind().equals("ThisExpr") && (!node.getChild(0).get("type").equals(table.getClassName()) || !table.getSuper().equals("not extended")))){
-            if(node.getParent().getKind().equals("LogicalExpr") && node.getParent().get("op").equals("&&")){
-                node.put("type", "boolean");
-                node.put("isArray", "false");
-            }
-            else if(node.getParent().getKind().equals("AssignStmt")){
-                node.put("type", node.getParent().get("type"));
-                node.put("isArray", "false");
-            }
-            else if(node.getParent().getKind().equals("IfStmt") || node.getParent().getKind().equals("WhileStmt")){
-                node.put("type", "boolean");
-                node.put("isArray", "false");
-            }
-            else if(node.getParent().getKind().equals("ArrayLengthExpr") || (node.getParent().getKind().equals("ArrayAccessExpr") && (node.getIndexOfSelf() == 0))){
-                node.put("type", "int");
-                node.put("isArray", "true");
-            }
-            else{
-                node.put("type", "int");
-                node.put("isArray", "false");
-            }
+        if(SymbolIndex.of(table).hasMethod(nodeName) || isDeclaredOutsideClass(node, table)){
             return null;
         }
 
@@ -92,6 +65,20 @@ public class UndeclaredMethod extends AnalysisVisitor {
         return null;
     }
 
+    /**
+     * @param node a call of a method that is not in the table
+     * @return true if the method can be declared by the super class, or by the imported class it is called on
+     */
+    static boolean isDeclaredOutsideClass(JmmNode node, SymbolTable table) {
+        var isExtended = !table.getSuper().equals("not extended");
+
+        if (Kind.THIS_EXPR.check(node.getChild(0))) {
+            return isExtended;
+        }
+
+        return !TypeTable.of(table).get(node.getChild(0)).getName().equals(table.getClassName()) || isExtended;
+    }
+
     private Void checkFunctionParameters(JmmNode node, SymbolTable table){
         for(int i = 0; i < node.getNumChildren(); i++){
             if(i != node.getNumChildren() - 1 && node.getChild(i).get("name").equals("int...")){
@@ -110,7 +97,7 @@ public class UndeclaredMethod extends AnalysisVisitor {
     }
 
     private Void checkMethodtype(JmmNode node, SymbolTable table){
-        if(node.getChild(0).getKind().equals("MethodCodeBlockWithoutReturn")){
+        if(Kind.METHOD_CODE_BLOCK_WITHOUT_RETURN.check(node.getChild(0))){
             return null;
         }
         if(node.getChild(0).get("name").equals("int...")){
@@ -0,0 +1,98 @@
+package pt.up.fe.comp2024.ast;
+
+import pt.up.fe.comp.jmm.ast.AJmmVisitor;
+import pt.up.fe.comp.jmm.ast.JmmNode;
+import pt.up.fe.specs.util.SpecsCheck;
+
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.function.BiFunction;
+
+/**
+ * Visitor that finds the visit of a node through an array indexed by the ordinal of its {@link Kind}, instead of
+ * looking up each name of its hierarchy in a map.
+ * <p>
+ * Visits are registered like in {@link AJmmVisitor}, with the name of a label or of a rule (usually a {@link Kind}), and
+ * the same visit is chosen: the one of the first name of the hierarchy that has a visit. A node is recognized by its
+ * hierarchy, which must be the list of its {@link Kind}: the parsers give it to every node
+ * ({@link Kind#shareHierarchies}), so it is compared by reference. Other nodes, e.g., created by the passes,
+ * are looked up by name.
+ */
+public abstract class AKindVisitor<D, R> extends AJmmVisitor<D, R> {
+
+    // Not initialized in the declarations, the constructor of AJmmVisitor calls buildVisitor before the fields of
+    // this class are initialized
+    private Map<String, BiFunction<JmmNode, D, R>> visits;
+    private BiFunction<JmmNode, D, R>[] visitsByKind;
+    private BiFunction<JmmNode, D, R> defaultVisit;
+
+    @Override
+    public void addVisit(String kind, BiFunction<JmmNode, D, R> method) {
+        if (visits == null) {
+            visits = new HashMap<>();
+        }
+
+        visits.put(kind, method);
+        visitsByKind = null;
+    }
+
+    @Override
+    public void setDefaultVisit(BiFunction<JmmNode, D, R> defaultVisit) {
+        this.defaultVisit = defaultVisit;
+    }
+
+    @Override
+    protected BiFunction<JmmNode, D, R> getVisit(JmmNode node) {
+        var kind = getNodeKind(node);
+        var visit = kind != null ? getVisitsByKind()[kind.ordinal()] : findVisit(node.getHierarchy());
+
+        if (visit != null) {
+            return visit;
+        }
+
+        SpecsCheck.checkNotNull(defaultVisit, () -> "Could not find a suitable visit method for node of kind "
+                + node.getKind() + ", and no default visitor is set");
+        return defaultVisit;
+    }
+
+    /**
+     * @return the kind of the node, or null if its visit must be looked up by name
+     */
+    private static Kind getNodeKind(JmmNode node) {
+        var kind = Kind.ofOrNull(node);
+
+        return kind != null && node.getHierarchy() == kind.getHierarchy() ? kind : null;
+    }
+
+    @SuppressWarnings("unchecked")
+    private BiFunction<JmmNode, D, R>[] getVisitsByKind() {
+        if (visitsByKind == null) {
+            var kinds = Kind.values();
+            var table = (BiFunction<JmmNode, D, R>[]) new BiFunction[kinds.length];
+
+            for (var kind : kinds) {
+                table[kind.ordinal()] = findVisit(kind.getHierarchy());
+            }
+
+            visitsByKind = table;
+        }
+
+        return visitsByKind;
+    }
+
+    private BiFunction<JmmNode, D, R> findVisit(Collection<String> hierarchy) {
+        if (visits == null) {
+            return null;
+        }
+
+        for (var kind : hierarchy) {
+            var visit = visits.get(kind);
+            if (visit != null) {
+                return visit;
+            }
+        }
+
+        return null;
+    }
+}
@@ -0,0 +1,57 @@
+package pt.up.fe.comp2024.ast;
+
+import pt.up.fe.comp.jmm.ast.JmmNode;
+
+import java.util.ArrayDeque;
+
+/**
+ * Converts the AST built by the parsers to {@link CompactJmmNode}s.
+ */
+public class CompactAst {
+
+    /**
+     * @param node the root of a tree where every kind is a {@link Kind}
+     * @return a compact copy of the tree, with the same kinds, hierarchies, attributes and children
+     */
+    public static CompactJmmNode convert(JmmNode node) {
+        var root = convertNode(node);
+
+        // Pairs of a node and its copy, whose children are still to convert
+        var pending = new ArrayDeque<JmmNode[]>();
+        pending.push(new JmmNode[]{node, root});
+
+        while (!pending.isEmpty()) {
+            var pair = pending.pop();
+            var compact = (CompactJmmNode) pair[1];
+
+            for (var child : pair[0].getChildren()) {
+                var compactChild = convertNode(child);
+                compact.add(compactChild);
+                pending.push(new JmmNode[]{child, compactChild});
+            }
+        }
+
+        return root;
+    }
+
+    /**
+     * @return a compact copy of the node, without its children
+     */
+    private static CompactJmmNode convertNode(JmmNode node) {
+        var kind = Kind.fromStringOrNull(node.getKind());
+        if (kind == null) {
+            throw new RuntimeException("Node '" + node + "' has no compact kind");
+        }
+
+        var compact = new CompactJmmNode(kind);
+        if (!kind.getHierarchy().equals(node.getHierarchy())) {
+            compact.setHierarchy(node.getHierarchy());
+        }
+
+        for (var attribute : node.getAttributes()) {
+            compact.putObject(attribute, node.getObject(attribute));
+        }
+
+        return compact;
+    }
+}
@@ -0,0 +1,275 @@
+package pt.up.fe.comp2024.ast;
+
+import pt.up.fe.comp.jmm.ast.JmmNode;
+import pt.up.fe.comp.jmm.ast.JmmNodeImpl;
+
+import java.util.ArrayList;
+import java.util.Collection;
+
+/**
+ * AST node that keeps the attributes every pass reads in typed fields, instead of in the map of strings.
+ * <p>
+ * The kind is a {@link Kind}, the position is four ints, and 'name' and 'type' are interned, so that nodes with
+ * the same identifier share the string. 'isArray' is stored as one of "true", "false" and "null", the values the
+ * analysis gives it. Through the {@link JmmNode} interface the node behaves like a {@link JmmNodeImpl} with the same
+ * attributes: values that do not fit a field (e.g., the list 'name' of imports) are kept in the map.
+ * <p>
+ * Extends JmmNodeImpl because JmmNodeImpl only accepts children of its own class.
+ */
+public class CompactJmmNode extends JmmNodeImpl {
+
+    private static final String LINE_START = "lineStart";
+    private static final String COL_START = "colStart";
+    private static final String LINE_END = "lineEnd";
+    private static final String COL_END = "colEnd";
+    private static final String NAME = "name";
+    private static final String TYPE = "type";
+    private static final String IS_ARRAY = "isArray";
+
+    private static final String[] FIELD_ATTRIBUTES = {LINE_START, COL_START, LINE_END, COL_END, NAME, TYPE, IS_ARRAY};
+
+    private static final int UNSET = Integer.MIN_VALUE;
+
+    private static final byte ARRAY_UNSET = 0;
+    private static final byte ARRAY_FALSE = 1;
+    private static final byte ARRAY_TRUE = 2;
+    private static final byte ARRAY_UNKNOWN = 3;
+
+    private static final String[] ARRAY_VALUES = {null, "false", "true", "null"};
+
+    /**
+     * Text of small positions, so that reading them as strings does not allocate.
+     */
+    private static final String[] POSITION_TEXT = new String[1024];
+
+    static {
+        for (int i = 0; i < POSITION_TEXT.length; i++) {
+            POSITION_TEXT[i] = Integer.toString(i);
+        }
+    }
+
+    private final Kind nodeKind;
+
+    private int lineStart = UNSET;
+    private int colStart = UNSET;
+    private int lineEnd = UNSET;
+    private int colEnd = UNSET;
+    private String name;
+    private String type;
+    private byte isArray = ARRAY_UNSET;
+
+    public CompactJmmNode(Kind nodeKind) {
+        super(nodeKind.getNodeName());
+        this.nodeKind = nodeKind;
+        setHierarchy(nodeKind.getHierarchy());
+    }
+
+    public Kind getNodeKind() {
+        return nodeKind;
+    }
+
+    /**
+     * @return the line where the node starts, or -1 if it has no position
+     */
+    public int getLine() {
+        return lineStart == UNSET ? -1 : lineStart;
+    }
+
+    /**
+     * @return the column where the node starts, or -1 if it has no position
+     */
+    public int getColumn() {
+        return colStart == UNSET ? -1 : colStart;
+    }
+
+    /**
+     * @return the 'name' attribute, or null if the node has none or it is not a string
+     */
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * @return the 'type' attribute, or null if the node has none
+     */
+    public String getType() {
+        return type;
+    }
+
+    /**
+     * @return true if the 'isArray' attribute is set
+     */
+    public boolean hasArrayness() {
+        return isArray != ARRAY_UNSET;
+    }
+
+    /**
+     * @return true if the 'isArray' attribute is "true"
+     */
+    public boolean isArray() {
+        return isArray == ARRAY_TRUE;
+    }
+
+    @Override
+    public JmmNode getJmmChild(int index) {
+        return children.get(index);
+    }
+
+    @Override
+    public JmmNode getChild(int index) {
+        return children.get(index);
+    }
+
+    @Override
+    public boolean hasAttribute(String attribute) {
+        return getField(attribute) != null || getAttributesMap().containsKey(attribute);
+    }
+
+    @Override
+    public Collection<String> getAttributes() {
+        var attributes = new ArrayList<String>();
+
+        for (var attribute : FIELD_ATTRIBUTES) {
+            if (getField(attribute) != null) {
+                attributes.add(attribute);
+            }
+        }
+        attributes.addAll(getAttributesMap().keySet());
+
+        return attributes;
+    }
+
+    @Override
+    public Object getObject(String attribute) {
+        var value = getField(attribute);
+
+        return value != null ? value : super.getObject(attribute);
+    }
+
+    @Override
+    public Object putObject(String attribute, Object value) {
+        Object previous = getField(attribute);
+        if (previous == null) {
+            previous = getAttributesMap().remove(attribute);
+        } else {
+            clearField(attribute);
+        }
+
+        if (!setField(attribute, value)) {
+            getAttributesMap().put(attribute, value);
+        }
+
+        return previous;
+    }
+
+    @Override
+    public JmmNode copyNode() {
+        var copy = new CompactJmmNode(nodeKind);
+        copy.setHierarchy(getHierarchy());
+
+        copy.lineStart = lineStart;
+        copy.colStart = colStart;
+        copy.lineEnd = lineEnd;
+        copy.colEnd = colEnd;
+        copy.name = name;
+        copy.type = type;
+        copy.isArray = isArray;
+        copy.getAttributesMap().putAll(getAttributesMap());
+
+        return copy;
+    }
+
+    /**
+     * @return the value of the field of the given attribute as a string, or null if the attribute has no field or
+     * it is not set
+     */
+    private String getField(String attribute) {
+        return switch (attribute) {
+            case LINE_START -> positionText(lineStart);
+            case COL_START -> positionText(colStart);
+            case LINE_END -> positionText(lineEnd);
+            case COL_END -> positionText(colEnd);
+            case NAME -> name;
+            case TYPE -> type;
+            case IS_ARRAY -> ARRAY_VALUES[isArray];
+            default -> null;
+        };
+    }
+
+    /**
+     * @return false if the attribute has no field, or the value does not fit in it
+     */
+    private boolean setField(String attribute, Object value) {
+        if (!(value instanceof String text)) {
+            return false;
+        }
+
+        switch (attribute) {
+            case LINE_START, COL_START, LINE_END, COL_END -> {
+                var position = parsePosition(text);
+                if (position == UNSET) {
+                    return false;
+                }
+
+                switch (attribute) {
+                    case LINE_START -> lineStart = position;
+                    case COL_START -> colStart = position;
+                    case LINE_END -> lineEnd = position;
+                    default -> colEnd = position;
+                }
+            }
+            case NAME -> name = text.intern();
+            case TYPE -> type = text.intern();
+            case IS_ARRAY -> {
+                switch (text) {
+                    case "false" -> isArray = ARRAY_FALSE;
+                    case "true" -> isArray = ARRAY_TRUE;
+                    case "null" -> isArray = ARRAY_UNKNOWN;
+                    default -> {
+                        return false;
+                    }
+                }
+            }
+            default -> {
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+    private void clearField(String attribute) {
+        switch (attribute) {
+            case LINE_START -> lineStart = UNSET;
+            case COL_START -> colStart = UNSET;
+            case LINE_END -> lineEnd = UNSET;
+            case COL_END -> colEnd = UNSET;
+            case NAME -> name = null;
+            case TYPE -> type = null;
+            case IS_ARRAY -> isArray = ARRAY_UNSET;
+            default -> {
+            }
+        }
+    }
+
+    private static String positionText(int position) {
+        if (position == UNSET) {
+            return null;
+        }
+
+        return position >= 0 && position < POSITION_TEXT.length ? POSITION_TEXT[position] : Integer.toString(position);
+    }
+
+    /**
+     * @return the position, or UNSET if the text is not exactly how Integer.toString would write it
+     */
+    private static int parsePosition(String text) {
+        try {
+            var position = Integer.parseInt(text);
+
+            return position != UNSET && Integer.toString(position).equals(text) ? position : UNSET;
+        } catch (NumberFormatException e) {
+            return UNSET;
+        }
+    }
+}
@@ -1,70 +1,175 @@
 package pt.up.fe.comp2024.ast;
 
 import pt.up.fe.comp.jmm.ast.JmmNode;
+import pt.up.fe.comp.jmm.ast.JmmNodeImpl;
+import pt.up.fe.comp2024.utils.Diagnostics;
 import pt.up.fe.specs.util.SpecsStrings;
 
+import java.util.ArrayDeque;
 import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.Set;
 
+/**
+ * Kinds of the nodes of the AST: one for each label of the grammar, with the hierarchy the parsers give to the nodes
+ * of that label, and one for each rule whose name is only in the hierarchy of its labels (e.g., {@link #METHOD_DECL}).
+ */
 public enum Kind {
-    PROGRAM,
+    PROGRAM("Program"),
     IMPORT_DECL,
     CLASS_DECL,
     CLASS_BODY,
     TYPE,
     MAIN_METHOD_DECL,
     METHOD_DECL,
-    METHOD_CODE_BLOCK,
-    METHOD_CODE_BLOCK_WITHOUT_RETURN,
-    METHOD_CLASS_CALL_EXPR,
-    NEW_OBJECT_EXPR,
+    METHOD_CODE_BLOCK("Block"),
+    METHOD_CODE_BLOCK_WITHOUT_RETURN("BlockWithoutReturn"),
+    METHOD_CLASS_CALL_EXPR("Expr"),
+    NEW_OBJECT_EXPR("Expr"),
     PARAM,
-    ASSIGN_STMT,
-    ARRAY_ASSIGN_STMT,
-    IF_STMT,
-    WHILE_STMT,
-    RETURN_STMT,
-    PARENTHESIS_EXPR,
-    THIS_EXPR,
-    BINARY_EXPR,
-    LOGICAL_EXPR,
-    INTEGER_LITERAL,
-    BOOLEAN_LITERAL,
-    NEGATION_EXPR,
-    ARRAY_EXPR,
-    ARRAY_ACCESS_EXPR,
-    NEW_ARRAY_EXPR,
-    ARRAY_LENGTH_EXPR,
-    VAR_REF_EXPR;
+    ASSIGN_STMT("Stmt"),
+    ARRAY_ASSIGN_STMT("Stmt"),
+    IF_STMT("Stmt"),
+    WHILE_STMT("Stmt"),
+    RETURN_STMT("ReturnStatement"),
+    PARENTHESIS_EXPR("Expr"),
+    THIS_EXPR("Expr"),
+    BINARY_EXPR("Expr"),
+    LOGICAL_EXPR("Expr"),
+    INTEGER_LITERAL("Expr"),
+    BOOLEAN_LITERAL("Expr"),
+    NEGATION_EXPR("Expr"),
+    ARRAY_EXPR("Expr"),
+    ARRAY_ACCESS_EXPR("Expr"),
+    NEW_ARRAY_EXPR("Expr"),
+    ARRAY_LENGTH_EXPR("Expr"),
+    VAR_REF_EXPR("Expr"),
+    IMPORT_DECLARATION("ImportDecl"),
+    CLASS_DECLARATION("ClassDecl"),
+    CLASS_BODY_DECLARATION("ClassBody"),
+    METHOD_DECLARATION("MethodDecl"),
+    MAIN_METHOD_DECLARATION("MainMethodDecl"),
+    FUNCTION_PARAMETERS("Param"),
+    VAR_DECLARATION("VarDecl"),
+    INT_TYPE("Type"),
+    ID_TYPE("IDType", "Type"),
+    BOOL_TYPE("Type"),
+    INT_VECTOR_TYPE1("IntVectorType1", "Type"),
+    INT_VECTOR_TYPE2("IntVectorType2", "Type"),
+    STRING_TYPE("Type"),
+    BLOCK_STMT("Stmt"),
+    EXPR_STMT("Stmt");
 
 
     private static final Set<Kind> STATEMENTS = Set.of(ASSIGN_STMT, ARRAY_ASSIGN_STMT, IF_STMT, WHILE_STMT, RETURN_STMT);
     private static final Set<Kind> EXPRESSIONS = Set.of(BINARY_EXPR, LOGICAL_EXPR, INTEGER_LITERAL, BOOLEAN_LITERAL, NEGATION_EXPR, ARRAY_EXPR, ARRAY_ACCESS_EXPR, NEW_ARRAY_EXPR, ARRAY_LENGTH_EXPR, VAR_REF_EXPR, NEW_OBJECT_EXPR);
+    private static final Map<String, Kind> NODE_NAMES = new HashMap<>();
+
+    static {
+        for (Kind k : Kind.values()) {
+            NODE_NAMES.put(k.getNodeName(), k);
+        }
+    }
 
     private final String name;
+    private final List<String> hierarchy;
 
-    private Kind(String name) {
-        this.name = name;
+    private Kind(String label, String rule) {
+        this.name = label;
+        this.hierarchy = label.equals(rule) ? List.of(label) : List.of(label, rule);
+    }
+
+    private Kind(String rule) {
+        this.name = SpecsStrings.toCamelCase(name(), "_", true);
+        this.hierarchy = name.equals(rule) ? List.of(name) : List.of(name, rule);
     }
 
     private Kind() {
         this.name = SpecsStrings.toCamelCase(name(), "_", true);
+        this.hierarchy = List.of(name);
     }
 
     public static Kind fromString(String kind) {
 
-        for (Kind k : Kind.values()) {
-            if (k.getNodeName().equals(kind)) {
-                return k;
+        var k = fromStringOrNull(kind);
+        if (k == null) {
+            throw new RuntimeException("Could not convert string '" + kind + "' to a Kind");
+        }
+        return k;
+    }
+
+    /**
+     * @param kind
+     * @return the Kind with the given node name, or null if there is none
+     */
+    public static Kind fromStringOrNull(String kind) {
+        return NODE_NAMES.get(kind);
+    }
+
+    /**
+     * Same as fromString(node.getKind()), but compact nodes already know their Kind.
+     *
+     * @param node
+     * @return
+     */
+    public static Kind of(JmmNode node) {
+        if (node instanceof CompactJmmNode compact) {
+            return compact.getNodeKind();
+        }
+
+        return fromString(node.getKind());
+    }
+
+    /**
+     * Same as {@link #of}, but returns null if the kind of the node is not a Kind.
+     *
+     * @param node
+     * @return
+     */
+    public static Kind ofOrNull(JmmNode node) {
+        if (node instanceof CompactJmmNode compact) {
+            return compact.getNodeKind();
+        }
+
+        return fromStringOrNull(node.getKind());
+    }
+
+    /**
+     * Gives the nodes of a tree the hierarchy list of their kind when they have an equal one, so that
+     * {@link AKindVisitor} recognizes them by reference instead of comparing their hierarchy on every visit.
+     *
+     * @param root
+     */
+    public static void shareHierarchies(JmmNode root) {
+        var pending = new ArrayDeque<JmmNode>();
+        pending.push(root);
+
+        while (!pending.isEmpty()) {
+            var node = pending.pop();
+            if (node instanceof JmmNodeImpl impl) {
+                var kind = fromStringOrNull(node.getKind());
+                if (kind != null && kind.hierarchy.equals(node.getHierarchy())) {
+                    impl.setHierarchy(kind.hierarchy);
+                }
             }
+
+            node.getChildren().forEach(pending::push);
         }
-        throw new RuntimeException("Could not convert string '" + kind + "' to a Kind");
     }
 
     public String getNodeName() {
         return name;
     }
 
+    /**
+     * @return the node name followed by the name of its rule, capitalized, if it is a label with a different name
+     */
+    public List<String> getHierarchy() {
+        return hierarchy;
+    }
+
     @Override
     public String toString() {
         return getNodeName();
@@ -91,7 +196,12 @@ public enum Kind {
      * @return
      */
     public boolean check(JmmNode node) {
-        System.out.println(node.getKind() + " " + getNodeName());
+        Diagnostics.trace(() -> node.getKind() + " " + getNodeName());
+
+        if (node instanceof CompactJmmNode compact) {
+            return compact.getNodeKind() == this;
+        }
+
         return node.getKind().equals(getNodeName());
     }
 
@@ -6,11 +6,19 @@ public class NodeUtils {
 
     public static int getLine(JmmNode node) {
 
+        if (node instanceof CompactJmmNode compact && compact.getLine() != -1) {
+            return compact.getLine();
+        }
+
         return getIntegerAttribute(node, "lineStart", "-1");
     }
 
     public static int getColumn(JmmNode node) {
 
+        if (node instanceof CompactJmmNode compact && compact.getColumn() != -1) {
+            return compact.getColumn();
+        }
+
         return getIntegerAttribute(node, "colStart", "-1");
     }
 
@@ -19,6 +27,21 @@ public class NodeUtils {
         return Integer.parseInt(line);
     }
 
+    /**
+     * Same as node.get("isArray").equals("true"), without going through the attribute map for compact nodes.
+     *
+     * @param node
+     * @return
+     */
+    public static boolean isArray(JmmNode node) {
+
+        if (node instanceof CompactJmmNode compact && compact.hasArrayness()) {
+            return compact.isArray();
+        }
+
+        return node.get("isArray").equals("true");
+    }
+
     public static boolean getBooleanAttribute(JmmNode node, String attribute, String defaultVal) {
         String line = node.getOptional(attribute).orElse(defaultVal);
         return Boolean.parseBoolean(line);
@@ -0,0 +1,66 @@
+package pt.up.fe.comp2024.ast;
+
+import pt.up.fe.comp.jmm.ast.JmmNode;
+import pt.up.fe.specs.util.SpecsCheck;
+
+import java.util.ArrayDeque;
+import java.util.List;
+import java.util.function.BiFunction;
+import java.util.function.Supplier;
+
+/**
+ * {@link AKindVisitor} that visits every node, each after its children, like
+ * {@link pt.up.fe.comp.jmm.ast.PostorderJmmVisitor}.
+ * <p>
+ * Returns the result of the visit of the node the traversal starts at. The traversal keeps the nodes whose children are
+ * being visited in a stack of its own instead of recursing, so the depth of the tree is not limited by the size of the
+ * thread stack.
+ */
+public abstract class PostorderKindVisitor<D, R> extends AKindVisitor<D, R> {
+
+    /**
+     * A node whose children are being visited.
+     */
+    private class Frame {
+        private final JmmNode node;
+        private final BiFunction<JmmNode, D, R> visit;
+        private final List<JmmNode> children;
+        private int nextChild;
+
+        private Frame(JmmNode node) {
+            // Chosen before the children are visited, like PostorderJmmVisitor
+            this.node = node;
+            this.visit = getVisit(node);
+            this.children = node.getChildren();
+            this.nextChild = 0;
+        }
+    }
+
+    public void setDefaultValue(Supplier<R> defaultValue) {
+        setDefaultVisit((node, data) -> defaultValue.get());
+    }
+
+    @Override
+    public R visit(JmmNode node, D data) {
+        SpecsCheck.checkNotNull(node, () -> "Node should not be null");
+
+        var frames = new ArrayDeque<Frame>();
+        frames.push(new Frame(node));
+
+        while (true) {
+            var frame = frames.peek();
+
+            if (frame.nextChild < frame.children.size()) {
+                frames.push(new Frame(frame.children.get(frame.nextChild++)));
+                continue;
+            }
+
+            frames.pop();
+            var result = frame.visit.apply(frame.node, data);
+
+            if (frames.isEmpty()) {
+                return result;
+            }
+        }
+    }
+}
@@ -0,0 +1,51 @@
+package pt.up.fe.comp2024.ast;
+
+import pt.up.fe.comp.jmm.ast.JmmNode;
+import pt.up.fe.specs.util.SpecsCheck;
+
+import java.util.ArrayDeque;
+import java.util.function.Supplier;
+
+/**
+ * {@link AKindVisitor} that visits every node, each before its children, like
+ * {@link pt.up.fe.comp.jmm.ast.PreorderJmmVisitor}.
+ * <p>
+ * Returns the result of the visit of the node the traversal starts at. The traversal keeps the nodes still to visit in
+ * a stack of its own instead of recursing, so the depth of the tree is not limited by the size of the thread stack.
+ */
+public abstract class PreorderKindVisitor<D, R> extends AKindVisitor<D, R> {
+
+    public void setDefaultValue(Supplier<R> defaultValue) {
+        setDefaultVisit((node, data) -> defaultValue.get());
+    }
+
+    @Override
+    public R visit(JmmNode node, D data) {
+        SpecsCheck.checkNotNull(node, () -> "Node should not be null");
+
+        var result = getVisit(node).apply(node, data);
+
+        var pending = new ArrayDeque<JmmNode>();
+        pushChildren(node, pending);
+
+        while (!pending.isEmpty()) {
+            var next = pending.pop();
+            getVisit(next).apply(next, data);
+            pushChildren(next, pending);
+        }
+
+        return result;
+    }
+
+    /**
+     * Pushes the children last to first, so that they are visited first to last. Like the recursive traversal, the
+     * children are read after the visit of their parent.
+     */
+    private static void pushChildren(JmmNode node, ArrayDeque<JmmNode> pending) {
+        var children = node.getChildren();
+
+        for (int i = children.size() - 1; i >= 0; i--) {
+            pending.push(children.get(i));
+        }
+    }
+}
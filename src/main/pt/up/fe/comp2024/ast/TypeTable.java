@@ -0,0 +1,83 @@
+package pt.up.fe.comp2024.ast;
+
+import pt.up.fe.comp.jmm.analysis.table.SymbolTable;
+import pt.up.fe.comp.jmm.analysis.table.Type;
+import pt.up.fe.comp.jmm.ast.JmmNode;
+import pt.up.fe.comp2024.symboltable.JmmSymbolTable;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.WeakHashMap;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * The type of each expression, as computed by the analysis, in a table on the side of the tree instead of in string
+ * attributes of the nodes.
+ * <p>
+ * The types are the canonical instances of {@link TypeUtils#getType}, or {@link TypeUtils#UNKNOWN}, so two expressions
+ * have the same type if they have the same instance. Nodes are compared by identity (JmmNode does not override
+ * equals), and the table can be filled by several threads, e.g., when the methods are analysed in parallel.
+ */
+public class TypeTable {
+
+    /**
+     * Tables of symbol tables that do not keep one.
+     */
+    private static final Map<SymbolTable, TypeTable> OTHER_TABLES = Collections.synchronizedMap(new WeakHashMap<>());
+
+    private final Map<JmmNode, Type> types = new ConcurrentHashMap<>();
+
+    /**
+     * @param table
+     * @return the types of the expressions analysed with the given symbol table
+     */
+    public static TypeTable of(SymbolTable table) {
+        if (table instanceof JmmSymbolTable jmmTable) {
+            return jmmTable.getTypes();
+        }
+
+        return OTHER_TABLES.computeIfAbsent(table, key -> new TypeTable());
+    }
+
+    /**
+     * @param node
+     * @param type a canonical type
+     */
+    public void put(JmmNode node, Type type) {
+        types.put(node, type);
+    }
+
+    /**
+     * @param node
+     * @return the type of the node
+     * @throws NullPointerException if the node has no type, e.g., the analysis could not compute it
+     */
+    public Type get(JmmNode node) {
+        var type = types.get(node);
+
+        if (type == null) {
+            throw new NullPointerException("Node " + node.getKind() + " has no type");
+        }
+
+        return type;
+    }
+
+    /**
+     * @param node
+     * @return the type of the node, or null if it has none
+     */
+    public Type find(JmmNode node) {
+        return types.get(node);
+    }
+
+    public boolean hasType(JmmNode node) {
+        return types.containsKey(node);
+    }
+
+    /**
+     * @param node a node that is not in the tree anymore
+     */
+    public void remove(JmmNode node) {
+        types.remove(node);
+    }
+}
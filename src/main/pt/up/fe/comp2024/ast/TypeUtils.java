@@ -4,16 +4,52 @@ import pt.up.fe.comp.jmm.analysis.table.SymbolTable;
 import pt.up.fe.comp.jmm.analysis.table.Type;
 import pt.up.fe.comp.jmm.ast.JmmNode;
 
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
 public class TypeUtils {
 
     private static final String INT_TYPE_NAME = "int";
 
     private static final String BOOLEAN_TYPE_NAME = "boolean";
 
+    /**
+     * Canonical types, by name, so that every expression of the same type shares the instance.
+     */
+    private static final Map<String, Type> SCALAR_TYPES = new ConcurrentHashMap<>();
+    private static final Map<String, Type> ARRAY_TYPES = new ConcurrentHashMap<>();
+
+    public static final Type INT = getType(INT_TYPE_NAME, false);
+    public static final Type BOOLEAN = getType(BOOLEAN_TYPE_NAME, false);
+    public static final Type INT_ARRAY = getType(INT_TYPE_NAME, true);
+
+    /**
+     * The type of the expressions whose type is not known, e.g., references to undeclared variables. Named "null", but
+     * not the canonical type named "null": neither an array nor not an array, it is only the same type as itself.
+     */
+    public static final Type UNKNOWN = new Type("null", false);
+
     public static String getIntTypeName() {
         return INT_TYPE_NAME;
     }
 
+    /**
+     * @param name
+     * @param isArray
+     * @return the canonical instance of the type, which must not be changed
+     */
+    public static Type getType(String name, boolean isArray) {
+        return (isArray ? ARRAY_TYPES : SCALAR_TYPES).computeIfAbsent(name, key -> new Type(key, isArray));
+    }
+
+    /**
+     * @param type
+     * @return the canonical instance of the type
+     */
+    public static Type getType(Type type) {
+        return type == UNKNOWN ? type : getType(type.getName(), type.isArray());
+    }
+
     /**
      * Gets the {@link Type} of an arbitrary expression.
      *
@@ -23,16 +59,16 @@ public class TypeUtils {
      */
     public static Type getExprType(JmmNode expr, SymbolTable table) {
 
-        var kind = Kind.fromString(expr.getKind());
+        var kind = Kind.of(expr);
 
         return switch (kind) {
             case BINARY_EXPR, LOGICAL_EXPR -> getBinExprType(expr);
             case VAR_REF_EXPR -> getVarExprType(expr, table);
-            case INTEGER_LITERAL, ARRAY_ACCESS_EXPR, ARRAY_LENGTH_EXPR -> new Type(INT_TYPE_NAME, false);
-            case BOOLEAN_LITERAL, NEGATION_EXPR -> new Type(BOOLEAN_TYPE_NAME, false);
-            case ARRAY_EXPR, NEW_ARRAY_EXPR -> new Type(INT_TYPE_NAME, true);
-            case NEW_OBJECT_EXPR -> new Type(expr.get("name"), false);
-            case METHOD_CLASS_CALL_EXPR, ASSIGN_STMT, THIS_EXPR -> new Type(expr.get("type"), expr.get("isArray").equals("true"));
+            case INTEGER_LITERAL, ARRAY_ACCESS_EXPR, ARRAY_LENGTH_EXPR -> INT;
+            case BOOLEAN_LITERAL, NEGATION_EXPR -> BOOLEAN;
+            case ARRAY_EXPR, NEW_ARRAY_EXPR -> INT_ARRAY;
+            case NEW_OBJECT_EXPR -> getType(expr.get("name"), false);
+            case METHOD_CLASS_CALL_EXPR, ASSIGN_STMT, THIS_EXPR -> TypeTable.of(table).get(expr);
             default -> throw new UnsupportedOperationException("Can't compute type for expression kind '" + kind + "'");
         };
     }
@@ -41,8 +77,8 @@ public class TypeUtils {
         String operator = binaryExpr.get("op");
 
         return switch (operator) {
-            case "+", "*", "/", "-" -> new Type(INT_TYPE_NAME, false);
-            case "&&", "<" -> new Type(BOOLEAN_TYPE_NAME, false);
+            case "+", "*", "/", "-" -> INT;
+            case "&&", "<" -> BOOLEAN;
             default ->
                     throw new RuntimeException("Unknown operator '" + operator + "' of expression '" + binaryExpr + "'");
         };
@@ -50,11 +86,11 @@ public class TypeUtils {
 
 
     private static Type getVarExprType(JmmNode varRefExpr, SymbolTable table) {
-        var kind = varRefExpr.get("type");
+        var kind = TypeTable.of(table).get(varRefExpr).getName();
 
         return switch (kind) {
-            case "int" -> new Type(INT_TYPE_NAME, false);
-            case "boolean" -> new Type(BOOLEAN_TYPE_NAME, false);
+            case "int" -> INT;
+            case "boolean" -> BOOLEAN;
             default -> throw new UnsupportedOperationException("Can't compute type for expression kind '" + kind + "'");
         };
     }
@@ -0,0 +1,347 @@
+package pt.up.fe.comp2024.backend;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Builds the bytecode of a single method, resolving labels and keeping track of the maximum stack depth.
+ * <p>
+ * Constants are added to the constant pool of the given {@link ClassFileWriter}. Code generated from OLLIR leaves the
+ * stack empty between instructions, so the stack depth at a label is the depth of the branches that jump to it.
+ */
+public class BytecodeBuilder {
+
+    public static final int ICONST_0 = 0x03;
+    public static final int ICONST_1 = 0x04;
+    public static final int BIPUSH = 0x10;
+    public static final int SIPUSH = 0x11;
+    public static final int LDC = 0x12;
+    public static final int LDC_W = 0x13;
+    public static final int ILOAD = 0x15;
+    public static final int ALOAD = 0x19;
+    public static final int ILOAD_0 = 0x1a;
+    public static final int ALOAD_0 = 0x2a;
+    public static final int IALOAD = 0x2e;
+    public static final int AALOAD = 0x32;
+    public static final int ISTORE = 0x36;
+    public static final int ASTORE = 0x3a;
+    public static final int ISTORE_0 = 0x3b;
+    public static final int ASTORE_0 = 0x4b;
+    public static final int IASTORE = 0x4f;
+    public static final int AASTORE = 0x53;
+    public static final int POP = 0x57;
+    public static final int IADD = 0x60;
+    public static final int ISUB = 0x64;
+    public static final int IMUL = 0x68;
+    public static final int IDIV = 0x6c;
+    public static final int ISHL = 0x78;
+    public static final int ISHR = 0x7a;
+    public static final int IUSHR = 0x7c;
+    public static final int IAND = 0x7e;
+    public static final int IOR = 0x80;
+    public static final int IXOR = 0x82;
+    public static final int IINC = 0x84;
+    public static final int IFEQ = 0x99;
+    public static final int IFNE = 0x9a;
+    public static final int IFLT = 0x9b;
+    public static final int IFGE = 0x9c;
+    public static final int IFGT = 0x9d;
+    public static final int IFLE = 0x9e;
+    public static final int IF_ICMPEQ = 0x9f;
+    public static final int IF_ICMPNE = 0xa0;
+    public static final int IF_ICMPLT = 0xa1;
+    public static final int IF_ICMPGE = 0xa2;
+    public static final int IF_ICMPGT = 0xa3;
+    public static final int IF_ICMPLE = 0xa4;
+    public static final int GOTO = 0xa7;
+    public static final int IRETURN = 0xac;
+    public static final int ARETURN = 0xb0;
+    public static final int RETURN = 0xb1;
+    public static final int GETFIELD = 0xb4;
+    public static final int PUTFIELD = 0xb5;
+    public static final int INVOKEVIRTUAL = 0xb6;
+    public static final int INVOKESPECIAL = 0xb7;
+    public static final int INVOKESTATIC = 0xb8;
+    public static final int NEW = 0xbb;
+    public static final int NEWARRAY = 0xbc;
+    public static final int ANEWARRAY = 0xbd;
+    public static final int ARRAYLENGTH = 0xbe;
+    public static final int WIDE = 0xc4;
+
+    private static final int T_INT = 10;
+    private static final int MAX_CODE_LENGTH = 65535;
+
+    private final ClassFileWriter classFile;
+    private byte[] code;
+    private int length;
+    private int stack;
+    private int maxStack;
+    private int maxLocals;
+    private boolean reachable;
+
+    private final Map<String, Integer> labels;
+    private final Map<String, Integer> labelStacks;
+    private final List<BranchFixup> fixups;
+
+    /**
+     * A branch whose offset is only known once its label is placed.
+     */
+    private record BranchFixup(int instructionOffset, int operandOffset, String label) {
+    }
+
+    public BytecodeBuilder(ClassFileWriter classFile, int maxLocals) {
+        this.classFile = classFile;
+        this.code = new byte[64];
+        this.length = 0;
+        this.stack = 0;
+        this.maxStack = 0;
+        this.maxLocals = maxLocals;
+        this.reachable = true;
+        this.labels = new HashMap<>();
+        this.labelStacks = new HashMap<>();
+        this.fixups = new ArrayList<>();
+    }
+
+    public ClassFileWriter getClassFile() {
+        return classFile;
+    }
+
+    public int getMaxStack() {
+        return maxStack;
+    }
+
+    public int getMaxLocals() {
+        return maxLocals;
+    }
+
+    /**
+     * @return false if the last instruction was a goto or a return, and no label was placed after it
+     */
+    public boolean isReachable() {
+        return reachable;
+    }
+
+    /**
+     * @return the bytecode, with every branch pointing to its label
+     */
+    public byte[] getCode() {
+        for (var fixup : fixups) {
+            var target = labels.get(fixup.label());
+            if (target == null) {
+                throw new RuntimeException("Label '" + fixup.label() + "' is used but never placed");
+            }
+
+            var offset = target - fixup.instructionOffset();
+            if (offset < Short.MIN_VALUE || offset > Short.MAX_VALUE) {
+                throw new RuntimeException("Branch to label '" + fixup.label() + "' is too far");
+            }
+
+            code[fixup.operandOffset()] = (byte) (offset >> 8);
+            code[fixup.operandOffset() + 1] = (byte) offset;
+        }
+
+        if (length > MAX_CODE_LENGTH) {
+            throw new RuntimeException("Method has " + length + " bytes of code, the limit is " + MAX_CODE_LENGTH);
+        }
+
+        return Arrays.copyOf(code, length);
+    }
+
+    // Instructions
+
+    public void pushInt(int value) {
+        if (value >= -1 && value <= 5) {
+            // iconst_m1 to iconst_5
+            op(ICONST_0 + value, 1);
+        } else if (value >= Byte.MIN_VALUE && value <= Byte.MAX_VALUE) {
+            op(BIPUSH, 1);
+            u1(value);
+        } else if (value >= Short.MIN_VALUE && value <= Short.MAX_VALUE) {
+            op(SIPUSH, 1);
+            u2(value);
+        } else {
+            ldc(classFile.integer(value));
+        }
+    }
+
+    public void pushString(String value) {
+        ldc(classFile.string(value));
+    }
+
+    private void ldc(int index) {
+        if (index <= 0xff) {
+            op(LDC, 1);
+            u1(index);
+        } else {
+            op(LDC_W, 1);
+            u2(index);
+        }
+    }
+
+    public void load(boolean isReference, int register) {
+        localAccess(isReference ? ALOAD : ILOAD, isReference ? ALOAD_0 : ILOAD_0, register, 1);
+    }
+
+    public void store(boolean isReference, int register) {
+        localAccess(isReference ? ASTORE : ISTORE, isReference ? ASTORE_0 : ISTORE_0, register, -1);
+    }
+
+    private void localAccess(int opcode, int shortOpcode, int register, int stackDelta) {
+        maxLocals = Math.max(maxLocals, register + 1);
+
+        if (register <= 3) {
+            op(shortOpcode + register, stackDelta);
+        } else if (register <= 0xff) {
+            op(opcode, stackDelta);
+            u1(register);
+        } else {
+            op(WIDE, 0);
+            op(opcode, stackDelta);
+            u2(register);
+        }
+    }
+
+    public void iinc(int register, int increment) {
+        maxLocals = Math.max(maxLocals, register + 1);
+
+        if (register <= 0xff && increment >= Byte.MIN_VALUE && increment <= Byte.MAX_VALUE) {
+            op(IINC, 0);
+            u1(register);
+            u1(increment);
+        } else {
+            op(WIDE, 0);
+            op(IINC, 0);
+            u2(register);
+            u2(increment);
+        }
+    }
+
+    /**
+     * An instruction without operands.
+     *
+     * @param opcode
+     * @param stackDelta how many values the instruction pushes, minus the values it pops
+     */
+    public void op(int opcode, int stackDelta) {
+        u1(opcode);
+        adjustStack(stackDelta);
+
+        if (opcode == GOTO || opcode == RETURN || opcode == IRETURN || opcode == ARETURN) {
+            reachable = false;
+        }
+    }
+
+    public void branch(int opcode, String label) {
+        var stackDelta = switch (opcode) {
+            case GOTO -> 0;
+            case IFEQ, IFNE, IFLT, IFGE, IFGT, IFLE -> -1;
+            default -> -2;
+        };
+
+        var instructionOffset = length;
+        op(opcode, stackDelta);
+        fixups.add(new BranchFixup(instructionOffset, length, label));
+        u2(0);
+
+        labelStacks.putIfAbsent(label, stack);
+    }
+
+    public void label(String label) {
+        if (labels.put(label, length) != null) {
+            throw new RuntimeException("Label '" + label + "' is placed twice");
+        }
+
+        // Code after a goto or return is only reached through branches
+        var labelStack = labelStacks.get(label);
+        if (labelStack != null) {
+            stack = labelStack;
+        } else if (!reachable) {
+            stack = 0;
+        }
+
+        reachable = true;
+    }
+
+    public void field(int opcode, String owner, String name, String descriptor) {
+        // Pops the object, and pushes or pops the value
+        var stackDelta = switch (opcode) {
+            case GETFIELD -> 0;
+            case PUTFIELD -> -2;
+            default -> throw new RuntimeException("Not a field instruction: " + opcode);
+        };
+
+        op(opcode, stackDelta);
+        u2(classFile.fieldRef(owner, name, descriptor));
+    }
+
+    public void invoke(int opcode, String owner, String name, String descriptor) {
+        var returnDescriptor = descriptor.substring(descriptor.indexOf(')') + 1);
+        var stackDelta = -countArguments(descriptor) + (returnDescriptor.equals("V") ? 0 : 1);
+        if (opcode != INVOKESTATIC) {
+            stackDelta--;
+        }
+
+        op(opcode, stackDelta);
+        u2(classFile.methodRef(owner, name, descriptor));
+    }
+
+    public void newObject(String className) {
+        op(NEW, 1);
+        u2(classFile.classRef(className));
+    }
+
+    public void newIntArray() {
+        op(NEWARRAY, 0);
+        u1(T_INT);
+    }
+
+    public void newReferenceArray(String className) {
+        op(ANEWARRAY, 0);
+        u2(classFile.classRef(className));
+    }
+
+    private static int countArguments(String descriptor) {
+        int count = 0;
+        int i = 1;
+        while (descriptor.charAt(i) != ')') {
+            while (descriptor.charAt(i) == '[') {
+                i++;
+            }
+            if (descriptor.charAt(i) == 'L') {
+                i = descriptor.indexOf(';', i);
+            }
+            i++;
+            count++;
+        }
+
+        return count;
+    }
+
+    private void adjustStack(int stackDelta) {
+        stack += stackDelta;
+        if (stack < 0) {
+            throw new RuntimeException("Negative stack depth at offset " + length);
+        }
+        maxStack = Math.max(maxStack, stack);
+    }
+
+    private void u1(int value) {
+        ensureCapacity(1);
+        code[length++] = (byte) value;
+    }
+
+    private void u2(int value) {
+        ensureCapacity(2);
+        code[length++] = (byte) (value >> 8);
+        code[length++] = (byte) value;
+    }
+
+    private void ensureCapacity(int bytes) {
+        if (length + bytes > code.length) {
+            code = Arrays.copyOf(code, Math.max(code.length * 2, length + bytes));
+        }
+    }
+}
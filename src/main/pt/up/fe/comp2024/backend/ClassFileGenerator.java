@@ -0,0 +1,563 @@
+package pt.up.fe.comp2024.backend;
+
+import org.specs.comp.ollir.*;
+import org.specs.comp.ollir.tree.TreeNode;
+import pt.up.fe.comp.jmm.ollir.OllirResult;
+import pt.up.fe.comp.jmm.report.Report;
+import pt.up.fe.comp2024.utils.Diagnostics;
+import pt.up.fe.specs.util.classmap.BiConsumerClassMap;
+import pt.up.fe.specs.util.exceptions.NotImplementedException;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static pt.up.fe.comp2024.backend.BytecodeBuilder.*;
+
+/**
+ * Generates a class file directly from the ClassUnit of an OllirResult, without going through Jasmin.
+ * <p>
+ * Instructions are generated for their value: after an instruction that is the right-hand side of an assignment, the
+ * value is on top of the stack. One ClassFileGenerator instance per OllirResult.
+ */
+public class ClassFileGenerator {
+
+    private final OllirResult ollirResult;
+    private final List<Report> reports;
+    private final BiConsumerClassMap<TreeNode, BytecodeBuilder> generators;
+    private final String className;
+    private final String superClassName;
+    private byte[] classFile;
+    private Method currentMethod;
+    private int labelCount;
+
+    public ClassFileGenerator(OllirResult ollirResult) {
+        this.ollirResult = ollirResult;
+        this.reports = new ArrayList<>();
+        this.classFile = null;
+        this.currentMethod = null;
+        this.labelCount = 0;
+
+        var classUnit = ollirResult.getOllirClass();
+        this.className = classUnit.getClassName();
+        this.superClassName = classUnit.getSuperClass() == null ? "java/lang/Object" :
+                resolveClass(classUnit.getSuperClass());
+
+        this.generators = new BiConsumerClassMap<>();
+        generators.put(AssignInstruction.class, this::generateAssign);
+        generators.put(SingleOpInstruction.class, this::generateSingleOp);
+        generators.put(PutFieldInstruction.class, this::generatePutField);
+        generators.put(GetFieldInstruction.class, this::generateGetField);
+        generators.put(CallInstruction.class, this::generateCall);
+        generators.put(BinaryOpInstruction.class, this::generateBinaryOp);
+        generators.put(UnaryOpInstruction.class, this::generateUnaryOp);
+        generators.put(ReturnInstruction.class, this::generateReturn);
+        generators.put(GotoInstruction.class, this::generateGoto);
+        generators.put(SingleOpCondInstruction.class, this::generateSingleOpCond);
+        generators.put(OpCondInstruction.class, this::generateOpCond);
+        generators.put(LiteralElement.class, this::generateLiteral);
+        generators.put(Operand.class, this::generateOperand);
+        generators.put(ArrayOperand.class, this::generateArrayOperand);
+    }
+
+    public List<Report> getReports() {
+        return reports;
+    }
+
+    public String getClassName() {
+        return className;
+    }
+
+    public byte[] build() {
+        // This way, build is idempotent
+        if (classFile == null) {
+            classFile = generateClassUnit(ollirResult.getOllirClass());
+        }
+
+        return classFile;
+    }
+
+    private byte[] generateClassUnit(ClassUnit classUnit) {
+        var writer = new ClassFileWriter();
+        writer.setClass(getAccessFlags(classUnit.getClassAccessModifier()), className, superClassName);
+
+        for (var field : classUnit.getFields()) {
+            // Same as the Jasmin backend, fields without modifier are public
+            var access = field.getFieldAccessModifier() == AccessModifier.DEFAULT ? ClassFileWriter.ACC_PUBLIC :
+                    getAccessFlags(field.getFieldAccessModifier());
+            if (field.isStaticField()) {
+                access |= ClassFileWriter.ACC_STATIC;
+            }
+            if (field.isFinalField()) {
+                access |= ClassFileWriter.ACC_FINAL;
+            }
+
+            writer.addField(access, field.getFieldName(), getDescriptor(field.getFieldType()));
+        }
+
+        // There is always one constructor that receives no arguments
+        var constructor = new BytecodeBuilder(writer, 1);
+        constructor.load(true, 0);
+        constructor.invoke(INVOKESPECIAL, superClassName, "<init>", "()V");
+        constructor.op(RETURN, 0);
+        writer.addMethod(ClassFileWriter.ACC_PUBLIC, "<init>", "()V", constructor);
+
+        for (var method : classUnit.getMethods()) {
+            if (method.isConstructMethod()) {
+                continue;
+            }
+
+            generateMethod(method, writer);
+        }
+
+        return writer.toByteArray();
+    }
+
+    private void generateMethod(Method method, ClassFileWriter writer) {
+        currentMethod = method;
+        Diagnostics.trace(() -> "Method: " + method.getMethodName());
+
+        var access = getAccessFlags(method.getMethodAccessModifier());
+        if (method.isStaticMethod()) {
+            access |= ClassFileWriter.ACC_STATIC;
+        }
+        if (method.isFinalMethod()) {
+            access |= ClassFileWriter.ACC_FINAL;
+        }
+
+        var maxLocals = method.getParams().size() + (method.isStaticMethod() ? 0 : 1);
+        for (var descriptor : method.getVarTable().values()) {
+            maxLocals = Math.max(maxLocals, descriptor.getVirtualReg() + 1);
+        }
+
+        var code = new BytecodeBuilder(writer, maxLocals);
+
+        for (var inst : method.getInstructions()) {
+            Diagnostics.trace(() -> "Instruction: " + inst);
+
+            var labels = method.getLabels(inst);
+            if (labels != null) {
+                labels.forEach(code::label);
+            }
+
+            generators.accept(inst, code);
+
+            // Discard the value of calls whose result is not used
+            if (inst instanceof CallInstruction call && call.getReturnType().getTypeOfElement() != ElementType.VOID) {
+                code.op(POP, -1);
+            }
+        }
+
+        if (code.isReachable() && method.getReturnType().getTypeOfElement() == ElementType.VOID) {
+            code.op(RETURN, 0);
+        }
+
+        var descriptor = getMethodDescriptor(method.getParams(), method.getReturnType());
+        writer.addMethod(access, method.getMethodName(), descriptor, code);
+
+        currentMethod = null;
+    }
+
+    private void generateAssign(AssignInstruction assign, BytecodeBuilder code) {
+        if (!(assign.getDest() instanceof Operand dest)) {
+            throw new NotImplementedException(assign.getDest().getClass());
+        }
+
+        if (dest instanceof ArrayOperand arrayDest) {
+            code.load(true, getRegister(arrayDest.getName()));
+            generators.accept(arrayDest.getIndexOperands().get(0), code);
+            generators.accept(assign.getRhs(), code);
+            code.op(isReference(arrayDest.getType()) ? AASTORE : IASTORE, -3);
+            return;
+        }
+
+        if (generateIncrement(dest, assign.getRhs(), code)) {
+            return;
+        }
+
+        generators.accept(assign.getRhs(), code);
+        code.store(isReference(dest.getType()), getRegister(dest.getName()));
+    }
+
+    /**
+     * Uses iinc for 'a := a + constant' and 'a := a - constant'.
+     *
+     * @return true if the assignment was generated
+     */
+    private boolean generateIncrement(Operand dest, Instruction rhs, BytecodeBuilder code) {
+        if (!(rhs instanceof BinaryOpInstruction binaryOp)) {
+            return false;
+        }
+
+        var opType = binaryOp.getOperation().getOpType();
+        if (opType != OperationType.ADD && opType != OperationType.SUB) {
+            return false;
+        }
+
+        if (!(binaryOp.getLeftOperand() instanceof Operand left) || left instanceof ArrayOperand
+                || !left.getName().equals(dest.getName())
+                || !(binaryOp.getRightOperand() instanceof LiteralElement right)) {
+            return false;
+        }
+
+        var increment = parseLiteral(right);
+        if (opType == OperationType.SUB) {
+            increment = -increment;
+        }
+        if (increment < Short.MIN_VALUE || increment > Short.MAX_VALUE) {
+            return false;
+        }
+
+        code.iinc(getRegister(dest.getName()), increment);
+        return true;
+    }
+
+    private void generateSingleOp(SingleOpInstruction singleOp, BytecodeBuilder code) {
+        generators.accept(singleOp.getSingleOperand(), code);
+    }
+
+    private void generateLiteral(LiteralElement literal, BytecodeBuilder code) {
+        code.pushInt(parseLiteral(literal));
+    }
+
+    private void generateOperand(Operand operand, BytecodeBuilder code) {
+        if (operand.getType().getTypeOfElement() == ElementType.THIS) {
+            code.load(true, 0);
+            return;
+        }
+
+        code.load(isReference(operand.getType()), getRegister(operand.getName()));
+    }
+
+    private void generateArrayOperand(ArrayOperand arrayOperand, BytecodeBuilder code) {
+        code.load(true, getRegister(arrayOperand.getName()));
+        generators.accept(arrayOperand.getIndexOperands().get(0), code);
+        code.op(isReference(arrayOperand.getType()) ? AALOAD : IALOAD, -1);
+    }
+
+    private void generateGetField(GetFieldInstruction getField, BytecodeBuilder code) {
+        var field = getField.getField();
+
+        generators.accept(getField.getObject(), code);
+        code.field(GETFIELD, getOwner(getField.getObject()), field.getName(), getDescriptor(field.getType()));
+    }
+
+    private void generatePutField(PutFieldInstruction putField, BytecodeBuilder code) {
+        var field = putField.getField();
+
+        generators.accept(putField.getObject(), code);
+        generators.accept(putField.getValue(), code);
+        code.field(PUTFIELD, getOwner(putField.getObject()), field.getName(), getDescriptor(field.getType()));
+    }
+
+    private void generateCall(CallInstruction call, BytecodeBuilder code) {
+        var caller = call.getCaller();
+
+        switch (call.getInvocationType()) {
+            case NEW -> generateNew(call, code);
+            case arraylength -> {
+                generators.accept(caller, code);
+                code.op(ARRAYLENGTH, 0);
+            }
+            case ldc -> code.pushString(((LiteralElement) caller).getLiteral());
+            case invokestatic -> {
+                call.getArguments().forEach(argument -> generators.accept(argument, code));
+                code.invoke(INVOKESTATIC, resolveClass(((Operand) caller).getName()), getMethodName(call),
+                        getMethodDescriptor(call.getArguments(), call.getReturnType()));
+            }
+            case invokevirtual, invokespecial -> {
+                generators.accept(caller, code);
+                call.getArguments().forEach(argument -> generators.accept(argument, code));
+
+                var methodName = getMethodName(call);
+                var isSuperConstructor = methodName.equals("<init>")
+                        && caller.getType().getTypeOfElement() == ElementType.THIS;
+                var owner = isSuperConstructor ? superClassName : getOwner(caller);
+                var opcode = call.getInvocationType() == CallType.invokevirtual ? INVOKEVIRTUAL : INVOKESPECIAL;
+
+                code.invoke(opcode, owner, methodName, getMethodDescriptor(call.getArguments(), call.getReturnType()));
+            }
+            default -> throw new NotImplementedException(call.getInvocationType());
+        }
+    }
+
+    private void generateNew(CallInstruction call, BytecodeBuilder code) {
+        var returnType = call.getReturnType();
+
+        if (returnType instanceof ArrayType arrayType) {
+            // The argument is the size of the array
+            generators.accept(call.getArguments().get(0), code);
+
+            var elementType = arrayType.getElementType();
+            if (isReference(elementType)) {
+                var descriptor = getDescriptor(elementType);
+                code.newReferenceArray(descriptor.substring(1, descriptor.length() - 1));
+            } else {
+                code.newIntArray();
+            }
+            return;
+        }
+
+        // The constructor is called by a separate invokespecial
+        code.newObject(resolveClass(((ClassType) returnType).getName()));
+    }
+
+    private void generateBinaryOp(BinaryOpInstruction binaryOp, BytecodeBuilder code) {
+        var opType = binaryOp.getOperation().getOpType();
+
+        if (isComparison(opType)) {
+            // Produce 0 or 1 with a branch
+            var trueLabel = newLabel("true");
+            var endLabel = newLabel("end");
+
+            generateComparisonBranch(binaryOp, trueLabel, code);
+            code.pushInt(0);
+            code.branch(GOTO, endLabel);
+            code.label(trueLabel);
+            code.pushInt(1);
+            code.label(endLabel);
+            return;
+        }
+
+        generators.accept(binaryOp.getLeftOperand(), code);
+        generators.accept(binaryOp.getRightOperand(), code);
+
+        var opcode = switch (opType) {
+            case ADD -> IADD;
+            case SUB -> ISUB;
+            case MUL -> IMUL;
+            case DIV -> IDIV;
+            case AND, ANDB -> IAND;
+            case OR, ORB -> IOR;
+            case XOR -> IXOR;
+            case SHL -> ISHL;
+            case SHR -> ISHR;
+            case SHRR -> IUSHR;
+            default -> throw new NotImplementedException(opType);
+        };
+        code.op(opcode, -1);
+    }
+
+    private void generateUnaryOp(UnaryOpInstruction unaryOp, BytecodeBuilder code) {
+        var opType = unaryOp.getOperation().getOpType();
+        if (opType != OperationType.NOTB && opType != OperationType.NOT) {
+            throw new NotImplementedException(opType);
+        }
+
+        // Booleans are 0 or 1
+        generators.accept(unaryOp.getOperand(), code);
+        code.pushInt(1);
+        code.op(IXOR, -1);
+    }
+
+    private void generateReturn(ReturnInstruction returnInst, BytecodeBuilder code) {
+        if (!returnInst.hasReturnValue()) {
+            code.op(RETURN, 0);
+            return;
+        }
+
+        generators.accept(returnInst.getOperand(), code);
+        code.op(isReference(returnInst.getOperand().getType()) ? ARETURN : IRETURN, -1);
+    }
+
+    private void generateGoto(GotoInstruction gotoInst, BytecodeBuilder code) {
+        code.branch(GOTO, gotoInst.getLabel());
+    }
+
+    private void generateSingleOpCond(SingleOpCondInstruction cond, BytecodeBuilder code) {
+        generators.accept(cond.getCondition().getSingleOperand(), code);
+        code.branch(IFNE, cond.getLabel());
+    }
+
+    private void generateOpCond(OpCondInstruction cond, BytecodeBuilder code) {
+        var condition = cond.getCondition();
+
+        if (condition instanceof BinaryOpInstruction binaryOp && isComparison(binaryOp.getOperation().getOpType())) {
+            generateComparisonBranch(binaryOp, cond.getLabel(), code);
+            return;
+        }
+
+        if (condition instanceof UnaryOpInstruction unaryOp
+                && unaryOp.getOperation().getOpType() == OperationType.NOTB) {
+            generators.accept(unaryOp.getOperand(), code);
+            code.branch(IFEQ, cond.getLabel());
+            return;
+        }
+
+        generators.accept(condition, code);
+        code.branch(IFNE, cond.getLabel());
+    }
+
+    /**
+     * Jumps to the label if the comparison is true. Comparisons with zero use the single operand branches.
+     */
+    private void generateComparisonBranch(BinaryOpInstruction comparison, String label, BytecodeBuilder code) {
+        var opType = comparison.getOperation().getOpType();
+        var left = comparison.getLeftOperand();
+        var right = comparison.getRightOperand();
+
+        if (isZero(right)) {
+            generators.accept(left, code);
+            code.branch(getZeroBranch(opType), label);
+        } else if (isZero(left)) {
+            // 0 < b is the same as b > 0
+            generators.accept(right, code);
+            code.branch(getZeroBranch(swap(opType)), label);
+        } else {
+            generators.accept(left, code);
+            generators.accept(right, code);
+            code.branch(getCompareBranch(opType), label);
+        }
+    }
+
+    // Helpers
+
+    private static boolean isComparison(OperationType opType) {
+        return switch (opType) {
+            case LTH, GTH, LTE, GTE, EQ, NEQ -> true;
+            default -> false;
+        };
+    }
+
+    private static OperationType swap(OperationType opType) {
+        return switch (opType) {
+            case LTH -> OperationType.GTH;
+            case GTH -> OperationType.LTH;
+            case LTE -> OperationType.GTE;
+            case GTE -> OperationType.LTE;
+            default -> opType;
+        };
+    }
+
+    private static int getZeroBranch(OperationType opType) {
+        return switch (opType) {
+            case LTH -> IFLT;
+            case GTH -> IFGT;
+            case LTE -> IFLE;
+            case GTE -> IFGE;
+            case EQ -> IFEQ;
+            case NEQ -> IFNE;
+            default -> throw new NotImplementedException(opType);
+        };
+    }
+
+    private static int getCompareBranch(OperationType opType) {
+        return switch (opType) {
+            case LTH -> IF_ICMPLT;
+            case GTH -> IF_ICMPGT;
+            case LTE -> IF_ICMPLE;
+            case GTE -> IF_ICMPGE;
+            case EQ -> IF_ICMPEQ;
+            case NEQ -> IF_ICMPNE;
+            default -> throw new NotImplementedException(opType);
+        };
+    }
+
+    private static boolean isZero(Element element) {
+        return element instanceof LiteralElement literal && parseLiteral(literal) == 0;
+    }
+
+    private static int parseLiteral(LiteralElement literal) {
+        return switch (literal.getLiteral()) {
+            case "true" -> 1;
+            case "false" -> 0;
+            default -> Integer.parseInt(literal.getLiteral());
+        };
+    }
+
+    private String newLabel(String name) {
+        // '$' cannot appear in OLLIR labels
+        return "$" + name + "_" + labelCount++;
+    }
+
+    private int getRegister(String name) {
+        var descriptor = currentMethod.getVarTable().get(name);
+        if (descriptor == null) {
+            throw new RuntimeException("Variable '" + name + "' is not in the var table of method '"
+                    + currentMethod.getMethodName() + "'");
+        }
+
+        return descriptor.getVirtualReg();
+    }
+
+    private static boolean isReference(Type type) {
+        var elementType = type.getTypeOfElement();
+        return elementType != ElementType.INT32 && elementType != ElementType.BOOLEAN;
+    }
+
+    private static String getMethodName(CallInstruction call) {
+        var name = call.getMethodNameTry()
+                .map(methodName -> ((LiteralElement) methodName).getLiteral().replace("\"", ""))
+                .orElse("");
+
+        // invokespecial(obj, "") calls the constructor
+        return name.isEmpty() ? "<init>" : name;
+    }
+
+    private static int getAccessFlags(AccessModifier modifier) {
+        return switch (modifier) {
+            case PUBLIC -> ClassFileWriter.ACC_PUBLIC;
+            case PRIVATE -> ClassFileWriter.ACC_PRIVATE;
+            case PROTECTED -> ClassFileWriter.ACC_PROTECTED;
+            case DEFAULT -> 0;
+        };
+    }
+
+    /**
+     * @return the internal name of the class of the given element, which is the owner of its fields and methods
+     */
+    private String getOwner(Element element) {
+        var type = element.getType();
+        if (type.getTypeOfElement() == ElementType.THIS) {
+            return className;
+        }
+
+        if (type instanceof ClassType classType) {
+            return resolveClass(classType.getName());
+        }
+
+        throw new NotImplementedException(type.getTypeOfElement());
+    }
+
+    /**
+     * Converts a class name used in OLLIR to the internal name of the class, using the imports.
+     */
+    private String resolveClass(String name) {
+        if (name.equals(className)) {
+            return className;
+        }
+
+        if (name.equals("Object")) {
+            return "java/lang/Object";
+        }
+
+        for (var imp : ollirResult.getOllirClass().getImports()) {
+            if (imp.equals(name) || imp.endsWith("." + name)) {
+                return imp.replace('.', '/');
+            }
+        }
+
+        return name;
+    }
+
+    private String getMethodDescriptor(List<Element> params, Type returnType) {
+        return params.stream()
+                .map(param -> getDescriptor(param.getType()))
+                .collect(Collectors.joining("", "(", ")")) + getDescriptor(returnType);
+    }
+
+    private String getDescriptor(Type type) {
+        return switch (type.getTypeOfElement()) {
+            case INT32 -> "I";
+            case BOOLEAN -> "Z";
+            case STRING -> "Ljava/lang/String;";
+            case VOID -> "V";
+            case THIS -> "L" + className + ";";
+            case ARRAYREF -> {
+                var arrayType = (ArrayType) type;
+                yield "[".repeat(arrayType.getNumDimensions()) + getDescriptor(arrayType.getElementType());
+            }
+            case OBJECTREF, CLASS -> "L" + resolveClass(((ClassType) type).getName()) + ";";
+        };
+    }
+}
@@ -0,0 +1,235 @@
+package pt.up.fe.comp2024.backend;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Writes the binary format of a class file: constant pool, fields and methods with their code.
+ * <p>
+ * Class files use version 49 (Java 5), the last version that is verified by type inference, so methods do not need a
+ * StackMapTable.
+ */
+public class ClassFileWriter {
+
+    public static final int ACC_PUBLIC = 0x0001;
+    public static final int ACC_PRIVATE = 0x0002;
+    public static final int ACC_PROTECTED = 0x0004;
+    public static final int ACC_STATIC = 0x0008;
+    public static final int ACC_FINAL = 0x0010;
+    public static final int ACC_SUPER = 0x0020;
+
+    private static final int MAGIC = 0xCAFEBABE;
+    private static final int MAJOR_VERSION = 49;
+    private static final int MAX_POOL_SIZE = 65535;
+
+    private static final int CONSTANT_UTF8 = 1;
+    private static final int CONSTANT_INTEGER = 3;
+    private static final int CONSTANT_CLASS = 7;
+    private static final int CONSTANT_STRING = 8;
+    private static final int CONSTANT_FIELDREF = 9;
+    private static final int CONSTANT_METHODREF = 10;
+    private static final int CONSTANT_NAME_AND_TYPE = 12;
+
+    private final ByteArrayOutputStream poolBytes;
+    private final DataOutputStream pool;
+    private final Map<String, Integer> constants;
+    private int poolCount;
+
+    private int access;
+    private int thisClass;
+    private int superClass;
+    private final List<byte[]> fields;
+    private final List<byte[]> methods;
+
+    public ClassFileWriter() {
+        this.poolBytes = new ByteArrayOutputStream();
+        this.pool = new DataOutputStream(poolBytes);
+        this.constants = new HashMap<>();
+        this.poolCount = 1;
+        this.fields = new ArrayList<>();
+        this.methods = new ArrayList<>();
+    }
+
+    /**
+     * @param access
+     * @param className      internal name of the class, e.g. 'pt/up/Foo'
+     * @param superClassName internal name of the superclass
+     */
+    public void setClass(int access, String className, String superClassName) {
+        this.access = access | ACC_SUPER;
+        this.thisClass = classRef(className);
+        this.superClass = classRef(superClassName);
+    }
+
+    public void addField(int access, String name, String descriptor) {
+        var field = new ByteArrayOutputStream();
+        try (var out = new DataOutputStream(field)) {
+            out.writeShort(access);
+            out.writeShort(utf8(name));
+            out.writeShort(utf8(descriptor));
+            // No attributes
+            out.writeShort(0);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+
+        fields.add(field.toByteArray());
+    }
+
+    public void addMethod(int access, String name, String descriptor, BytecodeBuilder code) {
+        var bytecode = code.getCode();
+
+        var method = new ByteArrayOutputStream();
+        try (var out = new DataOutputStream(method)) {
+            out.writeShort(access);
+            out.writeShort(utf8(name));
+            out.writeShort(utf8(descriptor));
+
+            // Code attribute
+            out.writeShort(1);
+            out.writeShort(utf8("Code"));
+            // max_stack, max_locals, code_length, code, exception_table_length, attributes_count
+            out.writeInt(2 + 2 + 4 + bytecode.length + 2 + 2);
+            out.writeShort(code.getMaxStack());
+            out.writeShort(code.getMaxLocals());
+            out.writeInt(bytecode.length);
+            out.write(bytecode);
+            out.writeShort(0);
+            out.writeShort(0);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+
+        methods.add(method.toByteArray());
+    }
+
+    public byte[] toByteArray() {
+        var classFile = new ByteArrayOutputStream();
+
+        try (var out = new DataOutputStream(classFile)) {
+            out.writeInt(MAGIC);
+            out.writeShort(0);
+            out.writeShort(MAJOR_VERSION);
+
+            out.writeShort(poolCount);
+            pool.flush();
+            poolBytes.writeTo(out);
+
+            out.writeShort(access);
+            out.writeShort(thisClass);
+            out.writeShort(superClass);
+
+            // No interfaces
+            out.writeShort(0);
+
+            out.writeShort(fields.size());
+            for (var field : fields) {
+                out.write(field);
+            }
+
+            out.writeShort(methods.size());
+            for (var method : methods) {
+                out.write(method);
+            }
+
+            // No class attributes
+            out.writeShort(0);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+
+        return classFile.toByteArray();
+    }
+
+    // Constant pool, each constant is added only once
+
+    public int utf8(String value) {
+        return constant("U" + value, out -> {
+            out.writeByte(CONSTANT_UTF8);
+            out.writeUTF(value);
+        });
+    }
+
+    public int integer(int value) {
+        return constant("I" + value, out -> {
+            out.writeByte(CONSTANT_INTEGER);
+            out.writeInt(value);
+        });
+    }
+
+    public int string(String value) {
+        var utf8 = utf8(value);
+        return constant("S" + value, out -> {
+            out.writeByte(CONSTANT_STRING);
+            out.writeShort(utf8);
+        });
+    }
+
+    public int classRef(String className) {
+        var name = utf8(className);
+        return constant("C" + className, out -> {
+            out.writeByte(CONSTANT_CLASS);
+            out.writeShort(name);
+        });
+    }
+
+    public int fieldRef(String owner, String name, String descriptor) {
+        return memberRef(CONSTANT_FIELDREF, owner, name, descriptor);
+    }
+
+    public int methodRef(String owner, String name, String descriptor) {
+        return memberRef(CONSTANT_METHODREF, owner, name, descriptor);
+    }
+
+    private int memberRef(int tag, String owner, String name, String descriptor) {
+        var ownerClass = classRef(owner);
+        var nameAndType = nameAndType(name, descriptor);
+        return constant(tag + ":" + owner + "." + name + ":" + descriptor, out -> {
+            out.writeByte(tag);
+            out.writeShort(ownerClass);
+            out.writeShort(nameAndType);
+        });
+    }
+
+    private int nameAndType(String name, String descriptor) {
+        var nameIndex = utf8(name);
+        var descriptorIndex = utf8(descriptor);
+        return constant("N" + name + ":" + descriptor, out -> {
+            out.writeByte(CONSTANT_NAME_AND_TYPE);
+            out.writeShort(nameIndex);
+            out.writeShort(descriptorIndex);
+        });
+    }
+
+    private interface ConstantWriter {
+        void write(DataOutputStream out) throws IOException;
+    }
+
+    private int constant(String key, ConstantWriter writer) {
+        var index = constants.get(key);
+        if (index != null) {
+            return index;
+        }
+
+        if (poolCount >= MAX_POOL_SIZE) {
+            throw new RuntimeException("Constant pool has more than " + MAX_POOL_SIZE + " entries");
+        }
+
+        try {
+            writer.write(pool);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+
+        index = poolCount++;
+        constants.put(key, index);
+
+        return index;
+    }
+}
@@ -3,14 +3,30 @@ package pt.up.fe.comp2024.backend;
 import pt.up.fe.comp.jmm.jasmin.JasminBackend;
 import pt.up.fe.comp.jmm.jasmin.JasminResult;
 import pt.up.fe.comp.jmm.ollir.OllirResult;
+import pt.up.fe.comp2024.utils.StageProfiler;
+
+import java.util.HashMap;
+import java.util.Map;
 
 public class JasminBackendImpl implements JasminBackend {
 
     @Override
     public JasminResult toJasmin(OllirResult ollirResult) {
+        return toJasmin(ollirResult, new HashMap<>());
+    }
+
+    /**
+     * Same as {@link #toJasmin(OllirResult)}, but reuses the code of the methods in the given map, and adds the code
+     * of the other methods to it.
+     *
+     * @param ollirResult
+     * @param methodCode  Jasmin code of each method, by name
+     * @return
+     */
+    public JasminResult toJasmin(OllirResult ollirResult, Map<String, String> methodCode) {
 
-        var jasminGenerator = new JasminGenerator(ollirResult);
-        var jasminCode = jasminGenerator.build();
+        var jasminGenerator = new JasminGenerator(ollirResult, methodCode);
+        var jasminCode = StageProfiler.measure("jasminGenerator", jasminGenerator::build);
 
         return new JasminResult(ollirResult, jasminCode, jasminGenerator.getReports());
     }
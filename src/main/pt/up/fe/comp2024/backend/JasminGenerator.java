@@ -4,6 +4,7 @@ import org.specs.comp.ollir.*;
 import org.specs.comp.ollir.tree.TreeNode;
 import pt.up.fe.comp.jmm.ollir.OllirResult;
 import pt.up.fe.comp.jmm.report.Report;
+import pt.up.fe.comp2024.utils.Diagnostics;
 import pt.up.fe.specs.util.classmap.FunctionClassMap;
 import pt.up.fe.specs.util.exceptions.NotImplementedException;
 import pt.up.fe.specs.util.utilities.StringLines;
@@ -20,6 +21,7 @@ public class JasminGenerator {
     private static final String NL = "\n";
     private static final String TAB = "   ";
     private final OllirResult ollirResult;
+    private final Map<String, String> methodCode;
     List<Report> reports;
     String code;
     Method currentMethod;
@@ -30,7 +32,16 @@ public class JasminGenerator {
 
 
     public JasminGenerator(OllirResult ollirResult) {
+        this(ollirResult, new HashMap<>());
+    }
+
+    /**
+     * @param methodCode the code of methods generated before, by name, which is reused instead of generating it again;
+     *                   the code of the other methods is added to it
+     */
+    public JasminGenerator(OllirResult ollirResult, Map<String, String> methodCode) {
         this.ollirResult = ollirResult;
+        this.methodCode = methodCode;
         reports = new ArrayList<>();
         code = null;
         currentMethod = null;
@@ -75,7 +86,7 @@ public class JasminGenerator {
         // generate class name
         var className = ollirResult.getOllirClass().getClassName();
         code.append(".class ").append(className).append(NL);
-        System.out.println("Class: " + className);
+        Diagnostics.trace(() -> "Class: " + className);
         String superClass = "";
         if (classUnit.getSuperClass() == null || classUnit.getSuperClass().equals("Object")) {
             superClass = "java/lang/Object";
@@ -92,7 +103,7 @@ public class JasminGenerator {
 
         // generate fields
         for (var field : ollirResult.getOllirClass().getFields()) {
-            System.out.println("Field: " + field);
+            Diagnostics.trace(() -> "Field: " + field);
             var type = getFieldType(field.getFieldType().toString());
             var modifier = field.getFieldAccessModifier().name().equals("DEFAULT") ? "public" : field.getFieldAccessModifier().name().toLowerCase();
             code.append(".field ").append(modifier).append(" ").append(field.getFieldName()).append(" ").append(type).append(NL);
@@ -114,7 +125,7 @@ public class JasminGenerator {
             if (method.isConstructMethod()) {
                 continue;
             }
-            code.append(generators.apply(method));
+            code.append(methodCode.computeIfAbsent(method.getMethodName(), name -> generators.apply(method)));
         }
 
         return code.toString();
@@ -127,13 +138,13 @@ public class JasminGenerator {
         localsLimit = 0;
         // set method
         currentMethod = method;
-        System.out.println("Method: " + method.getMethodName());
+        Diagnostics.trace(() -> "Method: " + method.getMethodName());
 
         var code = new StringBuilder();
 
         // calculate modifier
 
-        System.out.println("Method access modifier: " + method.getMethodAccessModifier());
+        Diagnostics.trace(() -> "Method access modifier: " + method.getMethodAccessModifier());
         var modifier = method.getMethodAccessModifier() != AccessModifier.DEFAULT ?
                 method.getMethodAccessModifier().name().toLowerCase() + " " :
                 "";
@@ -154,7 +165,7 @@ public class JasminGenerator {
         StringBuilder finalCode = new StringBuilder();
 
         for (var inst : method.getInstructions()) {
-            System.out.println("Instruction: " + inst);
+            Diagnostics.trace(() -> "Instruction: " + inst);
 
             for (Map.Entry<String, Instruction> label : method.getLabels().entrySet()) {
                 if (label.getValue().equals(inst)) {
@@ -194,7 +205,7 @@ public class JasminGenerator {
 
 
     private String generateAssign(AssignInstruction assign) {
-        System.out.println("\n\nAssign: " + assign);
+        Diagnostics.trace(() -> "\n\nAssign: " + assign);
         var code = new StringBuilder();
 
         if (stackLimit < 1) {
@@ -231,7 +242,7 @@ public class JasminGenerator {
                 stackLimit = 2;
             }
         }
-        System.out.println("RHS: " + rhs);
+        Diagnostics.trace(() -> "RHS: " + rhs);
 
         // store value in the stack in destination
         var lhs = assign.getDest();
@@ -248,12 +259,12 @@ public class JasminGenerator {
         // get register
         var reg = currentMethod.getVarTable().get(operand.getName()).getVirtualReg();
 
-        for (var var : currentMethod.getVarTable().values()) {
-            System.out.println("Var: " + var.getVarType() + " " + var.getVirtualReg() + " " + var.getScope() + " ");
-        }
+        Diagnostics.trace(() -> currentMethod.getVarTable().values().stream()
+                .map(var -> "Var: " + var.getVarType() + " " + var.getVirtualReg() + " " + var.getScope() + " ")
+                .collect(Collectors.joining(NL)));
 
-        System.out.println("lhs: " + lhs);
-            System.out.println("Register: " + reg);
+        Diagnostics.trace(() -> "lhs: " + lhs);
+            Diagnostics.trace(() -> "Register: " + reg);
 
         if ((assign.getRhs().getInstType().toString().equals("NOPER") && !assign.getRhs().toString().contains("LiteralElement"))
             && (assign.getRhs().getInstType().toString().equals("NOPER") && !assign.getRhs().toString().contains("ArrayOperand"))){
@@ -401,7 +412,7 @@ public class JasminGenerator {
     }
 
     private String generateGetField(GetFieldInstruction getFieldInstruction) {
-        System.out.println("GetField: " + getFieldInstruction);
+        Diagnostics.trace(() -> "GetField: " + getFieldInstruction);
         var code = new StringBuilder();
 
         if (stackLimit < 2) {
@@ -429,7 +440,7 @@ public class JasminGenerator {
     }
 
     private String generatePutField(PutFieldInstruction putFieldInstruction) {
-        System.out.println("PutField: " + putFieldInstruction);
+        Diagnostics.trace(() -> "PutField: " + putFieldInstruction);
 
         if (stackLimit < 2) {
             stackLimit = 2;
@@ -456,7 +467,7 @@ public class JasminGenerator {
         code.append(generators.apply(value));
 
 
-        System.out.println("Field Type: " + putFieldInstruction.getField().getName()); //might not be the best way, what the I after the putfield instruction refer to?
+        Diagnostics.trace(() -> "Field Type: " + putFieldInstruction.getField().getName()); //might not be the best way, what the I after the putfield instruction refer to?
 
         var type = getFieldType(putFieldInstruction.getOperands().get(1).getType().toString());
 
@@ -467,7 +478,7 @@ public class JasminGenerator {
 
 
     private String generateCall(CallInstruction callInstruction) {
-        System.out.println("Call: " + callInstruction);
+        Diagnostics.trace(() -> "Call: " + callInstruction);
         var code = new StringBuilder();
         var className = ollirResult.getOllirClass().getClassName();
         if (callInstruction.getCaller().getType().toString().contains("OBJECTREF")) {
@@ -577,7 +588,7 @@ public class JasminGenerator {
             code.append("arraylength").append(NL);
         }
         else
-            System.out.println("Error: Invocation type not found");
+            Diagnostics.info(() -> "Error: Invocation type not found");
 
         return code.toString();
     }
@@ -585,7 +596,7 @@ public class JasminGenerator {
     private String generateReturn(ReturnInstruction returnInst) {
         var code = new StringBuilder();
 
-        System.out.println(returnInst);
+        Diagnostics.trace(() -> returnInst.toString());
         if (returnInst.getOperand() == null)
             code.append("return").append(NL);
         else {
@@ -632,7 +643,7 @@ public class JasminGenerator {
                 }
             }
 
-            System.out.println("Param: " + param.getType());
+            Diagnostics.trace(() -> "Param: " + param.getType());
             switch (param.getType().toString()) {
                 case "INT32" -> params.append("I");
                 case "BOOLEAN" -> params.append("Z");
@@ -648,7 +659,7 @@ public class JasminGenerator {
     }
 
     private String generateSingleOpCondInstruction(SingleOpCondInstruction singleOpCondInstruction) {
-        System.out.println("SingleOpCondInstruction: " + singleOpCondInstruction);
+        Diagnostics.trace(() -> "SingleOpCondInstruction: " + singleOpCondInstruction);
         var code = new StringBuilder();
 
         if (stackLimit < 1) {
@@ -702,7 +713,7 @@ public class JasminGenerator {
     }
 
     private String generateOpCondInstruction(OpCondInstruction opCondInstruction) {
-        System.out.println("OpCondInstruction: " + opCondInstruction);
+        Diagnostics.trace(() -> "OpCondInstruction: " + opCondInstruction);
         var code = new StringBuilder();
 
         if (stackLimit < 1) {
@@ -805,7 +816,7 @@ public class JasminGenerator {
     }
 
     private String generateGoToInstruction(GotoInstruction gotoInstruction) {
-        System.out.println("GoToInstruction: " + gotoInstruction);
+        Diagnostics.trace(() -> "GoToInstruction: " + gotoInstruction);
         return "goto " + gotoInstruction.getLabel() + NL;
     }
 
@@ -824,7 +835,7 @@ public class JasminGenerator {
     }
 
     private String generateArrayOperand(ArrayOperand arrayOperand) {
-        System.out.println("ArrayOperand: " + arrayOperand);
+        Diagnostics.trace(() -> "ArrayOperand: " + arrayOperand);
         var code = new StringBuilder();
 
         if (stackLimit < 3) {
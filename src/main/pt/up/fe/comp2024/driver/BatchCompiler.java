@@ -0,0 +1,91 @@
+package pt.up.fe.comp2024.driver;
+
+import pt.up.fe.comp.jmm.report.Report;
+import pt.up.fe.comp.jmm.report.Stage;
+import pt.up.fe.comp2024.CompilerConfig;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Compiles several sources in parallel, one task per file, on a work-stealing pool sized to the available cores.
+ * <p>
+ * Results are returned in the same order as the input files, regardless of the order in which they finish.
+ */
+public class BatchCompiler {
+
+    private final Map<String, String> config;
+    private final JmmCompiler compiler;
+    private final int parallelism;
+
+    public BatchCompiler(Map<String, String> config) {
+        this(config, Runtime.getRuntime().availableProcessors());
+    }
+
+    public BatchCompiler(Map<String, String> config, int parallelism) {
+        this.config = config;
+        this.compiler = new JmmCompiler();
+        this.parallelism = parallelism;
+    }
+
+    public List<CompilationResult> compile(List<File> inputFiles) {
+        var pool = Executors.newWorkStealingPool(parallelism);
+
+        try {
+            var futures = new ArrayList<Future<CompilationResult>>();
+            for (var inputFile : inputFiles) {
+                var fileConfig = CompilerConfig.forInput(config, inputFile);
+                futures.add(pool.submit(() -> compileFile(inputFile, fileConfig)));
+            }
+
+            var results = new ArrayList<CompilationResult>();
+            for (int i = 0; i < futures.size(); i++) {
+                results.add(getResult(inputFiles.get(i), futures.get(i)));
+            }
+
+            return results;
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    private CompilationResult compileFile(File inputFile, Map<String, String> fileConfig) {
+        var result = compiler.compile(inputFile, fileConfig);
+
+        if (result.isSuccess()) {
+            CompilerConfig.getOutputDir(fileConfig).ifPresent(outputDir -> JmmCompiler.writeOutput(result, outputDir));
+        }
+
+        return result;
+    }
+
+    private CompilationResult getResult(File inputFile, Future<CompilationResult> future) {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return failed(inputFile, e);
+        } catch (ExecutionException e) {
+            return failed(inputFile, e);
+        }
+    }
+
+    private static CompilationResult failed(File inputFile, Exception e) {
+        var result = new CompilationResult(inputFile);
+        result.addReport(Report.newError(Stage.OTHER, -1, -1, "Compilation of '" + inputFile + "' did not finish", e));
+        return result;
+    }
+
+    /**
+     * @param results
+     * @return 0 if every file compiled successfully, 1 otherwise
+     */
+    public static int getExitStatus(List<CompilationResult> results) {
+        return results.stream().allMatch(CompilationResult::isSuccess) ? 0 : 1;
+    }
+}
@@ -0,0 +1,242 @@
+package pt.up.fe.comp2024.driver;
+
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import pt.up.fe.comp2024.CompilerConfig;
+import pt.up.fe.comp2024.utils.Diagnostics;
+import pt.up.fe.comp2024.utils.ReportUtils;
+import pt.up.fe.specs.util.SpecsIo;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.Comparator;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+/**
+ * On-disk cache of successful compilations, addressed by the hash of the source code, of the options that change the
+ * generated code and of the build of the compiler.
+ * <p>
+ * Each entry is a JSON file with the class name, the reports, the OLLIR and the Jasmin code or class file. Entries are
+ * touched when they are used, and the least recently used are deleted once the cache grows beyond its maximum size.
+ * Failing to write an entry does not fail the compilation, the entry is just not cached.
+ */
+public class CompilationCache {
+
+    /**
+     * Change when the format of the entries changes. Entries of other builds of the compiler are invalidated by the
+     * hash of the build.
+     */
+    private static final String FORMAT_VERSION = "2";
+    private static final String ENTRY_EXTENSION = ".json";
+    private static final Object EVICTION_LOCK = new Object();
+
+    private final File cacheDir;
+    private final long maxBytes;
+
+    public CompilationCache(File cacheDir, long maxBytes) {
+        this.cacheDir = SpecsIo.mkdir(cacheDir);
+        this.maxBytes = maxBytes;
+    }
+
+    /**
+     * @param config
+     * @return the cache configured with '-c', if any
+     */
+    public static Optional<CompilationCache> fromConfig(Map<String, String> config) {
+        return CompilerConfig.getCacheDir(config)
+                .map(cacheDir -> new CompilationCache(cacheDir, CompilerConfig.getCacheSize(config)));
+    }
+
+    public String getKey(CharSequence code, Map<String, String> config) {
+        try {
+            var digest = MessageDigest.getInstance("SHA-256");
+            digest.update(FORMAT_VERSION.getBytes(StandardCharsets.UTF_8));
+            digest.update((byte) 0);
+            digest.update(Build.HASH);
+            digest.update((byte) 0);
+            updateUtf8(digest, code);
+            digest.update((byte) 0);
+            digest.update(Boolean.toString(CompilerConfig.getOptimize(config)).getBytes(StandardCharsets.UTF_8));
+            digest.update((byte) 0);
+            digest.update(Integer.toString(CompilerConfig.getRegisterAllocation(config)).getBytes(StandardCharsets.UTF_8));
+            digest.update((byte) 0);
+            digest.update(Boolean.toString(CompilerConfig.isEmitClass(config)).getBytes(StandardCharsets.UTF_8));
+
+            return HexFormat.of().formatHex(digest.digest());
+        } catch (NoSuchAlgorithmException e) {
+            throw new RuntimeException("SHA-256 is not available", e);
+        }
+    }
+
+    /**
+     * Hashes the UTF-8 bytes of the code a block at a time, so large sources are not copied to a byte array. Gives the
+     * same hash as the bytes of String.getBytes.
+     */
+    private static void updateUtf8(MessageDigest digest, CharSequence code) {
+        var encoder = StandardCharsets.UTF_8.newEncoder()
+                .onMalformedInput(CodingErrorAction.REPLACE)
+                .onUnmappableCharacter(CodingErrorAction.REPLACE);
+        var chars = CharBuffer.wrap(code);
+        var bytes = ByteBuffer.allocate(8192);
+
+        CoderResult result;
+        do {
+            result = encoder.encode(chars, bytes, true);
+            if (result.isUnderflow()) {
+                result = encoder.flush(bytes);
+            }
+
+            bytes.flip();
+            digest.update(bytes);
+            bytes.clear();
+        } while (result.isOverflow());
+    }
+
+    /**
+     * @param inputFile
+     * @param key
+     * @return the cached compilation, or empty if there is no entry for the given key
+     */
+    public Optional<CompilationResult> get(File inputFile, String key) {
+        var entryFile = getEntryFile(key);
+
+        try {
+            var json = JsonParser.parseString(Files.readString(entryFile.toPath())).getAsJsonObject();
+
+            // Mark as recently used
+            entryFile.setLastModified(System.currentTimeMillis());
+
+            var result = new CompilationResult(inputFile);
+            result.setReports(ReportUtils.fromJson(json.getAsJsonArray("reports")));
+            var jasmin = json.has("jasmin") ? json.get("jasmin").getAsString() : null;
+            var classFile = json.has("classFile") ?
+                    Base64.getDecoder().decode(json.get("classFile").getAsString()) : null;
+            result.setCachedCode(json.get("className").getAsString(), json.get("ollir").getAsString(), jasmin,
+                    classFile);
+
+            return Optional.of(result);
+        } catch (IOException | RuntimeException e) {
+            // Missing, evicted in the meantime, or corrupted entry
+            return Optional.empty();
+        }
+    }
+
+    /**
+     * Stores a successful compilation. Failed compilations are not cached.
+     *
+     * @param key
+     * @param result
+     */
+    public void put(String key, CompilationResult result) {
+        if (!result.isSuccess()) {
+            return;
+        }
+
+        var json = new JsonObject();
+        json.addProperty("className", result.getClassName());
+        json.add("reports", ReportUtils.toJson(result.getReports()));
+        json.addProperty("ollir", result.getOllirCode());
+        if (result.getJasminCode() != null) {
+            json.addProperty("jasmin", result.getJasminCode());
+        }
+        if (result.getClassFile() != null) {
+            json.addProperty("classFile", Base64.getEncoder().encodeToString(result.getClassFile()));
+        }
+
+        try {
+            // Write to a temporary file first, so that concurrent readers never see a partial entry
+            var tempFile = Files.createTempFile(cacheDir.toPath(), key, ".tmp");
+            Files.writeString(tempFile, json.toString());
+            Files.move(tempFile, getEntryFile(key).toPath(), StandardCopyOption.REPLACE_EXISTING,
+                    StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            Diagnostics.info(() -> "Could not write cache entry '" + key + "': " + e);
+            return;
+        }
+
+        evict();
+    }
+
+    /**
+     * Deletes the least recently used entries until the cache fits its maximum size.
+     */
+    private void evict() {
+        synchronized (EVICTION_LOCK) {
+            var entries = cacheDir.listFiles((dir, name) -> name.endsWith(ENTRY_EXTENSION));
+            if (entries == null) {
+                return;
+            }
+
+            long totalBytes = Arrays.stream(entries).mapToLong(File::length).sum();
+            if (totalBytes <= maxBytes) {
+                return;
+            }
+
+            Arrays.sort(entries, Comparator.comparingLong(File::lastModified));
+            for (var entry : entries) {
+                if (totalBytes <= maxBytes) {
+                    break;
+                }
+
+                var entryBytes = entry.length();
+                if (entry.delete()) {
+                    totalBytes -= entryBytes;
+                }
+            }
+        }
+    }
+
+    private File getEntryFile(String key) {
+        return new File(cacheDir, key + ENTRY_EXTENSION);
+    }
+
+    /**
+     * The hash of the classes of the compiler, computed once: of the jar it runs from, or of every class file if it
+     * runs from a folder. Empty if the classes cannot be found, in which case only the format version tells builds
+     * apart.
+     */
+    private static final class Build {
+
+        private static final byte[] HASH = hashBuild();
+
+        private static byte[] hashBuild() {
+            try {
+                var codeSource = CompilationCache.class.getProtectionDomain().getCodeSource();
+                if (codeSource == null) {
+                    return new byte[0];
+                }
+
+                var location = new File(codeSource.getLocation().toURI());
+                var files = new ArrayList<>(location.isDirectory() ?
+                        SpecsIo.getFilesRecursive(location, "class") : List.of(location));
+                files.sort(Comparator.comparing(File::getPath));
+
+                var digest = MessageDigest.getInstance("SHA-256");
+                for (var file : files) {
+                    digest.update(file.getPath().getBytes(StandardCharsets.UTF_8));
+                    digest.update((byte) 0);
+                    digest.update(Files.readAllBytes(file.toPath()));
+                }
+
+                return digest.digest();
+            } catch (Exception e) {
+                return new byte[0];
+            }
+        }
+    }
+}
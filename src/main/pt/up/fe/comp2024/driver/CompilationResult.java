@@ -0,0 +1,158 @@
+package pt.up.fe.comp2024.driver;
+
+import pt.up.fe.comp.jmm.jasmin.JasminResult;
+import pt.up.fe.comp.jmm.ollir.OllirResult;
+import pt.up.fe.comp.jmm.report.Report;
+import pt.up.fe.comp2024.utils.ReportUtils;
+import pt.up.fe.comp2024.utils.StageProfiler;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * The outcome of compiling a single source file through the whole pipeline.
+ * <p>
+ * Results restored from a {@link CompilationCache} only have the generated code and the reports, there are no stage
+ * results.
+ */
+public class CompilationResult {
+
+    private final File inputFile;
+    private final List<Report> reports;
+    private OllirResult ollirResult;
+    private JasminResult jasminResult;
+    private String className;
+    private String ollirCode;
+    private String jasminCode;
+    private byte[] classFile;
+    private boolean cached;
+    private StageProfiler profile;
+
+    public CompilationResult(File inputFile) {
+        this.inputFile = inputFile;
+        this.reports = new ArrayList<>();
+        this.ollirResult = null;
+        this.jasminResult = null;
+        this.className = null;
+        this.ollirCode = null;
+        this.jasminCode = null;
+        this.classFile = null;
+        this.cached = false;
+        this.profile = null;
+    }
+
+    public File getInputFile() {
+        return inputFile;
+    }
+
+    public List<Report> getReports() {
+        return reports;
+    }
+
+    /**
+     * Replaces the current reports. Each stage result already includes the reports of the previous stages.
+     *
+     * @param reports
+     */
+    public void setReports(List<Report> reports) {
+        this.reports.clear();
+        this.reports.addAll(reports);
+    }
+
+    public void addReport(Report report) {
+        this.reports.add(report);
+    }
+
+    public OllirResult getOllirResult() {
+        return ollirResult;
+    }
+
+    public void setOllirResult(OllirResult ollirResult) {
+        this.ollirResult = ollirResult;
+        this.ollirCode = ollirResult.getOllirCode();
+    }
+
+    public JasminResult getJasminResult() {
+        return jasminResult;
+    }
+
+    public void setJasminResult(JasminResult jasminResult) {
+        this.jasminResult = jasminResult;
+        this.className = jasminResult.getClassName();
+        this.jasminCode = jasminResult.getJasminCode();
+    }
+
+    /**
+     * Sets the class file generated directly from the OLLIR, when the backend does not generate Jasmin ('-e=class').
+     *
+     * @param className
+     * @param classFile
+     */
+    public void setClassFile(String className, byte[] classFile) {
+        this.className = className;
+        this.classFile = classFile;
+    }
+
+    /**
+     * Sets the generated code of a compilation that was not executed, but restored from the cache.
+     *
+     * @param className
+     * @param ollirCode
+     * @param jasminCode the Jasmin code, or null if the compilation generated a class file
+     * @param classFile  the class file, or null if the compilation generated Jasmin code
+     */
+    public void setCachedCode(String className, String ollirCode, String jasminCode, byte[] classFile) {
+        setCode(className, ollirCode, jasminCode, classFile);
+        this.cached = true;
+    }
+
+    /**
+     * Sets the generated code of a compilation executed elsewhere, e.g., by a {@link CompilerDaemon}.
+     */
+    public void setCode(String className, String ollirCode, String jasminCode, byte[] classFile) {
+        this.className = className;
+        this.ollirCode = ollirCode;
+        this.jasminCode = jasminCode;
+        this.classFile = classFile;
+    }
+
+    public String getOllirCode() {
+        return ollirCode;
+    }
+
+    public String getJasminCode() {
+        return jasminCode;
+    }
+
+    public byte[] getClassFile() {
+        return classFile;
+    }
+
+    public String getClassName() {
+        return className;
+    }
+
+    public boolean isCached() {
+        return cached;
+    }
+
+    /**
+     * @return the time and allocations of each stage, if profiling was enabled
+     */
+    public Optional<StageProfiler> getProfile() {
+        return Optional.ofNullable(profile);
+    }
+
+    public void setProfile(StageProfiler profile) {
+        this.profile = profile;
+    }
+
+    /**
+     * @return true if Jasmin code or a class file was generated and there are no error reports
+     */
+    public boolean isSuccess() {
+        return (jasminCode != null || classFile != null) && !ReportUtils.anyError(reports);
+    }
+}
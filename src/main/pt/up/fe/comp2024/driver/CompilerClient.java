@@ -0,0 +1,103 @@
+package pt.up.fe.comp2024.driver;
+
+import com.google.gson.JsonObject;
+import pt.up.fe.comp2024.CompilerConfig;
+import pt.up.fe.comp2024.utils.ReportUtils;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.PrintStream;
+import java.net.InetAddress;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.Map;
+
+/**
+ * Thin command-line client of {@link CompilerDaemon}.
+ * <p>
+ * Accepts the same options as the Launcher, sends the compilation to a daemon running on this machine (port given by
+ * '-s=PORT', or the default port) and prints the reports and the generated Jasmin code. With '-e=class', the daemon
+ * writes the class file to the output folder ('-d'), or the client writes it to the current folder. Exits with 0 if
+ * the compilation succeeded, 1 otherwise.
+ */
+public class CompilerClient {
+
+    public static void main(String[] args) throws IOException {
+        var config = CompilerConfig.parseArgs(args);
+
+        System.exit(compile(config, System.out));
+    }
+
+    /**
+     * Sends a compilation to the daemon, and prints what it sent back.
+     *
+     * @param config
+     * @param out
+     * @return the exit status, 0 if the compilation succeeded, 1 otherwise
+     */
+    static int compile(Map<String, String> config, PrintStream out) throws IOException {
+        var port = CompilerConfig.getServerPort(config);
+
+        // The daemon runs in another folder, so every path is sent absolute
+        var inputFile = CompilerConfig.getInputFile(config).orElseThrow();
+        var request = DaemonProtocol.newRequest(CompilerConfig.forInput(config, inputFile));
+
+        String response;
+        try (var socket = new Socket(InetAddress.getLoopbackAddress(), port);
+             var in = new BufferedReader(new InputStreamReader(socket.getInputStream(), StandardCharsets.UTF_8));
+             var writer = new BufferedWriter(new OutputStreamWriter(socket.getOutputStream(),
+                     StandardCharsets.UTF_8))) {
+
+            writer.write(request);
+            writer.newLine();
+            writer.flush();
+
+            response = in.readLine();
+        }
+
+        if (response == null) {
+            throw new RuntimeException("Compiler daemon on port " + port + " closed the connection");
+        }
+
+        var json = DaemonProtocol.parseResponse(response);
+
+        for (var report : ReportUtils.fromJson(json.getAsJsonArray("reports"))) {
+            out.println(report);
+        }
+
+        var success = json.get("success").getAsBoolean();
+        if (success) {
+            var result = new CompilationResult(inputFile);
+            result.setCode(json.get("className").getAsString(), getString(json, "ollir"), getString(json, "jasmin"),
+                    getClassFile(json));
+
+            if (result.getJasminCode() != null) {
+                out.println(result.getJasminCode());
+            } else if (CompilerConfig.getOutputDir(config).isEmpty()) {
+                // With '-d' the daemon writes the class file, otherwise it goes to the current folder of the client
+                out.println("Wrote '" + JmmCompiler.writeOutput(result, new File(".")) + "'");
+            }
+        }
+
+        return success ? 0 : 1;
+    }
+
+    /**
+     * @return the value of a property of the response, or null if it is missing or null (e.g., "jasmin" with
+     * '-e=class')
+     */
+    private static String getString(JsonObject json, String property) {
+        var value = json.get(property);
+        return value == null || value.isJsonNull() ? null : value.getAsString();
+    }
+
+    private static byte[] getClassFile(JsonObject json) {
+        var classFile = getString(json, "classFile");
+        return classFile != null ? Base64.getDecoder().decode(classFile) : null;
+    }
+}
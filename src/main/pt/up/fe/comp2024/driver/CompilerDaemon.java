@@ -0,0 +1,114 @@
+package pt.up.fe.comp2024.driver;
+
+import pt.up.fe.comp.jmm.report.Report;
+import pt.up.fe.comp.jmm.report.Stage;
+import pt.up.fe.comp2024.CompilerConfig;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketException;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Long-lived compiler process that serves compile requests over a loopback socket.
+ * <p>
+ * Keeping the JVM alive means ANTLR, the parser ATN and the JIT-compiled pipeline stay warm between compilations.
+ * Each connection is served on its own thread and may send several requests, one per line (see
+ * {@link DaemonProtocol}).
+ */
+public class CompilerDaemon {
+
+    private final int port;
+    private final JmmCompiler compiler;
+    private final ExecutorService executor;
+
+    public CompilerDaemon(int port) {
+        this.port = port;
+        this.compiler = new JmmCompiler();
+        this.executor = Executors.newCachedThreadPool();
+    }
+
+    /**
+     * Accepts connections until the process is terminated.
+     */
+    public void serve() throws IOException {
+        try (var server = new ServerSocket(port, 50, InetAddress.getLoopbackAddress())) {
+            System.out.println("Compiler daemon listening on " + server.getLocalSocketAddress());
+            serve(server);
+        }
+    }
+
+    /**
+     * Accepts connections on the given socket until it is closed.
+     *
+     * @param server
+     */
+    void serve(ServerSocket server) throws IOException {
+        try {
+            while (!server.isClosed()) {
+                Socket socket;
+                try {
+                    socket = server.accept();
+                } catch (SocketException e) {
+                    if (server.isClosed()) {
+                        return;
+                    }
+                    throw e;
+                }
+
+                executor.execute(() -> serve(socket));
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private void serve(Socket socket) {
+        try (socket;
+             var in = new BufferedReader(new InputStreamReader(socket.getInputStream(), StandardCharsets.UTF_8));
+             var out = new BufferedWriter(new OutputStreamWriter(socket.getOutputStream(), StandardCharsets.UTF_8))) {
+
+            String request;
+            while ((request = in.readLine()) != null) {
+                if (request.isBlank()) {
+                    continue;
+                }
+
+                out.write(DaemonProtocol.newResponse(compile(request)));
+                out.newLine();
+                out.flush();
+            }
+        } catch (IOException e) {
+            System.out.println("Connection to compiler daemon closed: " + e.getMessage());
+        }
+    }
+
+    private CompilationResult compile(String request) {
+        try {
+            var config = DaemonProtocol.parseRequest(request);
+            var inputFile = CompilerConfig.getInputFile(config)
+                    .orElseThrow(() -> new RuntimeException("Compile request without input file"));
+
+            var result = compiler.compile(inputFile, config);
+
+            if (result.isSuccess()) {
+                CompilerConfig.getOutputDir(config).ifPresent(outputDir -> JmmCompiler.writeOutput(result, outputDir));
+            }
+
+            return result;
+        } catch (Exception e) {
+            var result = new CompilationResult(null);
+            result.addReport(Report.newError(Stage.OTHER, -1, -1, "Invalid compile request: " + e.getMessage(), e));
+            return result;
+        }
+    }
+}
@@ -0,0 +1,59 @@
+package pt.up.fe.comp2024.driver;
+
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import pt.up.fe.comp2024.utils.ReportUtils;
+
+import java.util.Base64;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Messages exchanged between {@link CompilerClient} and {@link CompilerDaemon}.
+ * <p>
+ * Each message is a JSON object in a single line. A request carries the configuration of the compilation, including
+ * the absolute path of the input file: {"config": {"input": "/path/A.jmm", "optimize": "false", ...}}. The response
+ * carries the reports and, when compilation succeeds, the generated code: {"success": true, "className": "A",
+ * "reports": [...], "ollir": "...", "jasmin": "..."}. With '-e=class', "jasmin" is replaced by "classFile", in Base64.
+ */
+public class DaemonProtocol {
+
+    public static String newRequest(Map<String, String> config) {
+        var configJson = new JsonObject();
+        config.forEach(configJson::addProperty);
+
+        var request = new JsonObject();
+        request.add("config", configJson);
+
+        return request.toString();
+    }
+
+    public static Map<String, String> parseRequest(String request) {
+        var json = JsonParser.parseString(request).getAsJsonObject();
+
+        var config = new HashMap<String, String>();
+        for (var entry : json.getAsJsonObject("config").entrySet()) {
+            config.put(entry.getKey(), entry.getValue().getAsString());
+        }
+
+        return config;
+    }
+
+    public static String newResponse(CompilationResult result) {
+        var response = new JsonObject();
+        response.addProperty("success", result.isSuccess());
+        response.addProperty("className", result.getClassName());
+        response.add("reports", ReportUtils.toJson(result.getReports()));
+        response.addProperty("ollir", result.getOllirCode());
+        response.addProperty("jasmin", result.getJasminCode());
+        if (result.getClassFile() != null) {
+            response.addProperty("classFile", Base64.getEncoder().encodeToString(result.getClassFile()));
+        }
+
+        return response.toString();
+    }
+
+    public static JsonObject parseResponse(String response) {
+        return JsonParser.parseString(response).getAsJsonObject();
+    }
+}
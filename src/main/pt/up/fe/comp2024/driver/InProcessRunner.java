@@ -0,0 +1,290 @@
+package pt.up.fe.comp2024.driver;
+
+import jasmin.ClassFile;
+import pt.up.fe.specs.util.SpecsIo;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.io.StringReader;
+import java.io.UncheckedIOException;
+import java.lang.reflect.InvocationTargetException;
+import java.net.URISyntaxException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+/**
+ * Runs a compiled program in the compiler JVM, instead of assembling it to disk and starting a new JVM.
+ * <p>
+ * The runtime classes of 'libs-jmm' are read once, and each run defines them again, together with the generated
+ * class, in a new class loader, so static state does not leak from one run to the next. The references of these
+ * classes to System are pointed to {@link ProgramSystem}, which the loader also defines again, so each program prints
+ * to its own output, and a call to System.exit stops the program instead of the compiler. The standard streams of the
+ * compiler are not touched, so programs can run at the same time as each other and as the compiler prints.
+ */
+public class InProcessRunner {
+
+    private static final String RUNTIME_PATH = "libs-jmm/compiled";
+
+    public static final File DEFAULT_RUNTIME_DIR = findRuntimeDir();
+
+    private static final String SYSTEM_CLASS = "java/lang/System";
+    private static final String PROGRAM_SYSTEM_CLASS = ProgramSystem.class.getName().replace('.', '/');
+
+    private static final byte[] PROGRAM_SYSTEM = readClass(ProgramSystem.class);
+
+    private final Map<String, byte[]> runtimeClasses;
+
+    /**
+     * The runtime classes of the installation: the first 'libs-jmm/compiled' found from the folder (or jar) of the
+     * compiler classes upwards, or else the one in the working directory.
+     */
+    private static File findRuntimeDir() {
+        try {
+            var codeSource = InProcessRunner.class.getProtectionDomain().getCodeSource();
+            if (codeSource != null) {
+                var location = new File(codeSource.getLocation().toURI()).getAbsoluteFile();
+                for (var dir = location; dir != null; dir = dir.getParentFile()) {
+                    var runtimeDir = new File(dir, RUNTIME_PATH);
+                    if (runtimeDir.isDirectory()) {
+                        return runtimeDir;
+                    }
+                }
+            }
+        } catch (URISyntaxException | IllegalArgumentException | SecurityException e) {
+            // Not in a folder or a local jar
+        }
+
+        return new File(RUNTIME_PATH).getAbsoluteFile();
+    }
+
+    public InProcessRunner() {
+        this(DEFAULT_RUNTIME_DIR);
+    }
+
+    /**
+     * @param runtimeDir folder with the compiled classes the programs can import, in their package folders
+     */
+    public InProcessRunner(File runtimeDir) {
+        this.runtimeClasses = new HashMap<>();
+
+        if (runtimeDir.isDirectory()) {
+            for (var classFile : SpecsIo.getFilesRecursive(runtimeDir, "class")) {
+                var path = SpecsIo.getRelativePath(classFile, runtimeDir).replace('\\', '/');
+                var className = path.substring(0, path.length() - ".class".length()).replace('/', '.');
+                runtimeClasses.put(className, redirectSystem(SpecsIo.readAsBytes(classFile)));
+            }
+        }
+    }
+
+    /**
+     * What the program printed, and the exception that stopped it, if any. A program that called System.exit with a
+     * status other than 0 stops with a {@link ProgramExit}.
+     */
+    public record ProgramOutput(String output, Throwable exception) {
+
+        public Optional<Throwable> getException() {
+            return Optional.ofNullable(exception);
+        }
+
+        public boolean isSuccess() {
+            return exception == null;
+        }
+    }
+
+    /**
+     * Thrown in the program when it calls System.exit. An error, so that the program does not catch it like an
+     * exception.
+     */
+    public static class ProgramExit extends Error {
+
+        private final int status;
+
+        /**
+         * Public for {@link ProgramSystem}, which each run defines in another package.
+         */
+        public ProgramExit(int status) {
+            super("Program called System.exit(" + status + ")");
+            this.status = status;
+        }
+
+        public int getStatus() {
+            return status;
+        }
+    }
+
+    private static class MemoryClassLoader extends ClassLoader {
+
+        private final Map<String, byte[]> classes;
+
+        private MemoryClassLoader(Map<String, byte[]> classes) {
+            // Only the platform classes are shared with the compiler
+            super(ClassLoader.getPlatformClassLoader());
+            this.classes = classes;
+        }
+
+        @Override
+        protected Class<?> findClass(String name) throws ClassNotFoundException {
+            // Shared with the compiler, so that it can tell that the program exited
+            if (name.equals(ProgramExit.class.getName())) {
+                return ProgramExit.class;
+            }
+
+            var bytes = classes.get(name);
+            if (bytes == null) {
+                throw new ClassNotFoundException(name);
+            }
+
+            return defineClass(name, bytes, 0, bytes.length);
+        }
+    }
+
+    /**
+     * Runs the main method of a successful compilation. Jasmin code is assembled in memory.
+     *
+     * @param result
+     * @param args
+     * @return
+     */
+    public ProgramOutput run(CompilationResult result, List<String> args) {
+        var classFile = result.getClassFile() != null ?
+                result.getClassFile() :
+                assemble(result.getClassName(), result.getJasminCode());
+
+        return run(result.getClassName(), classFile, args);
+    }
+
+    public ProgramOutput run(String className, byte[] classFile, List<String> args) {
+        var classes = new HashMap<>(runtimeClasses);
+        classes.put(className, redirectSystem(classFile));
+        classes.put(ProgramSystem.class.getName(), PROGRAM_SYSTEM);
+        var classLoader = new MemoryClassLoader(classes);
+
+        var output = new ByteArrayOutputStream();
+        var out = new PrintStream(output, true, StandardCharsets.UTF_8);
+        Throwable exception = null;
+
+        try {
+            // The output of this program only
+            classLoader.loadClass(ProgramSystem.class.getName()).getField("out").set(null, out);
+
+            var main = classLoader.loadClass(className).getMethod("main", String[].class);
+            // Generated classes are not always public, the java launcher does not require it either
+            main.setAccessible(true);
+            main.invoke(null, (Object) args.toArray(String[]::new));
+        } catch (InvocationTargetException e) {
+            exception = e.getCause();
+        } catch (ReflectiveOperationException | LinkageError e) {
+            exception = e;
+        } finally {
+            out.flush();
+        }
+
+        // Like the java launcher, exiting with 0 is a success
+        if (exception instanceof ProgramExit exit && exit.getStatus() == 0) {
+            exception = null;
+        }
+
+        return new ProgramOutput(output.toString(StandardCharsets.UTF_8), exception);
+    }
+
+    private static byte[] assemble(String className, String jasminCode) {
+        var classFile = new ClassFile();
+
+        try {
+            classFile.readJasmin(new StringReader(jasminCode), className, false);
+            if (classFile.errorCount() > 0) {
+                throw new RuntimeException(classFile.errorCount() + " errors while assembling the Jasmin code");
+            }
+
+            var bytes = new ByteArrayOutputStream();
+            classFile.write(bytes);
+
+            return bytes.toByteArray();
+        } catch (Exception e) {
+            throw new RuntimeException("Could not assemble the Jasmin code of class '" + className + "'", e);
+        }
+    }
+
+    private static byte[] readClass(Class<?> aClass) {
+        var name = aClass.getSimpleName() + ".class";
+        try (var in = aClass.getResourceAsStream(name)) {
+            if (in == null) {
+                throw new IllegalStateException("Could not find class file '" + name + "'");
+            }
+
+            return in.readAllBytes();
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not read class file '" + name + "'", e);
+        }
+    }
+
+    /**
+     * Points the references of a class to System to {@link ProgramSystem} instead.
+     * <p>
+     * Only the constant pool changes: a new name is added at its end, and the class constants of System take it.
+     * Everything else, including the other uses of the old name, stays at the same indexes.
+     *
+     * @param classFile
+     * @return the changed class file, or the same if it does not refer to System
+     */
+    static byte[] redirectSystem(byte[] classFile) {
+        var buffer = ByteBuffer.wrap(classFile);
+        // magic, minor_version, major_version
+        buffer.position(8);
+        var count = buffer.getShort() & 0xFFFF;
+
+        var names = new HashMap<Integer, String>();
+        var classConstants = new HashMap<Integer, Integer>();
+
+        for (int index = 1; index < count; index++) {
+            var tag = buffer.get();
+            switch (tag) {
+                case 1 -> {
+                    var length = buffer.getShort() & 0xFFFF;
+                    var bytes = new byte[length];
+                    buffer.get(bytes);
+                    // Modified UTF-8, the same as UTF-8 for the name of System
+                    names.put(index, new String(bytes, StandardCharsets.UTF_8));
+                }
+                case 7 -> classConstants.put(buffer.position(), buffer.getShort() & 0xFFFF);
+                case 8, 16, 19, 20 -> buffer.position(buffer.position() + 2);
+                case 15 -> buffer.position(buffer.position() + 3);
+                case 3, 4, 9, 10, 11, 12, 17, 18 -> buffer.position(buffer.position() + 4);
+                case 5, 6 -> {
+                    buffer.position(buffer.position() + 8);
+                    // Takes two entries
+                    index++;
+                }
+                default -> throw new IllegalArgumentException("Unknown constant pool tag " + tag);
+            }
+        }
+
+        var poolEnd = buffer.position();
+        var systemConstants = classConstants.entrySet().stream()
+                .filter(constant -> SYSTEM_CLASS.equals(names.get(constant.getValue())))
+                .map(Map.Entry::getKey)
+                .toList();
+        if (systemConstants.isEmpty()) {
+            return classFile;
+        }
+
+        var newName = PROGRAM_SYSTEM_CLASS.getBytes(StandardCharsets.UTF_8);
+        var changed = ByteBuffer.allocate(classFile.length + 3 + newName.length);
+        changed.put(classFile, 0, poolEnd);
+        changed.put((byte) 1).putShort((short) newName.length).put(newName);
+        changed.put(classFile, poolEnd, classFile.length - poolEnd);
+
+        changed.putShort(8, (short) (count + 1));
+        for (var position : systemConstants) {
+            changed.putShort(position, (short) count);
+        }
+
+        return changed.array();
+    }
+}
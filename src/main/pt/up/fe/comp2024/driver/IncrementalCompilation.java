@@ -0,0 +1,160 @@
+package pt.up.fe.comp2024.driver;
+
+import pt.up.fe.comp.jmm.ast.JmmNode;
+import pt.up.fe.comp.jmm.report.Report;
+import pt.up.fe.comp.jmm.report.Stage;
+import pt.up.fe.comp2024.analysis.IncrementalAnalysis;
+import pt.up.fe.comp2024.ast.Kind;
+import pt.up.fe.comp2024.parser.IncrementalJmmParser;
+import pt.up.fe.comp2024.utils.ReportUtils;
+import pt.up.fe.comp2024.utils.StageProfiler;
+
+import java.io.File;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Compiles the successive versions of a source file, reusing what the previous version left for the methods that did
+ * not change.
+ * <p>
+ * The code is parsed with {@link IncrementalJmmParser}, so an edit inside a method only replaces that method in the
+ * previous tree, and analysed with {@link IncrementalAnalysis}, which only analyses the methods that changed while the
+ * declarations of the class stay the same. The OLLIR and Jasmin code of the methods whose analysis was reused is
+ * reused too; the other methods are generated again.
+ * <p>
+ * A compilation that throws, including errors such as a stack overflow, is reported like a failed compilation, and the
+ * next version is compiled from scratch. Not thread-safe, each file being watched has its own instance.
+ */
+public class IncrementalCompilation {
+
+    private final File inputFile;
+    private final Map<String, String> config;
+    private final JmmCompiler compiler;
+    private IncrementalJmmParser parser;
+    private IncrementalAnalysis analysis;
+
+    // The code of the methods generated before, reusable while their analysis is
+    private final Map<JmmNode, String> ollirMethods;
+    private final Map<String, String> jasminMethods;
+
+    private int reusedMethods;
+
+    public IncrementalCompilation(File inputFile, Map<String, String> config) {
+        this.inputFile = inputFile;
+        this.config = config;
+        this.compiler = new JmmCompiler();
+        this.parser = new IncrementalJmmParser(config);
+        this.analysis = new IncrementalAnalysis();
+        this.ollirMethods = new IdentityHashMap<>();
+        this.jasminMethods = new HashMap<>();
+        this.reusedMethods = 0;
+    }
+
+    public File getInputFile() {
+        return inputFile;
+    }
+
+    /**
+     * @return the code of the last version, or null if none was compiled yet
+     */
+    public String getCode() {
+        return parser.getCode();
+    }
+
+    /**
+     * @return how many methods of the last compilation were not analysed or generated again
+     */
+    public int getReusedMethods() {
+        return reusedMethods;
+    }
+
+    /**
+     * Compiles a new version of the file.
+     *
+     * @param code
+     * @return
+     */
+    public CompilationResult compile(String code) {
+        var result = new CompilationResult(inputFile);
+        reusedMethods = 0;
+
+        try {
+            var parsed = StageProfiler.measure("parser", () -> parser.update(code));
+            result.setReports(parsed.getReports());
+            if (parsed.getRootNode() == null || ReportUtils.anyError(parsed.getReports())) {
+                return result;
+            }
+
+            var semanticsResult = StageProfiler.measure("analysis", () -> analysis.analyze(parsed));
+            result.setReports(semanticsResult.getReports());
+            retainMethods(analysis.getReusedMethods());
+            if (ReportUtils.anyError(semanticsResult.getReports())) {
+                return result;
+            }
+
+            var ollirResult = compiler.toOllir(result, semanticsResult, ollirMethods);
+            if (ollirResult == null) {
+                return result;
+            }
+
+            compiler.generate(result, ollirResult, jasminMethods);
+
+            return result;
+        } catch (Throwable e) {
+            // What the previous versions left may be half updated
+            reset();
+
+            // Reports only keep exceptions
+            var exception = e instanceof Exception ? (Exception) e : new RuntimeException(e);
+            result.addReport(Report.newError(Stage.OTHER, -1, -1, "Exception while compiling '" + inputFile + "'",
+                    exception));
+            return result;
+        }
+    }
+
+    /**
+     * Forgets the previous versions, the next one is compiled from scratch.
+     */
+    private void reset() {
+        parser = new IncrementalJmmParser(config);
+        analysis = new IncrementalAnalysis();
+        ollirMethods.clear();
+        jasminMethods.clear();
+        reusedMethods = 0;
+    }
+
+    /**
+     * Forgets the code of the methods that are not in the tree anymore, and of the ones analysed again.
+     */
+    private void retainMethods(List<JmmNode> reused) {
+        var kept = new IdentityHashMap<JmmNode, String>();
+        var keptNames = new HashMap<String, String>();
+
+        for (var method : reused) {
+            var ollirCode = ollirMethods.get(method);
+            if (ollirCode == null) {
+                continue;
+            }
+
+            kept.put(method, ollirCode);
+
+            var name = getMethodName(method);
+            if (jasminMethods.containsKey(name)) {
+                keptNames.put(name, jasminMethods.get(name));
+            }
+        }
+
+        ollirMethods.clear();
+        ollirMethods.putAll(kept);
+        jasminMethods.clear();
+        jasminMethods.putAll(keptNames);
+
+        reusedMethods = kept.size();
+    }
+
+    private static String getMethodName(JmmNode method) {
+        return Kind.ofOrNull(method) == Kind.MAIN_METHOD_DECLARATION ? "main" : method.get("name");
+    }
+}
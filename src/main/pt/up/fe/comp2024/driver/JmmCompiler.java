@@ -0,0 +1,251 @@
+package pt.up.fe.comp2024.driver;
+
+import pt.up.fe.comp.jmm.analysis.JmmSemanticsResult;
+import pt.up.fe.comp.jmm.ast.JmmNode;
+import pt.up.fe.comp.jmm.ollir.OllirResult;
+import pt.up.fe.comp.jmm.parser.JmmParserResult;
+import pt.up.fe.comp.jmm.report.Report;
+import pt.up.fe.comp.jmm.report.Stage;
+import pt.up.fe.comp2024.CompilerConfig;
+import pt.up.fe.comp2024.analysis.JmmAnalysisImpl;
+import pt.up.fe.comp2024.ast.CompactAst;
+import pt.up.fe.comp2024.backend.ClassFileGenerator;
+import pt.up.fe.comp2024.backend.JasminBackendImpl;
+import pt.up.fe.comp2024.optimization.JmmOptimizationImpl;
+import pt.up.fe.comp2024.parser.MappedSource;
+import pt.up.fe.comp2024.parser.ParserPool;
+import pt.up.fe.comp2024.utils.Diagnostics;
+import pt.up.fe.comp2024.utils.ReportUtils;
+import pt.up.fe.comp2024.utils.StageProfiler;
+import pt.up.fe.specs.util.SpecsIo;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.Map;
+
+/**
+ * Runs the whole pipeline (parser, semantic analysis, OLLIR generation and Jasmin backend) over a single source.
+ * <p>
+ * Instead of throwing on the first error, stops at the first stage that reports errors and returns every report
+ * collected so far. The stages are created anew for each compilation (analysis passes keep state between visits),
+ * so one instance can be shared by several threads.
+ */
+public class JmmCompiler {
+
+    /**
+     * Compiles the given file. If the config enables the compilation cache ('-c'), a previous compilation of the same
+     * source with the same options is reused, and successful compilations are stored. If profiling is enabled ('-p'),
+     * the result has the time and allocations of each stage.
+     *
+     * @param inputFile
+     * @param config
+     * @return
+     */
+    public CompilationResult compile(File inputFile, Map<String, String> config) {
+        if (!CompilerConfig.isProfile(config)) {
+            return compileFile(inputFile, config);
+        }
+
+        var profiler = new StageProfiler();
+        profiler.activate();
+        try {
+            var result = compileFile(inputFile, config);
+            result.setProfile(profiler);
+            return result;
+        } finally {
+            profiler.deactivate();
+        }
+    }
+
+    private CompilationResult compileFile(File inputFile, Map<String, String> config) {
+        var result = new CompilationResult(inputFile);
+
+        try {
+            var code = readSource(inputFile, config);
+
+            var cache = CompilationCache.fromConfig(config);
+            if (cache.isEmpty()) {
+                return compile(result, code, config);
+            }
+
+            var key = cache.get().getKey(code, config);
+            var cached = StageProfiler.measure("cache", () -> cache.get().get(inputFile, key));
+            if (cached.isPresent()) {
+                return cached.get();
+            }
+
+            compile(result, code, config);
+            cache.get().put(key, result);
+
+            return result;
+        } catch (Exception e) {
+            result.addReport(Report.newError(Stage.OTHER, -1, -1, "Exception while compiling '" + inputFile + "'", e));
+            return result;
+        }
+    }
+
+    /**
+     * Reads the code of the given file, through a memory mapping if '-m' is given.
+     *
+     * @param inputFile
+     * @param config
+     * @return
+     */
+    static CharSequence readSource(File inputFile, Map<String, String> config) {
+        if (CompilerConfig.isMapInput(config)) {
+            return MappedSource.map(inputFile);
+        }
+
+        return SpecsIo.read(inputFile);
+    }
+
+    private CompilationResult compile(CompilationResult result, CharSequence code, Map<String, String> config) {
+        var parserResult = parse(result, code, config);
+        if (parserResult == null) {
+            return result;
+        }
+
+        var semanticsResult = analyse(result, parserResult);
+        if (semanticsResult == null) {
+            return result;
+        }
+
+        var ollirResult = toOllir(result, semanticsResult);
+        if (ollirResult == null) {
+            return result;
+        }
+
+        generate(result, ollirResult);
+
+        return result;
+    }
+
+    // Each stage result includes the reports of the previous stages, so every stage replaces the reports of the result.
+    // The stages return null if the compilation must stop.
+
+    /**
+     * Parsing stage.
+     */
+    JmmParserResult parse(CompilationResult result, CharSequence code, Map<String, String> config) {
+        var parser = ParserPool.forConfig(config);
+
+        var parsed = StageProfiler.measure("parser", () -> parser.parse(code, config));
+        result.setReports(parsed.getReports());
+        if (parsed.getRootNode() == null || ReportUtils.anyError(parsed.getReports())) {
+            return null;
+        }
+
+        var parserResult = CompilerConfig.isCompactAst(config) ?
+                new JmmParserResult(CompactAst.convert(parsed.getRootNode()), parsed.getReports(), config) :
+                parsed;
+
+        // Print AST
+        Diagnostics.debug(() -> parserResult.getRootNode().toTree());
+
+        return parserResult;
+    }
+
+    /**
+     * Semantic Analysis stage.
+     */
+    JmmSemanticsResult analyse(CompilationResult result, JmmParserResult parserResult) {
+        var analysis = new JmmAnalysisImpl();
+
+        var semanticsResult = StageProfiler.measure("analysis", () -> analysis.semanticAnalysis(parserResult));
+        result.setReports(semanticsResult.getReports());
+        if (ReportUtils.anyError(semanticsResult.getReports())) {
+            return null;
+        }
+
+        return semanticsResult;
+    }
+
+    /**
+     * Optimization stage, including the generation of OLLIR.
+     */
+    OllirResult toOllir(CompilationResult result, JmmSemanticsResult semanticsResult) {
+        return toOllir(result, semanticsResult, new IdentityHashMap<>());
+    }
+
+    /**
+     * Optimization stage, reusing the OLLIR code of the methods in the given map and adding the others to it.
+     */
+    OllirResult toOllir(CompilationResult result, JmmSemanticsResult semanticsResult,
+                        Map<JmmNode, String> methodCode) {
+        var optimization = new JmmOptimizationImpl();
+
+        var optimizedSemantics = StageProfiler.measure("optimizeAst", () -> optimization.optimize(semanticsResult));
+        var unoptimizedOllir = StageProfiler.measure("ollir",
+                () -> optimization.toOllir(optimizedSemantics, methodCode));
+        var ollirResult = StageProfiler.measure("optimizeOllir", () -> optimization.optimize(unoptimizedOllir));
+        result.setReports(ollirResult.getReports());
+        result.setOllirResult(ollirResult);
+        if (ReportUtils.anyError(ollirResult.getReports())) {
+            return null;
+        }
+
+        return ollirResult;
+    }
+
+    /**
+     * Code generation stage, generates Jasmin code or, with '-e=class', the class file directly.
+     */
+    void generate(CompilationResult result, OllirResult ollirResult) {
+        generate(result, ollirResult, new HashMap<>());
+    }
+
+    /**
+     * Code generation stage, reusing the Jasmin code of the methods in the given map and adding the others to it. The
+     * class file, with '-e=class', is always generated whole.
+     */
+    void generate(CompilationResult result, OllirResult ollirResult, Map<String, String> methodCode) {
+        if (CompilerConfig.isEmitClass(ollirResult.getConfig())) {
+            var generator = new ClassFileGenerator(ollirResult);
+
+            var classFile = StageProfiler.measure("classFile", generator::build);
+            var reports = new ArrayList<>(ollirResult.getReports());
+            reports.addAll(generator.getReports());
+            result.setReports(reports);
+            result.setClassFile(generator.getClassName(), classFile);
+            return;
+        }
+
+        var backend = new JasminBackendImpl();
+
+        var jasminResult = StageProfiler.measure("jasmin", () -> backend.toJasmin(ollirResult, methodCode));
+        result.setReports(jasminResult.getReports());
+        result.setJasminResult(jasminResult);
+    }
+
+    /**
+     * Writes the generated code of a successful compilation to the output folder, as 'ClassName.j' or, if the class
+     * file was generated directly, as 'ClassName.class'.
+     *
+     * @param result
+     * @param outputDir
+     * @return the written file
+     */
+    public static File writeOutput(CompilationResult result, File outputDir) {
+        var dir = SpecsIo.mkdir(outputDir);
+
+        if (result.getClassFile() != null) {
+            var classFile = new File(dir, result.getClassName() + ".class");
+            try {
+                Files.write(classFile.toPath(), result.getClassFile());
+            } catch (IOException e) {
+                throw new UncheckedIOException("Could not write '" + classFile + "'", e);
+            }
+            return classFile;
+        }
+
+        var jasminFile = new File(dir, result.getClassName() + ".j");
+        SpecsIo.write(jasminFile, result.getJasminCode());
+
+        return jasminFile;
+    }
+}
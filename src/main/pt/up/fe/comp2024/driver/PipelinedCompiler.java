@@ -0,0 +1,302 @@
+package pt.up.fe.comp2024.driver;
+
+import pt.up.fe.comp.jmm.analysis.JmmSemanticsResult;
+import pt.up.fe.comp.jmm.ollir.OllirResult;
+import pt.up.fe.comp.jmm.parser.JmmParserResult;
+import pt.up.fe.comp.jmm.report.Report;
+import pt.up.fe.comp.jmm.report.Stage;
+import pt.up.fe.comp2024.CompilerConfig;
+import pt.up.fe.comp2024.utils.StageProfiler;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Compiles several sources as a pipeline, where the parser, the semantic analysis, the OLLIR generation and the
+ * Jasmin backend of different files run at the same time.
+ * <p>
+ * The stages are connected by bounded queues, so a stage that falls behind makes the previous ones wait instead of
+ * accumulating intermediate results in memory. Each stage has its own workers, so a slow stage (usually the backend)
+ * can be given more threads. Results are returned in the same order as the input files.
+ */
+public class PipelinedCompiler {
+
+    private static final int DEFAULT_QUEUE_CAPACITY = 4;
+
+    // Marks the end of the input, each worker of a stage consumes one
+    private static final Job END = new Job(-1, null, null);
+
+    private final Map<String, String> config;
+    private final JmmCompiler compiler;
+    private final int queueCapacity;
+    private final int[] workers;
+
+    public PipelinedCompiler(Map<String, String> config) {
+        this(config, DEFAULT_QUEUE_CAPACITY, getDefaultWorkers());
+    }
+
+    /**
+     * @param config
+     * @param queueCapacity how many files can wait between two stages
+     * @param workers       the number of threads of the parser, analysis, OLLIR and Jasmin stages, in this order
+     */
+    public PipelinedCompiler(Map<String, String> config, int queueCapacity, int[] workers) {
+        this(config, queueCapacity, workers, new JmmCompiler());
+    }
+
+    /**
+     * @param compiler runs the stages of each file
+     */
+    PipelinedCompiler(Map<String, String> config, int queueCapacity, int[] workers, JmmCompiler compiler) {
+        if (workers.length != JobStage.values().length) {
+            throw new RuntimeException("Expected the number of workers of " + JobStage.values().length
+                    + " stages, got " + workers.length);
+        }
+
+        this.config = config;
+        this.compiler = compiler;
+        this.queueCapacity = queueCapacity;
+        this.workers = workers.clone();
+    }
+
+    /**
+     * One thread for each of the first stages, and the remaining cores for the backend.
+     */
+    private static int[] getDefaultWorkers() {
+        var stages = JobStage.values().length;
+        var workers = new int[stages];
+        Arrays.fill(workers, 1);
+        workers[stages - 1] = Math.max(1, Runtime.getRuntime().availableProcessors() - (stages - 1));
+
+        return workers;
+    }
+
+    /**
+     * A file moving through the pipeline. Once a stage fails, the remaining stages let it pass.
+     */
+    private static class Job {
+        private final int index;
+        private final File inputFile;
+        private final CompilationResult result;
+        private Map<String, String> config;
+        private StageProfiler profiler;
+        private String cacheKey;
+        private JmmParserResult parserResult;
+        private JmmSemanticsResult semanticsResult;
+        private OllirResult ollirResult;
+        private boolean done;
+
+        private Job(int index, File inputFile, CompilationResult result) {
+            this.index = index;
+            this.inputFile = inputFile;
+            this.result = result;
+            this.done = false;
+        }
+    }
+
+    private enum JobStage {
+        PARSER,
+        ANALYSIS,
+        OLLIR,
+        JASMIN
+    }
+
+    public List<CompilationResult> compile(List<File> inputFiles) {
+        var stages = JobStage.values();
+
+        var queues = new ArrayList<BlockingQueue<Job>>();
+        for (int i = 0; i < stages.length; i++) {
+            queues.add(new ArrayBlockingQueue<>(queueCapacity));
+        }
+
+        var results = new CompilationResult[inputFiles.size()];
+        var totalWorkers = Arrays.stream(workers).sum();
+        var pool = Executors.newFixedThreadPool(totalWorkers);
+
+        try {
+            for (var stage : stages) {
+                var remaining = new AtomicInteger(workers[stage.ordinal()]);
+                var input = queues.get(stage.ordinal());
+                var output = stage.ordinal() + 1 < stages.length ? queues.get(stage.ordinal() + 1) : null;
+                var nextWorkers = output != null ? workers[stage.ordinal() + 1] : 0;
+
+                for (int i = 0; i < workers[stage.ordinal()]; i++) {
+                    pool.execute(() -> runWorker(stage, input, output, nextWorkers, remaining, results));
+                }
+            }
+
+            // The calling thread feeds the first stage, and waits when the parser falls behind
+            var first = queues.get(0);
+            for (int i = 0; i < inputFiles.size(); i++) {
+                var inputFile = inputFiles.get(i);
+                first.put(new Job(i, inputFile, new CompilationResult(inputFile)));
+            }
+            for (int i = 0; i < workers[0]; i++) {
+                first.put(END);
+            }
+
+            pool.shutdown();
+            pool.awaitTermination(Long.MAX_VALUE, TimeUnit.NANOSECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            pool.shutdownNow();
+        }
+
+        // Files that did not reach the end of the pipeline
+        for (int i = 0; i < results.length; i++) {
+            if (results[i] == null) {
+                results[i] = new CompilationResult(inputFiles.get(i));
+                results[i].addReport(Report.newError(Stage.OTHER, -1, -1,
+                        "Compilation of '" + inputFiles.get(i) + "' did not finish", null));
+            }
+        }
+
+        return Arrays.asList(results);
+    }
+
+    private void runWorker(JobStage stage, BlockingQueue<Job> input, BlockingQueue<Job> output, int nextWorkers,
+                           AtomicInteger remaining, CompilationResult[] results) {
+        try {
+            while (true) {
+                var job = input.take();
+
+                if (job == END) {
+                    return;
+                }
+
+                process(stage, job);
+
+                if (output != null) {
+                    output.put(job);
+                } else {
+                    finish(job);
+                    results[job.index] = job.result;
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            // The last worker of the stage to finish ends the next stage, even if this one stopped early, so that the
+            // pipeline always terminates
+            if (remaining.decrementAndGet() == 0 && output != null) {
+                endStage(output, nextWorkers);
+            }
+        }
+    }
+
+    private static void endStage(BlockingQueue<Job> queue, int workers) {
+        try {
+            for (int i = 0; i < workers; i++) {
+                queue.put(END);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void process(JobStage stage, Job job) {
+        if (job.done) {
+            return;
+        }
+
+        if (job.profiler != null) {
+            job.profiler.activate();
+        }
+
+        try {
+            switch (stage) {
+                case PARSER -> parse(job);
+                case ANALYSIS -> analyse(job);
+                case OLLIR -> toOllir(job);
+                case JASMIN -> toJasmin(job);
+            }
+        } catch (Throwable e) {
+            // Also errors, e.g., a stack overflow on a deeply nested file, which must not stop the worker
+            fail(job, "Exception while compiling '" + job.inputFile + "'", e);
+        } finally {
+            if (job.profiler != null) {
+                job.profiler.deactivate();
+            }
+        }
+    }
+
+    private void parse(Job job) {
+        job.config = CompilerConfig.forInput(config, job.inputFile);
+        if (CompilerConfig.isProfile(job.config)) {
+            job.profiler = new StageProfiler();
+            job.result.setProfile(job.profiler);
+            job.profiler.activate();
+        }
+
+        var code = JmmCompiler.readSource(job.inputFile, job.config);
+
+        var cache = CompilationCache.fromConfig(job.config);
+        if (cache.isPresent()) {
+            job.cacheKey = cache.get().getKey(code, job.config);
+            var cached = StageProfiler.measure("cache", () -> cache.get().get(job.inputFile, job.cacheKey));
+            if (cached.isPresent()) {
+                var result = cached.get();
+                job.result.setReports(result.getReports());
+                job.result.setCachedCode(result.getClassName(), result.getOllirCode(), result.getJasminCode(),
+                        result.getClassFile());
+                job.done = true;
+                return;
+            }
+        }
+
+        job.parserResult = compiler.parse(job.result, code, job.config);
+        job.done = job.parserResult == null;
+    }
+
+    private void analyse(Job job) {
+        job.semanticsResult = compiler.analyse(job.result, job.parserResult);
+        job.parserResult = null;
+        job.done = job.semanticsResult == null;
+    }
+
+    private void toOllir(Job job) {
+        job.ollirResult = compiler.toOllir(job.result, job.semanticsResult);
+        job.semanticsResult = null;
+        job.done = job.ollirResult == null;
+    }
+
+    private void toJasmin(Job job) {
+        compiler.generate(job.result, job.ollirResult);
+        job.ollirResult = null;
+
+        if (job.cacheKey != null) {
+            CompilationCache.fromConfig(job.config).ifPresent(cache -> cache.put(job.cacheKey, job.result));
+        }
+    }
+
+    /**
+     * Writes the result of a file that left the pipeline, either compiled or restored from the cache.
+     */
+    private void finish(Job job) {
+        if (!job.result.isSuccess() || job.config == null) {
+            return;
+        }
+
+        try {
+            CompilerConfig.getOutputDir(job.config)
+                    .ifPresent(outputDir -> JmmCompiler.writeOutput(job.result, outputDir));
+        } catch (Throwable e) {
+            fail(job, "Could not write the output of '" + job.inputFile + "'", e);
+        }
+    }
+
+    private static void fail(Job job, String message, Throwable e) {
+        // Reports only keep exceptions
+        var exception = e instanceof Exception ? (Exception) e : new RuntimeException(e);
+        job.result.addReport(Report.newError(Stage.OTHER, -1, -1, message, exception));
+        job.done = true;
+    }
+}
@@ -0,0 +1,77 @@
+package pt.up.fe.comp2024.driver;
+
+import java.io.InputStream;
+import java.io.PrintStream;
+
+/**
+ * Stands in for {@link System} in the programs run by {@link InProcessRunner}, which points their references to
+ * System here.
+ * <p>
+ * Each run defines this class again, in the class loader of the program, so each program has its own standard output,
+ * and a call to {@link #exit} stops the program instead of the JVM. The other members just call System; a program that
+ * uses a member of System that is not here fails to link.
+ */
+public final class ProgramSystem {
+
+    public static PrintStream out = System.out;
+    public static PrintStream err = System.err;
+    public static InputStream in = System.in;
+
+    private ProgramSystem() {
+    }
+
+    /**
+     * @throws InProcessRunner.ProgramExit always, which stops the program
+     */
+    public static void exit(int status) {
+        throw new InProcessRunner.ProgramExit(status);
+    }
+
+    public static void setOut(PrintStream out) {
+        ProgramSystem.out = out;
+    }
+
+    public static void setErr(PrintStream err) {
+        ProgramSystem.err = err;
+    }
+
+    public static void setIn(InputStream in) {
+        ProgramSystem.in = in;
+    }
+
+    public static long currentTimeMillis() {
+        return System.currentTimeMillis();
+    }
+
+    public static long nanoTime() {
+        return System.nanoTime();
+    }
+
+    public static void arraycopy(Object src, int srcPos, Object dest, int destPos, int length) {
+        System.arraycopy(src, srcPos, dest, destPos, length);
+    }
+
+    public static int identityHashCode(Object x) {
+        return System.identityHashCode(x);
+    }
+
+    public static String getProperty(String key) {
+        return System.getProperty(key);
+    }
+
+    public static String getProperty(String key, String def) {
+        return System.getProperty(key, def);
+    }
+
+    public static String getenv(String name) {
+        return System.getenv(name);
+    }
+
+    public static String lineSeparator() {
+        return System.lineSeparator();
+    }
+
+    public static void gc() {
+        System.gc();
+    }
+}
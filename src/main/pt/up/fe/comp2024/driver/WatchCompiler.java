@@ -0,0 +1,231 @@
+package pt.up.fe.comp2024.driver;
+
+import pt.up.fe.comp2024.CompilerConfig;
+import pt.up.fe.specs.util.SpecsIo;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.io.UncheckedIOException;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.SortedSet;
+import java.util.TreeSet;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+/**
+ * Compiles sources again every time they change ('-w'), until the process is stopped.
+ * <p>
+ * Folders are watched recursively with a {@link WatchService}, including the folders created in them later. Editors
+ * often save a file in several writes, so the events are collected until none arrives for {@value #QUIET_MILLIS} ms,
+ * and then each changed file is compiled once. Every file keeps an {@link IncrementalCompilation} between changes, so
+ * a change inside a single method only analyses and generates that method again. The code is always parsed by the
+ * hand-written parser.
+ */
+public class WatchCompiler {
+
+    private static final long QUIET_MILLIS = 100;
+
+    private final Map<String, String> config;
+    private final PrintStream out;
+
+    private final Map<Path, IncrementalCompilation> compilations;
+    private final Map<WatchKey, Path> folders;
+
+    /**
+     * Folders whose .jmm files are all watched, and files that are watched on their own.
+     */
+    private final Set<Path> watchedTrees;
+    private final Set<Path> watchedFiles;
+
+    public WatchCompiler(Map<String, String> config) {
+        this(config, System.out);
+    }
+
+    public WatchCompiler(Map<String, String> config, PrintStream out) {
+        this.config = config;
+        this.out = out;
+        this.compilations = new HashMap<>();
+        this.folders = new HashMap<>();
+        this.watchedTrees = new HashSet<>();
+        this.watchedFiles = new HashSet<>();
+    }
+
+    /**
+     * Compiles the given files, and the .jmm files in the given folders, and then compiles them again when they
+     * change. Only returns if the thread is interrupted.
+     *
+     * @param paths
+     */
+    public void watch(List<File> paths) {
+        try (var service = FileSystems.getDefault().newWatchService()) {
+            var initial = new TreeSet<Path>();
+
+            for (var file : paths) {
+                var path = file.toPath().toAbsolutePath().normalize();
+
+                if (Files.isDirectory(path)) {
+                    watchedTrees.add(path);
+                    registerTree(service, path, initial);
+                } else if (Files.isRegularFile(path)) {
+                    watchedFiles.add(path);
+                    register(service, path.getParent());
+                    initial.add(path);
+                } else {
+                    throw new RuntimeException("Could not find watched path '" + file + "'");
+                }
+            }
+
+            compileChanged(initial);
+            out.println("Watching " + folders.size() + " folders for changes");
+
+            while (true) {
+                var changed = new TreeSet<Path>();
+
+                var key = service.take();
+                while (key != null) {
+                    collectChanges(service, key, changed);
+                    key = service.poll(QUIET_MILLIS, TimeUnit.MILLISECONDS);
+                }
+
+                compileChanged(changed);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not watch " + paths, e);
+        }
+    }
+
+    private void collectChanges(WatchService service, WatchKey key, SortedSet<Path> changed) throws IOException {
+        var folder = folders.get(key);
+
+        for (var event : key.pollEvents()) {
+            // Events were lost, any file could have changed
+            if (event.kind() == StandardWatchEventKinds.OVERFLOW) {
+                changed.addAll(compilations.keySet());
+                continue;
+            }
+
+            var path = folder.resolve((Path) event.context());
+
+            if (event.kind() == StandardWatchEventKinds.ENTRY_CREATE && Files.isDirectory(path) && isInTree(path)) {
+                registerTree(service, path, changed);
+            } else if (isWatched(path)) {
+                changed.add(path);
+            }
+        }
+
+        if (!key.reset()) {
+            folders.remove(key);
+        }
+    }
+
+    /**
+     * Compiles the changed files, and forgets the ones that were removed.
+     */
+    void compileChanged(SortedSet<Path> changed) {
+        var start = System.nanoTime();
+        var compiled = 0;
+
+        for (var path : changed) {
+            try {
+                if (compileFile(path)) {
+                    compiled++;
+                }
+            } catch (Throwable e) {
+                // A file that cannot be compiled must not stop the watch, it is compiled from scratch next time
+                compilations.remove(path);
+                compiled++;
+                out.println("FAILED " + path);
+                out.println("   " + e);
+            }
+        }
+
+        if (compiled > 0) {
+            var millis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+            out.println("Compiled " + compiled + " files in " + millis + " ms");
+        }
+    }
+
+    /**
+     * @return true if the file was compiled, false if it was removed or did not change
+     */
+    private boolean compileFile(Path path) {
+        // Also null if the file was removed after the check
+        var code = Files.isRegularFile(path) ? SpecsIo.read(path.toFile()) : null;
+        if (code == null) {
+            if (compilations.remove(path) != null) {
+                out.println("REMOVED " + path);
+            }
+            return false;
+        }
+
+        var compilation = compilations.computeIfAbsent(path,
+                key -> new IncrementalCompilation(key.toFile(), CompilerConfig.forInput(config, key.toFile())));
+
+        // Saved without changes
+        if (code.equals(compilation.getCode())) {
+            return false;
+        }
+
+        var result = compilation.compile(code);
+
+        var reused = compilation.getReusedMethods() > 0 ?
+                " (" + compilation.getReusedMethods() + " methods reused)" :
+                "";
+        out.println((result.isSuccess() ? "OK     " : "FAILED ") + path + reused);
+        for (var report : result.getReports()) {
+            out.println("   " + report);
+        }
+
+        if (result.isSuccess()) {
+            CompilerConfig.getOutputDir(config).ifPresent(outputDir -> JmmCompiler.writeOutput(result, outputDir));
+        }
+
+        return true;
+    }
+
+    /**
+     * Watches a folder and every folder in it, adding the .jmm files in them to the given set.
+     */
+    private void registerTree(WatchService service, Path root, Set<Path> files) throws IOException {
+        try (Stream<Path> paths = Files.walk(root)) {
+            for (var path : paths.toList()) {
+                if (Files.isDirectory(path)) {
+                    register(service, path);
+                } else if (isJmm(path)) {
+                    files.add(path);
+                }
+            }
+        }
+    }
+
+    private void register(WatchService service, Path folder) throws IOException {
+        var key = folder.register(service, StandardWatchEventKinds.ENTRY_CREATE,
+                StandardWatchEventKinds.ENTRY_MODIFY, StandardWatchEventKinds.ENTRY_DELETE);
+        folders.put(key, folder);
+    }
+
+    private boolean isWatched(Path path) {
+        return watchedFiles.contains(path) || (isJmm(path) && isInTree(path));
+    }
+
+    private boolean isInTree(Path path) {
+        return watchedTrees.stream().anyMatch(path::startsWith);
+    }
+
+    private static boolean isJmm(Path path) {
+        return path.getFileName().toString().endsWith(".jmm");
+    }
+}
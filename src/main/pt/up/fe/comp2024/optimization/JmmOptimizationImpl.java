@@ -1,21 +1,42 @@
 package pt.up.fe.comp2024.optimization;
 
 import pt.up.fe.comp.jmm.analysis.JmmSemanticsResult;
+import pt.up.fe.comp.jmm.ast.JmmNode;
 import pt.up.fe.comp.jmm.ollir.JmmOptimization;
 import pt.up.fe.comp.jmm.ollir.OllirResult;
+import pt.up.fe.comp2024.utils.StageProfiler;
 
 import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.Map;
 
 public class JmmOptimizationImpl implements JmmOptimization {
 
     @Override
     public OllirResult toOllir(JmmSemanticsResult semanticsResult) {
+        return toOllir(semanticsResult, new IdentityHashMap<>());
+    }
+
+    /**
+     * Same as {@link #toOllir(JmmSemanticsResult)}, but reuses the code of the methods whose nodes are in the given
+     * map, and adds the code of the other methods to it.
+     *
+     * @param semanticsResult
+     * @param methodCode      OLLIR code of each method node, compared by identity
+     * @return
+     */
+    public OllirResult toOllir(JmmSemanticsResult semanticsResult, Map<JmmNode, String> methodCode) {
+
+        // Each class gets its own numbering of temporaries
+        OptUtils.resetTemps();
 
-        var visitor = new OllirGeneratorVisitor(semanticsResult.getSymbolTable());
+        var visitor = new OllirGeneratorVisitor(semanticsResult.getSymbolTable(), methodCode);
 
-        var ollirCode = visitor.visit(semanticsResult.getRootNode());
+        var ollirCode = StageProfiler.measure("ollirGenerator", () -> visitor.visit(semanticsResult.getRootNode()));
 
-        return new OllirResult(semanticsResult, ollirCode, Collections.emptyList());
+        // OllirResult parses the generated code
+        return StageProfiler.measure("ollirParse",
+                () -> new OllirResult(semanticsResult, ollirCode, Collections.emptyList()));
     }
 
     @Override
@@ -0,0 +1,110 @@
+package pt.up.fe.comp2024.optimization;
+
+import java.util.ArrayDeque;
+
+/**
+ * OLLIR code built by joining the code of the children of a node with the code of the node, without copying it.
+ * <p>
+ * Appending the code of each child to a new string copies the code of a node once for every ancestor, which is
+ * quadratic for deep trees (e.g., long chains of binary expressions, or nested ifs). The parts are only joined when the
+ * text is first asked for, in a single pass that keeps the parts still to join in a stack of its own.
+ */
+public final class OllirCode implements CharSequence {
+
+    public static final OllirCode EMPTY = new OllirCode("");
+
+    /**
+     * Strings and codes to join, or null once the text is known.
+     */
+    private Object[] parts;
+    private String text;
+
+    private OllirCode(String text) {
+        this.text = text;
+    }
+
+    private OllirCode(Object[] parts) {
+        this.parts = parts;
+    }
+
+    public static OllirCode of(CharSequence code) {
+        if (code instanceof OllirCode ollirCode) {
+            return ollirCode;
+        }
+
+        var text = code.toString();
+        return text.isEmpty() ? EMPTY : new OllirCode(text);
+    }
+
+    /**
+     * @param parts strings or other codes, in order
+     * @return the code that joins the given parts
+     */
+    public static OllirCode concat(CharSequence... parts) {
+        var copy = new Object[parts.length];
+
+        for (int i = 0; i < parts.length; i++) {
+            copy[i] = parts[i] instanceof OllirCode ? parts[i] : parts[i].toString();
+        }
+
+        return new OllirCode(copy);
+    }
+
+    @Override
+    public String toString() {
+        if (text == null) {
+            text = join();
+        }
+
+        return text;
+    }
+
+    @Override
+    public int length() {
+        return toString().length();
+    }
+
+    @Override
+    public char charAt(int index) {
+        return toString().charAt(index);
+    }
+
+    @Override
+    public CharSequence subSequence(int start, int end) {
+        return toString().subSequence(start, end);
+    }
+
+    private String join() {
+        var builder = new StringBuilder();
+
+        // Pending parts, in reverse order, so that the next part to append is on top
+        var pending = new ArrayDeque<Object>();
+        pushParts(this, pending);
+
+        while (!pending.isEmpty()) {
+            var part = pending.pop();
+
+            if (part instanceof String string) {
+                builder.append(string);
+            } else {
+                var code = (OllirCode) part;
+
+                if (code.text != null) {
+                    builder.append(code.text);
+                } else {
+                    pushParts(code, pending);
+                }
+            }
+        }
+
+        parts = null;
+
+        return builder.toString();
+    }
+
+    private static void pushParts(OllirCode code, ArrayDeque<Object> pending) {
+        for (int i = code.parts.length - 1; i >= 0; i--) {
+            pending.push(code.parts[i]);
+        }
+    }
+}
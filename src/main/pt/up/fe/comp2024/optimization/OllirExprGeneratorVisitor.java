@@ -5,10 +5,16 @@ import pt.up.fe.comp.jmm.analysis.table.SymbolTable;
 import pt.up.fe.comp.jmm.analysis.table.Type;
 import pt.up.fe.comp.jmm.ast.JmmNode;
 import pt.up.fe.comp.jmm.ast.JmmNodeImpl;
-import pt.up.fe.comp.jmm.ast.PreorderJmmVisitor;
+import pt.up.fe.comp2024.ast.AKindVisitor;
+import pt.up.fe.comp2024.ast.Kind;
+import pt.up.fe.comp2024.ast.TypeTable;
 import pt.up.fe.comp2024.ast.TypeUtils;
+import pt.up.fe.comp2024.symboltable.SymbolIndex;
+import pt.up.fe.comp2024.utils.Diagnostics;
 
+import java.util.ArrayDeque;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.Objects;
 
@@ -16,18 +22,27 @@ import static pt.up.fe.comp2024.ast.Kind.*;
 
 /**
  * Generates OLLIR code from JmmNodes that are expressions.
+ * <p>
+ * The visits of operators compute their operands first, by visiting them. So that a long chain of operators (e.g.,
+ * {@code a + b + ... + z}) does not recurse once per operator, the operands of an operator are computed before its
+ * visit, in the same order the visits would compute them, with a stack of pending nodes instead of recursion; the
+ * visits then find them in {@link #computedResults}.
  */
-public class OllirExprGeneratorVisitor extends PreorderJmmVisitor<Void, OllirExprResult> {
+public class OllirExprGeneratorVisitor extends AKindVisitor<Void, OllirExprResult> {
 
     private static final String SPACE = " ";
     private static final String ASSIGN = ":=";
     private final String END_STMT = ";\n";
     private final String NL = "\n";
     private final SymbolTable table;
+    private final SymbolIndex index;
+    private final TypeTable types;
     private final HashMap<JmmNode, OllirExprResult> computedResults = new HashMap<>();
 
     public OllirExprGeneratorVisitor(SymbolTable table) {
         this.table = table;
+        this.index = SymbolIndex.of(table);
+        this.types = TypeTable.of(table);
     }
 
     @Override
@@ -49,6 +64,64 @@ public class OllirExprGeneratorVisitor extends PreorderJmmVisitor<Void, OllirExp
         setDefaultVisit(this::defaultVisit);
     }
 
+    @Override
+    public OllirExprResult visit(JmmNode node, Void unused) {
+        if (computesOperandsFirst(node) && !computedResults.containsKey(node)) {
+            computeOperands(node);
+        }
+
+        return super.visit(node, unused);
+    }
+
+    /**
+     * @return true if the node is an operator whose visit visits its operands, in order, before anything else
+     */
+    private static boolean computesOperandsFirst(JmmNode node) {
+        var kind = Kind.ofOrNull(node);
+
+        if (kind == null) {
+            return false;
+        }
+
+        return switch (kind) {
+            case BINARY_EXPR, LOGICAL_EXPR, NEGATION_EXPR, PARENTHESIS_EXPR, ARRAY_ACCESS_EXPR, NEW_ARRAY_EXPR,
+                    ARRAY_LENGTH_EXPR -> true;
+            default -> false;
+        };
+    }
+
+    /**
+     * Visits the operands of the given operator, and of the operators among them, in the order the visit of the
+     * operator would, so that its visit only finds results that are already computed.
+     */
+    private void computeOperands(JmmNode operator) {
+        // Reversed preorder with the children pushed first to last, which reversed again is the postorder of the
+        // operands, each operator after its operands
+        var order = new ArrayList<JmmNode>();
+        var pending = new ArrayDeque<JmmNode>();
+        operator.getChildren().forEach(pending::push);
+
+        while (!pending.isEmpty()) {
+            var node = pending.pop();
+            order.add(node);
+
+            if (computesOperandsFirst(node) && !computedResults.containsKey(node)) {
+                node.getChildren().forEach(pending::push);
+            }
+        }
+
+        Collections.reverse(order);
+
+        for (var node : order) {
+            if (computesOperandsFirst(node)) {
+                // Its operands were already computed
+                super.visit(node, null);
+            } else {
+                visit(node);
+            }
+        }
+    }
+
     private OllirExprResult visitMethodClassCallExpr(JmmNode jmmNode, Void unused) {
         // Check if the computation for the current node has already been performed
         if (computedResults.containsKey(jmmNode)) {
@@ -56,26 +129,26 @@ public class OllirExprGeneratorVisitor extends PreorderJmmVisitor<Void, OllirExp
             return computedResults.get(jmmNode);
         }
 
-        System.out.println("visiting method class call expr");
+        Diagnostics.trace(() -> "visiting method class call expr");
 
         StringBuilder computation = new StringBuilder();
         StringBuilder code = new StringBuilder();
-        var type = OptUtils.toOllirType(new Type(jmmNode.get("type"), false));
+        var type = OptUtils.toOllirType(TypeUtils.getType(types.get(jmmNode).getName(), false));
         var class_name = jmmNode.getAncestor("ClassDecl").get().get("name");
         String call_name = "";
         var childImport = jmmNode.getJmmChild(0);
 
-        if(childImport.getKind().equals("ThisExpr")) {
+        if(Kind.THIS_EXPR.check(childImport)) {
             call_name = "this.";
         }
-        else if(childImport.getKind().equals("VarRefExpr")) {
+        else if(Kind.VAR_REF_EXPR.check(childImport)) {
             var visitResult = visit(childImport);
             computedResults.put(childImport, visitResult);
             computation.append(visitResult.getComputation());
             class_name = "";
             call_name = visitResult.getCode();
         }
-        else if(childImport.getKind().equals("ParenthesisExpr")){
+        else if(Kind.PARENTHESIS_EXPR.check(childImport)){
             var visitResult = visit(childImport);
             computedResults.put(childImport, visitResult);
             computation.append(visitResult.getComputation());
@@ -87,7 +160,7 @@ public class OllirExprGeneratorVisitor extends PreorderJmmVisitor<Void, OllirExp
         var params = table.getParameters(jmmNode.get("name"));
         var varargsIndex = -1;
         Symbol varargs = null;
-        var newArrayExprNode = new JmmNodeImpl("ArrayExpr");
+        var newArrayExprNode = new JmmNodeImpl(Kind.ARRAY_EXPR.getNodeName());
 
         if (params != null) {
 
@@ -102,16 +175,13 @@ public class OllirExprGeneratorVisitor extends PreorderJmmVisitor<Void, OllirExp
             if (params.size() != jmmNode.getNumChildren() - 1) {
                 varargsIndex = arraysLocations.get(arraysLocations.size() - 1);
                 newArrayExprNode.put("name", varargs.getName());
-                newArrayExprNode.put("type", "int");
-                newArrayExprNode.put("isArray", "true");
+                types.put(newArrayExprNode, TypeUtils.INT_ARRAY);
             } else if (varargs != null) {
-                if (jmmNode.getChild(jmmNode.getNumChildren() - 1).get("isArray").equals("false")
-                        && jmmNode.getChild(jmmNode.getNumChildren() - 1).get("type").equals("int")) {
+                if (types.get(jmmNode.getChild(jmmNode.getNumChildren() - 1)) == TypeUtils.INT) {
                     varargsIndex = arraysLocations.get(arraysLocations.size() - 1);
                 }
                 newArrayExprNode.put("name", varargs.getName());
-                newArrayExprNode.put("type", "int");
-                newArrayExprNode.put("isArray", "true");
+                types.put(newArrayExprNode, TypeUtils.INT_ARRAY);
             }
         }
 
@@ -126,21 +196,21 @@ public class OllirExprGeneratorVisitor extends PreorderJmmVisitor<Void, OllirExp
                     continue;
                 }
 
-                if (child.getKind().equals("VarRefExpr")) {
+                if (Kind.VAR_REF_EXPR.check(child)) {
                     var visitResult = visit(child);
                     param.append(", ");
                     param.append(visitResult.getCode());
                     computedResults.put(child, visitResult);
-                } else if (child.getKind().equals("BinaryExpr")
-                        || child.getKind().equals("LogicalExpr")
-                        || child.getKind().equals("MethodClassCallExpr")
-                        || child.getKind().equals("ArrayExpr")) {
+                } else if (Kind.BINARY_EXPR.check(child)
+                        || Kind.LOGICAL_EXPR.check(child)
+                        || Kind.METHOD_CLASS_CALL_EXPR.check(child)
+                        || Kind.ARRAY_EXPR.check(child)) {
                     var visitResult = visit(child);
                     param.append(", ");
                     param.append(visitResult.getCode());
                     computation.append(visitResult.getComputation());
                     computedResults.put(child, visitResult);
-                } else if(child.getKind().equals("NegationExpr")){
+                } else if(Kind.NEGATION_EXPR.check(child)){
                     var visitResult = visit(child);
                     param.append(", ");
                     param.append(visitResult.getCode());
@@ -166,17 +236,22 @@ public class OllirExprGeneratorVisitor extends PreorderJmmVisitor<Void, OllirExp
         param.append(")");
         var name = "\"" + jmmNode.get("name") + "\"";
 
-        System.out.println("call_name: " + call_name);
-        System.out.println("name: " + name);
-        System.out.println("param: " + param);
-        System.out.println("class_name: " + class_name);
+        // call_name and class_name are reassigned, so they cannot be captured by the message supplier
+        if (Diagnostics.isEnabled(Diagnostics.Level.TRACE)) {
+            var message = "call_name: " + call_name + "\nname: " + name + "\nparam: " + param
+                    + "\nclass_name: " + class_name;
+            Diagnostics.trace(() -> message);
+        }
 
 
         var tmp = OptUtils.getTemp();
 
-        if(Objects.equals(childImport.get("type"), childImport.get("name"))) { // import call
+        var childType = types.get(childImport).getName();
+
+        // Parenthesized objects have no name
+        if(Objects.equals(childType, childImport.getOptional("name").orElse(null))) { // import call
             computation.append(tmp).append(type).append(SPACE).append(ASSIGN).append(type).append(SPACE)
-                    .append("invokestatic(").append(childImport.get("type")).append(", ")
+                    .append("invokestatic(").append(childType).append(", ")
                     .append("\"").append(jmmNode.get("name")).append("\"")
                     .append(param).append(type).append(END_STMT);
 
@@ -186,7 +261,7 @@ public class OllirExprGeneratorVisitor extends PreorderJmmVisitor<Void, OllirExp
                     .append("invokevirtual(").append(call_name).append(class_name).append(", ").append(name).append(param).append(type).append(END_STMT);
         }
 
-        System.out.println("computation2: " + computation);
+        Diagnostics.trace(() -> "computation2: " + computation);
 
         code.append(tmp).append(type);
 
@@ -198,9 +273,8 @@ public class OllirExprGeneratorVisitor extends PreorderJmmVisitor<Void, OllirExp
     }
 
     private OllirExprResult visitBoolean(JmmNode jmmNode, Void unused) {
-        System.out.println("visiting boolean");
-        var boolType = new Type("boolean", false);
-        String ollirBoolType = OptUtils.toOllirType(boolType);
+        Diagnostics.trace(() -> "visiting boolean");
+        String ollirBoolType = OptUtils.toOllirType(TypeUtils.BOOLEAN);
         var value = Objects.equals(jmmNode.get("name"), "true") ? "1" : "0";
         String code = value + ollirBoolType;
         return new OllirExprResult(code);
@@ -208,16 +282,15 @@ public class OllirExprGeneratorVisitor extends PreorderJmmVisitor<Void, OllirExp
 
 
     private OllirExprResult visitInteger(JmmNode node, Void unused) {
-        System.out.println("visiting integer");
-        var intType = new Type(TypeUtils.getIntTypeName(), false);
-        String ollirIntType = OptUtils.toOllirType(intType);
+        Diagnostics.trace(() -> "visiting integer");
+        String ollirIntType = OptUtils.toOllirType(TypeUtils.INT);
         String code = node.get("value") + ollirIntType;
         return new OllirExprResult(code);
     }
 
 
     private OllirExprResult visitBinExpr(JmmNode node, Void unused) {
-        System.out.println("visiting bin expr");
+        Diagnostics.trace(() -> "visiting bin expr");
 
         // Check if the computation for the current node has already been performed
         if (computedResults.containsKey(node)) {
@@ -228,13 +301,9 @@ public class OllirExprGeneratorVisitor extends PreorderJmmVisitor<Void, OllirExp
         var lhs = visit(node.getJmmChild(0));
         var rhs = visit(node.getJmmChild(1));
 
+        // code to compute self, after the code to compute the children
         StringBuilder computation = new StringBuilder();
 
-        // code to compute the children
-        computation.append(lhs.getComputation());
-        computation.append(rhs.getComputation());
-
-        // code to compute self
         Type resType = TypeUtils.getExprType(node, table);
         String resOllirType = OptUtils.toOllirType(resType);
         String code = OptUtils.getTemp() + resOllirType;
@@ -269,7 +338,8 @@ public class OllirExprGeneratorVisitor extends PreorderJmmVisitor<Void, OllirExp
         }
 
         // Store the result of the computation in the HashMap
-        OllirExprResult result = new OllirExprResult(code, computation);
+        OllirExprResult result = new OllirExprResult(code,
+                OllirCode.concat(lhs.getComputationCode(), rhs.getComputationCode(), computation));
         computedResults.put(node, result);
 
         return result;
@@ -282,24 +352,22 @@ public class OllirExprGeneratorVisitor extends PreorderJmmVisitor<Void, OllirExp
             return computedResults.get(node);
         }
 
-        System.out.println("visiting var ref");
+        Diagnostics.trace(() -> "visiting var ref");
         StringBuilder code = new StringBuilder();
         var temp = "";
-        var isArray = Objects.equals(node.get("isArray"), "true");
-        var type = new Type(node.get("type"), isArray);
-        String ollirType = OptUtils.toOllirType(type);
-
-        for(var field : table.getFields()) {
-            if(field.getName().equals(node.get("name"))) {
-                temp = OptUtils.getTemp();
-                code.append(temp).append(OptUtils.toOllirType(field.getType())).append(SPACE);
-                code.append(ASSIGN).append(OptUtils.toOllirType(field.getType())).append(SPACE);
-                code.append("getfield(this, ").append(field.getName()).append(OptUtils.toOllirType(field.getType())).append(")");
-                code.append(OptUtils.toOllirType(field.getType())).append(END_STMT);
-                OllirExprResult result = new OllirExprResult(temp + ollirType, code);
-                computedResults.put(node, result);
-                return result;
-            }
+        String ollirType = OptUtils.toOllirType(types.get(node));
+
+        var resolvedField = index.resolveField(node);
+        if (resolvedField.isPresent()) {
+            var field = resolvedField.get();
+            temp = OptUtils.getTemp();
+            code.append(temp).append(OptUtils.toOllirType(field.type())).append(SPACE);
+            code.append(ASSIGN).append(OptUtils.toOllirType(field.type())).append(SPACE);
+            code.append("getfield(this, ").append(field.name()).append(OptUtils.toOllirType(field.type())).append(")");
+            code.append(OptUtils.toOllirType(field.type())).append(END_STMT);
+            OllirExprResult result = new OllirExprResult(temp + ollirType, code);
+            computedResults.put(node, result);
+            return result;
         }
 
         // Store the result of the computation in the HashMap
@@ -315,14 +383,13 @@ public class OllirExprGeneratorVisitor extends PreorderJmmVisitor<Void, OllirExp
             return computedResults.get(jmmNode);
         }
 
-        System.out.println("visiting negation expr");
+        Diagnostics.trace(() -> "visiting negation expr");
         var child = jmmNode.getJmmChild(0);
         var visitResult = visit(child);
 
         StringBuilder computation = new StringBuilder();
-        computation.append(visitResult.getComputation());
 
-        var type = OptUtils.toOllirType(new Type(jmmNode.get("type"), false));
+        var type = OptUtils.toOllirType(types.get(jmmNode));
         var code = OptUtils.getTemp() + type;
 
         computation.append(code).append(SPACE)
@@ -330,7 +397,7 @@ public class OllirExprGeneratorVisitor extends PreorderJmmVisitor<Void, OllirExp
                 .append("!").append(type).append(SPACE)
                 .append(visitResult.getCode()).append(END_STMT);
 
-        var result = new OllirExprResult(code, computation);
+        var result = new OllirExprResult(code, OllirCode.concat(visitResult.getComputationCode(), computation));
         computedResults.put(jmmNode, result);
 
         return result;
@@ -342,7 +409,7 @@ public class OllirExprGeneratorVisitor extends PreorderJmmVisitor<Void, OllirExp
             return computedResults.get(jmmNode);
         }
 
-        var type = OptUtils.toOllirType(new Type(jmmNode.get("type"), true));
+        var type = OptUtils.toOllirType(types.get(jmmNode));
         var tempCode = OptUtils.getTemp() + type;
 
         var length = jmmNode.getNumChildren();
@@ -382,22 +449,21 @@ public class OllirExprGeneratorVisitor extends PreorderJmmVisitor<Void, OllirExp
             return computedResults.get(jmmNode);
         }
 
-        System.out.println("visiting array access expr");
+        Diagnostics.trace(() -> "visiting array access expr");
         var array = visit(jmmNode.getJmmChild(0));
         var index = visit(jmmNode.getJmmChild(1));
 
         StringBuilder computation = new StringBuilder();
-        computation.append(array.getComputation());
-        computation.append(index.getComputation());
 
-        var type = OptUtils.toOllirType(new Type(jmmNode.get("type"), false));
+        var type = OptUtils.toOllirType(types.get(jmmNode));
         var code = OptUtils.getTemp() + type;
 
         computation.append(code).append(SPACE)
                 .append(ASSIGN).append(type).append(SPACE)
                 .append(jmmNode.getJmmChild(0).get("name")).append("[").append(index.getCode()).append("]").append(type).append(END_STMT);
 
-        var result = new OllirExprResult(code, computation);
+        var result = new OllirExprResult(code,
+                OllirCode.concat(array.getComputationCode(), index.getComputationCode(), computation));
         computedResults.put(jmmNode, result);
 
         return result;
@@ -409,12 +475,11 @@ public class OllirExprGeneratorVisitor extends PreorderJmmVisitor<Void, OllirExp
             return computedResults.get(jmmNode);
         }
 
-        System.out.println("visiting new array expr");
+        Diagnostics.trace(() -> "visiting new array expr");
         var size = visit(jmmNode.getJmmChild(0));
-        var type = OptUtils.toOllirType(new Type(jmmNode.get("type"), true));
+        var type = OptUtils.toOllirType(types.get(jmmNode));
 
         StringBuilder computation = new StringBuilder();
-        computation.append(size.getComputation());
 
         var code = OptUtils.getTemp() + type;
         computation.append(code).append(SPACE)
@@ -423,7 +488,7 @@ public class OllirExprGeneratorVisitor extends PreorderJmmVisitor<Void, OllirExp
                 .append(size.getCode()).append(")")
                 .append(type).append(END_STMT);
 
-        var result = new OllirExprResult(code, computation);
+        var result = new OllirExprResult(code, OllirCode.concat(size.getComputationCode(), computation));
         computedResults.put(jmmNode, result);
 
         return result;
@@ -435,13 +500,12 @@ public class OllirExprGeneratorVisitor extends PreorderJmmVisitor<Void, OllirExp
             return computedResults.get(jmmNode);
         }
 
-        System.out.println("visiting array length expr");
+        Diagnostics.trace(() -> "visiting array length expr");
         var array = visit(jmmNode.getJmmChild(0));
 
         StringBuilder computation = new StringBuilder();
-        computation.append(array.getComputation());
 
-        var type = OptUtils.toOllirType(new Type(jmmNode.get("type"), false));
+        var type = OptUtils.toOllirType(types.get(jmmNode));
         var code = OptUtils.getTemp() + type;
 
         computation.append(code).append(SPACE)
@@ -449,7 +513,7 @@ public class OllirExprGeneratorVisitor extends PreorderJmmVisitor<Void, OllirExp
                 .append("arraylength(").append(array.getCode()).append(")")
                 .append(type).append(END_STMT);
 
-        var result = new OllirExprResult(code, computation);
+        var result = new OllirExprResult(code, OllirCode.concat(array.getComputationCode(), computation));
         computedResults.put(jmmNode, result);
 
         return result;
@@ -461,10 +525,10 @@ public class OllirExprGeneratorVisitor extends PreorderJmmVisitor<Void, OllirExp
             return computedResults.get(jmmNode);
         }
 
-        System.out.println("visiting new object expr");
+        Diagnostics.trace(() -> "visiting new object expr");
 
         StringBuilder computation = new StringBuilder();
-        var type = OptUtils.toOllirType(new Type(jmmNode.get("type"), false));
+        var type = OptUtils.toOllirType(types.get(jmmNode));
         var name = jmmNode.get("name");
         var tmp = OptUtils.getTemp();
 
@@ -485,18 +549,18 @@ public class OllirExprGeneratorVisitor extends PreorderJmmVisitor<Void, OllirExp
             // If it has, return the result of the previous computation
             return computedResults.get(jmmNode);
         }
-        System.out.println("visiting parenthesis expr");
+        Diagnostics.trace(() -> "visiting parenthesis expr");
         var child = jmmNode.getJmmChild(0);
         var visitResult = visit(child);
 
-        OllirExprResult result = new OllirExprResult(visitResult.getCode(), visitResult.getComputation());
+        OllirExprResult result = new OllirExprResult(visitResult.getCode(), visitResult.getComputationCode());
         computedResults.put(jmmNode, result);
 
         return result;
     }
 
     private  OllirExprResult visitThisExpr(JmmNode jmmNode, Void unused) {
-        System.out.println("visiting this expr");
+        Diagnostics.trace(() -> "visiting this expr");
         var type = jmmNode.getAncestor("ClassDecl").get().get("name");
         var code = "this." + type;
         return new OllirExprResult(code);
@@ -4,14 +4,18 @@ public class OllirExprResult {
 
     public static final OllirExprResult EMPTY = new OllirExprResult("", "");
 
-    private final String computation;
+    private final OllirCode computation;
     private final String code;
 
-    public OllirExprResult(String code, String computation) {
+    public OllirExprResult(String code, OllirCode computation) {
         this.code = code;
         this.computation = computation;
     }
 
+    public OllirExprResult(String code, String computation) {
+        this(code, OllirCode.of(computation));
+    }
+
     public OllirExprResult(String code) {
         this(code, "");
     }
@@ -21,6 +25,13 @@ public class OllirExprResult {
     }
 
     public String getComputation() {
+        return computation.toString();
+    }
+
+    /**
+     * @return the computation, to be joined with other code without copying it
+     */
+    public OllirCode getComputationCode() {
         return computation;
     }
 
@@ -2,19 +2,32 @@ package pt.up.fe.comp2024.optimization;
 
 import pt.up.fe.comp.jmm.analysis.table.SymbolTable;
 import pt.up.fe.comp.jmm.analysis.table.Type;
-import pt.up.fe.comp.jmm.ast.AJmmVisitor;
 import pt.up.fe.comp.jmm.ast.JmmNode;
+import pt.up.fe.comp2024.ast.AKindVisitor;
+import pt.up.fe.comp2024.ast.Kind;
 import pt.up.fe.comp2024.ast.NodeUtils;
+import pt.up.fe.comp2024.ast.TypeTable;
 import pt.up.fe.comp2024.ast.TypeUtils;
-
+import pt.up.fe.comp2024.symboltable.SymbolIndex;
+import pt.up.fe.comp2024.utils.Diagnostics;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.Objects;
 
 import static pt.up.fe.comp2024.ast.Kind.*;
 
 /**
  * Generates OLLIR code from JmmNodes that are not expressions.
+ * <p>
+ * Blocks, ifs and whiles, the statements that contain other statements, are generated with a stack of the statements
+ * being generated instead of recursion, and their code is joined as {@link OllirCode}, so that deeply nested statements
+ * neither overflow the thread stack nor copy the code of the inner statements once per level.
  */
-public class OllirGeneratorVisitor extends AJmmVisitor<Void, String> {
+public class OllirGeneratorVisitor extends AKindVisitor<Void, String> {
     private static final String SPACE = " ";
     private static final String IMPORT = "import ";
     private static final String ASSIGN = ":=";
@@ -23,10 +36,41 @@ public class OllirGeneratorVisitor extends AJmmVisitor<Void, String> {
     private final String L_BRACKET = " {\n";
     private final String R_BRACKET = "}\n";
     private final SymbolTable table;
+    private final SymbolIndex index;
+    private final TypeTable types;
     private final OllirExprGeneratorVisitor exprVisitor;
+    private final Map<JmmNode, String> methodCode;
+
+    /**
+     * A block, if or while whose code is being generated.
+     */
+    private static class StmtFrame {
+        private final JmmNode stmt;
+        private final OllirExprResult condition;
+        private final List<OllirCode> nested;
+        private int nextChild;
+
+        private StmtFrame(JmmNode stmt, OllirExprResult condition, int firstStmt) {
+            this.stmt = stmt;
+            this.condition = condition;
+            this.nested = new ArrayList<>();
+            this.nextChild = firstStmt;
+        }
+    }
 
     public OllirGeneratorVisitor(SymbolTable table) {
+        this(table, new IdentityHashMap<>());
+    }
+
+    /**
+     * @param methodCode the code of methods generated before, by method node, which is reused instead of generating
+     *                   it again; the code of the other methods is added to it
+     */
+    public OllirGeneratorVisitor(SymbolTable table, Map<JmmNode, String> methodCode) {
         this.table = table;
+        this.index = SymbolIndex.of(table);
+        this.types = TypeTable.of(table);
+        this.methodCode = methodCode;
         exprVisitor = new OllirExprGeneratorVisitor(table);
     }
 
@@ -37,8 +81,8 @@ public class OllirGeneratorVisitor extends AJmmVisitor<Void, String> {
         addVisit(IMPORT_DECL, this::visitImportDeclaration);
         addVisit(CLASS_DECL, this::visitClass);
         addVisit(CLASS_BODY, this::visitClassBody);
-        addVisit(MAIN_METHOD_DECL, this::visitMainMethodDecl);
-        addVisit(METHOD_DECL, this::visitMethodDecl);
+        addVisit(MAIN_METHOD_DECL, this::visitMethod);
+        addVisit(METHOD_DECL, this::visitMethod);
         addVisit(METHOD_CODE_BLOCK_WITHOUT_RETURN, this::visitMethodCodeBlock);
         addVisit(METHOD_CODE_BLOCK, this::visitMethodCodeBlock);
         addVisit(METHOD_CLASS_CALL_EXPR, this::visitMethodClassCallExpr);
@@ -46,15 +90,16 @@ public class OllirGeneratorVisitor extends AJmmVisitor<Void, String> {
         addVisit(RETURN_STMT, this::visitReturn);
         addVisit(ASSIGN_STMT, this::visitAssignStmt);
         addVisit(ARRAY_ASSIGN_STMT, this::visitArrayAssignStmt);
-        addVisit(IF_STMT, this::visitIfStmt);
-        addVisit(WHILE_STMT, this::visitWhileStmt);
+        addVisit(Kind.BLOCK_STMT, this::visitNestingStmt);
+        addVisit(IF_STMT, this::visitNestingStmt);
+        addVisit(WHILE_STMT, this::visitNestingStmt);
         setDefaultVisit(this::defaultVisit);
     }
 
 
 
     private String visitMethodClassCallExpr(JmmNode jmmNode, Void unused) {
-        System.out.println("visiting method call expr");
+        Diagnostics.trace(() -> "visiting method call expr");
 
         StringBuilder code = new StringBuilder();
 
@@ -68,48 +113,41 @@ public class OllirGeneratorVisitor extends AJmmVisitor<Void, String> {
             params.append(", ").append(expr.getCode());
         }
 
-        String type = OptUtils.toOllirType(new Type(jmmNode.get("type"), false));
+        String type = OptUtils.toOllirType(TypeUtils.getType(types.get(jmmNode).getName(), false));
+        var childType = types.get(child).getName();
 
-        if(Objects.equals(child.get("type"), child.get("name"))){ // static import call
-            code.append("invokestatic(").append(child.get("type"));
+        // Parenthesized objects have no name
+        if(Objects.equals(childType, child.getOptional("name").orElse(null))){ // static import call
+            code.append("invokestatic(").append(childType);
             type = ".V";
         }
         else { // class call or Object import call
             String name = "";
             String class_name = "";
 
-            if(child.getKind().equals("ThisExpr")) {
-                boolean isSuper = true;
-                for (var f : table.getMethods()) {
-                    if (f.equals(jmmNode.get("name"))) {
-                        isSuper = false;
-                        break;
-                    }
-                }
+            if(Kind.THIS_EXPR.check(child)) {
+                boolean isSuper = !index.hasMethod(jmmNode.get("name"));
 
                 if (isSuper) type = ".V";
 
                 name = "this." + table.getClassName();
             }
-            else if(child.getKind().equals("VarRefExpr")) {
+            else if(Kind.VAR_REF_EXPR.check(child)) {
                 var visitResult = exprVisitor.visit(child);
                 code.append(visitResult.getComputation());
-                class_name = OptUtils.toOllirType(new Type(child.get("type"), false));
+                class_name = OptUtils.toOllirType(TypeUtils.getType(childType, false));
                 name = visitResult.getCode();
             }
-            else if(child.getKind().equals("ParenthesisExpr")){
+            else if(Kind.PARENTHESIS_EXPR.check(child)){
                 var expr = exprVisitor.visit(child);
                 code.append(expr.getComputation());
-                class_name = OptUtils.toOllirType(new Type(child.get("type"), false));
+                class_name = OptUtils.toOllirType(TypeUtils.getType(childType, false));
                 name = expr.getCode();
             }
 
             code.append("invokevirtual(").append(name);
-            for(var imp : table.getImports()){
-                if (Objects.equals(class_name, "." + imp)) {
-                    type = ".V";
-                    break;
-                }
+            if (class_name.startsWith(".") && index.isImported(class_name.substring(1))) {
+                type = ".V";
             }
         }
 
@@ -119,13 +157,13 @@ public class OllirGeneratorVisitor extends AJmmVisitor<Void, String> {
                 .append(params).append(")").append(type).append(END_STMT);
 
 
-        System.out.println("code: " + code);
+        Diagnostics.trace(() -> "code: " + code);
 
         return code.toString();
     }
 
     private String visitImportDeclaration(JmmNode jmmNode, Void unused) {
-        System.out.println("visiting import declaration");
+        Diagnostics.trace(() -> "visiting import declaration");
 
         StringBuilder finalImport = new StringBuilder(IMPORT);
         for(var name : jmmNode.get("name").substring(1, jmmNode.get("name").length() - 1).split(","))
@@ -134,8 +172,21 @@ public class OllirGeneratorVisitor extends AJmmVisitor<Void, String> {
         return finalImport + END_STMT;
     }
 
+    private String visitMethod(JmmNode node, Void unused) {
+        var code = methodCode.get(node);
+
+        if (code == null) {
+            code = Kind.ofOrNull(node) == Kind.MAIN_METHOD_DECLARATION ?
+                    visitMainMethodDecl(node, unused) :
+                    visitMethodDecl(node, unused);
+            methodCode.put(node, code);
+        }
+
+        return code;
+    }
+
     private String visitMainMethodDecl(JmmNode jmmNode, Void unused) {
-        System.out.println("visiting main method decl");
+        Diagnostics.trace(() -> "visiting main method decl");
 
         StringBuilder code = new StringBuilder(".method public static main(args.array.String).V {\n");
 
@@ -149,7 +200,7 @@ public class OllirGeneratorVisitor extends AJmmVisitor<Void, String> {
 
 
     private String visitClassBody(JmmNode jmmNode, Void unused) {
-        System.out.println("visiting class body");
+        Diagnostics.trace(() -> "visiting class body");
 
         StringBuilder code = new StringBuilder();
 
@@ -163,12 +214,12 @@ public class OllirGeneratorVisitor extends AJmmVisitor<Void, String> {
 
         StringBuilder code = new StringBuilder();
 
-        System.out.println("visiting method code block " + jmmNode);
+        Diagnostics.trace(() -> "visiting method code block " + jmmNode);
 
         for (var child : jmmNode.getChildren())
             code.append(visit(child));
 
-        if(jmmNode.getKind().equals("MethodCodeBlockWithoutReturn"))
+        if(Kind.METHOD_CODE_BLOCK_WITHOUT_RETURN.check(jmmNode))
             code.append("ret.V").append(END_STMT);
 
         return code.toString();
@@ -177,35 +228,35 @@ public class OllirGeneratorVisitor extends AJmmVisitor<Void, String> {
 
     private String visitAssignStmt(JmmNode node, Void unused) {
 
-        System.out.println("visiting assign stmt: " + node);
+        Diagnostics.trace(() -> "visiting assign stmt: " + node);
 
         var lhs_type = OptUtils.toOllirType(TypeUtils.getExprType(node, table));
-        node.getChild(0).put("type", node.get("type"));
+        // The value is generated with the type of the variable it is assigned to
+        var rhsType = types.find(node.getChild(0));
+        types.put(node.getChild(0),
+                TypeUtils.getType(types.get(node).getName(), rhsType != null && rhsType.isArray()));
         var lhs = node.get("name") + lhs_type;
-        System.out.println("lhs: " + lhs);
+        Diagnostics.trace(() -> "lhs: " + lhs);
 
-        System.out.println("s: " + node.getChildren());
-        System.out.println(node.getJmmChild(0));
+        Diagnostics.trace(() -> "s: " + node.getChildren());
+        Diagnostics.trace(() -> node.getJmmChild(0).toString());
         var rhs = exprVisitor.visit(node.getJmmChild(0));
 
-        System.out.println("rhs: " + rhs.getCode());
-        System.out.println("rhs computation: " + rhs.getComputation());
+        Diagnostics.trace(() -> "rhs: " + rhs.getCode());
+        Diagnostics.trace(() -> "rhs computation: " + rhs.getComputation());
         StringBuilder code = new StringBuilder();
 
         var isField_lhs = false;
 
         code.append(rhs.getComputation());
 
-        for(var f : table.getFields()) {
-            if(f.getName().equals(node.get("name"))) {
-                isField_lhs = true;
-                code.append("putfield(this, ").append(node.get("name")).append(lhs_type).append(", ").append(rhs.getCode()).append(").V").append(END_STMT);
-                break;
-            }
+        if(index.resolveField(node).isPresent()) {
+            isField_lhs = true;
+            code.append("putfield(this, ").append(node.get("name")).append(lhs_type).append(", ").append(rhs.getCode()).append(").V").append(END_STMT);
         }
 
         if(!isField_lhs){// code to compute the children
-            System.out.println("rhs computations: " + rhs.getComputation());
+            Diagnostics.trace(() -> "rhs computations: " + rhs.getComputation());
 
             // code to compute self
             // statement has type of lhs
@@ -220,7 +271,7 @@ public class OllirGeneratorVisitor extends AJmmVisitor<Void, String> {
     }
 
     private String visitArrayAssignStmt(JmmNode node, Void unused) {
-        System.out.println("visiting array assign stmt");
+        Diagnostics.trace(() -> "visiting array assign stmt");
 
         StringBuilder code = new StringBuilder();
 
@@ -237,64 +288,111 @@ public class OllirGeneratorVisitor extends AJmmVisitor<Void, String> {
         return code.toString();
     }
 
-    private String visitIfStmt(JmmNode node, Void unused) {
-        System.out.println("visiting if stmt");
+    private String visitNestingStmt(JmmNode node, Void unused) {
+        return generateNestingStmt(node).toString();
+    }
 
-        StringBuilder code = new StringBuilder();
+    private OllirCode generateNestingStmt(JmmNode node) {
+        var frames = new ArrayDeque<StmtFrame>();
+        frames.push(enterNestingStmt(node));
 
-        var condition = exprVisitor.visit(node.getJmmChild(0));
-        var trueBlock = visit(node.getJmmChild(1));
-        var elseBlock = visit(node.getJmmChild(2));
+        while (true) {
+            var frame = frames.peek();
+            var children = frame.stmt.getChildren();
 
-        code.append(condition.getComputation());
+            if (frame.nextChild < children.size()) {
+                var child = children.get(frame.nextChild++);
 
-        var ifNumber = OptUtils.getNextTempIfNum();
-
-        code.append("if (").append(condition.getCode())
-            .append(") goto if_body_").append(ifNumber).append(END_STMT);
+                if (isNestingStmt(child)) {
+                    frames.push(enterNestingStmt(child));
+                } else {
+                    frame.nested.add(OllirCode.of(visit(child)));
+                }
+                continue;
+            }
 
-        code.append(elseBlock);
+            frames.pop();
+            var code = exitNestingStmt(frame);
 
-        code.append("goto endif_").append(ifNumber).append(END_STMT);
+            if (frames.isEmpty()) {
+                return code;
+            }
+            frames.peek().nested.add(code);
+        }
+    }
 
-        code.append("if_body_").append(ifNumber)
-                .append(":").append(NL);
+    private static boolean isNestingStmt(JmmNode node) {
+        var kind = Kind.ofOrNull(node);
 
-        code.append(trueBlock);
+        return kind == Kind.BLOCK_STMT || kind == Kind.IF_STMT || kind == Kind.WHILE_STMT;
+    }
 
-        code.append("endif_").append(ifNumber)
-                .append(":").append(NL);
+    /**
+     * The condition of ifs and whiles is computed before their statements.
+     */
+    private StmtFrame enterNestingStmt(JmmNode node) {
+        return switch (Kind.ofOrNull(node)) {
+            case IF_STMT -> {
+                Diagnostics.trace(() -> "visiting if stmt");
+                yield new StmtFrame(node, exprVisitor.visit(node.getJmmChild(0)), 1);
+            }
+            case WHILE_STMT -> {
+                Diagnostics.trace(() -> "visiting while stmt");
+                yield new StmtFrame(node, exprVisitor.visit(node.getJmmChild(0)), 1);
+            }
+            default -> {
+                Diagnostics.trace(() -> "visiting default: " + node);
+                yield new StmtFrame(node, null, 0);
+            }
+        };
+    }
 
-        return code.toString();
+    private OllirCode exitNestingStmt(StmtFrame frame) {
+        return switch (Kind.ofOrNull(frame.stmt)) {
+            case IF_STMT -> ifCode(frame.condition, frame.nested.get(0), frame.nested.get(1));
+            case WHILE_STMT -> whileCode(frame.condition, frame.nested.get(0));
+            default -> OllirCode.concat(frame.nested.toArray(new OllirCode[0]));
+        };
     }
 
-    private String visitWhileStmt(JmmNode node, Void unused) {
-        System.out.println("visiting while stmt");
+    private OllirCode ifCode(OllirExprResult condition, OllirCode trueBlock, OllirCode elseBlock) {
+        // Numbered after the nested ifs
+        var ifNumber = OptUtils.getNextTempIfNum();
 
-        StringBuilder code = new StringBuilder();
+        StringBuilder branch = new StringBuilder();
+        branch.append("if (").append(condition.getCode())
+            .append(") goto if_body_").append(ifNumber).append(END_STMT);
 
-        code.append("while_condition:").append(NL);
+        StringBuilder trueLabel = new StringBuilder();
+        trueLabel.append("goto endif_").append(ifNumber).append(END_STMT);
 
-        var condition = exprVisitor.visit(node.getJmmChild(0));
+        trueLabel.append("if_body_").append(ifNumber)
+                .append(":").append(NL);
 
-        code.append(condition.getComputation());
+        StringBuilder endLabel = new StringBuilder();
+        endLabel.append("endif_").append(ifNumber)
+                .append(":").append(NL);
 
-        code.append("if (").append(condition.getCode()).append(") goto while_loop").append(END_STMT);
-        code.append("goto while_end").append(END_STMT);
+        return OllirCode.concat(condition.getComputationCode(), branch, elseBlock, trueLabel, trueBlock, endLabel);
+    }
 
-        code.append("while_loop:").append(NL);
+    private OllirCode whileCode(OllirExprResult condition, OllirCode block) {
+        StringBuilder branch = new StringBuilder();
 
-        var block = visit(node.getJmmChild(1));
-        code.append(block);
+        branch.append("if (").append(condition.getCode()).append(") goto while_loop").append(END_STMT);
+        branch.append("goto while_end").append(END_STMT);
 
-        code.append("goto while_condition").append(END_STMT);
-        code.append("while_end:").append(NL);
+        branch.append("while_loop:").append(NL);
 
-        return code.toString();
+        StringBuilder endLabel = new StringBuilder();
+        endLabel.append("goto while_condition").append(END_STMT);
+        endLabel.append("while_end:").append(NL);
+
+        return OllirCode.concat("while_condition:" + NL, condition.getComputationCode(), branch, block, endLabel);
     }
 
     private String visitReturn(JmmNode node, Void unused) {
-        System.out.println("visiting return");
+        Diagnostics.trace(() -> "visiting return");
 
         String methodName = node.getAncestor(METHOD_DECL).map(method -> method.get("name")).orElseThrow();
         Type retType = table.getReturnType(methodName);
@@ -316,7 +414,7 @@ public class OllirGeneratorVisitor extends AJmmVisitor<Void, String> {
 
 
     private String visitParam(JmmNode node, Void unused) {
-        System.out.println("visiting param");
+        Diagnostics.trace(() -> "visiting param");
         StringBuilder code = new StringBuilder();
         var id_array = stringToArray(node.get("name"));
 
@@ -330,7 +428,7 @@ public class OllirGeneratorVisitor extends AJmmVisitor<Void, String> {
     }
 
     private String visitMethodDecl(JmmNode node, Void unused) {
-        System.out.println("visiting method decl");
+        Diagnostics.trace(() -> "visiting method decl");
 
         StringBuilder code = new StringBuilder(".method ");
 
@@ -344,11 +442,11 @@ public class OllirGeneratorVisitor extends AJmmVisitor<Void, String> {
         // type
         String retType;
         if (node.getNumChildren() >= 2) {
-            if (node.getJmmChild(0).getKind().contains("FunctionParameters")) {
+            if (Kind.FUNCTION_PARAMETERS.check(node.getJmmChild(0))) {
                 retType = ".V";
                 afterParam = 1;
                 code.append("(").append(visit(node.getJmmChild(0))).append(")");
-            } else if (node.getJmmChild(1).getKind().contains("FunctionParameters")) {
+            } else if (Kind.FUNCTION_PARAMETERS.check(node.getJmmChild(1))) {
                 retType = OptUtils.toOllirType(node.getJmmChild(0));
                 afterParam = 2;
                 code.append("(").append(visit(node.getJmmChild(1))).append(")");
@@ -376,7 +474,7 @@ public class OllirGeneratorVisitor extends AJmmVisitor<Void, String> {
 
 
     private String visitClass(JmmNode node, Void unused) {
-        System.out.println("visiting class");
+        Diagnostics.trace(() -> "visiting class");
 
         StringBuilder code = new StringBuilder();
 
@@ -418,7 +516,7 @@ public class OllirGeneratorVisitor extends AJmmVisitor<Void, String> {
 
         StringBuilder code = new StringBuilder();
 
-        System.out.println("visiting program") ;
+        Diagnostics.trace(() -> "visiting program");
         node.getChildren().stream()
                 .map(this::visit)
                 .forEach(code::append);
@@ -434,8 +532,8 @@ public class OllirGeneratorVisitor extends AJmmVisitor<Void, String> {
      * @return
      */
     private String defaultVisit(JmmNode node, Void unused) {
-        System.out.println("visiting default: " + node);
-        System.out.println("children: " + node.getChildren());
+        Diagnostics.trace(() -> "visiting default: " + node);
+        Diagnostics.trace(() -> "children: " + node.getChildren());
 
         StringBuilder code = new StringBuilder();
 
@@ -4,9 +4,21 @@ import pt.up.fe.comp.jmm.analysis.table.Type;
 import pt.up.fe.comp.jmm.ast.JmmNode;
 
 public class OptUtils {
-    private static int tempNumber = -1;
-    private static int tempArrayNumber = -1;
-    private static int tempIfNumber = -1;
+
+    /**
+     * Temporary counters are kept per thread, so that several classes can be compiled concurrently.
+     */
+    private static final ThreadLocal<int[]> COUNTERS = ThreadLocal.withInitial(() -> new int[]{-1, -1, -1});
+    private static final int TEMP = 0;
+    private static final int TEMP_ARRAY = 1;
+    private static final int TEMP_IF = 2;
+
+    /**
+     * Restarts the numbering of temporaries of the current thread.
+     */
+    public static void resetTemps() {
+        COUNTERS.set(new int[]{-1, -1, -1});
+    }
 
     public static String getTemp() {
         return getTemp("tmp");
@@ -26,18 +38,15 @@ public class OptUtils {
 
 
     public static int getNextTempNum() {
-        tempNumber += 1;
-        return tempNumber;
+        return ++COUNTERS.get()[TEMP];
     }
 
     public static int getNextTempIfNum() {
-        tempIfNumber += 1;
-        return tempIfNumber;
+        return ++COUNTERS.get()[TEMP_IF];
     }
 
     public static int getNextTempArrayNum() {
-        tempArrayNumber += 1;
-        return tempArrayNumber;
+        return ++COUNTERS.get()[TEMP_ARRAY];
     }
 
     public static String toOllirType(JmmNode typeNode) {
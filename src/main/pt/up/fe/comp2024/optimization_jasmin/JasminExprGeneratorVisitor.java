@@ -1,13 +1,14 @@
 package pt.up.fe.comp2024.optimization_jasmin;
 
 import pt.up.fe.comp.jmm.ast.JmmNode;
-import pt.up.fe.comp.jmm.ast.PostorderJmmVisitor;
+import pt.up.fe.comp2024.ast.Kind;
+import pt.up.fe.comp2024.ast.PostorderKindVisitor;
 import pt.up.fe.specs.util.SpecsCheck;
 import pt.up.fe.specs.util.exceptions.NotImplementedException;
 
 import java.util.Map;
 
-public class JasminExprGeneratorVisitor extends PostorderJmmVisitor<StringBuilder, Void> {
+public class JasminExprGeneratorVisitor extends PostorderKindVisitor<StringBuilder, Void> {
 
     private static final String NL = "\n";
 
@@ -19,11 +20,9 @@ public class JasminExprGeneratorVisitor extends PostorderJmmVisitor<StringBuilde
 
     @Override
     protected void buildVisitor() {
-        // Using strings to avoid compilation problems in projects that
-        // might no longer have the equivalent enums in Kind class.
-        addVisit("IntegerLiteral", this::visitIntegerLiteral);
-        addVisit("VarRefExpr", this::visitVarRefExpr);
-        addVisit("BinaryExpr", this::visitBinaryExpr);
+        addVisit(Kind.INTEGER_LITERAL, this::visitIntegerLiteral);
+        addVisit(Kind.VAR_REF_EXPR, this::visitVarRefExpr);
+        addVisit(Kind.BINARY_EXPR, this::visitBinaryExpr);
     }
 
     private Void visitIntegerLiteral(JmmNode integerLiteral, StringBuilder code) {
@@ -1,8 +1,9 @@
 package pt.up.fe.comp2024.optimization_jasmin;
 
 import pt.up.fe.comp.jmm.analysis.table.SymbolTable;
-import pt.up.fe.comp.jmm.ast.AJmmVisitor;
 import pt.up.fe.comp.jmm.ast.JmmNode;
+import pt.up.fe.comp2024.ast.AKindVisitor;
+import pt.up.fe.comp2024.ast.Kind;
 import pt.up.fe.specs.util.SpecsCheck;
 import pt.up.fe.specs.util.utilities.StringLines;
 
@@ -10,7 +11,7 @@ import java.util.HashMap;
 import java.util.Map;
 import java.util.stream.Collectors;
 
-public class JasminGeneratorVisitor extends AJmmVisitor<Void, String> {
+public class JasminGeneratorVisitor extends AKindVisitor<Void, String> {
     private static final String NL = "\n";
     private static final String TAB = "   ";
     private final SymbolTable table;
@@ -30,13 +31,11 @@ public class JasminGeneratorVisitor extends AJmmVisitor<Void, String> {
 
     @Override
     protected void buildVisitor() {
-        // Using strings to avoid compilation problems in projects that
-        // might no longer have the equivalent enums in Kind class.
-        addVisit("Program", this::visitProgram);
-        addVisit("ClassDecl", this::visitClassDecl);
-        addVisit("MethodDecl", this::visitMethodDecl);
-        addVisit("AssignStmt", this::visitAssignStmt);
-        addVisit("ReturnStmt", this::visitReturnStmt);
+        addVisit(Kind.PROGRAM, this::visitProgram);
+        addVisit(Kind.CLASS_DECL, this::visitClassDecl);
+        addVisit(Kind.METHOD_DECL, this::visitMethodDecl);
+        addVisit(Kind.ASSIGN_STMT, this::visitAssignStmt);
+        addVisit(Kind.RETURN_STMT, this::visitReturnStmt);
     }
 
 
@@ -0,0 +1,113 @@
+package pt.up.fe.comp2024.parser;
+
+import org.antlr.v4.runtime.CharStream;
+import org.antlr.v4.runtime.IntStream;
+import org.antlr.v4.runtime.misc.Interval;
+
+/**
+ * ANTLR character stream that reads the characters from a CharSequence, instead of copying them to an array like
+ * ANTLRInputStream does. Behaves like ANTLRInputStream otherwise, the characters are UTF-16 code units.
+ */
+public class CharSequenceStream implements CharStream {
+
+    private final CharSequence data;
+    private final int size;
+    private final String sourceName;
+
+    private int p;
+
+    public CharSequenceStream(CharSequence data) {
+        this(data, null);
+    }
+
+    /**
+     * @param data
+     * @param sourceName the name reported by getSourceName, usually the file name
+     */
+    public CharSequenceStream(CharSequence data, String sourceName) {
+        this.data = data;
+        this.size = data.length();
+        this.sourceName = sourceName;
+        this.p = 0;
+    }
+
+    @Override
+    public void consume() {
+        if (p >= size) {
+            throw new IllegalStateException("cannot consume EOF");
+        }
+
+        p++;
+    }
+
+    @Override
+    public int LA(int i) {
+        if (i == 0) {
+            // undefined
+            return 0;
+        }
+
+        if (i < 0) {
+            // e.g., translate LA(-1) to use offset i=0; then data[p+0-1]
+            i++;
+            if (p + i - 1 < 0) {
+                return IntStream.EOF;
+            }
+        }
+
+        if (p + i - 1 >= size) {
+            return IntStream.EOF;
+        }
+
+        return data.charAt(p + i - 1);
+    }
+
+    /**
+     * The whole input is always available, so marks do nothing.
+     */
+    @Override
+    public int mark() {
+        return -1;
+    }
+
+    @Override
+    public void release(int marker) {
+    }
+
+    @Override
+    public int index() {
+        return p;
+    }
+
+    @Override
+    public void seek(int index) {
+        p = Math.min(Math.max(index, 0), size);
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public String getSourceName() {
+        return sourceName == null || sourceName.isEmpty() ? IntStream.UNKNOWN_SOURCE_NAME : sourceName;
+    }
+
+    @Override
+    public String getText(Interval interval) {
+        var start = interval.a;
+        var stop = Math.min(interval.b, size - 1);
+
+        if (start >= size || stop < start) {
+            return "";
+        }
+
+        return data.subSequence(start, stop + 1).toString();
+    }
+
+    @Override
+    public String toString() {
+        return data.toString();
+    }
+}
@@ -0,0 +1,664 @@
+package pt.up.fe.comp2024.parser;
+
+import org.antlr.v4.runtime.Lexer;
+import org.antlr.v4.runtime.Parser;
+import org.antlr.v4.runtime.Recognizer;
+import org.antlr.v4.runtime.RuntimeMetaData;
+import org.antlr.v4.runtime.atn.ATN;
+import org.antlr.v4.runtime.atn.ATNConfig;
+import org.antlr.v4.runtime.atn.ATNConfigSet;
+import org.antlr.v4.runtime.atn.ATNSimulator;
+import org.antlr.v4.runtime.atn.ArrayPredictionContext;
+import org.antlr.v4.runtime.atn.LexerATNConfig;
+import org.antlr.v4.runtime.atn.LexerAction;
+import org.antlr.v4.runtime.atn.LexerActionExecutor;
+import org.antlr.v4.runtime.atn.OrderedATNConfigSet;
+import org.antlr.v4.runtime.atn.PrecedencePredicateTransition;
+import org.antlr.v4.runtime.atn.PredicateTransition;
+import org.antlr.v4.runtime.atn.PredictionContext;
+import org.antlr.v4.runtime.atn.SemanticContext;
+import org.antlr.v4.runtime.atn.SingletonPredictionContext;
+import org.antlr.v4.runtime.dfa.DFA;
+import org.antlr.v4.runtime.dfa.DFAState;
+import pt.up.fe.comp2024.utils.Diagnostics;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HexFormat;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Saves and restores the DFA that ANTLR builds during adaptive prediction, so that a new compiler process starts with
+ * the prediction state of previous runs instead of building it again while parsing its first file.
+ * <p>
+ * The DFA of the generated lexer and parser is static, so it is restored once per process, before the first parse.
+ * A snapshot is only used if it was taken with the same grammar (the hash of the serialized ATNs) and the same ANTLR
+ * runtime. States that depend on semantic predicates, on full-context prediction, on non-greedy lexer loops or on
+ * position-dependent lexer actions are not saved; the DFA is a cache, so the missing edges are just computed again.
+ */
+public class DfaSnapshot {
+
+    private static final int FORMAT_VERSION = 1;
+
+    // Edge targets that are not states of the snapshot
+    private static final int ERROR_STATE = -2;
+
+    // Semantic context of configurations without predicates
+    private static final int NO_SEMANTIC_CONTEXT = -1;
+
+    private static final int EMPTY_CONTEXT = 0;
+    private static final int SINGLETON_CONTEXT = 1;
+    private static final int ARRAY_CONTEXT = 2;
+
+    // Read without the lock by every parse after the first one
+    private static volatile boolean restored = false;
+    private static int restoredStates = 0;
+
+    private final Lexer lexer;
+    private final Parser parser;
+
+    public DfaSnapshot(Lexer lexer, Parser parser) {
+        this.lexer = lexer;
+        this.parser = parser;
+    }
+
+    /**
+     * Restores the snapshot in the given file, the first time it is called in this process. Missing, outdated or
+     * unreadable snapshots are ignored, and the parser starts cold.
+     *
+     * @param snapshotFile
+     */
+    public void restoreOnce(File snapshotFile) {
+        if (restored) {
+            return;
+        }
+
+        synchronized (DfaSnapshot.class) {
+            if (restored) {
+                return;
+            }
+
+            // Only set once the DFA is installed, the parses that skip the lock must not see it half-filled
+            try {
+                if (snapshotFile.isFile()) {
+                    restoredStates = restore(snapshotFile);
+                    Diagnostics.debug(() -> "Restored " + restoredStates + " DFA states from '" + snapshotFile + "'");
+                }
+            } catch (EOFException e) {
+                Diagnostics.info(() -> "Ignoring DFA snapshot '" + snapshotFile + "': the file is truncated");
+            } catch (IOException | RuntimeException e) {
+                Diagnostics.info(() -> "Ignoring DFA snapshot '" + snapshotFile + "': " + e.getMessage());
+            } finally {
+                restored = true;
+            }
+        }
+    }
+
+    /**
+     * Lets the next parse restore a snapshot again, e.g., after the tests clear the DFA.
+     */
+    static void forgetRestored() {
+        synchronized (DfaSnapshot.class) {
+            restored = false;
+            restoredStates = 0;
+        }
+    }
+
+    /**
+     * Saves the current DFA to the given file, unless nothing was added since it was restored. A snapshot that cannot
+     * be written is skipped.
+     *
+     * @param snapshotFile
+     */
+    public void save(File snapshotFile) {
+        synchronized (DfaSnapshot.class) {
+            var states = countStates(getDfas(lexer)) + countStates(getDfas(parser));
+            if (states == 0 || states == restoredStates) {
+                return;
+            }
+
+            var tempFile = new File(snapshotFile.getAbsoluteFile().getParentFile(), snapshotFile.getName() + ".tmp");
+            try {
+                Files.createDirectories(tempFile.getParentFile().toPath());
+                try (var out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(tempFile.toPath())))) {
+                    write(out);
+                }
+                Files.move(tempFile.toPath(), snapshotFile.toPath(), StandardCopyOption.REPLACE_EXISTING,
+                        StandardCopyOption.ATOMIC_MOVE);
+            } catch (IOException e) {
+                // Like a snapshot that cannot be read, the next run just starts cold
+                Diagnostics.info(() -> "Could not write DFA snapshot '" + snapshotFile + "': " + e.getMessage());
+                return;
+            }
+
+            restoredStates = states;
+            Diagnostics.debug(() -> "Saved " + states + " DFA states to '" + snapshotFile + "'");
+        }
+    }
+
+    private static DFA[] getDfas(Recognizer<?, ?> recognizer) {
+        if (recognizer instanceof Lexer lexer) {
+            return lexer.getInterpreter().decisionToDFA;
+        }
+
+        return ((Parser) recognizer).getInterpreter().decisionToDFA;
+    }
+
+    private static int countStates(DFA[] dfas) {
+        int count = 0;
+        for (var dfa : dfas) {
+            synchronized (dfa.states) {
+                count += dfa.states.size();
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Identifies the grammar and the runtime, a snapshot of a different grammar cannot be used.
+     */
+    private String getGrammarHash() {
+        try {
+            var digest = MessageDigest.getInstance("SHA-256");
+            digest.update(RuntimeMetaData.VERSION.getBytes(StandardCharsets.UTF_8));
+            digest.update((byte) 0);
+            digest.update(lexer.getSerializedATN().getBytes(StandardCharsets.UTF_8));
+            digest.update((byte) 0);
+            digest.update(parser.getSerializedATN().getBytes(StandardCharsets.UTF_8));
+
+            return HexFormat.of().formatHex(digest.digest());
+        } catch (NoSuchAlgorithmException e) {
+            throw new RuntimeException("SHA-256 is not available", e);
+        }
+    }
+
+    /**
+     * The predicates of the grammar, by index. The predicates of a parser configuration must be one of these.
+     */
+    private static List<SemanticContext> getSemanticContexts(ATN atn) {
+        var contexts = new ArrayList<SemanticContext>();
+
+        for (var state : atn.states) {
+            if (state == null) {
+                continue;
+            }
+
+            for (int i = 0; i < state.getNumberOfTransitions(); i++) {
+                var transition = state.transition(i);
+                SemanticContext context = null;
+                if (transition instanceof PrecedencePredicateTransition precedence) {
+                    context = precedence.getPredicate();
+                } else if (transition instanceof PredicateTransition predicate) {
+                    context = predicate.getPredicate();
+                }
+
+                if (context != null && !contexts.contains(context)) {
+                    contexts.add(context);
+                }
+            }
+        }
+
+        return contexts;
+    }
+
+    // Writing
+
+    private void write(DataOutputStream out) throws IOException {
+        out.writeInt(FORMAT_VERSION);
+        out.writeUTF(getGrammarHash());
+
+        var contexts = new IdentityHashMap<PredictionContext, Integer>();
+        var contextsOut = new ByteArrayOutputStream();
+        var dfasOut = new ByteArrayOutputStream();
+
+        try (var contextsData = new DataOutputStream(contextsOut); var dfasData = new DataOutputStream(dfasOut)) {
+            new Writer(lexer, contexts, contextsData).writeDfas(dfasData);
+            new Writer(parser, contexts, contextsData).writeDfas(dfasData);
+        }
+
+        // Contexts are read first, so the configurations can refer to them
+        out.writeInt(contexts.size());
+        contextsOut.writeTo(out);
+        dfasOut.writeTo(out);
+    }
+
+    private static class Writer {
+        private final Recognizer<?, ?> recognizer;
+        private final boolean isLexer;
+        private final Map<PredictionContext, Integer> contexts;
+        private final DataOutputStream contextsOut;
+        private final List<SemanticContext> semanticContexts;
+        private final List<LexerAction> lexerActions;
+
+        private Writer(Recognizer<?, ?> recognizer, Map<PredictionContext, Integer> contexts,
+                       DataOutputStream contextsOut) {
+            this.recognizer = recognizer;
+            this.isLexer = recognizer instanceof Lexer;
+            this.contexts = contexts;
+            this.contextsOut = contextsOut;
+            this.semanticContexts = getSemanticContexts(recognizer.getATN());
+
+            var actions = recognizer.getATN().lexerActions;
+            this.lexerActions = actions != null ? Arrays.asList(actions) : List.of();
+        }
+
+        private void writeDfas(DataOutputStream out) throws IOException {
+            var dfas = getDfas(recognizer);
+
+            out.writeInt(dfas.length);
+            for (var dfa : dfas) {
+                List<DFAState> states;
+                synchronized (dfa.states) {
+                    states = new ArrayList<>(dfa.states.keySet());
+                }
+                states.removeIf(state -> !isSupported(state));
+
+                var indexes = new IdentityHashMap<DFAState, Integer>();
+                for (int i = 0; i < states.size(); i++) {
+                    indexes.put(states.get(i), i);
+                }
+
+                out.writeInt(states.size());
+                for (var state : states) {
+                    writeState(state, out);
+                }
+
+                for (var state : states) {
+                    writeEdges(state, indexes, out);
+                }
+
+                out.writeBoolean(dfa.isPrecedenceDfa());
+                if (dfa.isPrecedenceDfa()) {
+                    // The start state of each precedence is an edge of s0
+                    writeEdges(dfa.s0, indexes, out);
+                } else {
+                    var start = dfa.s0 != null ? indexes.get(dfa.s0) : null;
+                    out.writeInt(start != null ? start : -1);
+                }
+            }
+        }
+
+        private boolean isSupported(DFAState state) {
+            if (state.requiresFullContext || state.predicates != null) {
+                return false;
+            }
+
+            if (state.lexerActionExecutor != null && !isSupported(state.lexerActionExecutor)) {
+                return false;
+            }
+
+            for (var config : state.configs) {
+                if (config.semanticContext != SemanticContext.NONE && !semanticContexts.contains(config.semanticContext)) {
+                    return false;
+                }
+
+                if (config instanceof LexerATNConfig lexerConfig) {
+                    // The flag is only set by the lexer simulator
+                    if (lexerConfig.hasPassedThroughNonGreedyDecision()) {
+                        return false;
+                    }
+
+                    var executor = lexerConfig.getLexerActionExecutor();
+                    if (executor != null && !isSupported(executor)) {
+                        return false;
+                    }
+                }
+            }
+
+            return true;
+        }
+
+        private boolean isSupported(LexerActionExecutor executor) {
+            return Arrays.stream(executor.getLexerActions()).allMatch(lexerActions::contains);
+        }
+
+        private void writeState(DFAState state, DataOutputStream out) throws IOException {
+            var configs = state.configs;
+
+            out.writeBoolean(configs.fullCtx);
+            out.writeInt(configs.uniqueAlt);
+            out.writeBoolean(configs.hasSemanticContext);
+            out.writeBoolean(configs.dipsIntoOuterContext);
+
+            out.writeInt(configs.size());
+            for (var config : configs) {
+                out.writeInt(config.state.stateNumber);
+                out.writeInt(config.alt);
+                out.writeInt(writeContext(config.context));
+                out.writeInt(config.reachesIntoOuterContext);
+                out.writeInt(config.semanticContext == SemanticContext.NONE ?
+                        NO_SEMANTIC_CONTEXT : semanticContexts.indexOf(config.semanticContext));
+
+                if (isLexer) {
+                    writeExecutor(((LexerATNConfig) config).getLexerActionExecutor(), out);
+                }
+            }
+
+            out.writeBoolean(state.isAcceptState);
+            out.writeInt(state.prediction);
+            writeExecutor(state.lexerActionExecutor, out);
+        }
+
+        private void writeExecutor(LexerActionExecutor executor, DataOutputStream out) throws IOException {
+            if (executor == null) {
+                out.writeInt(-1);
+                return;
+            }
+
+            var actions = executor.getLexerActions();
+            out.writeInt(actions.length);
+            for (var action : actions) {
+                out.writeInt(lexerActions.indexOf(action));
+            }
+        }
+
+        private void writeEdges(DFAState state, Map<DFAState, Integer> indexes, DataOutputStream out)
+                throws IOException {
+            var edges = state.edges;
+            if (edges == null) {
+                out.writeInt(-1);
+                return;
+            }
+
+            out.writeInt(edges.length);
+
+            var targets = new ArrayList<int[]>();
+            for (int i = 0; i < edges.length; i++) {
+                var target = edges[i];
+                if (target == null) {
+                    continue;
+                }
+
+                if (target == ATNSimulator.ERROR) {
+                    targets.add(new int[]{i, ERROR_STATE});
+                } else if (indexes.containsKey(target)) {
+                    targets.add(new int[]{i, indexes.get(target)});
+                }
+            }
+
+            out.writeInt(targets.size());
+            for (var target : targets) {
+                out.writeInt(target[0]);
+                out.writeInt(target[1]);
+            }
+        }
+
+        /**
+         * Writes the context after its parents, and returns its index.
+         */
+        private int writeContext(PredictionContext context) throws IOException {
+            if (context == null) {
+                return -1;
+            }
+
+            var index = contexts.get(context);
+            if (index != null) {
+                return index;
+            }
+
+            if (context == PredictionContext.EMPTY) {
+                contextsOut.writeInt(EMPTY_CONTEXT);
+            } else if (context instanceof SingletonPredictionContext singleton) {
+                var parent = writeContext(singleton.parent);
+                contextsOut.writeInt(SINGLETON_CONTEXT);
+                contextsOut.writeInt(parent);
+                contextsOut.writeInt(singleton.returnState);
+            } else if (context instanceof ArrayPredictionContext array) {
+                var parents = new int[array.parents.length];
+                for (int i = 0; i < parents.length; i++) {
+                    parents[i] = writeContext(array.parents[i]);
+                }
+
+                contextsOut.writeInt(ARRAY_CONTEXT);
+                contextsOut.writeInt(parents.length);
+                for (int i = 0; i < parents.length; i++) {
+                    contextsOut.writeInt(parents[i]);
+                    contextsOut.writeInt(array.returnStates[i]);
+                }
+            } else {
+                throw new RuntimeException("Unexpected prediction context " + context.getClass().getSimpleName());
+            }
+
+            index = contexts.size();
+            contexts.put(context, index);
+
+            return index;
+        }
+    }
+
+    // Reading
+
+    /**
+     * Reads the whole snapshot before changing the DFA, so a damaged file leaves the parser cold. Unlike
+     * {@link #restoreOnce}, restores every time it is called, e.g., into recognizers with a DFA of their own.
+     *
+     * @return the number of restored states
+     */
+    int restore(File snapshotFile) throws IOException {
+        try (var in = new DataInputStream(new BufferedInputStream(Files.newInputStream(snapshotFile.toPath())))) {
+            if (in.readInt() != FORMAT_VERSION) {
+                throw new RuntimeException("unknown format");
+            }
+
+            if (!in.readUTF().equals(getGrammarHash())) {
+                throw new RuntimeException("taken with a different grammar or ANTLR version");
+            }
+
+            var contexts = new PredictionContext[in.readInt()];
+            for (int i = 0; i < contexts.length; i++) {
+                contexts[i] = readContext(in, contexts);
+            }
+
+            var lexerDfas = new Reader(lexer, contexts).readDfas(in);
+            var parserDfas = new Reader(parser, contexts).readDfas(in);
+
+            return install(getDfas(lexer), lexerDfas) + install(getDfas(parser), parserDfas);
+        }
+    }
+
+    private static PredictionContext readContext(DataInputStream in, PredictionContext[] contexts) throws IOException {
+        var kind = in.readInt();
+
+        return switch (kind) {
+            case EMPTY_CONTEXT -> PredictionContext.EMPTY;
+            case SINGLETON_CONTEXT -> {
+                var parent = in.readInt();
+                yield SingletonPredictionContext.create(parent >= 0 ? contexts[parent] : null, in.readInt());
+            }
+            case ARRAY_CONTEXT -> {
+                var parents = new PredictionContext[in.readInt()];
+                var returnStates = new int[parents.length];
+                for (int i = 0; i < parents.length; i++) {
+                    var parent = in.readInt();
+                    parents[i] = parent >= 0 ? contexts[parent] : null;
+                    returnStates[i] = in.readInt();
+                }
+                yield new ArrayPredictionContext(parents, returnStates);
+            }
+            default -> throw new RuntimeException("unknown prediction context kind " + kind);
+        };
+    }
+
+    /**
+     * The states of a decision, as read from the snapshot.
+     */
+    private record RestoredDfa(DFAState[] states, DFAState start, DFAState[] precedenceStarts) {
+    }
+
+    private static class Reader {
+        private final ATN atn;
+        private final boolean isLexer;
+        private final PredictionContext[] contexts;
+        private final List<SemanticContext> semanticContexts;
+        private final LexerAction[] lexerActions;
+
+        private Reader(Recognizer<?, ?> recognizer, PredictionContext[] contexts) {
+            this.atn = recognizer.getATN();
+            this.isLexer = recognizer instanceof Lexer;
+            this.contexts = contexts;
+            this.semanticContexts = getSemanticContexts(atn);
+            this.lexerActions = atn.lexerActions;
+        }
+
+        private RestoredDfa[] readDfas(DataInputStream in) throws IOException {
+            var dfas = new RestoredDfa[in.readInt()];
+
+            for (int i = 0; i < dfas.length; i++) {
+                var states = new DFAState[in.readInt()];
+                for (int j = 0; j < states.length; j++) {
+                    states[j] = readState(in);
+                    states[j].stateNumber = j;
+                }
+
+                for (var state : states) {
+                    state.edges = readEdges(in, states);
+                }
+
+                if (in.readBoolean()) {
+                    var precedenceStarts = readEdges(in, states);
+                    dfas[i] = new RestoredDfa(states, null, precedenceStarts != null ? precedenceStarts : new DFAState[0]);
+                } else {
+                    var start = in.readInt();
+                    dfas[i] = new RestoredDfa(states, start >= 0 ? states[start] : null, null);
+                }
+            }
+
+            return dfas;
+        }
+
+        private DFAState readState(DataInputStream in) throws IOException {
+            var fullCtx = in.readBoolean();
+            ATNConfigSet configs = isLexer ? new OrderedATNConfigSet() : new ATNConfigSet(fullCtx);
+            var uniqueAlt = in.readInt();
+            var hasSemanticContext = in.readBoolean();
+            var dipsIntoOuterContext = in.readBoolean();
+
+            var size = in.readInt();
+            for (int i = 0; i < size; i++) {
+                var state = atn.states.get(in.readInt());
+                var alt = in.readInt();
+                var context = readIndex(in.readInt(), contexts);
+                var reachesIntoOuterContext = in.readInt();
+                var semanticContext = in.readInt();
+
+                ATNConfig config;
+                if (isLexer) {
+                    config = new LexerATNConfig(state, alt, context, readExecutor(in));
+                } else {
+                    config = new ATNConfig(state, alt, context, semanticContext == NO_SEMANTIC_CONTEXT ?
+                            SemanticContext.NONE : semanticContexts.get(semanticContext));
+                }
+                config.reachesIntoOuterContext = reachesIntoOuterContext;
+
+                configs.add(config);
+            }
+
+            configs.uniqueAlt = uniqueAlt;
+            configs.hasSemanticContext = hasSemanticContext;
+            configs.dipsIntoOuterContext = dipsIntoOuterContext;
+            configs.setReadonly(true);
+
+            var state = new DFAState(configs);
+            state.isAcceptState = in.readBoolean();
+            state.prediction = in.readInt();
+            state.lexerActionExecutor = readExecutor(in);
+
+            return state;
+        }
+
+        private LexerActionExecutor readExecutor(DataInputStream in) throws IOException {
+            var length = in.readInt();
+            if (length < 0) {
+                return null;
+            }
+
+            var actions = new LexerAction[length];
+            for (int i = 0; i < length; i++) {
+                actions[i] = lexerActions[in.readInt()];
+            }
+
+            return new LexerActionExecutor(actions);
+        }
+
+        private static DFAState[] readEdges(DataInputStream in, DFAState[] states) throws IOException {
+            var length = in.readInt();
+            if (length < 0) {
+                return null;
+            }
+
+            var edges = new DFAState[length];
+            var count = in.readInt();
+            for (int i = 0; i < count; i++) {
+                var symbol = in.readInt();
+                var target = in.readInt();
+                edges[symbol] = target == ERROR_STATE ? ATNSimulator.ERROR : states[target];
+            }
+
+            return edges;
+        }
+
+        private static <T> T readIndex(int index, T[] values) {
+            return index >= 0 ? values[index] : null;
+        }
+    }
+
+    /**
+     * Adds the restored states to decisions that have not been used yet.
+     *
+     * @return the number of added states
+     */
+    private static int install(DFA[] dfas, RestoredDfa[] restoredDfas) {
+        if (dfas.length != restoredDfas.length) {
+            throw new RuntimeException("expected " + dfas.length + " decisions, found " + restoredDfas.length);
+        }
+
+        int count = 0;
+        for (int i = 0; i < dfas.length; i++) {
+            var dfa = dfas[i];
+            var restoredDfa = restoredDfas[i];
+
+            synchronized (dfa.states) {
+                if (!dfa.states.isEmpty()) {
+                    continue;
+                }
+
+                for (var state : restoredDfa.states()) {
+                    dfa.states.put(state, state);
+                }
+
+                // Under the same lock, so that a parse never sees a start state before its DFA is complete
+                if (dfa.isPrecedenceDfa()) {
+                    var starts = restoredDfa.precedenceStarts();
+                    if (starts != null) {
+                        for (int precedence = 0; precedence < starts.length; precedence++) {
+                            if (starts[precedence] != null) {
+                                dfa.setPrecedenceStartState(precedence, starts[precedence]);
+                            }
+                        }
+                    }
+                } else if (restoredDfa.start() != null) {
+                    dfa.s0 = restoredDfa.start();
+                }
+            }
+
+            count += restoredDfa.states().length;
+        }
+
+        return count;
+    }
+}
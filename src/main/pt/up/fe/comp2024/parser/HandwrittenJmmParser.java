@@ -0,0 +1,677 @@
+package pt.up.fe.comp2024.parser;
+
+import pt.up.fe.comp.jmm.ast.JmmNode;
+import pt.up.fe.comp.jmm.ast.JmmNodeImpl;
+import pt.up.fe.comp.jmm.ast.NodePosition;
+import pt.up.fe.comp.jmm.parser.JmmParserResult;
+import pt.up.fe.comp.jmm.report.Report;
+import pt.up.fe.comp.jmm.report.Stage;
+import pt.up.fe.comp2024.ast.Kind;
+import pt.up.fe.comp2024.parser.JmmLexer.LexerException;
+import pt.up.fe.comp2024.parser.JmmLexer.Token;
+import pt.up.fe.comp2024.parser.JmmLexer.TokenType;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Recursive descent parser of Java--, with a precedence climbing parser for expressions, that builds the AST directly
+ * instead of going through the ANTLR parse tree.
+ * <p>
+ * The AST is the same the ANTLR path builds with AntlrToJmmNodeConverter: the kind of each node is the label of the
+ * alternative in Javamm.g4, the hierarchy also has the name of the rule, and the attributes are the position of the
+ * first and last tokens followed by the labels of the alternative. Selected with '-f=handwritten'.
+ * <p>
+ * An instance keeps the tokens of the parse in progress, so it must not be used by several threads at once; see
+ * {@link ParserPool}.
+ */
+public class HandwrittenJmmParser implements SourceParser {
+
+    // Precedence of the operators of 'expr', from the order of the alternatives in the grammar
+    private static final int POSTFIX = 5;
+    private static final int MULTIPLICATIVE = 4;
+    private static final int ADDITIVE = 3;
+    private static final int RELATIONAL = 2;
+    private static final int LOGICAL_AND = 1;
+
+    /**
+     * Thrown on the first syntax error, there is no error recovery.
+     */
+    private static class SyntaxException extends RuntimeException {
+
+        private final Token token;
+
+        private SyntaxException(String message, Token token) {
+            super(message);
+            this.token = token;
+        }
+    }
+
+    private List<Token> tokens;
+    private int pos;
+
+    @Override
+    public String getDefaultRule() {
+        return "program";
+    }
+
+    @Override
+    public JmmParserResult parse(CharSequence jmmCode, String startingRule, Map<String, String> config) {
+        return parse(new JmmLexer(jmmCode), startingRule, false, config);
+    }
+
+    /**
+     * Parses code that starts at the given position of a larger file, and that must be a single derivation of the
+     * rule, with nothing after it. The nodes have their position in the file.
+     *
+     * @param code
+     * @param rule
+     * @param line   the line where the code starts
+     * @param column the column where the code starts
+     * @param config
+     * @return
+     */
+    public JmmParserResult parseFragment(CharSequence code, String rule, int line, int column,
+                                         Map<String, String> config) {
+        return parse(new JmmLexer(code, line, column), rule, true, config);
+    }
+
+    private JmmParserResult parse(JmmLexer lexer, String startingRule, boolean wholeInput, Map<String, String> config) {
+        try {
+            this.tokens = lexer.tokenize();
+            this.pos = 0;
+
+            var rootNode = parseRule(startingRule);
+
+            if (wholeInput && !at(TokenType.EOF)) {
+                throw unexpected("<EOF>");
+            }
+
+            return new JmmParserResult(rootNode, new ArrayList<>(), config);
+
+        } catch (LexerException e) {
+            return JmmParserResult.newError(Report.newError(Stage.LEXICAL, e.getLine(), e.getColumn(),
+                    "line " + e.getLine() + ":" + e.getColumn() + " " + e.getMessage(), null), config);
+        } catch (SyntaxException e) {
+            return JmmParserResult.newError(Report.newError(Stage.SYNTATIC, e.token.line(), e.token.column(),
+                    "line " + e.token.line() + ":" + e.token.column() + " " + e.getMessage(), null), config);
+        } catch (Exception e) {
+            return JmmParserResult.newError(Report.newError(Stage.SYNTATIC, -1, -1, "Exception during parsing", e),
+                    config);
+        } finally {
+            this.tokens = null;
+        }
+    }
+
+    /**
+     * Like ANTLR, only 'program' must consume the whole input.
+     */
+    private JmmNode parseRule(String rule) {
+        return switch (rule) {
+            case "program" -> program();
+            case "importDecl" -> importDecl();
+            case "classDecl" -> classDecl();
+            case "classBody" -> classBody();
+            case "methodDecl" -> methodDecl();
+            case "mainMethodDecl" -> mainMethodDecl();
+            case "block" -> block();
+            case "blockWithoutReturn" -> blockWithoutReturn();
+            case "returnStatement" -> returnStatement();
+            case "param" -> param();
+            case "varDecl" -> varDecl();
+            case "type" -> type();
+            case "stmt" -> stmt();
+            case "expr" -> expr(0);
+            default -> throw new RuntimeException("Unknown rule '" + rule + "'");
+        };
+    }
+
+    // program : importDecl* classDecl EOF
+    private JmmNode program() {
+        var start = pos;
+        var children = new ArrayList<JmmNode>();
+
+        while (at(TokenType.IMPORT)) {
+            children.add(importDecl());
+        }
+        children.add(classDecl());
+
+        if (!at(TokenType.EOF)) {
+            throw unexpected("<EOF>");
+        }
+
+        var program = node("Program", "Program", start, children);
+
+        // The rule consumes EOF, so the ANTLR tree ends at it instead of at the last token of the class
+        var eof = peek(0);
+        program.put(NodePosition.LINE_END.getKey(), Integer.toString(eof.line()));
+        program.put(NodePosition.COL_END.getKey(), Integer.toString(eof.column()));
+
+        return program;
+    }
+
+    // IMPORT name+=ID ('.' name+=ID)* ';' #ImportDeclaration
+    private JmmNode importDecl() {
+        var start = pos;
+        expect(TokenType.IMPORT);
+
+        var names = new ArrayList<String>();
+        names.add(expect(TokenType.ID).text());
+        while (accept(TokenType.DOT)) {
+            names.add(expect(TokenType.ID).text());
+        }
+        expect(TokenType.SEMICOLON);
+
+        return node("ImportDeclaration", "ImportDecl", start, List.of(),
+                "ID", names.get(names.size() - 1), "name", names);
+    }
+
+    // CLASS name=ID ('extends' extendedName=ID)? LCURLY classBody RCURLY #ClassDeclaration
+    private JmmNode classDecl() {
+        var start = pos;
+        expect(TokenType.CLASS);
+        var name = expect(TokenType.ID).text();
+
+        String extendedName = null;
+        if (accept(TokenType.EXTENDS)) {
+            extendedName = expect(TokenType.ID).text();
+        }
+
+        expect(TokenType.LCURLY);
+        var body = classBody();
+        expect(TokenType.RCURLY);
+
+        return node("ClassDeclaration", "ClassDecl", start, List.of(body),
+                "name", name, "extendedName", extendedName);
+    }
+
+    // varDecl* (methodDecl* mainMethodDecl? methodDecl*) #ClassBodyDeclaration
+    private JmmNode classBody() {
+        var start = pos;
+        var children = new ArrayList<JmmNode>();
+
+        // Fields and methods both start with 'type ID'
+        while (isVarDeclStart() && peek(2).type() == TokenType.SEMICOLON) {
+            children.add(varDecl());
+        }
+
+        while (isMethodDeclStart()) {
+            children.add(methodDecl());
+        }
+
+        if (isMainMethodDeclStart()) {
+            children.add(mainMethodDecl());
+
+            while (isMethodDeclStart()) {
+                children.add(methodDecl());
+            }
+        }
+
+        return node("ClassBodyDeclaration", "ClassBody", start, children);
+    }
+
+    // (PUBLIC)? type name=ID LPAREN (param)? RPAREN block #MethodDeclaration
+    // (PUBLIC)? VOID name=ID LPAREN (param)? RPAREN blockWithoutReturn #MethodDeclaration
+    private JmmNode methodDecl() {
+        var start = pos;
+        var children = new ArrayList<JmmNode>();
+
+        accept(TokenType.PUBLIC);
+
+        var isVoid = accept(TokenType.VOID);
+        if (!isVoid) {
+            children.add(type());
+        }
+
+        var name = expect(TokenType.ID).text();
+
+        expect(TokenType.LPAREN);
+        if (!at(TokenType.RPAREN)) {
+            children.add(param());
+        }
+        expect(TokenType.RPAREN);
+
+        children.add(isVoid ? blockWithoutReturn() : block());
+
+        return node("MethodDeclaration", "MethodDecl", start, children, "name", name);
+    }
+
+    // (PUBLIC)? 'static void main' LPAREN STRING LBRACKET RBRACKET ID RPAREN blockWithoutReturn #MainMethodDeclaration
+    private JmmNode mainMethodDecl() {
+        var start = pos;
+
+        accept(TokenType.PUBLIC);
+        expect(TokenType.STATIC_VOID_MAIN);
+        expect(TokenType.LPAREN);
+        expect(TokenType.STRING);
+        expect(TokenType.LBRACKET);
+        expect(TokenType.RBRACKET);
+        expect(TokenType.ID);
+        expect(TokenType.RPAREN);
+
+        var body = blockWithoutReturn();
+
+        return node("MainMethodDeclaration", "MainMethodDecl", start, List.of(body));
+    }
+
+    // LCURLY varDecl* stmt* returnStatement RCURLY #MethodCodeBlock
+    private JmmNode block() {
+        var start = pos;
+        expect(TokenType.LCURLY);
+
+        var children = new ArrayList<JmmNode>();
+        while (isVarDeclStart()) {
+            children.add(varDecl());
+        }
+        while (!at(TokenType.RETURN) && !at(TokenType.RCURLY) && !at(TokenType.EOF)) {
+            children.add(stmt());
+        }
+        children.add(returnStatement());
+
+        expect(TokenType.RCURLY);
+
+        return node("MethodCodeBlock", "Block", start, children);
+    }
+
+    // LCURLY varDecl* stmt* RCURLY #MethodCodeBlockWithoutReturn
+    private JmmNode blockWithoutReturn() {
+        var start = pos;
+        expect(TokenType.LCURLY);
+
+        var children = new ArrayList<JmmNode>();
+        while (isVarDeclStart()) {
+            children.add(varDecl());
+        }
+        while (!at(TokenType.RCURLY) && !at(TokenType.EOF)) {
+            children.add(stmt());
+        }
+
+        expect(TokenType.RCURLY);
+
+        return node("MethodCodeBlockWithoutReturn", "BlockWithoutReturn", start, children);
+    }
+
+    // RETURN expr SEMICOLON #ReturnStmt
+    private JmmNode returnStatement() {
+        var start = pos;
+        expect(TokenType.RETURN);
+        var value = expr(0);
+        expect(TokenType.SEMICOLON);
+
+        return node("ReturnStmt", "ReturnStatement", start, List.of(value));
+    }
+
+    // type name+=ID (COMMA type name+=ID)* #FunctionParameters
+    private JmmNode param() {
+        var start = pos;
+        var types = new ArrayList<JmmNode>();
+        var names = new ArrayList<String>();
+
+        do {
+            types.add(type());
+            names.add(expect(TokenType.ID).text());
+        } while (accept(TokenType.COMMA));
+
+        return node("FunctionParameters", "Param", start, types, "ID", names.get(names.size() - 1), "name", names);
+    }
+
+    // type name=ID SEMICOLON #VarDeclaration
+    private JmmNode varDecl() {
+        var start = pos;
+        var type = type();
+        var name = expect(TokenType.ID).text();
+        expect(TokenType.SEMICOLON);
+
+        return node("VarDeclaration", "VarDecl", start, List.of(type), "name", name);
+    }
+
+    private JmmNode type() {
+        var start = pos;
+
+        var kind = switch (peek(0).type()) {
+            case INT -> "IntType";
+            case ID -> "IDType";
+            case BOOLEAN -> "BoolType";
+            case INT_VECTOR -> "IntVectorType1";
+            case INT_VECTOR2 -> "IntVectorType2";
+            case STRING -> "StringType";
+            default -> throw unexpected("a type");
+        };
+        var name = next().text();
+
+        return node(kind, "Type", start, List.of(), "name", name);
+    }
+
+    private JmmNode stmt() {
+        var start = pos;
+
+        switch (peek(0).type()) {
+            case LCURLY -> {
+                // LCURLY stmt* RCURLY #BlockStmt
+                next();
+                var children = new ArrayList<JmmNode>();
+                while (!at(TokenType.RCURLY) && !at(TokenType.EOF)) {
+                    children.add(stmt());
+                }
+                expect(TokenType.RCURLY);
+
+                return node("BlockStmt", "Stmt", start, children);
+            }
+            case IF -> {
+                // IF LPAREN expr RPAREN stmt ELSE stmt #IfStmt
+                next();
+                expect(TokenType.LPAREN);
+                var condition = expr(0);
+                expect(TokenType.RPAREN);
+                var thenStmt = stmt();
+                expect(TokenType.ELSE);
+                var elseStmt = stmt();
+
+                return node("IfStmt", "Stmt", start, List.of(condition, thenStmt, elseStmt));
+            }
+            case WHILE -> {
+                // WHILE LPAREN expr RPAREN stmt #WhileStmt
+                next();
+                expect(TokenType.LPAREN);
+                var condition = expr(0);
+                expect(TokenType.RPAREN);
+                var body = stmt();
+
+                return node("WhileStmt", "Stmt", start, List.of(condition, body));
+            }
+            case ID -> {
+                if (peek(1).type() == TokenType.EQUALS) {
+                    // name=ID EQUALS expr SEMICOLON #AssignStmt
+                    var name = next().text();
+                    next();
+                    var value = expr(0);
+                    expect(TokenType.SEMICOLON);
+
+                    return node("AssignStmt", "Stmt", start, List.of(value), "name", name);
+                }
+
+                if (peek(1).type() == TokenType.LBRACKET) {
+                    // name=ID LBRACKET expr RBRACKET EQUALS expr SEMICOLON #ArrayAssignStmt
+                    // Only the '=' after the brackets tells it apart from an expression statement such as 'a[0];'
+                    var name = next().text();
+                    next();
+                    var index = expr(0);
+                    expect(TokenType.RBRACKET);
+
+                    if (accept(TokenType.EQUALS)) {
+                        var value = expr(0);
+                        expect(TokenType.SEMICOLON);
+
+                        return node("ArrayAssignStmt", "Stmt", start, List.of(index, value), "name", name);
+                    }
+
+                    pos = start;
+                }
+            }
+            default -> {
+            }
+        }
+
+        // expr SEMICOLON #ExprStmt
+        var expr = expr(0);
+        expect(TokenType.SEMICOLON);
+
+        return node("ExprStmt", "Stmt", start, List.of(expr));
+    }
+
+    /**
+     * Parses an expression whose operators have at least the given precedence. Operators of the same precedence are
+     * left associative, like the left recursive alternatives of the grammar.
+     */
+    private JmmNode expr(int minPrecedence) {
+        var start = pos;
+        var left = primary();
+
+        while (true) {
+            var operator = peek(0);
+            var precedence = precedence(operator.type());
+            if (precedence < minPrecedence) {
+                return left;
+            }
+
+            next();
+            left = switch (operator.type()) {
+                case LBRACKET -> {
+                    // expr LBRACKET expr RBRACKET #ArrayAccessExpr
+                    var index = expr(0);
+                    expect(TokenType.RBRACKET);
+
+                    yield node("ArrayAccessExpr", "Expr", start, List.of(left, index));
+                }
+                // expr LENGTH #ArrayLengthExpr
+                case LENGTH -> node("ArrayLengthExpr", "Expr", start, List.of(left));
+                case DOT -> {
+                    // expr DOT name=ID LPAREN (expr (COMMA expr)*)? RPAREN #MethodClassCallExpr
+                    var name = expect(TokenType.ID).text();
+                    var children = new ArrayList<JmmNode>();
+                    children.add(left);
+                    children.addAll(arguments(TokenType.LPAREN, TokenType.RPAREN));
+
+                    yield node("MethodClassCallExpr", "Expr", start, children, "name", name);
+                }
+                // expr op=(MUL | DIV | ADD | SUB) expr #BinaryExpr
+                // expr op=(LT | AND) expr #LogicalExpr
+                default -> {
+                    var right = expr(precedence + 1);
+                    var kind = precedence >= ADDITIVE ? "BinaryExpr" : "LogicalExpr";
+
+                    yield node(kind, "Expr", start, List.of(left, right), "op", operator.text());
+                }
+            };
+        }
+    }
+
+    /**
+     * @return the precedence of the postfix or binary operator, or -1 if the token does not continue an expression
+     */
+    private static int precedence(TokenType type) {
+        return switch (type) {
+            case LBRACKET, LENGTH, DOT -> POSTFIX;
+            case MUL, DIV -> MULTIPLICATIVE;
+            case ADD, SUB -> ADDITIVE;
+            case LT -> RELATIONAL;
+            case AND -> LOGICAL_AND;
+            default -> -1;
+        };
+    }
+
+    /**
+     * The alternatives of 'expr' that do not start with an expression.
+     */
+    private JmmNode primary() {
+        var start = pos;
+        var token = peek(0);
+        if (token.type() != TokenType.LBRACKET) {
+            next();
+        }
+
+        switch (token.type()) {
+            case LPAREN -> {
+                // LPAREN expr RPAREN #ParenthesisExpr
+                var expr = expr(0);
+                expect(TokenType.RPAREN);
+
+                return node("ParenthesisExpr", "Expr", start, List.of(expr));
+            }
+            case EXCLAMATION -> {
+                // EXCLAMATION expr #NegationExpr, binds tighter than the binary operators
+                var expr = expr(POSTFIX);
+
+                return node("NegationExpr", "Expr", start, List.of(expr));
+            }
+            case NEW -> {
+                if (accept(TokenType.INT)) {
+                    // NEW INT LBRACKET expr RBRACKET #NewArrayExpr
+                    expect(TokenType.LBRACKET);
+                    var size = expr(0);
+                    expect(TokenType.RBRACKET);
+
+                    return node("NewArrayExpr", "Expr", start, List.of(size));
+                }
+
+                // NEW name=ID LPAREN RPAREN #NewObjectExpr
+                var name = expect(TokenType.ID).text();
+                expect(TokenType.LPAREN);
+                expect(TokenType.RPAREN);
+
+                return node("NewObjectExpr", "Expr", start, List.of(), "name", name);
+            }
+            case LBRACKET -> {
+                // LBRACKET (expr (COMMA expr)*)? RBRACKET #ArrayExpr
+                var elements = arguments(TokenType.LBRACKET, TokenType.RBRACKET);
+
+                return node("ArrayExpr", "Expr", start, elements);
+            }
+            case INTEGER -> {
+                return node("IntegerLiteral", "Expr", start, List.of(), "value", token.text());
+            }
+            case ID -> {
+                return node("VarRefExpr", "Expr", start, List.of(), "name", token.text());
+            }
+            case TRUE, FALSE -> {
+                return node("BooleanLiteral", "Expr", start, List.of(), "name", token.text());
+            }
+            case THIS -> {
+                return node("ThisExpr", "Expr", start, List.of(), "name", token.text());
+            }
+            default -> {
+                pos = start;
+                throw unexpected("an expression");
+            }
+        }
+    }
+
+    /**
+     * Parses '(open (expr (COMMA expr)*)? close)'.
+     */
+    private List<JmmNode> arguments(TokenType open, TokenType close) {
+        expect(open);
+
+        var arguments = new ArrayList<JmmNode>();
+        if (!at(close)) {
+            do {
+                arguments.add(expr(0));
+            } while (accept(TokenType.COMMA));
+        }
+
+        expect(close);
+
+        return arguments;
+    }
+
+    private boolean isVarDeclStart() {
+        return isTypeStart(peek(0).type()) && peek(1).type() == TokenType.ID;
+    }
+
+    private boolean isMethodDeclStart() {
+        var type = peek(0).type();
+        if (type == TokenType.PUBLIC) {
+            return peek(1).type() != TokenType.STATIC_VOID_MAIN;
+        }
+
+        return type == TokenType.VOID || isTypeStart(type);
+    }
+
+    private boolean isMainMethodDeclStart() {
+        return at(TokenType.STATIC_VOID_MAIN)
+                || (at(TokenType.PUBLIC) && peek(1).type() == TokenType.STATIC_VOID_MAIN);
+    }
+
+    private static boolean isTypeStart(TokenType type) {
+        return switch (type) {
+            case INT, ID, BOOLEAN, INT_VECTOR, INT_VECTOR2, STRING -> true;
+            default -> false;
+        };
+    }
+
+    /**
+     * Creates a node that spans from the token at the given index to the last consumed token. If nothing was
+     * consumed, the node ends at the token before it starts, like an empty ANTLR context.
+     *
+     * @param kind       the label of the alternative
+     * @param rule       the name of the rule, capitalized
+     * @param start
+     * @param children
+     * @param attributes pairs of label and value, null values are skipped
+     * @return
+     */
+    private JmmNode node(String kind, String rule, int start, List<JmmNode> children, Object... attributes) {
+        var node = new JmmNodeImpl(kind);
+        var hierarchy = kind.equals(rule) ? List.of(kind) : List.of(kind, rule);
+        var nodeKind = Kind.fromStringOrNull(kind);
+        // The list of the kind is recognized by reference by AKindVisitor
+        node.setHierarchy(nodeKind != null && nodeKind.getHierarchy().equals(hierarchy) ?
+                nodeKind.getHierarchy() : hierarchy);
+
+        var first = tokens.get(start);
+        var last = tokens.get(Math.max(pos - 1, 0));
+        node.put(NodePosition.LINE_START.getKey(), Integer.toString(first.line()));
+        node.put(NodePosition.COL_START.getKey(), Integer.toString(first.column()));
+        node.put(NodePosition.LINE_END.getKey(), Integer.toString(last.line()));
+        node.put(NodePosition.COL_END.getKey(), Integer.toString(last.column()));
+
+        for (int i = 0; i < attributes.length; i += 2) {
+            var name = (String) attributes[i];
+            var value = attributes[i + 1];
+
+            if (value instanceof String text) {
+                node.put(name, text);
+            } else if (value != null) {
+                node.putObject(name, value);
+            }
+        }
+
+        for (var child : children) {
+            node.add(child);
+        }
+
+        return node;
+    }
+
+    private Token peek(int offset) {
+        // The last token is always EOF
+        return tokens.get(Math.min(pos + offset, tokens.size() - 1));
+    }
+
+    private boolean at(TokenType type) {
+        return peek(0).type() == type;
+    }
+
+    private Token next() {
+        var token = peek(0);
+        if (token.type() != TokenType.EOF) {
+            pos++;
+        }
+
+        return token;
+    }
+
+    private boolean accept(TokenType type) {
+        if (!at(type)) {
+            return false;
+        }
+
+        next();
+        return true;
+    }
+
+    private Token expect(TokenType type) {
+        if (!at(type)) {
+            throw unexpected(type.name());
+        }
+
+        return next();
+    }
+
+    private SyntaxException unexpected(String expected) {
+        var token = peek(0);
+
+        return new SyntaxException("mismatched input '" + token.text() + "' expecting " + expected, token);
+    }
+}
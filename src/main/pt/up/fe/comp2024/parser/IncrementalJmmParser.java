@@ -0,0 +1,354 @@
+package pt.up.fe.comp2024.parser;
+
+import pt.up.fe.comp.jmm.ast.JmmNode;
+import pt.up.fe.comp.jmm.ast.NodePosition;
+import pt.up.fe.comp.jmm.parser.JmmParserResult;
+import pt.up.fe.comp2024.CompilerConfig;
+import pt.up.fe.comp2024.ast.CompactAst;
+import pt.up.fe.comp2024.ast.Kind;
+import pt.up.fe.comp2024.ast.NodeUtils;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Map;
+
+/**
+ * Keeps the AST of a file up to date while the file is edited, re-parsing only the method an edit falls in.
+ * <p>
+ * When an edit is inside a single method (from its first token to its closing brace), only the code of that method is
+ * lexed and parsed again, with {@link HandwrittenJmmParser#parseFragment}, and the new method replaces the old one in
+ * the existing tree. Every other node is kept, so analyses can keep what they know about them; the positions of the
+ * nodes after the method are moved by the lines and columns the edit added. Edits anywhere else, or that do not leave
+ * a single method in place of the old one, parse the whole file again.
+ * <p>
+ * The trees are the ones the hand-written parser builds, compact with '-k'. The parser changes the tree it returned
+ * last in place, so whatever was stored in the kept nodes (e.g., the annotations of the semantic analysis) stays
+ * there after an edit, and the new method is the only node without it.
+ */
+public class IncrementalJmmParser {
+
+    private final HandwrittenJmmParser parser;
+    private final Map<String, String> config;
+    private final boolean compact;
+
+    private String code;
+    private JmmParserResult result;
+
+    /**
+     * Offset where each line starts, line 1 at index 0.
+     */
+    private int[] lineStarts;
+    private int lineCount;
+
+    private boolean lastParseIncremental;
+    private JmmNode lastParsedMethod;
+
+    public IncrementalJmmParser(Map<String, String> config) {
+        this.parser = new HandwrittenJmmParser();
+        this.config = config;
+        this.compact = CompilerConfig.isCompactAst(config);
+    }
+
+    /**
+     * Parses the whole code, forgetting the previous tree.
+     *
+     * @param code
+     * @return
+     */
+    public JmmParserResult parse(String code) {
+        var parsed = parser.parse(code, config);
+        if (compact && parsed.getRootNode() != null) {
+            parsed = new JmmParserResult(CompactAst.convert(parsed.getRootNode()), parsed.getReports(), config);
+        }
+
+        this.code = code;
+        this.result = parsed;
+        this.lastParseIncremental = false;
+        this.lastParsedMethod = null;
+        indexLines();
+
+        return parsed;
+    }
+
+    /**
+     * Applies an edit to the code, re-parsing only the method it falls in, if there is one.
+     *
+     * @param edit
+     * @return the result with the updated tree, which is the previous tree if the edit was parsed incrementally
+     */
+    public JmmParserResult edit(TextEdit edit) {
+        if (code == null) {
+            throw new IllegalStateException("Nothing to edit, parse the code first");
+        }
+
+        var newCode = edit.apply(code);
+
+        if (result.getRootNode() == null || !replaceMethod(result.getRootNode(), edit, newCode)) {
+            return parse(newCode);
+        }
+
+        code = newCode;
+        result = new JmmParserResult(result.getRootNode(), new ArrayList<>(), config);
+        lastParseIncremental = true;
+        updateLines(edit);
+
+        return result;
+    }
+
+    /**
+     * Same as {@link #edit}, with the edit between the current code and the given one.
+     *
+     * @param newCode
+     * @return
+     */
+    public JmmParserResult update(String newCode) {
+        if (code == null) {
+            return parse(newCode);
+        }
+
+        return edit(TextEdit.between(code, newCode));
+    }
+
+    public String getCode() {
+        return code;
+    }
+
+    public JmmParserResult getResult() {
+        return result;
+    }
+
+    /**
+     * @return the offset where each line of the current code starts
+     */
+    int[] getLineStarts() {
+        return Arrays.copyOf(lineStarts, lineCount);
+    }
+
+    /**
+     * @return true if the last edit re-parsed a single method, instead of the whole code
+     */
+    public boolean isLastParseIncremental() {
+        return lastParseIncremental;
+    }
+
+    /**
+     * @return the method that replaced the edited one if the last edit re-parsed a single method, or null
+     */
+    public JmmNode getLastParsedMethod() {
+        return lastParsedMethod;
+    }
+
+    /**
+     * @return false if the edit is not inside a single method, or the method does not parse, in which case the tree
+     * is left as it was
+     */
+    private boolean replaceMethod(JmmNode root, TextEdit edit, String newCode) {
+        // Program: importDecl* classDecl, ClassDeclaration: classBody
+        var classBody = root.getJmmChild(root.getNumChildren() - 1).getJmmChild(0);
+
+        for (int i = 0; i < classBody.getNumChildren(); i++) {
+            var method = classBody.getJmmChild(i);
+            var kind = Kind.ofOrNull(method);
+
+            if (kind != Kind.METHOD_DECLARATION && kind != Kind.MAIN_METHOD_DECLARATION) {
+                continue;
+            }
+
+            var line = NodeUtils.getLine(method);
+            var column = NodeUtils.getColumn(method);
+            var start = offset(line, column);
+            // The last token of a method is its closing brace
+            var end = offset(getPosition(method, NodePosition.LINE_END), getPosition(method, NodePosition.COL_END)) + 1;
+
+            if (edit.offset() < start) {
+                return false;
+            }
+
+            if (edit.end() > end) {
+                continue;
+            }
+
+            var rule = kind == Kind.METHOD_DECLARATION ? "methodDecl" : "mainMethodDecl";
+            var methodCode = newCode.subSequence(start, end + edit.delta());
+            var parsed = parser.parseFragment(methodCode, rule, line, column, config);
+
+            if (parsed.getRootNode() == null) {
+                return false;
+            }
+
+            var newMethod = compact ? CompactAst.convert(parsed.getRootNode()) : parsed.getRootNode();
+
+            // Where the code after the method starts, before and after the edit
+            var oldAfter = new int[]{getPosition(method, NodePosition.LINE_END),
+                    getPosition(method, NodePosition.COL_END) + 1};
+            var newAfter = positionAfter(methodCode, line, column);
+
+            moveFollowingNodes(classBody, i, method, newMethod, oldAfter, newAfter);
+            classBody.removeJmmChild(i);
+            classBody.add(newMethod, i);
+            lastParsedMethod = newMethod;
+
+            return true;
+        }
+
+        return false;
+    }
+
+    /**
+     * Moves the nodes after the old method to where they are after the edit, and the ends of the nodes that contain
+     * it. The start of the class body, which can be the start of the method, is the only start that can change.
+     *
+     * @param oldAfter line and column where the code after the method started
+     * @param newAfter line and column where it starts after the edit
+     */
+    private static void moveFollowingNodes(JmmNode classBody, int index, JmmNode oldMethod, JmmNode newMethod,
+                                           int[] oldAfter, int[] newAfter) {
+        if (index == 0) {
+            copyPosition(newMethod, classBody, NodePosition.LINE_START);
+            copyPosition(newMethod, classBody, NodePosition.COL_START);
+        }
+
+        for (var ancestor = classBody; ancestor != null; ancestor = ancestor.getParent()) {
+            if (getPosition(ancestor, NodePosition.LINE_END) == getPosition(oldMethod, NodePosition.LINE_END)
+                    && getPosition(ancestor, NodePosition.COL_END) == getPosition(oldMethod, NodePosition.COL_END)) {
+                copyPosition(newMethod, ancestor, NodePosition.LINE_END);
+                copyPosition(newMethod, ancestor, NodePosition.COL_END);
+            } else {
+                movePosition(ancestor, NodePosition.LINE_END, NodePosition.COL_END, oldAfter, newAfter);
+            }
+        }
+
+        var pending = new ArrayDeque<JmmNode>();
+
+        for (int i = index + 1; i < classBody.getNumChildren(); i++) {
+            var sibling = classBody.getJmmChild(i);
+
+            // If no lines were added or removed, only the nodes on the line after the method move
+            if (oldAfter[0] == newAfter[0] && NodeUtils.getLine(sibling) > oldAfter[0]) {
+                break;
+            }
+
+            pending.push(sibling);
+        }
+
+        while (!pending.isEmpty()) {
+            var node = pending.pop();
+
+            movePosition(node, NodePosition.LINE_START, NodePosition.COL_START, oldAfter, newAfter);
+            movePosition(node, NodePosition.LINE_END, NodePosition.COL_END, oldAfter, newAfter);
+
+            node.getChildren().forEach(pending::push);
+        }
+    }
+
+    /**
+     * Moves a position after the old method by as much as the code after the method moved.
+     */
+    private static void movePosition(JmmNode node, NodePosition linePosition, NodePosition columnPosition,
+                                     int[] oldAfter, int[] newAfter) {
+        var line = getPosition(node, linePosition);
+        var column = getPosition(node, columnPosition);
+
+        if (line < oldAfter[0] || (line == oldAfter[0] && column < oldAfter[1])) {
+            return;
+        }
+
+        if (line == oldAfter[0]) {
+            setPosition(node, linePosition, newAfter[0]);
+            setPosition(node, columnPosition, column - oldAfter[1] + newAfter[1]);
+        } else {
+            setPosition(node, linePosition, line + newAfter[0] - oldAfter[0]);
+        }
+    }
+
+    /**
+     * @return the line and column right after code that starts at the given line and column
+     */
+    private static int[] positionAfter(CharSequence code, int line, int column) {
+        for (int i = 0; i < code.length(); i++) {
+            if (code.charAt(i) == '\n') {
+                line++;
+                column = 0;
+            } else {
+                column++;
+            }
+        }
+
+        return new int[]{line, column};
+    }
+
+    private static int getPosition(JmmNode node, NodePosition position) {
+        return NodeUtils.getIntegerAttribute(node, position.getKey(), "-1");
+    }
+
+    private static void setPosition(JmmNode node, NodePosition position, int value) {
+        node.put(position.getKey(), Integer.toString(value));
+    }
+
+    private static void copyPosition(JmmNode from, JmmNode to, NodePosition position) {
+        to.put(position.getKey(), from.get(position.getKey()));
+    }
+
+    /**
+     * @param line   starting at 1
+     * @param column starting at 0
+     * @return the offset of the position in the current code
+     */
+    private int offset(int line, int column) {
+        return lineStarts[line - 1] + column;
+    }
+
+    private void indexLines() {
+        lineStarts = new int[16];
+        lineCount = 1;
+
+        for (int i = 0; i < code.length(); i++) {
+            if (code.charAt(i) == '\n') {
+                addLineStart(i + 1);
+            }
+        }
+    }
+
+    private void addLineStart(int offset) {
+        if (lineCount == lineStarts.length) {
+            lineStarts = Arrays.copyOf(lineStarts, lineCount * 2);
+        }
+
+        lineStarts[lineCount++] = offset;
+    }
+
+    /**
+     * Updates the start of the lines after an edit of the code they were computed for, without looking at the rest of
+     * the code.
+     */
+    private void updateLines(TextEdit edit) {
+        // Lines whose start is in the removed range (their line break was removed) are replaced by the lines that
+        // start in the new text
+        var firstRemoved = lineAt(edit.offset()) + 1;
+        var afterRemoved = lineAt(edit.end()) + 1;
+
+        var following = Arrays.copyOfRange(lineStarts, afterRemoved, lineCount);
+        lineCount = firstRemoved;
+
+        var text = edit.text();
+        for (int i = 0; i < text.length(); i++) {
+            if (text.charAt(i) == '\n') {
+                addLineStart(edit.offset() + i + 1);
+            }
+        }
+
+        for (var start : following) {
+            addLineStart(start + edit.delta());
+        }
+    }
+
+    /**
+     * @return the index of the last line that starts at or before the offset
+     */
+    private int lineAt(int offset) {
+        var index = Arrays.binarySearch(lineStarts, 0, lineCount, offset);
+
+        return index >= 0 ? index : -index - 2;
+    }
+}
@@ -0,0 +1,298 @@
+package pt.up.fe.comp2024.parser;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Hand-written lexer of Java--, with the same tokens as the ANTLR grammar (Javamm.g4).
+ * <p>
+ * Follows the rules of the ANTLR lexer: the longest match wins and, on a tie, keywords win over identifiers. Lines
+ * start at 1 and columns at 0, counted in chars.
+ */
+public class JmmLexer {
+
+    public enum TokenType {
+        EQUALS, SEMICOLON, LCURLY, RCURLY, LPAREN, RPAREN, LBRACKET, RBRACKET, EXCLAMATION, DOT, COMMA, MUL, DIV, ADD,
+        SUB, AND, LT, IMPORT, CLASS, EXTENDS, INT, PUBLIC, RETURN, BOOLEAN, LENGTH, INT_VECTOR, INT_VECTOR2, IF, ELSE,
+        WHILE, TRUE, FALSE, THIS, NEW, STRING, VOID, STATIC, STATIC_VOID_MAIN, INTEGER, ID, EOF
+    }
+
+    public record Token(TokenType type, String text, int line, int column) {
+    }
+
+    /**
+     * Thrown when the input has a character that does not start any token.
+     */
+    public static class LexerException extends RuntimeException {
+
+        private final int line;
+        private final int column;
+
+        public LexerException(String message, int line, int column) {
+            super(message);
+            this.line = line;
+            this.column = column;
+        }
+
+        public int getLine() {
+            return line;
+        }
+
+        public int getColumn() {
+            return column;
+        }
+    }
+
+    private static final Map<String, TokenType> KEYWORDS = Map.ofEntries(
+            Map.entry("import", TokenType.IMPORT),
+            Map.entry("class", TokenType.CLASS),
+            Map.entry("extends", TokenType.EXTENDS),
+            Map.entry("int", TokenType.INT),
+            Map.entry("public", TokenType.PUBLIC),
+            Map.entry("return", TokenType.RETURN),
+            Map.entry("boolean", TokenType.BOOLEAN),
+            Map.entry("if", TokenType.IF),
+            Map.entry("else", TokenType.ELSE),
+            Map.entry("while", TokenType.WHILE),
+            Map.entry("true", TokenType.TRUE),
+            Map.entry("false", TokenType.FALSE),
+            Map.entry("this", TokenType.THIS),
+            Map.entry("new", TokenType.NEW),
+            Map.entry("String", TokenType.STRING),
+            Map.entry("void", TokenType.VOID),
+            Map.entry("static", TokenType.STATIC));
+
+    private static final String STATIC_VOID_MAIN = "static void main";
+    private static final String LENGTH = ".length";
+
+    private final CharSequence code;
+    private int index;
+    private int line;
+    private int column;
+
+    public JmmLexer(CharSequence code) {
+        this(code, 1, 0);
+    }
+
+    /**
+     * Lexes code that starts at the given position of a larger file, so that the tokens have their position in it.
+     *
+     * @param code
+     * @param line   the line where the code starts
+     * @param column the column where the code starts
+     */
+    public JmmLexer(CharSequence code, int line, int column) {
+        this.code = code;
+        this.index = 0;
+        this.line = line;
+        this.column = column;
+    }
+
+    /**
+     * @return all the tokens of the code, ending with an EOF token
+     */
+    public List<Token> tokenize() {
+        var tokens = new ArrayList<Token>();
+
+        while (true) {
+            skipWhitespaceAndComments();
+
+            if (index >= code.length()) {
+                tokens.add(new Token(TokenType.EOF, "<EOF>", line, column));
+                return tokens;
+            }
+
+            tokens.add(nextToken());
+        }
+    }
+
+    private void skipWhitespaceAndComments() {
+        while (index < code.length()) {
+            var current = code.charAt(index);
+
+            if (isWhitespace(current)) {
+                advance(1);
+            } else if (startsWith("//", index)) {
+                var end = index;
+                while (end < code.length() && code.charAt(end) != '\r' && code.charAt(end) != '\n') {
+                    end++;
+                }
+                advance(end - index);
+            } else if (startsWith("/*", index)) {
+                var end = index + 2;
+                while (end < code.length() && !startsWith("*/", end)) {
+                    end++;
+                }
+                if (end == code.length()) {
+                    throw new LexerException("unterminated comment", line, column);
+                }
+                advance(end + 2 - index);
+            } else {
+                return;
+            }
+        }
+    }
+
+    private Token nextToken() {
+        var current = code.charAt(index);
+
+        if (isIdStart(current)) {
+            return word();
+        }
+
+        if (current >= '0' && current <= '9') {
+            // '0' is a token by itself, so '01' is two integers
+            var end = index + 1;
+            if (current != '0') {
+                while (end < code.length() && isDigit(code.charAt(end))) {
+                    end++;
+                }
+            }
+            return token(TokenType.INTEGER, end - index);
+        }
+
+        if (startsWith(LENGTH, index)) {
+            return token(TokenType.LENGTH, LENGTH.length());
+        }
+
+        if (startsWith("&&", index)) {
+            return token(TokenType.AND, 2);
+        }
+
+        var type = switch (current) {
+            case '=' -> TokenType.EQUALS;
+            case ';' -> TokenType.SEMICOLON;
+            case '{' -> TokenType.LCURLY;
+            case '}' -> TokenType.RCURLY;
+            case '(' -> TokenType.LPAREN;
+            case ')' -> TokenType.RPAREN;
+            case '[' -> TokenType.LBRACKET;
+            case ']' -> TokenType.RBRACKET;
+            case '!' -> TokenType.EXCLAMATION;
+            case '.' -> TokenType.DOT;
+            case ',' -> TokenType.COMMA;
+            case '*' -> TokenType.MUL;
+            case '/' -> TokenType.DIV;
+            case '+' -> TokenType.ADD;
+            case '-' -> TokenType.SUB;
+            case '<' -> TokenType.LT;
+            default -> throw new LexerException("token recognition error at: '" + current + "'", line, column);
+        };
+
+        return token(type, 1);
+    }
+
+    /**
+     * Identifiers, keywords, and the tokens that start with a keyword and have spaces in them ('int []', 'int ...'
+     * and 'static void main').
+     */
+    private Token word() {
+        var end = index + 1;
+        while (end < code.length() && isIdPart(code.charAt(end))) {
+            end++;
+        }
+
+        var word = code.subSequence(index, end).toString();
+
+        if (word.equals("int")) {
+            var vectorEnd = matchIntVector(end);
+            if (vectorEnd != -1) {
+                return token(TokenType.INT_VECTOR, vectorEnd - index);
+            }
+
+            var varargsEnd = matchIntVarargs(end);
+            if (varargsEnd != -1) {
+                return token(TokenType.INT_VECTOR2, varargsEnd - index);
+            }
+        }
+
+        if (word.equals("static") && startsWith(STATIC_VOID_MAIN, index)) {
+            return token(TokenType.STATIC_VOID_MAIN, STATIC_VOID_MAIN.length());
+        }
+
+        return token(KEYWORDS.getOrDefault(word, TokenType.ID), end - index);
+    }
+
+    /**
+     * @return the end of "' '? '[' ' '? ']'" starting at the given index, or -1 if it does not match
+     */
+    private int matchIntVector(int start) {
+        var end = skipSpace(start);
+        if (!startsWith("[", end)) {
+            return -1;
+        }
+
+        end = skipSpace(end + 1);
+        if (!startsWith("]", end)) {
+            return -1;
+        }
+
+        return end + 1;
+    }
+
+    /**
+     * @return the end of "' '? '...'" starting at the given index, or -1 if it does not match
+     */
+    private int matchIntVarargs(int start) {
+        var end = skipSpace(start);
+
+        return startsWith("...", end) ? end + 3 : -1;
+    }
+
+    /**
+     * Skips a single space, which is what the grammar allows inside 'int []' and 'int ...'.
+     */
+    private int skipSpace(int start) {
+        return startsWith(" ", start) ? start + 1 : start;
+    }
+
+    private Token token(TokenType type, int length) {
+        var token = new Token(type, code.subSequence(index, index + length).toString(), line, column);
+        advance(length);
+
+        return token;
+    }
+
+    private boolean startsWith(String prefix, int start) {
+        if (start + prefix.length() > code.length()) {
+            return false;
+        }
+
+        for (int i = 0; i < prefix.length(); i++) {
+            if (code.charAt(start + i) != prefix.charAt(i)) {
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+    private void advance(int length) {
+        for (int i = 0; i < length; i++) {
+            if (code.charAt(index) == '\n') {
+                line++;
+                column = 0;
+            } else {
+                column++;
+            }
+            index++;
+        }
+    }
+
+    private static boolean isWhitespace(char c) {
+        return c == ' ' || c == '\t' || c == '\n' || c == '\r' || c == '\f';
+    }
+
+    private static boolean isIdStart(char c) {
+        return (c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z') || c == '_' || c == '$';
+    }
+
+    private static boolean isIdPart(char c) {
+        return isIdStart(c) || isDigit(c);
+    }
+
+    private static boolean isDigit(char c) {
+        return c >= '0' && c <= '9';
+    }
+}
@@ -1,14 +1,36 @@
 package pt.up.fe.comp2024.parser;
 
+import org.antlr.v4.runtime.ANTLRErrorStrategy;
 import org.antlr.v4.runtime.ANTLRInputStream;
+import org.antlr.v4.runtime.BailErrorStrategy;
+import org.antlr.v4.runtime.CharStream;
 import org.antlr.v4.runtime.CommonTokenStream;
+import org.antlr.v4.runtime.DefaultErrorStrategy;
+import org.antlr.v4.runtime.Parser;
+import org.antlr.v4.runtime.TokenStream;
+import org.antlr.v4.runtime.atn.PredictionMode;
+import org.antlr.v4.runtime.misc.ParseCancellationException;
+import org.antlr.v4.runtime.tree.ParseTree;
 import pt.up.fe.comp.jmm.ast.antlr.AntlrParser;
-import pt.up.fe.comp.jmm.parser.JmmParser;
+import pt.up.fe.comp.jmm.ast.antlr.AntlrToJmmNodeConverter;
+import pt.up.fe.comp.jmm.ast.antlr.JmmErrorListener;
+import pt.up.fe.comp.jmm.ast.antlr.JmmNodeCleanup;
 import pt.up.fe.comp.jmm.parser.JmmParserResult;
 import pt.up.fe.comp.jmm.report.Report;
 import pt.up.fe.comp.jmm.report.Stage;
+import pt.up.fe.comp2024.CompilerConfig;
+import pt.up.fe.comp2024.JavammLexer;
+import pt.up.fe.comp2024.JavammParser;
+import pt.up.fe.comp2024.ast.Kind;
+import pt.up.fe.comp2024.utils.Diagnostics;
+import pt.up.fe.comp2024.utils.ReportUtils;
 
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.util.ArrayList;
 import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 
 /**
@@ -24,7 +46,18 @@ import java.util.Map;
  * specific language governing permissions and limitations under the License. under the License.
  */
 
-public class JmmParserImpl implements JmmParser {
+/**
+ * Parses with the ANTLR lexer and parser generated from Javamm.g4.
+ * <p>
+ * The generated lexer and parser are kept and reused by the next parses of the same instance, so an instance must not
+ * be used by several threads at once; {@link ParserPool} gives each thread its own.
+ */
+public class JmmParserImpl implements SourceParser {
+
+    private JavammLexer lexer;
+    private JavammParser parser;
+    private List<String> ignoreList;
+    private final Map<String, Method> ruleMethods = new HashMap<>();
 
     @Override
     public String getDefaultRule() {
@@ -32,25 +65,164 @@ public class JmmParserImpl implements JmmParser {
     }
 
     @Override
-    public JmmParserResult parse(String jmmCode, String startingRule, Map<String, String> config) {
+    public JmmParserResult parse(CharSequence jmmCode, String startingRule, Map<String, String> config) {
 
         try {
-            // Convert code string into a character stream
-            var input = new ANTLRInputStream(jmmCode);
+            // Wrap the code in a character stream, without copying it
+            var input = new CharSequenceStream(jmmCode);
+            // When profiling, the whole input is lexed first, so the lexer and the parser are measured separately
+            var profile = CompilerConfig.isProfileParser(config);
+
             // Transform characters into tokens using the lexer
-            var lex = new pt.up.fe.comp2024.JavammLexer(input);
+            var lex = getLexer(input);
             // Wrap lexer around a token stream
             var tokens = new CommonTokenStream(lex);
             // Transforms tokens into a parse tree
-            var parser = new pt.up.fe.comp2024.JavammParser(tokens);
+            var parser = getParser(tokens, profile);
+
+            // Start from the prediction DFA of previous runs, if there is one
+            CompilerConfig.getDfaSnapshot(config).ifPresent(snapshotFile ->
+                    new DfaSnapshot(lex, parser).restoreOnce(snapshotFile));
+
+            var lexerErrors = new JmmErrorListener(Stage.LEXICAL);
+            lex.removeErrorListeners();
+            lex.addErrorListener(lexerErrors);
+
+            var lexerNs = 0L;
+            if (profile) {
+                var start = System.nanoTime();
+                tokens.fill();
+                lexerNs = System.nanoTime() - start;
+            }
+            var parserStart = System.nanoTime();
+
+            // Fast path, SLL prediction that gives up on the first syntax error
+            parser.removeErrorListeners();
+            parser.setErrorHandler(newSllErrorStrategy());
+            parser.getInterpreter().setPredictionMode(PredictionMode.SLL);
+
+            var parserErrors = new JmmErrorListener(Stage.SYNTATIC);
+            ParseTree tree;
+            var reparsed = false;
+            try {
+                tree = parseRule(parser, startingRule);
+            } catch (ParseCancellationException e) {
+                // Either the code has errors or SLL is not enough, parse again with full LL and the usual error
+                // reporting. The tokens are already buffered, so lexical errors are not reported twice.
+                Diagnostics.debug(() -> "SLL parsing failed, parsing again with LL");
 
+                parser.reset();
+                parser.addErrorListener(parserErrors);
+                parser.setErrorHandler(new DefaultErrorStrategy());
+                parser.getInterpreter().setPredictionMode(PredictionMode.LL);
+
+                tree = parseRule(parser, startingRule);
+                reparsed = true;
+            }
+
+            if (profile) {
+                ParserProfile.getGlobal().add(parser, tokens.size(), lexerNs, System.nanoTime() - parserStart,
+                        reparsed);
+            }
+
+            var reports = new ArrayList<Report>();
+            reports.addAll(lexerErrors.getReports());
+            reports.addAll(parserErrors.getReports());
+
+            if (ReportUtils.anyError(reports)) {
+                return new JmmParserResult(null, reports, config);
+            }
 
             // Convert ANTLR CST to JmmNode AST
-            return AntlrParser.parse(lex, parser, startingRule, config);
+            var rootNode = AntlrToJmmNodeConverter.convert(tree, parser);
+            if (ignoreList == null) {
+                ignoreList = AntlrParser.getIgnoreList(parser);
+            }
+            if (!ignoreList.isEmpty()) {
+                new JmmNodeCleanup(ignoreList).visit(rootNode);
+            }
+            Kind.shareHierarchies(rootNode);
+
+            return new JmmParserResult(rootNode, reports, config);
 
         } catch (Exception e) {
             // There was an uncaught exception during parsing, create an error JmmParserResult without root node
             return JmmParserResult.newError(Report.newError(Stage.SYNTATIC, -1, -1, "Exception during parsing", e), config);
         }
     }
+
+    /**
+     * @return the error strategy of the SLL parse, which cancels the parse on the first syntax error; the tests cancel
+     * parses of valid code too, to check that the LL parse gives the same tree
+     */
+    ANTLRErrorStrategy newSllErrorStrategy() {
+        return new BailErrorStrategy();
+    }
+
+    private JavammLexer getLexer(CharStream input) {
+        if (lexer == null) {
+            lexer = new JavammLexer(input);
+        } else {
+            lexer.setInputStream(input);
+        }
+
+        return lexer;
+    }
+
+    /**
+     * The profiler adds up the decisions of every parse of a parser, so a profiled parse gets a parser of its own.
+     */
+    private JavammParser getParser(TokenStream tokens, boolean profile) {
+        if (profile) {
+            var profiledParser = new JavammParser(tokens);
+            profiledParser.setProfile(true);
+            return profiledParser;
+        }
+
+        if (parser == null) {
+            parser = new JavammParser(tokens);
+        } else {
+            parser.setTokenStream(tokens);
+        }
+
+        return parser;
+    }
+
+    /**
+     * Calls the method of the parser that parses the given rule.
+     */
+    private ParseTree parseRule(Parser parser, String rule) throws ReflectiveOperationException {
+        var ruleMethod = ruleMethods.get(rule);
+        if (ruleMethod == null) {
+            ruleMethod = parser.getClass().getMethod(rule);
+            ruleMethods.put(rule, ruleMethod);
+        }
+
+        try {
+            return (ParseTree) ruleMethod.invoke(parser);
+        } catch (InvocationTargetException e) {
+            if (e.getCause() instanceof RuntimeException runtimeException) {
+                throw runtimeException;
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * Saves the prediction DFA built so far to the file given to '-a', so the next runs of the compiler start warm.
+     *
+     * @param config
+     */
+    public static void saveDfaSnapshot(Map<String, String> config) {
+        var snapshotFile = CompilerConfig.getDfaSnapshot(config);
+        if (snapshotFile.isEmpty()) {
+            return;
+        }
+
+        // The DFA is shared by all instances of the generated lexer and parser
+        var lex = new pt.up.fe.comp2024.JavammLexer(new ANTLRInputStream(""));
+        var parser = new pt.up.fe.comp2024.JavammParser(new CommonTokenStream(lex));
+
+        new DfaSnapshot(lex, parser).save(snapshotFile.get());
+    }
 }
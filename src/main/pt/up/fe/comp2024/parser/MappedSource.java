@@ -0,0 +1,103 @@
+package pt.up.fe.comp2024.parser;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Source code read through a memory mapping of the file, for inputs too large to keep comfortably as a String.
+ * <p>
+ * Java-- code is ASCII outside of comments, so when every byte of the file is ASCII, each byte is used as a char and
+ * the code is never copied to the heap. Otherwise the file is decoded as UTF-8 from the mapped buffer, which still
+ * makes one copy less than reading it to a String. The mapping is released when the returned sequence, and every
+ * token that refers to it, is garbage collected.
+ */
+public class MappedSource {
+
+    /**
+     * Chars of an ASCII buffer, one byte per char.
+     */
+    private static class AsciiSequence implements CharSequence {
+
+        private final ByteBuffer buffer;
+        private final int offset;
+        private final int length;
+
+        private AsciiSequence(ByteBuffer buffer, int offset, int length) {
+            this.buffer = buffer;
+            this.offset = offset;
+            this.length = length;
+        }
+
+        @Override
+        public int length() {
+            return length;
+        }
+
+        @Override
+        public char charAt(int index) {
+            if (index < 0 || index >= length) {
+                throw new IndexOutOfBoundsException(index);
+            }
+
+            return (char) buffer.get(offset + index);
+        }
+
+        @Override
+        public CharSequence subSequence(int start, int end) {
+            if (start < 0 || end > length || start > end) {
+                throw new IndexOutOfBoundsException("[" + start + ", " + end + ") of " + length);
+            }
+
+            return new AsciiSequence(buffer, offset + start, end - start);
+        }
+
+        @Override
+        public String toString() {
+            var bytes = new byte[length];
+            buffer.get(offset, bytes);
+
+            return new String(bytes, StandardCharsets.ISO_8859_1);
+        }
+    }
+
+    /**
+     * Maps the given file.
+     *
+     * @param file
+     * @return the code of the file
+     */
+    public static CharSequence map(File file) {
+        try (var channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            if (channel.size() > Integer.MAX_VALUE) {
+                throw new RuntimeException("File '" + file + "' is too large to map, it has " + channel.size()
+                        + " bytes");
+            }
+
+            // The mapping stays valid after the channel is closed
+            var buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+
+            if (isAscii(buffer)) {
+                return new AsciiSequence(buffer, 0, buffer.limit());
+            }
+
+            return StandardCharsets.UTF_8.decode(buffer);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not map file '" + file + "'", e);
+        }
+    }
+
+    private static boolean isAscii(ByteBuffer buffer) {
+        for (int i = 0; i < buffer.limit(); i++) {
+            if (buffer.get(i) < 0) {
+                return false;
+            }
+        }
+
+        return true;
+    }
+}
@@ -0,0 +1,46 @@
+package pt.up.fe.comp2024.parser;
+
+import pt.up.fe.comp.jmm.parser.JmmParserResult;
+import pt.up.fe.comp2024.CompilerConfig;
+
+import java.util.Map;
+import java.util.function.Supplier;
+
+/**
+ * Parser that any number of threads can use at the same time.
+ * <p>
+ * The parsers themselves are not thread-safe: the hand-written parser keeps the tokens of the parse in progress, and
+ * {@link JmmParserImpl} reuses its ANTLR lexer and parser from one file to the next. The pool gives each thread its own
+ * instance, created the first time the thread parses and reused for all its next files. Threads only share what the
+ * parsers share on their own: the prediction DFA and context cache of the generated ANTLR lexer and parser, which are
+ * static and only changed by ANTLR under a lock, and the DFA snapshot, which is restored once under a lock.
+ */
+public final class ParserPool implements SourceParser {
+
+    private static final ParserPool ANTLR = new ParserPool(JmmParserImpl::new);
+    private static final ParserPool HANDWRITTEN = new ParserPool(HandwrittenJmmParser::new);
+
+    private final ThreadLocal<SourceParser> parsers;
+
+    public ParserPool(Supplier<? extends SourceParser> factory) {
+        this.parsers = ThreadLocal.withInitial(factory);
+    }
+
+    /**
+     * @param config
+     * @return the pool shared by the whole process for the parser selected with '-f'
+     */
+    public static ParserPool forConfig(Map<String, String> config) {
+        return CompilerConfig.isHandwrittenParser(config) ? HANDWRITTEN : ANTLR;
+    }
+
+    @Override
+    public String getDefaultRule() {
+        return parsers.get().getDefaultRule();
+    }
+
+    @Override
+    public JmmParserResult parse(CharSequence code, String startingRule, Map<String, String> config) {
+        return parsers.get().parse(code, startingRule, config);
+    }
+}
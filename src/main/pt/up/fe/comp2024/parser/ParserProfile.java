@@ -0,0 +1,148 @@
+package pt.up.fe.comp2024.parser;
+
+import org.antlr.v4.runtime.Parser;
+import org.antlr.v4.runtime.atn.DecisionInfo;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Prediction statistics of each decision of the grammar, collected by the ANTLR profiler and summed over all the files
+ * parsed with '-g'.
+ * <p>
+ * Slow decisions show up as a high prediction time, long SLL lookahead, many ATN transitions (the DFA did not have the
+ * edge yet) or fallbacks to full LL prediction.
+ */
+public class ParserProfile {
+
+    private static final ParserProfile GLOBAL = new ParserProfile();
+
+    private static final int DEFAULT_TABLE_SIZE = 15;
+
+    private final Map<Integer, Decision> decisions;
+    private int files;
+    private long tokens;
+    private long lexerNs;
+    private long parserNs;
+    private int reparses;
+
+    /**
+     * Statistics of one decision, summed over all parsed files.
+     */
+    private static class Decision {
+        private final int decision;
+        private final String rule;
+        private long invocations;
+        private long timeNs;
+        private long sllLookahead;
+        private long sllMaxLookahead;
+        private long sllAtnTransitions;
+        private long llFallbacks;
+        private long llLookahead;
+        private long ambiguities;
+        private long contextSensitivities;
+        private long errors;
+
+        private Decision(int decision, String rule) {
+            this.decision = decision;
+            this.rule = rule;
+        }
+
+        private void add(DecisionInfo info) {
+            invocations += info.invocations;
+            timeNs += info.timeInPrediction;
+            sllLookahead += info.SLL_TotalLook;
+            sllMaxLookahead = Math.max(sllMaxLookahead, info.SLL_MaxLook);
+            sllAtnTransitions += info.SLL_ATNTransitions;
+            llFallbacks += info.LL_Fallback;
+            llLookahead += info.LL_TotalLook;
+            ambiguities += info.ambiguities.size();
+            contextSensitivities += info.contextSensitivities.size();
+            errors += info.errors.size();
+        }
+    }
+
+    public ParserProfile() {
+        this.decisions = new TreeMap<>();
+    }
+
+    /**
+     * @return the profile of every file parsed by this process with '-g'
+     */
+    public static ParserProfile getGlobal() {
+        return GLOBAL;
+    }
+
+    /**
+     * Adds the statistics of a parser that was created with profiling enabled, after it parsed a file.
+     *
+     * @param parser
+     * @param tokens   the number of tokens of the file
+     * @param lexerNs  the time spent by the lexer
+     * @param parserNs the time spent by the parser, including the second parse with LL
+     * @param reparsed true if SLL prediction failed and the file was parsed again with full LL
+     */
+    public synchronized void add(Parser parser, int tokens, long lexerNs, long parserNs, boolean reparsed) {
+        var ruleNames = parser.getRuleNames();
+        var decisionToState = parser.getATN().decisionToState;
+
+        for (var info : parser.getParseInfo().getDecisionInfo()) {
+            if (info.invocations == 0) {
+                continue;
+            }
+
+            var rule = ruleNames[decisionToState.get(info.decision).ruleIndex];
+            decisions.computeIfAbsent(info.decision, decision -> new Decision(decision, rule)).add(info);
+        }
+
+        this.files++;
+        this.tokens += tokens;
+        this.lexerNs += lexerNs;
+        this.parserNs += parserNs;
+        if (reparsed) {
+            this.reparses++;
+        }
+    }
+
+    public synchronized boolean isEmpty() {
+        return files == 0;
+    }
+
+    public String toTable() {
+        return toTable(DEFAULT_TABLE_SIZE);
+    }
+
+    /**
+     * @param maxDecisions how many decisions are shown, the ones with the highest prediction time first
+     * @return
+     */
+    public synchronized String toTable(int maxDecisions) {
+        var table = new StringBuilder();
+
+        table.append(String.format("Parsed %d files, %d tokens: lexer %.2f ms, parser %.2f ms, "
+                + "%d parsed again with LL%n", files, tokens, lexerNs / 1e6, parserNs / 1e6, reparses));
+
+        table.append(String.format("%-8s %-20s %11s %10s %9s %8s %10s %9s %9s %7s %9s %7s%n", "Decision", "Rule",
+                "Invocations", "Time (ms)", "SLL look", "SLL max", "ATN trans.", "LL falls", "LL look", "Ambig.",
+                "Ctx sens.", "Errors"));
+
+        var sorted = new ArrayList<>(decisions.values());
+        sorted.sort(Comparator.comparingLong((Decision decision) -> decision.timeNs).reversed());
+
+        for (var decision : sorted.subList(0, Math.min(maxDecisions, sorted.size()))) {
+            table.append(String.format("%-8d %-20s %11d %10.3f %9.2f %8d %10d %9d %9d %7d %9d %7d%n",
+                    decision.decision, decision.rule, decision.invocations, decision.timeNs / 1e6,
+                    (double) decision.sllLookahead / decision.invocations, decision.sllMaxLookahead,
+                    decision.sllAtnTransitions, decision.llFallbacks, decision.llLookahead,
+                    decision.ambiguities, decision.contextSensitivities, decision.errors));
+        }
+
+        if (sorted.size() > maxDecisions) {
+            table.append(String.format("(%d more decisions)%n", sorted.size() - maxDecisions));
+        }
+
+        return table.toString();
+    }
+}
@@ -0,0 +1,24 @@
+package pt.up.fe.comp2024.parser;
+
+import pt.up.fe.comp.jmm.parser.JmmParser;
+import pt.up.fe.comp.jmm.parser.JmmParserResult;
+
+import java.util.Map;
+
+/**
+ * Parser that reads the code from any CharSequence, so that sources that are not Strings (e.g. a MappedSource) are
+ * parsed without copying them first.
+ */
+public interface SourceParser extends JmmParser {
+
+    JmmParserResult parse(CharSequence code, String startingRule, Map<String, String> config);
+
+    default JmmParserResult parse(CharSequence code, Map<String, String> config) {
+        return parse(code, getDefaultRule(), config);
+    }
+
+    @Override
+    default JmmParserResult parse(String jmmCode, String startingRule, Map<String, String> config) {
+        return parse((CharSequence) jmmCode, startingRule, config);
+    }
+}
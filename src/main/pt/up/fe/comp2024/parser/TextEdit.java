@@ -0,0 +1,63 @@
+package pt.up.fe.comp2024.parser;
+
+/**
+ * Replacement of a range of the code by new text, like the edits an editor makes.
+ *
+ * @param offset where the replaced range starts, in chars
+ * @param length the length of the replaced range, 0 for an insertion
+ * @param text   the text that replaces the range, empty for a deletion
+ */
+public record TextEdit(int offset, int length, String text) {
+
+    public TextEdit {
+        if (offset < 0 || length < 0) {
+            throw new IllegalArgumentException("Invalid range [" + offset + ", " + (offset + length) + ")");
+        }
+    }
+
+    /**
+     * @param before
+     * @param after
+     * @return the smallest edit that turns one code into the other, the range between their common prefix and suffix
+     */
+    public static TextEdit between(String before, String after) {
+        var maxCommon = Math.min(before.length(), after.length());
+
+        var prefix = 0;
+        while (prefix < maxCommon && before.charAt(prefix) == after.charAt(prefix)) {
+            prefix++;
+        }
+
+        var suffix = 0;
+        while (suffix < maxCommon - prefix
+                && before.charAt(before.length() - 1 - suffix) == after.charAt(after.length() - 1 - suffix)) {
+            suffix++;
+        }
+
+        return new TextEdit(prefix, before.length() - prefix - suffix,
+                after.substring(prefix, after.length() - suffix));
+    }
+
+    /**
+     * @return where the replaced range ends, exclusive
+     */
+    public int end() {
+        return offset + length;
+    }
+
+    /**
+     * @return how much longer the code is after the edit
+     */
+    public int delta() {
+        return text.length() - length;
+    }
+
+    public String apply(String code) {
+        if (end() > code.length()) {
+            throw new IllegalArgumentException("Range [" + offset + ", " + end() + ") is outside of the code, which has "
+                    + code.length() + " chars");
+        }
+
+        return code.substring(0, offset) + text + code.substring(end());
+    }
+}
@@ -3,6 +3,7 @@ package pt.up.fe.comp2024.symboltable;
 import pt.up.fe.comp.jmm.analysis.table.Symbol;
 import pt.up.fe.comp.jmm.analysis.table.SymbolTable;
 import pt.up.fe.comp.jmm.analysis.table.Type;
+import pt.up.fe.comp2024.ast.TypeTable;
 
 import java.util.ArrayList;
 import java.util.HashMap;
@@ -18,6 +19,8 @@ public class JmmSymbolTable implements SymbolTable {
     private final HashMap<String, Type> methodReturnTypes;
     private final HashMap<String, List<Symbol>> methodParameters;
     private final HashMap<String, List<Symbol>> methodLocalVariables;
+    private final SymbolIndex index;
+    private final TypeTable types;
 
     public JmmSymbolTable(String className,
                           String extendedClassName,
@@ -25,7 +28,8 @@ public class JmmSymbolTable implements SymbolTable {
                           ArrayList<String> methods,
                           HashMap<String, Type> methodReturnTypes,
                           HashMap<String, List<Symbol>> methodParameters,
-                          HashMap<String, List<Symbol>> methodLocalVariables) {
+                          HashMap<String, List<Symbol>> methodLocalVariables,
+                          TypeTable types) {
         this.className = className;
         this.extendedClassName = extendedClassName;
         this.imports = imports;
@@ -34,6 +38,22 @@ public class JmmSymbolTable implements SymbolTable {
         this.methodReturnTypes = methodReturnTypes;
         this.methodParameters = methodParameters;
         this.methodLocalVariables = methodLocalVariables;
+        this.index = new SymbolIndex(this);
+        this.types = types;
+    }
+
+    /**
+     * @return the index that resolves the names of this table
+     */
+    public SymbolIndex getIndex() {
+        return this.index;
+    }
+
+    /**
+     * @return the types of the expressions analysed with this table
+     */
+    public TypeTable getTypes() {
+        return this.types;
     }
 
     @Override
@@ -2,18 +2,20 @@ package pt.up.fe.comp2024.symboltable;
 
 import pt.up.fe.comp.jmm.analysis.table.Symbol;
 import pt.up.fe.comp.jmm.analysis.table.Type;
-import pt.up.fe.comp.jmm.ast.AJmmVisitor;
 import pt.up.fe.comp.jmm.ast.JmmNode;
 import pt.up.fe.comp.jmm.report.Report;
 import pt.up.fe.comp.jmm.report.Stage;
+import pt.up.fe.comp2024.ast.AKindVisitor;
+import pt.up.fe.comp2024.ast.Kind;
 import pt.up.fe.comp2024.ast.NodeUtils;
+import pt.up.fe.comp2024.ast.TypeTable;
+import pt.up.fe.comp2024.utils.Diagnostics;
 
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
-import java.util.Objects;
 
-public class JmmSymbolTableBuilder extends AJmmVisitor<String, String>  {
+public class JmmSymbolTableBuilder extends AKindVisitor<String, String>  {
 
     private String className = "";
     private String extendedClassName = "";
@@ -28,9 +30,18 @@ public class JmmSymbolTableBuilder extends AJmmVisitor<String, String>  {
     private final JmmSymbolTable table;
 
     public JmmSymbolTableBuilder(JmmNode rootNode){
+        this(rootNode, new TypeTable());
+    }
+
+    /**
+     * @param rootNode
+     * @param types    where the analysis keeps the types of the expressions, e.g., the types kept from the analysis of a
+     *                 previous version of the tree
+     */
+    public JmmSymbolTableBuilder(JmmNode rootNode, TypeTable types){
         visit(rootNode, "");
-        System.out.println("\n\nFinished Visit\n\n");
-        this.table = new JmmSymbolTable(className, extendedClassName, imports, fields, methods, methodReturnTypes, methodParams, methodLocalVariables);
+        Diagnostics.trace(() -> "\n\nFinished Visit\n\n");
+        this.table = new JmmSymbolTable(className, extendedClassName, imports, fields, methods, methodReturnTypes, methodParams, methodLocalVariables, types);
     }
 
     public JmmSymbolTable getTable(){
@@ -44,25 +55,25 @@ public class JmmSymbolTableBuilder extends AJmmVisitor<String, String>  {
     }
 
     public void buildVisitor() {
-        addVisit("Program", this::visitProgram);
-        addVisit("ImportDeclaration", this::visitImportDeclaration);
-        addVisit("ClassDeclaration", this::visitClassDeclaration);
-        addVisit("ClassBodyDeclaration", this::visitClassBodyDeclaration);
-        addVisit("MethodDeclaration", this::visitMethodDeclaration);
-        addVisit("MainMethodDeclaration", this::visitMainMethodDeclaration);
-        addVisit("MethodCodeBlock", this::visitMethodCodeBlock);
-        addVisit("MethodCodeBlockWithoutReturn", this::visitMethodCodeBlock);
-        addVisit("VarDeclaration", this::visitVarDeclaration);
+        addVisit(Kind.PROGRAM, this::visitProgram);
+        addVisit(Kind.IMPORT_DECLARATION, this::visitImportDeclaration);
+        addVisit(Kind.CLASS_DECLARATION, this::visitClassDeclaration);
+        addVisit(Kind.CLASS_BODY_DECLARATION, this::visitClassBodyDeclaration);
+        addVisit(Kind.METHOD_DECLARATION, this::visitMethodDeclaration);
+        addVisit(Kind.MAIN_METHOD_DECLARATION, this::visitMainMethodDeclaration);
+        addVisit(Kind.METHOD_CODE_BLOCK, this::visitMethodCodeBlock);
+        addVisit(Kind.METHOD_CODE_BLOCK_WITHOUT_RETURN, this::visitMethodCodeBlock);
+        addVisit(Kind.VAR_DECLARATION, this::visitVarDeclaration);
     }
 
     private String visitProgram(JmmNode jmmNode, String s) {
-        System.out.println("\nVisiting Program\n");
+        Diagnostics.trace(() -> "\nVisiting Program\n");
         for(var child : jmmNode.getChildren()) visit(child, s);
         return s;
     }
 
     private String visitImportDeclaration(JmmNode node, String s) {
-        System.out.println("\nVisiting Import\n");
+        Diagnostics.trace(() -> "\nVisiting Import\n");
         String importName = node.get("ID");
 
         if(this.imports.contains(importName)){
@@ -78,16 +89,16 @@ public class JmmSymbolTableBuilder extends AJmmVisitor<String, String>  {
         }
 
         this.imports.add(importName);
-        System.out.println("Import Name: " + importName);
+        Diagnostics.trace(() -> "Import Name: " + importName);
         return s;
     }
 
     private String visitClassDeclaration(JmmNode node, String s) {
-        System.out.println("\n\nVisiting Class\n");
+        Diagnostics.trace(() -> "\n\nVisiting Class\n");
         this.className = node.get("name");
         this.extendedClassName = node.hasAttribute("extendedName") ? node.get("extendedName") : "not extended";
-        System.out.println("Class Name: " + this.className);
-        System.out.println("Extended Class Name: " + this.extendedClassName);
+        Diagnostics.trace(() -> "Class Name: " + this.className);
+        Diagnostics.trace(() -> "Extended Class Name: " + this.extendedClassName);
         for (JmmNode child : node.getChildren()) {
             visit(child, s);
         }
@@ -96,8 +107,8 @@ public class JmmSymbolTableBuilder extends AJmmVisitor<String, String>  {
     }
 
     private String visitClassBodyDeclaration(JmmNode node, String s) {
-        System.out.println("\n\nVisiting Class Body\n");
-        System.out.println("Visiting classdecl children: \n" + node.getChildren());
+        Diagnostics.trace(() -> "\n\nVisiting Class Body\n");
+        Diagnostics.trace(() -> "Visiting classdecl children: \n" + node.getChildren());
         for (JmmNode child : node.getChildren()) {
             visit(child, s);
         }
@@ -106,7 +117,7 @@ public class JmmSymbolTableBuilder extends AJmmVisitor<String, String>  {
     }
 
     private String visitMethodDeclaration(JmmNode node, String s) {
-        System.out.println("\nVisiting Method Declaration\n");
+        Diagnostics.trace(() -> "\nVisiting Method Declaration\n");
         String methodName = node.get("name");
         if (this.methods.contains(methodName)) {
             var message = String.format("Method %s already declared", node.get("name"));
@@ -120,13 +131,13 @@ public class JmmSymbolTableBuilder extends AJmmVisitor<String, String>  {
             return s;
         }
         this.methods.add(methodName);
-        System.out.println("Method Name: " + methodName);
-        System.out.println("Method Children:");
-        System.out.println(node.getChildren());
+        Diagnostics.trace(() -> "Method Name: " + methodName);
+        Diagnostics.trace(() -> "Method Children:");
+        Diagnostics.trace(() -> node.getChildren().toString());
         this.methodParams.put(methodName, new ArrayList<>());
 
         for (JmmNode child : node.getChildren()) {
-            if(Objects.equals(child.getKind(), "FunctionParameters")) {
+            if(Kind.FUNCTION_PARAMETERS.check(child)) {
                 List<Symbol> params = new ArrayList<>();
 
                 String parameters = child.get("name");
@@ -138,7 +149,7 @@ public class JmmSymbolTableBuilder extends AJmmVisitor<String, String>  {
                 int i = 0;
                 for (JmmNode param : child.getChildren()) {
                     String paramName = paramList[i++];
-                    boolean isArray = param.getKind().equals("IntVectorType1") || param.getKind().equals("IntVectorType2");
+                    boolean isArray = Kind.INT_VECTOR_TYPE1.check(param) || Kind.INT_VECTOR_TYPE2.check(param);
                     String paramType = isArray ? "int" : param.get("name");
                     if(params.stream().anyMatch(p -> p.getName().equals(paramName))){
                         var message = String.format("Parameter %s already declared", paramName);
@@ -156,16 +167,16 @@ public class JmmSymbolTableBuilder extends AJmmVisitor<String, String>  {
 
                 this.methodParams.put(methodName, params);
             }
-            else if(Objects.equals(child.getKind(), "MethodCodeBlock")){
+            else if(Kind.METHOD_CODE_BLOCK.check(child)){
                 visit(child, s);
-            } else if (Objects.equals(child.getKind(), "MethodCodeBlockWithoutReturn")){
+            } else if (Kind.METHOD_CODE_BLOCK_WITHOUT_RETURN.check(child)){
                 boolean isArray = false;
                 String returnType = "void";
                 this.methodReturnTypes.put(methodName, new Type(returnType, isArray));
                 visit(child, s);
             }
             else {
-                boolean isArray = child.getKind().equals("IntVectorType1") || child.getKind().equals("IntVectorType2");
+                boolean isArray = Kind.INT_VECTOR_TYPE1.check(child) || Kind.INT_VECTOR_TYPE2.check(child);
                 String returnType = isArray ? "int" : child.get("name");
                 this.methodReturnTypes.put(methodName, new Type(returnType, isArray));
             }
@@ -176,7 +187,7 @@ public class JmmSymbolTableBuilder extends AJmmVisitor<String, String>  {
     }
 
     private String visitMainMethodDeclaration(JmmNode node, String s) {
-        System.out.println("\n\nVisiting Main Method Declaration\n");
+        Diagnostics.trace(() -> "\n\nVisiting Main Method Declaration\n");
         this.methods.add("main");
         List<Symbol> params = new ArrayList<>();
         params.add(new Symbol(new Type("string", true), "args"));
@@ -190,15 +201,15 @@ public class JmmSymbolTableBuilder extends AJmmVisitor<String, String>  {
     }
 
     private String visitMethodCodeBlock(JmmNode node, String s) {
-        System.out.println("\nVisiting Method Code Block\n");
+        Diagnostics.trace(() -> "\nVisiting Method Code Block\n");
 
         if(node.getParent().hasAttribute("name")) {
             ArrayList<Symbol> localVariables = new ArrayList<>();
             this.methodLocalVariables.put(node.getParent().get("name"), localVariables);
             for (JmmNode child : node.getChildren()) {
-                if (Objects.equals(child.getKind(), "VarDeclaration")) {
+                if (Kind.VAR_DECLARATION.check(child)) {
                     Symbol var;
-                    if (child.getChild(0).getKind().equals("IntVectorType2")){
+                    if (Kind.INT_VECTOR_TYPE2.check(child.getChild(0))){
                         var message = String.format("Local variable %s cannot be of type varArg", child.get("name"));
                         addReport(Report.newError(
                                 Stage.SEMANTIC,
@@ -220,7 +231,7 @@ public class JmmSymbolTableBuilder extends AJmmVisitor<String, String>  {
                         );
                         return s;
                     }
-                    if(child.getChild(0).getKind().equals("IntVectorType1"))
+                    if(Kind.INT_VECTOR_TYPE1.check(child.getChild(0)))
                         var = new Symbol(new Type("int", true), child.get("name"));
                     else
                         var = new Symbol(new Type(child.getChild(0).get("name"), false), child.get("name"));
@@ -233,9 +244,9 @@ public class JmmSymbolTableBuilder extends AJmmVisitor<String, String>  {
             ArrayList<Symbol> localVariables = new ArrayList<>();
             this.methodLocalVariables.put("main", localVariables);
             for (JmmNode child : node.getChildren()) {
-                if (Objects.equals(child.getKind(), "VarDeclaration")) {
+                if (Kind.VAR_DECLARATION.check(child)) {
                     Symbol var;
-                    if (child.getChild(0).getKind().equals("IntVectorType2")){
+                    if (Kind.INT_VECTOR_TYPE2.check(child.getChild(0))){
                         var message = String.format("Local variable %s cannot be of type varArg", child.get("name"));
                         addReport(Report.newError(
                                 Stage.SEMANTIC,
@@ -257,7 +268,7 @@ public class JmmSymbolTableBuilder extends AJmmVisitor<String, String>  {
                         );
                         return s;
                     }
-                    if(child.getChild(0).getKind().equals("IntVectorType1"))
+                    if(Kind.INT_VECTOR_TYPE1.check(child.getChild(0)))
                         var = new Symbol(new Type("int", true), child.get("name"));
                     else
                         var = new Symbol(new Type(child.getChild(0).get("name"), false), child.get("name"));
@@ -273,7 +284,7 @@ public class JmmSymbolTableBuilder extends AJmmVisitor<String, String>  {
         String varName = node.get("name");
         String varType = node.getChild(0).get("name");
         boolean isArray = false;
-        if (node.getChild(0).getKind().equals("IntVectorType2")){
+        if (Kind.INT_VECTOR_TYPE2.check(node.getChild(0))){
             var message = String.format("Field variable %s cannot be of type varArg", varName);
             addReport(Report.newError(
                     Stage.SEMANTIC,
@@ -284,7 +295,7 @@ public class JmmSymbolTableBuilder extends AJmmVisitor<String, String>  {
             );
             return s;
         }
-        if(node.getChild(0).getKind().equals("IntVectorType1")) {
+        if(Kind.INT_VECTOR_TYPE1.check(node.getChild(0))) {
             isArray = true;
             varType = "int";
         }
@@ -0,0 +1,190 @@
+package pt.up.fe.comp2024.symboltable;
+
+import pt.up.fe.comp.jmm.analysis.table.Symbol;
+import pt.up.fe.comp.jmm.analysis.table.SymbolTable;
+import pt.up.fe.comp.jmm.analysis.table.Type;
+import pt.up.fe.comp.jmm.ast.JmmNode;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+/**
+ * Resolves names of a symbol table with hash lookups, instead of searching the lists of the table.
+ * <p>
+ * Each method has a map with every name that can be used in it: its parameters, which hide its local variables, which
+ * hide the fields, which hide the imported classes. The analysis resolves each variable reference once and keeps the
+ * symbol in the node ({@link #setResolved}), so the later stages read it instead of resolving the name again.
+ */
+public class SymbolIndex {
+
+    private static final String RESOLVED_SYMBOL = "resolvedSymbol";
+
+    public enum SymbolKind {
+        LOCAL,
+        PARAM,
+        FIELD,
+        IMPORT,
+        CLASS
+    }
+
+    /**
+     * @param type the declared type, or the class itself for imports and the class
+     */
+    public record ResolvedSymbol(String name, SymbolKind kind, Type type) {
+
+        public boolean isField() {
+            return kind == SymbolKind.FIELD;
+        }
+
+        /**
+         * Short, as it is printed with the attributes of the node it is kept in.
+         */
+        @Override
+        public String toString() {
+            return kind.name().toLowerCase() + " " + type.getName() + (type.isArray() ? "[]" : "");
+        }
+    }
+
+    public record MethodSymbol(String name, Type returnType, List<Symbol> parameters) {
+    }
+
+    /**
+     * Fields and imports, the names that can be used in methods that are not in the table.
+     */
+    private final Map<String, ResolvedSymbol> classScope;
+    private final Map<String, Map<String, ResolvedSymbol>> methodScopes;
+    private final Map<String, ResolvedSymbol> fields;
+    private final Map<String, ResolvedSymbol> classes;
+    private final Map<String, MethodSymbol> methods;
+
+    public SymbolIndex(SymbolTable table) {
+        this.fields = new HashMap<>();
+        this.classes = new HashMap<>();
+        this.classScope = new HashMap<>();
+        this.methodScopes = new HashMap<>();
+        this.methods = new HashMap<>();
+
+        // The first declaration of a name wins, like a search of the lists
+        for (var field : table.getFields()) {
+            fields.putIfAbsent(field.getName(), new ResolvedSymbol(field.getName(), SymbolKind.FIELD, field.getType()));
+        }
+
+        for (var imported : table.getImports()) {
+            classes.putIfAbsent(imported, new ResolvedSymbol(imported, SymbolKind.IMPORT, new Type(imported, false)));
+        }
+
+        classScope.putAll(classes);
+        classScope.putAll(fields);
+
+        var className = table.getClassName();
+        classes.putIfAbsent(className, new ResolvedSymbol(className, SymbolKind.CLASS, new Type(className, false)));
+
+        for (var method : table.getMethods()) {
+            var parameters = table.getParameters(method);
+            var locals = table.getLocalVariables(method);
+
+            methods.putIfAbsent(method, new MethodSymbol(method, table.getReturnType(method),
+                    parameters != null ? parameters : List.of()));
+
+            var scope = new HashMap<String, ResolvedSymbol>();
+            addSymbols(scope, parameters, SymbolKind.PARAM);
+            addSymbols(scope, locals, SymbolKind.LOCAL);
+            classScope.forEach(scope::putIfAbsent);
+
+            methodScopes.putIfAbsent(method, scope);
+        }
+    }
+
+    private static void addSymbols(Map<String, ResolvedSymbol> scope, List<Symbol> symbols, SymbolKind kind) {
+        if (symbols == null) {
+            return;
+        }
+
+        for (var symbol : symbols) {
+            scope.putIfAbsent(symbol.getName(), new ResolvedSymbol(symbol.getName(), kind, symbol.getType()));
+        }
+    }
+
+    /**
+     * @param table
+     * @return the index the table keeps, if it is a {@link JmmSymbolTable}, or a new index of it
+     */
+    public static SymbolIndex of(SymbolTable table) {
+        if (table instanceof JmmSymbolTable jmmTable) {
+            return jmmTable.getIndex();
+        }
+
+        return new SymbolIndex(table);
+    }
+
+    /**
+     * @param method the method where the name is used
+     * @param name   a variable, or an imported class
+     * @return what the name refers to in the method: a parameter, a local variable, a field or an imported class
+     */
+    public Optional<ResolvedSymbol> resolve(String method, String name) {
+        var scope = methodScopes.getOrDefault(method, classScope);
+
+        return Optional.ofNullable(scope.get(name));
+    }
+
+    public Optional<ResolvedSymbol> getField(String name) {
+        return Optional.ofNullable(fields.get(name));
+    }
+
+    /**
+     * @param node a node with a 'name', e.g. a VarRefExpr or an AssignStmt
+     * @return the field the node refers to, as resolved by the analysis, or the field with the name of the node if the
+     * analysis did not resolve it
+     */
+    public Optional<ResolvedSymbol> resolveField(JmmNode node) {
+        var resolved = getResolved(node);
+        if (resolved.isPresent()) {
+            return resolved.filter(ResolvedSymbol::isField);
+        }
+
+        return getField(node.get("name"));
+    }
+
+    /**
+     * @param name
+     * @return the imported class or the class of the table with the given name
+     */
+    public Optional<ResolvedSymbol> resolveClass(String name) {
+        return Optional.ofNullable(classes.get(name));
+    }
+
+    public boolean isImported(String name) {
+        var symbol = classes.get(name);
+
+        return symbol != null && symbol.kind() == SymbolKind.IMPORT;
+    }
+
+    public Optional<MethodSymbol> getMethod(String name) {
+        return Optional.ofNullable(methods.get(name));
+    }
+
+    public boolean hasMethod(String name) {
+        return methods.containsKey(name);
+    }
+
+    /**
+     * Keeps the symbol a node refers to in the node.
+     *
+     * @param node
+     * @param symbol
+     */
+    public static void setResolved(JmmNode node, ResolvedSymbol symbol) {
+        node.putObject(RESOLVED_SYMBOL, symbol);
+    }
+
+    /**
+     * @param node
+     * @return the symbol the analysis resolved for the node, if it did
+     */
+    public static Optional<ResolvedSymbol> getResolved(JmmNode node) {
+        return node.getOptionalObject(RESOLVED_SYMBOL).map(ResolvedSymbol.class::cast);
+    }
+}
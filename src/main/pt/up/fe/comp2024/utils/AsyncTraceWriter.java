@@ -0,0 +1,142 @@
+package pt.up.fe.comp2024.utils;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Writes lines to a file from a background thread, so that the compiling threads only pay for adding the line to a
+ * queue.
+ * <p>
+ * The queue is bounded: when the file cannot keep up, the compiling threads wait for room instead of filling the heap.
+ * Lines that cannot be written at all, because the writer is closed or failed, are counted as dropped.
+ */
+public class AsyncTraceWriter {
+
+    public static final int DEFAULT_CAPACITY = 1 << 16;
+
+    // Marks the end of the messages, cannot be equal to a message
+    private static final String END = new String("END");
+
+    // How long a full queue is waited for before checking that the writer thread is still running
+    private static final long WAIT_MS = 100;
+
+    private final BlockingQueue<String> queue;
+    private final BufferedWriter writer;
+    private final Thread thread;
+    private final LongAdder droppedLines = new LongAdder();
+    private volatile boolean closed;
+
+    public AsyncTraceWriter(File traceFile) {
+        this(traceFile, DEFAULT_CAPACITY);
+    }
+
+    /**
+     * @param capacity the number of lines that can wait to be written
+     */
+    public AsyncTraceWriter(File traceFile, int capacity) {
+        this.queue = new ArrayBlockingQueue<>(capacity);
+
+        try {
+            this.writer = Files.newBufferedWriter(traceFile.toPath(), StandardCharsets.UTF_8);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not open trace file '" + traceFile + "'", e);
+        }
+
+        this.thread = new Thread(this::drain, "jmm-trace-writer");
+        this.thread.setDaemon(true);
+        this.thread.start();
+    }
+
+    /**
+     * Adds the line to the queue, waiting for room if it is full.
+     */
+    public void write(String message) {
+        if (closed || !enqueue(message)) {
+            droppedLines.increment();
+        }
+    }
+
+    /**
+     * @return the number of lines that were not written, because the writer was closed or could not write the file
+     */
+    public long getDroppedLines() {
+        return droppedLines.sum();
+    }
+
+    /**
+     * @return false if the writer thread stopped, so the queue would never have room
+     */
+    private boolean enqueue(String message) {
+        try {
+            while (!queue.offer(message, WAIT_MS, TimeUnit.MILLISECONDS)) {
+                if (!thread.isAlive()) {
+                    return false;
+                }
+            }
+
+            return true;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+
+    private void drain() {
+        var batch = new ArrayList<String>();
+
+        try {
+            while (true) {
+                batch.add(queue.take());
+                queue.drainTo(batch);
+
+                for (int i = 0; i < batch.size(); i++) {
+                    var message = batch.get(i);
+                    if (message == END) {
+                        writer.close();
+                        // Written while closing
+                        droppedLines.add(batch.size() - i - 1 + queue.size());
+                        return;
+                    }
+
+                    writer.write(message);
+                    writer.newLine();
+                }
+                batch.clear();
+
+                // Keep the file up to date while the compiler is idle
+                if (queue.isEmpty()) {
+                    writer.flush();
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (IOException e) {
+            droppedLines.add(batch.size() + queue.size());
+            queue.clear();
+            throw new UncheckedIOException("Could not write to trace file", e);
+        }
+    }
+
+    /**
+     * Writes every pending message and closes the file.
+     */
+    public void close() {
+        closed = true;
+        enqueue(END);
+
+        try {
+            thread.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,108 @@
+package pt.up.fe.comp2024.utils;
+
+import pt.up.fe.comp2024.CompilerConfig;
+
+import java.util.Locale;
+import java.util.Map;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+/**
+ * Leveled channel for the debug output of the compiler.
+ * <p>
+ * Messages are given as suppliers and are only built if their level is enabled, so that the tracing in the visitors
+ * and in the backend costs a level check when disabled. By default, messages go to the standard output; with a trace
+ * file ('-t=FILE') they are written to the file by a background thread.
+ */
+public class Diagnostics {
+
+    public enum Level {
+        OFF,
+        INFO,
+        DEBUG,
+        TRACE
+    }
+
+    private static volatile Level level = Level.INFO;
+    private static volatile Consumer<String> sink = message -> System.out.println(message);
+    private static AsyncTraceWriter traceWriter = null;
+
+    /**
+     * Sets the level from '-v=LEVEL' and the trace file from '-t=FILE'. A trace file without a level enables every
+     * message.
+     *
+     * @param config
+     */
+    public static synchronized void configure(Map<String, String> config) {
+        var traceFile = CompilerConfig.getTraceFile(config);
+
+        var verbosity = CompilerConfig.getVerbosity(config)
+                .or(() -> traceFile.map(file -> Level.TRACE.name()));
+        verbosity.ifPresent(name -> setLevel(parseLevel(name)));
+
+        traceFile.ifPresent(file -> {
+            closeTraceFile();
+            traceWriter = new AsyncTraceWriter(file);
+            sink = traceWriter::write;
+
+            // Flush pending messages when the program exits
+            Runtime.getRuntime().addShutdownHook(new Thread(Diagnostics::closeTraceFile));
+        });
+    }
+
+    private static Level parseLevel(String name) {
+        // Just '-v'
+        if (name.equals("true")) {
+            return Level.DEBUG;
+        }
+
+        try {
+            return Level.valueOf(name.toUpperCase(Locale.ROOT));
+        } catch (IllegalArgumentException e) {
+            throw new RuntimeException("Unknown diagnostics level '" + name + "', expected off, info, debug or trace");
+        }
+    }
+
+    public static synchronized void closeTraceFile() {
+        if (traceWriter == null) {
+            return;
+        }
+
+        sink = message -> System.out.println(message);
+        traceWriter.close();
+        if (traceWriter.getDroppedLines() > 0) {
+            System.err.println(traceWriter.getDroppedLines() + " lines were not written to the trace file");
+        }
+        traceWriter = null;
+    }
+
+    public static void setLevel(Level level) {
+        Diagnostics.level = level;
+    }
+
+    public static Level getLevel() {
+        return level;
+    }
+
+    public static boolean isEnabled(Level messageLevel) {
+        return messageLevel != Level.OFF && messageLevel.ordinal() <= level.ordinal();
+    }
+
+    public static void log(Level messageLevel, Supplier<String> message) {
+        if (isEnabled(messageLevel)) {
+            sink.accept(message.get());
+        }
+    }
+
+    public static void info(Supplier<String> message) {
+        log(Level.INFO, message);
+    }
+
+    public static void debug(Supplier<String> message) {
+        log(Level.DEBUG, message);
+    }
+
+    public static void trace(Supplier<String> message) {
+        log(Level.TRACE, message);
+    }
+}
@@ -1,11 +1,15 @@
 package pt.up.fe.comp2024.utils;
 
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
 import pt.up.fe.comp.jmm.ast.JmmNode;
 import pt.up.fe.comp.jmm.report.Report;
 import pt.up.fe.comp.jmm.report.ReportType;
 import pt.up.fe.comp.jmm.report.Stage;
 import pt.up.fe.comp2024.ast.NodeUtils;
 
+import java.util.ArrayList;
 import java.util.List;
 
 public class ReportUtils {
@@ -49,4 +53,42 @@ public class ReportUtils {
 
         return reports.stream().anyMatch(r -> r.getType() == ReportType.ERROR);
     }
+
+    /**
+     * Converts reports to JSON, so that they can be stored or sent to another process. Exceptions are not kept.
+     *
+     * @param reports
+     * @return
+     */
+    public static JsonArray toJson(List<Report> reports) {
+        var array = new JsonArray();
+
+        for (var report : reports) {
+            var json = new JsonObject();
+            json.addProperty("type", report.getType().name());
+            json.addProperty("stage", report.getStage().name());
+            json.addProperty("line", report.getLine());
+            json.addProperty("column", report.getColumn());
+            json.addProperty("message", report.getMessage());
+            array.add(json);
+        }
+
+        return array;
+    }
+
+    public static List<Report> fromJson(JsonArray array) {
+        var reports = new ArrayList<Report>();
+
+        for (JsonElement element : array) {
+            var json = element.getAsJsonObject();
+            reports.add(new Report(
+                    ReportType.valueOf(json.get("type").getAsString()),
+                    Stage.valueOf(json.get("stage").getAsString()),
+                    json.get("line").getAsInt(),
+                    json.get("column").getAsInt(),
+                    json.get("message").getAsString()));
+        }
+
+        return reports;
+    }
 }
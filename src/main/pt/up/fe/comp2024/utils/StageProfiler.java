@@ -0,0 +1,306 @@
+package pt.up.fe.comp2024.utils;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonObject;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Supplier;
+
+/**
+ * Records the wall time, CPU time and bytes allocated by each stage of a compilation.
+ * <p>
+ * A profiler is active for the thread that calls {@link #activate()}, and stages report to it through
+ * {@link #measure(String, Supplier)}. When no profiler is active, measure just runs the stage, so the stages can be
+ * instrumented unconditionally. Stages measured inside another stage are kept as its children.
+ * <p>
+ * Parts of a stage that run too many times to be recorded one by one, or on other threads, e.g., the hooks of each
+ * analysis pass on the threads of a pool, are summed by name in the {@link Totals} of the stage, and kept as its
+ * children when it ends. Their times are summed over the threads, so together they can take longer than the stage.
+ */
+public class StageProfiler {
+
+    private static final ThreadLocal<StageProfiler> CURRENT = new ThreadLocal<>();
+    private static final com.sun.management.ThreadMXBean THREADS = getThreadBean();
+
+    private final List<Entry> entries;
+    private final Deque<Totals> running;
+    private int depth;
+
+    public StageProfiler() {
+        this.entries = new ArrayList<>();
+        this.running = new ArrayDeque<>();
+        this.depth = 0;
+    }
+
+    /**
+     * A measured stage. Times are in nanoseconds, and are -1 if the JVM does not support the counter.
+     */
+    public static class Entry {
+        private final String name;
+        private final int depth;
+        private long wallNs;
+        private long cpuNs;
+        private long allocatedBytes;
+
+        private Entry(String name, int depth) {
+            this.name = name;
+            this.depth = depth;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public int getDepth() {
+            return depth;
+        }
+
+        public long getWallNs() {
+            return wallNs;
+        }
+
+        public long getCpuNs() {
+            return cpuNs;
+        }
+
+        public long getAllocatedBytes() {
+            return allocatedBytes;
+        }
+    }
+
+    /**
+     * The parts of a stage summed by name, from any thread. Thread-safe.
+     */
+    public static class Totals {
+        private final int depth;
+        private final Map<String, Entry> entries;
+
+        private Totals(int depth) {
+            this.depth = depth;
+            this.entries = new LinkedHashMap<>();
+        }
+
+        /**
+         * @param name
+         * @return a timer of a part of the stage, for the current thread
+         */
+        public Timer newTimer(String name) {
+            return new Timer(this, name);
+        }
+
+        private synchronized void add(Timer timer) {
+            var total = entries.computeIfAbsent(timer.name, name -> new Entry(name, depth));
+            addTo(total, timer.wallNs, timer.cpuNs, timer.allocatedBytes);
+        }
+
+        private synchronized List<Entry> getEntries() {
+            return new ArrayList<>(entries.values());
+        }
+    }
+
+    /**
+     * Sums the time a part of a stage takes each time it runs on a thread, until it is added to the totals of the
+     * stage. Not thread-safe, each thread has its own timers.
+     */
+    public static class Timer {
+        private final Totals totals;
+        private final String name;
+        private long wallNs;
+        private long cpuNs;
+        private long allocatedBytes;
+        private long startWall;
+        private long startCpu;
+        private long startAllocated;
+
+        private Timer(Totals totals, String name) {
+            this.totals = totals;
+            this.name = name;
+        }
+
+        public void start() {
+            startCpu = getCpuTime();
+            startAllocated = getAllocatedBytes();
+            startWall = System.nanoTime();
+        }
+
+        public void stop() {
+            wallNs += System.nanoTime() - startWall;
+            cpuNs = cpuNs < 0 || startCpu < 0 ? -1 : cpuNs + getCpuTime() - startCpu;
+            allocatedBytes = allocatedBytes < 0 || startAllocated < 0 ?
+                    -1 : allocatedBytes + getAllocatedBytes() - startAllocated;
+        }
+
+        /**
+         * Adds the time measured so far to the totals of the stage.
+         */
+        public void addToTotals() {
+            totals.add(this);
+            wallNs = 0;
+            cpuNs = 0;
+            allocatedBytes = 0;
+        }
+    }
+
+    private static com.sun.management.ThreadMXBean getThreadBean() {
+        var bean = ManagementFactory.getThreadMXBean();
+        if (!(bean instanceof com.sun.management.ThreadMXBean threads)) {
+            return null;
+        }
+
+        if (threads.isThreadCpuTimeSupported()) {
+            threads.setThreadCpuTimeEnabled(true);
+        }
+        if (threads.isThreadAllocatedMemorySupported()) {
+            threads.setThreadAllocatedMemoryEnabled(true);
+        }
+
+        return threads;
+    }
+
+    /**
+     * Makes this profiler receive the stages measured by the current thread.
+     */
+    public void activate() {
+        CURRENT.set(this);
+    }
+
+    public void deactivate() {
+        CURRENT.remove();
+    }
+
+    /**
+     * Runs the given stage, recording it in the profiler of the current thread, if there is one.
+     *
+     * @param name
+     * @param stage
+     * @return the value returned by the stage
+     */
+    public static <T> T measure(String name, Supplier<T> stage) {
+        var profiler = CURRENT.get();
+        if (profiler == null) {
+            return stage.get();
+        }
+
+        return profiler.record(name, stage);
+    }
+
+    /**
+     * @return the totals of the stage the current thread is measuring, to be handed to the threads that work for the
+     * stage, or null if there is none
+     */
+    public static Totals getTotals() {
+        var profiler = CURRENT.get();
+        return profiler == null ? null : profiler.running.peek();
+    }
+
+    private <T> T record(String name, Supplier<T> stage) {
+        // Add the entry before running, so that nested stages come after their parent
+        var entry = new Entry(name, depth);
+        entries.add(entry);
+        depth++;
+
+        var totals = new Totals(depth);
+        running.push(totals);
+
+        var startCpu = getCpuTime();
+        var startAllocated = getAllocatedBytes();
+        var startWall = System.nanoTime();
+
+        try {
+            return stage.get();
+        } finally {
+            entry.wallNs = System.nanoTime() - startWall;
+            entry.cpuNs = startCpu < 0 ? -1 : getCpuTime() - startCpu;
+            entry.allocatedBytes = startAllocated < 0 ? -1 : getAllocatedBytes() - startAllocated;
+            depth--;
+
+            running.pop();
+            entries.addAll(totals.getEntries());
+        }
+    }
+
+    private static long getCpuTime() {
+        if (THREADS == null || !THREADS.isCurrentThreadCpuTimeSupported()) {
+            return -1;
+        }
+
+        return THREADS.getCurrentThreadCpuTime();
+    }
+
+    private static long getAllocatedBytes() {
+        if (THREADS == null || !THREADS.isThreadAllocatedMemorySupported()) {
+            return -1;
+        }
+
+        return THREADS.getCurrentThreadAllocatedBytes();
+    }
+
+    public List<Entry> getEntries() {
+        return entries;
+    }
+
+    /**
+     * Sums the stages with the same name over several profiles, e.g. to get the totals of a batch.
+     *
+     * @param profilers
+     * @return
+     */
+    public static StageProfiler merge(List<StageProfiler> profilers) {
+        var merged = new LinkedHashMap<String, Entry>();
+
+        for (var profiler : profilers) {
+            for (var entry : profiler.entries) {
+                var total = merged.computeIfAbsent(entry.name, name -> new Entry(name, entry.depth));
+                addTo(total, entry.wallNs, entry.cpuNs, entry.allocatedBytes);
+            }
+        }
+
+        var profiler = new StageProfiler();
+        profiler.entries.addAll(merged.values());
+
+        return profiler;
+    }
+
+    private static void addTo(Entry total, long wallNs, long cpuNs, long allocatedBytes) {
+        total.wallNs += wallNs;
+        total.cpuNs = total.cpuNs < 0 || cpuNs < 0 ? -1 : total.cpuNs + cpuNs;
+        total.allocatedBytes = total.allocatedBytes < 0 || allocatedBytes < 0 ?
+                -1 : total.allocatedBytes + allocatedBytes;
+    }
+
+    public String toTable() {
+        var table = new StringBuilder();
+        table.append(String.format("%-32s %12s %12s %14s%n", "Stage", "Wall (ms)", "CPU (ms)", "Allocated (KB)"));
+
+        for (var entry : entries) {
+            var name = "  ".repeat(entry.depth) + entry.name;
+            table.append(String.format("%-32s %12.3f %12s %14s%n", name, entry.wallNs / 1e6,
+                    entry.cpuNs < 0 ? "n/a" : String.format("%.3f", entry.cpuNs / 1e6),
+                    entry.allocatedBytes < 0 ? "n/a" : Long.toString(entry.allocatedBytes / 1024)));
+        }
+
+        return table.toString();
+    }
+
+    public JsonArray toJson() {
+        var array = new JsonArray();
+
+        for (var entry : entries) {
+            var json = new JsonObject();
+            json.addProperty("stage", entry.name);
+            json.addProperty("depth", entry.depth);
+            json.addProperty("wallNs", entry.wallNs);
+            json.addProperty("cpuNs", entry.cpuNs);
+            json.addProperty("allocatedBytes", entry.allocatedBytes);
+            array.add(json);
+        }
+
+        return array;
+    }
+}
@@ -0,0 +1,84 @@
+package pt.up.fe.comp2024;
+
+import pt.up.fe.comp.jmm.ast.JmmNode;
+import pt.up.fe.comp.jmm.parser.JmmParserResult;
+import pt.up.fe.comp2024.ast.CompactAst;
+import pt.up.fe.comp2024.parser.HandwrittenJmmParser;
+import pt.up.fe.specs.util.SpecsIo;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * What the tests that run over every .jmm file of the tests share: the list of files, parsing a program and comparing
+ * two trees.
+ */
+public final class CompilerTestUtils {
+
+    private static final File CORPUS = new File("test");
+
+    private CompilerTestUtils() {
+    }
+
+    /**
+     * @return every .jmm file under test/, in a fixed order
+     */
+    public static List<File> listCorpus() {
+        var files = SpecsIo.getFilesRecursive(CORPUS, "jmm");
+        files.sort(Comparator.comparing(File::getPath));
+        assertFalse("No .jmm files in '" + CORPUS.getAbsolutePath() + "'", files.isEmpty());
+
+        return files;
+    }
+
+    /**
+     * Parses a program with the hand-written parser and the default configuration.
+     */
+    public static JmmParserResult parseResult(String code) {
+        return new HandwrittenJmmParser().parse(code, CompilerConfig.getDefault());
+    }
+
+    /**
+     * @return the root of the program, or null if it does not parse
+     */
+    public static JmmNode parse(String code) {
+        return parseResult(code).getRootNode();
+    }
+
+    /**
+     * @param compact if the tree is converted to {@link pt.up.fe.comp2024.ast.CompactJmmNode}s, like with '-k'
+     * @return the root of the program, or null if it does not parse
+     */
+    public static JmmNode parse(String code, boolean compact) {
+        var root = parse(code);
+        return compact && root != null ? CompactAst.convert(root) : root;
+    }
+
+    /**
+     * Compares kind, hierarchy, attributes and children, and reports the path to the first node that differs.
+     */
+    public static void assertSameTree(String path, JmmNode expected, JmmNode actual) {
+        var nodePath = path + " > " + expected.getKind();
+
+        assertEquals(nodePath + ": kind", expected.getKind(), actual.getKind());
+        assertEquals(nodePath + ": hierarchy", new ArrayList<>(expected.getHierarchy()),
+                new ArrayList<>(actual.getHierarchy()));
+
+        assertEquals(nodePath + ": attributes", new HashSet<>(expected.getAttributes()),
+                new HashSet<>(actual.getAttributes()));
+        for (var attribute : expected.getAttributes()) {
+            assertEquals(nodePath + ": attribute '" + attribute + "'", expected.getObject(attribute),
+                    actual.getObject(attribute));
+        }
+
+        assertEquals(nodePath + ": number of children", expected.getNumChildren(), actual.getNumChildren());
+        for (int i = 0; i < expected.getNumChildren(); i++) {
+            assertSameTree(nodePath + "[" + i + "]", expected.getJmmChild(i), actual.getJmmChild(i));
+        }
+    }
+}
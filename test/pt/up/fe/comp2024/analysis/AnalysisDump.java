@@ -0,0 +1,46 @@
+package pt.up.fe.comp2024.analysis;
+
+import pt.up.fe.comp.jmm.analysis.table.SymbolTable;
+import pt.up.fe.comp.jmm.ast.JmmNode;
+import pt.up.fe.comp2024.ast.TypeTable;
+import pt.up.fe.comp2024.ast.TypeUtils;
+
+import java.util.ArrayList;
+import java.util.TreeMap;
+
+/**
+ * Prints what an analysis left in a tree, so that the tests can compare two ways of analysing the same class.
+ */
+class AnalysisDump {
+
+    private AnalysisDump() {
+    }
+
+    /**
+     * The tree with every attribute and the type of each expression, in a fixed order.
+     */
+    static String dump(JmmNode root, SymbolTable table) {
+        var types = TypeTable.of(table);
+        var dump = new StringBuilder();
+        var pending = new ArrayList<JmmNode>();
+        pending.add(root);
+
+        while (!pending.isEmpty()) {
+            var node = pending.remove(pending.size() - 1);
+
+            var attributes = new TreeMap<String, String>();
+            node.getAttributes().forEach(key -> attributes.put(key, String.valueOf(node.getObject(key))));
+            var type = types.find(node);
+            if (type != null) {
+                attributes.put("(type)", type == TypeUtils.UNKNOWN ? "unknown" : type.toString());
+            }
+            dump.append(node.getKind()).append(attributes).append("\n");
+
+            for (int i = node.getNumChildren() - 1; i >= 0; i--) {
+                pending.add(node.getJmmChild(i));
+            }
+        }
+
+        return dump.toString();
+    }
+}
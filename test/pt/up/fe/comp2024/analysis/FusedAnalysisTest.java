@@ -0,0 +1,54 @@
+package pt.up.fe.comp2024.analysis;
+
+import org.junit.Test;
+import pt.up.fe.comp.jmm.report.Report;
+import pt.up.fe.comp2024.symboltable.JmmSymbolTableBuilder;
+import pt.up.fe.specs.util.SpecsIo;
+
+import java.util.ArrayList;
+
+import static org.junit.Assert.*;
+import static pt.up.fe.comp2024.CompilerTestUtils.listCorpus;
+import static pt.up.fe.comp2024.CompilerTestUtils.parse;
+import static pt.up.fe.comp2024.analysis.AnalysisDump.dump;
+
+/**
+ * Analyses every .jmm file of the tests with the passes fused in a single traversal, and checks that the reports and
+ * the annotated tree are the same as running the passes one after the other.
+ */
+public class FusedAnalysisTest {
+
+    @Test
+    public void sameAsSequentialPasses() {
+        var files = listCorpus();
+
+        var analysed = 0;
+        for (var file : files) {
+            var code = SpecsIo.read(file);
+
+            var sequentialRoot = parse(code);
+            var fusedRoot = parse(code);
+            if (sequentialRoot == null) {
+                continue;
+            }
+
+            var table = new JmmSymbolTableBuilder(sequentialRoot);
+            if (!table.getReports().isEmpty()) {
+                continue;
+            }
+
+            var sequentialReports = new ArrayList<Report>();
+            for (var pass : JmmAnalysisImpl.newPasses()) {
+                sequentialReports.addAll(pass.analyze(sequentialRoot, table.getTable()));
+            }
+
+            var fusedReports = new FusedAnalysis(JmmAnalysisImpl.newPasses()).analyze(fusedRoot, table.getTable());
+
+            assertEquals(file.getPath(), sequentialReports.toString(), fusedReports.toString());
+            assertEquals(file.getPath(), dump(sequentialRoot, table.getTable()), dump(fusedRoot, table.getTable()));
+            analysed++;
+        }
+
+        assertTrue("No file was analysed", analysed > 0);
+    }
+}
@@ -0,0 +1,94 @@
+package pt.up.fe.comp2024.analysis;
+
+import org.junit.Test;
+import pt.up.fe.comp.jmm.analysis.JmmSemanticsResult;
+import pt.up.fe.comp2024.CompilerConfig;
+import pt.up.fe.comp2024.parser.IncrementalJmmParser;
+
+import static org.junit.Assert.*;
+import static pt.up.fe.comp2024.CompilerTestUtils.parseResult;
+import static pt.up.fe.comp2024.analysis.AnalysisDump.dump;
+
+/**
+ * Analyses successive versions of a class incrementally, and checks that the reports and the annotated tree are the
+ * same as analysing each version from scratch.
+ */
+public class IncrementalAnalysisTest {
+
+    private static final String CODE = """
+            import io;
+            class A {
+                int field;
+                public int first(int a) {
+                    int b;
+                    b = a + true;
+                    return b;
+                }
+                public int second(int a) {
+                    return undefined;
+                }
+                public boolean third(int a) {
+                    return this.missing(a);
+                }
+                public static void main(String[] args) {
+                    io.println(this.first(1));
+                }
+            }
+            """;
+
+    @Test
+    public void onlyAnalysesTheEditedMethod() {
+        var parser = new IncrementalJmmParser(CompilerConfig.getDefault());
+        var analysis = new IncrementalAnalysis();
+
+        assertSameAnalysis(CODE, analysis.analyze(parser.update(CODE)));
+        assertTrue(analysis.getReusedMethods().isEmpty());
+
+        // The methods after the edit move down, and keep their reports
+        var edited = CODE.replace("b = a + true;", "b = a + true;\n        b = a;");
+        assertSameAnalysis(edited, analysis.analyze(parser.update(edited)));
+        assertEquals(3, analysis.getReusedMethods().size());
+
+        edited = edited.replace("return undefined;", "return a;");
+        assertSameAnalysis(edited, analysis.analyze(parser.update(edited)));
+        assertEquals(3, analysis.getReusedMethods().size());
+
+        edited = edited.replace("return this.missing(a);", "int c;\n        c = true;\n        return false;");
+        assertSameAnalysis(edited, analysis.analyze(parser.update(edited)));
+        assertEquals(3, analysis.getReusedMethods().size());
+    }
+
+    @Test
+    public void analysesEveryMethodWhenTheDeclarationsChange() {
+        var parser = new IncrementalJmmParser(CompilerConfig.getDefault());
+        var analysis = new IncrementalAnalysis();
+        analysis.analyze(parser.update(CODE));
+
+        var edited = CODE.replace("int field;", "boolean field;");
+        assertSameAnalysis(edited, analysis.analyze(parser.update(edited)));
+        assertTrue(analysis.getReusedMethods().isEmpty());
+
+        edited = edited.replace("public int second(int a)", "public int second(boolean a)");
+        assertSameAnalysis(edited, analysis.analyze(parser.update(edited)));
+        assertTrue(analysis.getReusedMethods().isEmpty());
+    }
+
+    @Test
+    public void reusesMethodsOfAFreshTree() {
+        var analysis = new IncrementalAnalysis();
+        analysis.analyze(parseResult(CODE));
+
+        // Parsed again, every node is new
+        var edited = CODE.replace("    int field;\n", "    int field;\n\n");
+        assertSameAnalysis(edited, analysis.analyze(parseResult(edited)));
+        assertEquals(4, analysis.getReusedMethods().size());
+    }
+
+    private static void assertSameAnalysis(String code, JmmSemanticsResult incremental) {
+        var full = new JmmAnalysisImpl().semanticAnalysis(parseResult(code));
+
+        assertEquals(full.getReports().toString(), incremental.getReports().toString());
+        assertEquals(dump(full.getRootNode(), full.getSymbolTable()),
+                dump(incremental.getRootNode(), incremental.getSymbolTable()));
+    }
+}
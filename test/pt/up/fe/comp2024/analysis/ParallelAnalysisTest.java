@@ -0,0 +1,127 @@
+package pt.up.fe.comp2024.analysis;
+
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import pt.up.fe.comp2024.symboltable.JmmSymbolTableBuilder;
+import pt.up.fe.comp2024.utils.StageProfiler;
+import pt.up.fe.specs.util.SpecsIo;
+
+import java.util.concurrent.ForkJoinPool;
+
+import static org.junit.Assert.*;
+import static pt.up.fe.comp2024.CompilerTestUtils.listCorpus;
+import static pt.up.fe.comp2024.CompilerTestUtils.parse;
+import static pt.up.fe.comp2024.analysis.AnalysisDump.dump;
+
+/**
+ * Analyses classes with the methods in parallel, and checks that the reports and the annotated tree are the same as
+ * analysing the whole class in a single traversal.
+ */
+public class ParallelAnalysisTest {
+
+    private static final int METHODS = 300;
+
+    private static ForkJoinPool pool;
+
+    @BeforeClass
+    public static void createPool() {
+        pool = new ForkJoinPool(4);
+    }
+
+    @AfterClass
+    public static void shutdownPool() {
+        pool.shutdown();
+    }
+
+    @Test
+    public void sameAsSingleTraversalOnTests() {
+        var files = listCorpus();
+
+        for (var file : files) {
+            assertSameAnalysis(file.getPath(), SpecsIo.read(file));
+        }
+    }
+
+    @Test
+    public void sameAsSingleTraversalOnManyMethods() {
+        for (int round = 0; round < 10; round++) {
+            assertSameAnalysis("round " + round, manyMethods());
+        }
+    }
+
+    @Test
+    public void profilesEachPassOnThePool() {
+        var root = parse(manyMethods());
+        var table = new JmmSymbolTableBuilder(root).getTable();
+
+        var profiler = new StageProfiler();
+        profiler.activate();
+        try {
+            StageProfiler.measure("analysisPasses",
+                    () -> new ParallelAnalysis(JmmAnalysisImpl::newPasses, pool).analyze(root, table));
+        } finally {
+            profiler.deactivate();
+        }
+
+        var entries = profiler.getEntries();
+        assertEquals("analysisPasses", entries.get(0).getName());
+        assertEquals(JmmAnalysisImpl.newPasses().stream().map(pass -> pass.getClass().getSimpleName()).toList(),
+                entries.subList(1, entries.size()).stream().map(StageProfiler.Entry::getName).toList());
+
+        for (var entry : entries.subList(1, entries.size())) {
+            assertEquals(entry.getName(), 1, entry.getDepth());
+            assertTrue(entry.getName(), entry.getWallNs() > 0);
+        }
+    }
+
+    /**
+     * A class with many methods, some with errors of every pass.
+     */
+    private static String manyMethods() {
+        var code = new StringBuilder("import io;\nclass Many {\n    int field;\n    Undefined wrong;\n");
+
+        for (int i = 0; i < METHODS; i++) {
+            code.append("    public int m").append(i).append("(int a) {\n");
+            code.append("        int b;\n");
+
+            switch (i % 7) {
+                case 0 -> code.append("        b = undefined").append(i).append(";\n");
+                case 1 -> code.append("        this.missing").append(i).append("(a);\n        b = a;\n");
+                case 2 -> code.append("        b = a + true;\n");
+                case 3 -> code.append("        return false;\n    }\n");
+                case 4 -> code.append("        b = this.m0(a, a);\n");
+                case 5 -> code.append("        b = io.read(").append(i).append(");\n");
+                default -> code.append("        b = this.m0(a) + field;\n");
+            }
+
+            if (i % 7 != 3) {
+                code.append("        return b;\n    }\n");
+            }
+        }
+
+        code.append("    public static void main(String[] args) {\n        io.println(this.m0(1));\n    }\n}\n");
+
+        return code.toString();
+    }
+
+    private static void assertSameAnalysis(String name, String code) {
+        var singleRoot = parse(code);
+        var parallelRoot = parse(code);
+        if (singleRoot == null) {
+            return;
+        }
+
+        var table = new JmmSymbolTableBuilder(singleRoot);
+        if (!table.getReports().isEmpty()) {
+            return;
+        }
+
+        var singleReports = new FusedAnalysis(JmmAnalysisImpl.newPasses()).analyze(singleRoot, table.getTable());
+        var parallelReports = new ParallelAnalysis(JmmAnalysisImpl::newPasses, pool)
+                .analyze(parallelRoot, table.getTable());
+
+        assertEquals(name, singleReports.toString(), parallelReports.toString());
+        assertEquals(name, dump(singleRoot, table.getTable()), dump(parallelRoot, table.getTable()));
+    }
+}
@@ -0,0 +1,166 @@
+package pt.up.fe.comp2024.analysis;
+
+import org.junit.Test;
+import pt.up.fe.comp.jmm.analysis.table.SymbolTable;
+import pt.up.fe.comp.jmm.ast.JmmNode;
+import pt.up.fe.comp.jmm.report.Report;
+import pt.up.fe.comp.jmm.report.Stage;
+import pt.up.fe.comp2024.analysis.passes.*;
+import pt.up.fe.comp2024.symboltable.JmmSymbolTableBuilder;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+import static pt.up.fe.comp2024.CompilerTestUtils.parse;
+
+public class PassSchedulerTest {
+
+    private static final String CODE = """
+            import io;
+            class A {
+                public int foo(int a) {
+                    int b;
+                    b = a + true;
+                    return b;
+                }
+                public static void main(String[] args) {
+                    io.println(this.foo(1));
+                }
+            }
+            """;
+
+    /**
+     * Logs when it runs, and reports its name.
+     */
+    private static class LoggingPass implements AnalysisPass {
+        private final String name;
+        private final Set<PassProperty> inputs;
+        private final Set<PassProperty> outputs;
+        private final List<String> log;
+
+        private LoggingPass(String name, Set<PassProperty> inputs, Set<PassProperty> outputs, List<String> log) {
+            this.name = name;
+            this.inputs = inputs;
+            this.outputs = outputs;
+            this.log = log;
+        }
+
+        @Override
+        public List<Report> analyze(JmmNode root, SymbolTable table) {
+            log.add(name);
+            return List.of(Report.newLog(Stage.SEMANTIC, -1, -1, name, null));
+        }
+
+        @Override
+        public Set<PassProperty> getInputs() {
+            return inputs;
+        }
+
+        @Override
+        public Set<PassProperty> getOutputs() {
+            return outputs;
+        }
+    }
+
+    @Test
+    public void runsPassesAfterWhatTheyNeed() {
+        var log = Collections.synchronizedList(new ArrayList<String>());
+        var checks = new LoggingPass("checks", Set.of(PassProperty.TYPES_ANNOTATED), Set.of(), log);
+        var types = new LoggingPass("types", Set.of(), Set.of(PassProperty.TYPES_ANNOTATED), log);
+
+        var scheduler = new PassScheduler(List.of(checks, types), Set.of(), ForkJoinPool.commonPool());
+        var reports = scheduler.analyze(parse(CODE), null);
+
+        assertEquals(List.of("types", "checks"), log);
+        assertEquals(List.of(List.of(types), List.of(checks)), scheduler.getLevels());
+        // In the order the passes were given
+        assertEquals(List.of("checks", "types"), reports.stream().map(Report::getMessage).toList());
+    }
+
+    @Test
+    public void skipsPassesWhoseOutputsAreValid() {
+        var log = Collections.synchronizedList(new ArrayList<String>());
+        var checks = new LoggingPass("checks", Set.of(PassProperty.TYPES_ANNOTATED), Set.of(), log);
+        var types = new LoggingPass("types", Set.of(), Set.of(PassProperty.TYPES_ANNOTATED), log);
+
+        new PassScheduler(List.of(types, checks), Set.of(PassProperty.TYPES_ANNOTATED), ForkJoinPool.commonPool())
+                .analyze(parse(CODE), null);
+
+        assertEquals(List.of("checks"), log);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectsInputsNoPassOutputs() {
+        var checks = new LoggingPass("checks", Set.of(PassProperty.TYPES_ANNOTATED), Set.of(), new ArrayList<>());
+
+        new PassScheduler(List.of(checks), Set.of(), ForkJoinPool.commonPool());
+    }
+
+    @Test
+    public void runsIndependentPassesAtTheSameTime() {
+        var pool = new ForkJoinPool(2);
+        var bothRunning = new CountDownLatch(2);
+
+        try {
+            var passes = new ArrayList<AnalysisPass>();
+            for (var name : List.of("first", "second")) {
+                passes.add(new AnalysisPass() {
+                    @Override
+                    public List<Report> analyze(JmmNode root, SymbolTable table) {
+                        bothRunning.countDown();
+                        try {
+                            // Only both at the same time get past the latch
+                            var together = bothRunning.await(10, TimeUnit.SECONDS);
+                            return List.of(Report.newLog(Stage.SEMANTIC, -1, -1, name + " " + together, null));
+                        } catch (InterruptedException e) {
+                            throw new RuntimeException(e);
+                        }
+                    }
+                });
+            }
+
+            var reports = new PassScheduler(passes, Set.of(), pool).analyze(parse(CODE), null);
+
+            assertEquals(List.of("first true", "second true"), reports.stream().map(Report::getMessage).toList());
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    @Test
+    public void sameReportsAsSingleTraversal() {
+        var root = parse(CODE);
+        var table = new JmmSymbolTableBuilder(root).getTable();
+        var passes = new ArrayList<FusablePass>();
+        passes.add(new TypeInference());
+        passes.addAll(newChecks());
+        var fusedReports = new FusedAnalysis(passes).analyze(root, table);
+
+        // Given after the checks that need its types
+        var scheduledPasses = new ArrayList<FusablePass>(newChecks());
+        scheduledPasses.add(new TypeInference());
+        var scheduler = new PassScheduler(scheduledPasses, Set.of(), ForkJoinPool.commonPool());
+        var scheduledReports = scheduler.analyze(parse(CODE), table);
+
+        assertFalse(fusedReports.isEmpty());
+        assertEquals(fusedReports.toString(), scheduledReports.toString());
+        // Every pass is fusable, so they all run in a single traversal
+        assertEquals(1, scheduler.getLevels().size());
+    }
+
+    private static List<FusablePass> newChecks() {
+        return List.of(
+                new UndeclaredVariable(),
+                new UndeclaredMethod(),
+                new IntLit(),
+                new ReturnType(),
+                new StaticMethod()
+        );
+    }
+}
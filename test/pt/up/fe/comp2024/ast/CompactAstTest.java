@@ -0,0 +1,199 @@
+package pt.up.fe.comp2024.ast;
+
+import org.junit.Test;
+import pt.up.fe.comp.jmm.ast.JmmNode;
+import pt.up.fe.comp2024.CompilerConfig;
+import pt.up.fe.comp2024.parser.HandwrittenJmmParser;
+import pt.up.fe.specs.util.SpecsIo;
+
+import java.util.ArrayDeque;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.Assert.*;
+import static pt.up.fe.comp2024.CompilerTestUtils.listCorpus;
+
+/**
+ * Converts the trees of every .jmm file of the tests to {@link CompactJmmNode}s, and checks that nothing of the
+ * original tree is lost, and that the typed accessors agree with the attributes.
+ */
+public class CompactAstTest {
+
+    @Test
+    public void sameTreesOnTestCorpus() {
+        var files = listCorpus();
+
+        var config = CompilerConfig.getDefault();
+        var converted = 0;
+        for (var file : files) {
+            var root = new HandwrittenJmmParser().parse(SpecsIo.read(file), config).getRootNode();
+            if (root == null) {
+                continue;
+            }
+
+            assertSameTree(file.toString(), root, CompactAst.convert(root));
+            converted++;
+        }
+
+        assertTrue("No .jmm file of the tests parses", converted > 0);
+    }
+
+    @Test
+    public void typedAccessorsFollowTheAttributes() {
+        var node = new CompactJmmNode(Kind.VAR_DECLARATION);
+        assertEquals(-1, node.getLine());
+        assertEquals(-1, node.getColumn());
+        assertNull(node.getName());
+        assertNull(node.getType());
+        assertFalse(node.hasArrayness());
+        assertFalse(node.isArray());
+        assertTrue(node.getAttributes().isEmpty());
+
+        node.put("lineStart", "3");
+        node.put("colStart", "14");
+        node.put("name", "a");
+        node.put("type", "int");
+        node.put("isArray", "true");
+
+        assertEquals(3, node.getLine());
+        assertEquals(14, node.getColumn());
+        assertEquals("a", node.getName());
+        assertEquals("int", node.getType());
+        assertTrue(node.hasArrayness());
+        assertTrue(node.isArray());
+        assertEquals(Set.of("lineStart", "colStart", "name", "type", "isArray"), new HashSet<>(node.getAttributes()));
+
+        // Overwriting a field returns its old value
+        assertEquals("a", node.putObject("name", "b"));
+        assertEquals("b", node.getName());
+        assertEquals("b", node.get("name"));
+
+        node.put("isArray", "false");
+        assertTrue(node.hasArrayness());
+        assertFalse(node.isArray());
+
+        // Arrayness that is not known yet
+        node.put("isArray", "null");
+        assertTrue(node.hasArrayness());
+        assertFalse(node.isArray());
+        assertEquals("null", node.get("isArray"));
+    }
+
+    @Test
+    public void keepsValuesThatDoNotFitTheFields() {
+        var node = new CompactJmmNode(Kind.VAR_REF_EXPR);
+
+        // Would not be written back the same
+        node.put("lineStart", "007");
+        assertEquals(-1, node.getLine());
+        assertEquals("007", node.get("lineStart"));
+
+        node.put("colStart", "+2");
+        assertEquals(-1, node.getColumn());
+        assertEquals("+2", node.get("colStart"));
+
+        node.putObject("name", 42);
+        assertNull(node.getName());
+        assertEquals(42, node.getObject("name"));
+
+        node.put("isArray", "maybe");
+        assertFalse(node.hasArrayness());
+        assertEquals("maybe", node.get("isArray"));
+
+        // A value that fits replaces the one in the map, and the other way around
+        assertEquals(42, node.putObject("name", "a"));
+        assertEquals("a", node.getName());
+        assertEquals("a", node.putObject("name", 7));
+        assertNull(node.getName());
+        assertEquals(7, node.getObject("name"));
+
+        assertEquals(Set.of("lineStart", "colStart", "name", "isArray"), new HashSet<>(node.getAttributes()));
+    }
+
+    @Test
+    public void copiesFieldsAndAttributes() {
+        var node = new CompactJmmNode(Kind.INT_TYPE);
+        node.setHierarchy(List.of("IntType", "Type", "Node"));
+        node.put("lineStart", "1");
+        node.put("colStart", "007");
+        node.put("isArray", "true");
+        node.put("other", "value");
+
+        var copy = (CompactJmmNode) node.copyNode();
+        assertNotSame(node, copy);
+        assertSame(Kind.INT_TYPE, copy.getNodeKind());
+        assertEquals(node.getHierarchy(), copy.getHierarchy());
+        assertEquals(1, copy.getLine());
+        assertEquals(-1, copy.getColumn());
+        assertTrue(copy.isArray());
+        assertEquals(new HashSet<>(node.getAttributes()), new HashSet<>(copy.getAttributes()));
+        for (var attribute : node.getAttributes()) {
+            assertEquals(node.getObject(attribute), copy.getObject(attribute));
+        }
+
+        // The copy does not share the attributes
+        copy.put("other", "changed");
+        copy.put("lineStart", "2");
+        assertEquals("value", node.get("other"));
+        assertEquals(1, node.getLine());
+    }
+
+    private static void assertSameTree(String name, JmmNode expectedRoot, CompactJmmNode actualRoot) {
+        var pending = new ArrayDeque<JmmNode[]>();
+        pending.push(new JmmNode[]{expectedRoot, actualRoot});
+
+        while (!pending.isEmpty()) {
+            var pair = pending.pop();
+            var expected = pair[0];
+            var actual = (CompactJmmNode) pair[1];
+            var where = name + ": " + expected;
+
+            assertEquals(where, expected.getKind(), actual.getKind());
+            assertEquals(where, expected.getKind(), actual.getNodeKind().getNodeName());
+            assertEquals(where, expected.getHierarchy(), actual.getHierarchy());
+            // The parsers give every node the hierarchy of its Kind
+            assertSame(where, actual.getNodeKind().getHierarchy(), actual.getHierarchy());
+
+            assertEquals(where, new HashSet<>(expected.getAttributes()), new HashSet<>(actual.getAttributes()));
+            assertEquals(where, expected.getAttributes().size(), actual.getAttributes().size());
+            for (var attribute : expected.getAttributes()) {
+                assertTrue(where, actual.hasAttribute(attribute));
+                assertEquals(where + "." + attribute, expected.getObject(attribute), actual.getObject(attribute));
+            }
+
+            assertTypedAccessors(where, expected, actual);
+
+            var expectedChildren = expected.getChildren();
+            var actualChildren = actual.getChildren();
+            assertEquals(where, expectedChildren.size(), actualChildren.size());
+            for (int i = 0; i < expectedChildren.size(); i++) {
+                assertSame(where, actual, actualChildren.get(i).getParent());
+                assertSame(where, actualChildren.get(i), actual.getChild(i));
+                pending.push(new JmmNode[]{expectedChildren.get(i), actualChildren.get(i)});
+            }
+        }
+    }
+
+    private static void assertTypedAccessors(String where, JmmNode expected, CompactJmmNode actual) {
+        assertEquals(where, position(expected, "lineStart"), actual.getLine());
+        assertEquals(where, position(expected, "colStart"), actual.getColumn());
+
+        var name = expected.hasAttribute("name") ? expected.getObject("name") : null;
+        assertEquals(where, name instanceof String ? name : null, actual.getName());
+
+        var type = expected.hasAttribute("type") ? expected.getObject("type") : null;
+        assertEquals(where, type instanceof String ? type : null, actual.getType());
+
+        var isArray = expected.hasAttribute("isArray") ? expected.getObject("isArray") : null;
+        assertEquals(where, isArray != null && List.of("true", "false", "null").contains(isArray), actual.hasArrayness());
+        assertEquals(where, "true".equals(isArray), actual.isArray());
+    }
+
+    /**
+     * @return the position in the attribute, or -1 if the node has none
+     */
+    private static int position(JmmNode node, String attribute) {
+        return node.hasAttribute(attribute) ? Integer.parseInt(node.get(attribute)) : -1;
+    }
+}
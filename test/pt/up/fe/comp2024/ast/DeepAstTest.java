@@ -0,0 +1,144 @@
+package pt.up.fe.comp2024.ast;
+
+import org.junit.Test;
+import pt.up.fe.comp.jmm.analysis.JmmSemanticsResult;
+import pt.up.fe.comp.jmm.ast.JmmNode;
+import pt.up.fe.comp.jmm.parser.JmmParserResult;
+import pt.up.fe.comp.jmm.report.ReportType;
+import pt.up.fe.comp2024.CompilerConfig;
+import pt.up.fe.comp2024.analysis.JmmAnalysisImpl;
+import pt.up.fe.comp2024.optimization.OllirGeneratorVisitor;
+import pt.up.fe.comp2024.optimization.OptUtils;
+import pt.up.fe.comp2024.parser.HandwrittenJmmParser;
+
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.Assert.*;
+
+/**
+ * Runs the analysis and the OLLIR generation on trees 100k nodes deep, on a thread with a stack far too small to visit
+ * them recursively.
+ */
+public class DeepAstTest {
+
+    private static final int DEPTH = 100_000;
+
+    private static final long STACK_SIZE = 1 << 20;
+
+    @Test
+    public void deepBinaryExpression() {
+        runWithSmallStack(() -> {
+            for (var compact : new boolean[]{false, true}) {
+                var ollir = analyzeAndGenerate(parse(binaryChain(), compact));
+
+                // One temporary for each of the DEPTH - 1 additions, the last one returned
+                var last = "tmp" + (DEPTH - 2) + ".i32";
+                assertTrue(ollir.contains(last + " :=.i32 tmp" + (DEPTH - 3) + ".i32 +.i32 a.i32;\n"));
+                assertTrue(ollir.contains("ret.i32 " + last + ";\n"));
+                assertFalse(ollir.contains("tmp" + (DEPTH - 1) + "."));
+            }
+        });
+    }
+
+    @Test
+    public void deepNestedIfs() {
+        runWithSmallStack(() -> {
+            for (var compact : new boolean[]{false, true}) {
+                var result = parse("""
+                        class Deep {
+                            int f(boolean c, int a) {
+                                if (c) a = a + 1; else {}
+                                return a;
+                            }
+                        }
+                        """, compact);
+
+                nestIfs(result.getRootNode());
+                var ollir = analyzeAndGenerate(result);
+
+                // The outer if is numbered last, after the ifs nested in it
+                assertTrue(ollir.contains("if (c.bool) goto if_body_" + (DEPTH - 1) + ";\n"));
+                assertTrue(ollir.contains("if_body_0:\ntmp0.i32 :=.i32 a.i32 +.i32 1.i32;\na.i32 :=.i32 tmp0.i32;\n"
+                        + "endif_0:\nendif_1:\n"));
+                assertFalse(ollir.contains("endif_" + DEPTH + ":"));
+            }
+        });
+    }
+
+    private static String binaryChain() {
+        var code = new StringBuilder("class Deep {\n    int f(int a) {\n        return a");
+
+        for (int i = 1; i < DEPTH; i++) {
+            code.append(" + a");
+        }
+
+        return code.append(";\n    }\n}\n").toString();
+    }
+
+    /**
+     * Replaces the statement of the first if by DEPTH - 1 ifs, nested in the statement of each other, with the same
+     * condition and empty else blocks.
+     */
+    private static void nestIfs(JmmNode root) {
+        var ifStmt = root.getDescendants(Kind.IF_STMT.getNodeName()).get(0);
+        var stmt = ifStmt.removeJmmChild(1);
+        // The else block is now the second child
+
+        for (int i = 1; i < DEPTH; i++) {
+            var nested = ifStmt.copyNode();
+            nested.add(ifStmt.getJmmChild(0).copyNode());
+            nested.add(stmt);
+            nested.add(ifStmt.getJmmChild(1).copyNode());
+            stmt = nested;
+        }
+
+        ifStmt.add(stmt, 1);
+    }
+
+    private static JmmParserResult parse(String code, boolean compact) {
+        var result = new HandwrittenJmmParser().parse(code, CompilerConfig.getDefault());
+        assertNotNull("Could not parse the code", result.getRootNode());
+
+        return compact
+                ? new JmmParserResult(CompactAst.convert(result.getRootNode()), result.getReports(), result.getConfig())
+                : result;
+    }
+
+    /**
+     * Generates the OLLIR code without parsing it, which is not what this test is about.
+     */
+    private static String analyzeAndGenerate(JmmParserResult parserResult) {
+        JmmSemanticsResult semantics = new JmmAnalysisImpl().semanticAnalysis(parserResult);
+        assertTrue(semantics.getReports().toString(),
+                semantics.getReports().stream().noneMatch(report -> report.getType() == ReportType.ERROR));
+
+        OptUtils.resetTemps();
+        return new OllirGeneratorVisitor(semantics.getSymbolTable()).visit(semantics.getRootNode());
+    }
+
+    private static void runWithSmallStack(Runnable test) {
+        var failure = new AtomicReference<Throwable>();
+        var thread = new Thread(null, () -> {
+            try {
+                test.run();
+            } catch (Throwable e) {
+                failure.set(e);
+            }
+        }, "deep-ast", STACK_SIZE);
+
+        thread.start();
+        try {
+            thread.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException(e);
+        }
+
+        if (failure.get() instanceof Error error) {
+            throw error;
+        }
+        if (failure.get() != null) {
+            throw new RuntimeException(failure.get());
+        }
+    }
+}
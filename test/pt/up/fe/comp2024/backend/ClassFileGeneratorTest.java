@@ -0,0 +1,73 @@
+package pt.up.fe.comp2024.backend;
+
+import org.junit.Test;
+import pt.up.fe.comp2024.CompilerConfig;
+import pt.up.fe.comp2024.driver.InProcessRunner;
+import pt.up.fe.comp2024.driver.JmmCompiler;
+
+import java.io.File;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.*;
+import static pt.up.fe.comp2024.CompilerTestUtils.listCorpus;
+
+/**
+ * Compiles every .jmm file of the tests with both backends, loads the class files generated directly and runs the
+ * programs with a main method, which must print the same, and stop with the same exception, as the programs assembled
+ * from the Jasmin code.
+ */
+public class ClassFileGeneratorTest {
+
+    @Test
+    public void sameProgramsAsJasmin() {
+        var files = listCorpus();
+
+        var compiler = new JmmCompiler();
+        var runner = new InProcessRunner();
+        var compiled = 0;
+        var run = 0;
+
+        for (var file : files) {
+            var jasmin = compiler.compile(file, config(file, "jasmin"));
+            if (!jasmin.isSuccess()) {
+                continue;
+            }
+
+            var classFile = compiler.compile(file, config(file, "class"));
+            assertTrue(file + ": " + classFile.getReports(), classFile.isSuccess());
+            assertNull(file.toString(), classFile.getJasminCode());
+            assertEquals(file.toString(), jasmin.getClassName(), classFile.getClassName());
+
+            // Running links the class, which verifies it, even without a main method
+            var expected = runner.run(jasmin, List.of());
+            if (expected.exception() instanceof LinkageError) {
+                // The Jasmin code does not verify either (e.g., wrong OLLIR) or extends a class that does not exist,
+                // nothing to compare with
+                continue;
+            }
+
+            var actual = runner.run(classFile, List.of());
+            if (actual.exception() instanceof LinkageError error) {
+                throw new AssertionError("Could not load the class file of '" + file + "'", error);
+            }
+            compiled++;
+
+            assertEquals(file.toString(), expected.output(), actual.output());
+            assertEquals(file.toString(), expected.getException().map(Object::getClass),
+                    actual.getException().map(Object::getClass));
+            if (!(expected.exception() instanceof NoSuchMethodException)) {
+                run++;
+            }
+        }
+
+        assertTrue("Only " + compiled + " files compiled", compiled > 10);
+        assertTrue("Only " + run + " programs ran", run > 5);
+    }
+
+    private static Map<String, String> config(File file, String emit) {
+        var config = CompilerConfig.forInput(CompilerConfig.getDefault(), file);
+        config.put("emit", emit);
+        return config;
+    }
+}
@@ -0,0 +1,116 @@
+package pt.up.fe.comp2024.benchmark;
+
+import pt.up.fe.comp.jmm.parser.JmmParserResult;
+import pt.up.fe.comp2024.CompilerConfig;
+import pt.up.fe.comp2024.parser.ParserPool;
+import pt.up.fe.comp2024.utils.ReportUtils;
+import pt.up.fe.specs.util.SpecsIo;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+
+/**
+ * Measures how the throughput of the parsers scales with the number of threads parsing at once, over the programs of
+ * the corpus folder. Run it from the root of the repository, e.g. with 'gradle concurrentParserBenchmark'.
+ * <p>
+ * Each thread count parses the corpus the given number of times (20 by default), every file a separate task on a
+ * fixed pool, through {@link ParserPool}. The corpus is parsed the same number of times before, so that the rounds
+ * measure warm parses (JIT and prediction DFA). Then every tree is compared with the tree of a single-threaded parse,
+ * so the benchmark also fails if concurrent parses disagree.
+ */
+public class ConcurrentParserBenchmark {
+
+    private static final File CORPUS = new File("test/pt/up/fe/comp2024/benchmark/corpus");
+    private static final int DEFAULT_ROUNDS = 20;
+    private static final int[] THREADS = {1, 2, 4, 8, 16};
+
+    public static void main(String[] args) throws InterruptedException, ExecutionException {
+        var rounds = args.length > 0 ? Integer.parseInt(args[0]) : DEFAULT_ROUNDS;
+
+        var files = SpecsIo.getFilesRecursive(CORPUS, "jmm");
+        files.sort(Comparator.comparing(File::getName));
+        if (files.isEmpty()) {
+            throw new RuntimeException("No .jmm files in '" + CORPUS.getAbsolutePath() + "'");
+        }
+
+        var codes = files.stream().map(SpecsIo::read).toList();
+        System.out.println("Corpus: " + files.size() + " files, " + rounds + " rounds, "
+                + Runtime.getRuntime().availableProcessors() + " cores");
+
+        for (var parserName : List.of("antlr", "handwritten")) {
+            var config = CompilerConfig.getDefault();
+            config.put("parser", parserName);
+
+            var expected = codes.stream().map(code -> parse(code, config).getRootNode().toTree()).toList();
+            for (int round = 0; round < rounds; round++) {
+                codes.forEach(code -> parse(code, config));
+            }
+
+            System.out.println();
+            System.out.println("Parser: " + parserName);
+
+            var baseline = 0.0;
+            for (var threads : THREADS) {
+                var filesPerSecond = measure(files, codes, expected, config, threads, rounds);
+                if (threads == 1) {
+                    baseline = filesPerSecond;
+                }
+
+                System.out.printf("%3d threads: %10.0f files/s, speedup %5.2f%n", threads, filesPerSecond,
+                        filesPerSecond / baseline);
+            }
+        }
+    }
+
+    /**
+     * @return the parsed files per second
+     */
+    private static double measure(List<File> files, List<String> codes, List<String> expected,
+                                  Map<String, String> config, int threads, int rounds)
+            throws InterruptedException, ExecutionException {
+        var executor = Executors.newFixedThreadPool(threads);
+
+        try {
+            var tasks = new ArrayList<Callable<JmmParserResult>>();
+            for (int round = 0; round < rounds; round++) {
+                for (var code : codes) {
+                    tasks.add(() -> parse(code, config));
+                }
+            }
+
+            // Creates the parser of each thread
+            executor.invokeAll(tasks.subList(0, Math.min(tasks.size(), threads * codes.size())));
+
+            var start = System.nanoTime();
+            var results = executor.invokeAll(tasks);
+            var elapsedNs = System.nanoTime() - start;
+
+            for (int i = 0; i < results.size(); i++) {
+                var file = i % codes.size();
+                if (!results.get(i).get().getRootNode().toTree().equals(expected.get(file))) {
+                    throw new RuntimeException("Concurrent parse of '" + files.get(file) + "' differs");
+                }
+            }
+
+            return tasks.size() / (elapsedNs / 1e9);
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    private static JmmParserResult parse(String code, Map<String, String> config) {
+        var result = ParserPool.forConfig(config).parse(code, config);
+
+        if (result.getRootNode() == null || ReportUtils.anyError(result.getReports())) {
+            throw new RuntimeException("Could not parse the corpus: " + result.getReports());
+        }
+
+        return result;
+    }
+}
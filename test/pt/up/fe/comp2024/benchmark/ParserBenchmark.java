@@ -0,0 +1,91 @@
+package pt.up.fe.comp2024.benchmark;
+
+import pt.up.fe.comp.jmm.report.Report;
+import pt.up.fe.comp2024.CompilerConfig;
+import pt.up.fe.comp2024.JavammLexer;
+import pt.up.fe.comp2024.JavammParser;
+import pt.up.fe.comp2024.parser.JmmParserImpl;
+import pt.up.fe.comp2024.parser.ParserProfile;
+import pt.up.fe.comp2024.utils.ReportUtils;
+import pt.up.fe.specs.util.SpecsIo;
+
+import java.io.File;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Measures the parser over the programs of the corpus folder, so that changes to the grammar can be compared by
+ * their speed. Run it from the root of the repository, e.g. with 'gradle parserBenchmark'.
+ * <p>
+ * Reports the first round, which includes building the prediction DFA, and the median of the following rounds. Then
+ * parses the corpus once more, with a cold DFA and the ANTLR profiler, and prints the most expensive decisions.
+ */
+public class ParserBenchmark {
+
+    private static final File CORPUS = new File("test/pt/up/fe/comp2024/benchmark/corpus");
+    private static final int DEFAULT_ROUNDS = 20;
+
+    public static void main(String[] args) {
+        var rounds = args.length > 0 ? Integer.parseInt(args[0]) : DEFAULT_ROUNDS;
+
+        var files = SpecsIo.getFilesRecursive(CORPUS, "jmm");
+        files.sort(Comparator.comparing(File::getName));
+        if (files.isEmpty()) {
+            throw new RuntimeException("No .jmm files in '" + CORPUS.getAbsolutePath() + "'");
+        }
+
+        var codes = files.stream().map(SpecsIo::read).toList();
+        var characters = codes.stream().mapToLong(String::length).sum();
+        System.out.println("Corpus: " + files.size() + " files, " + characters + " characters");
+
+        var config = CompilerConfig.parseArgs(new String[]{"-i=" + files.get(0).getAbsolutePath()});
+
+        var coldNs = parseAll(files, codes, config);
+        System.out.printf("First round: %.2f ms%n", coldNs / 1e6);
+
+        var times = new long[rounds];
+        for (int i = 0; i < rounds; i++) {
+            times[i] = parseAll(files, codes, config);
+        }
+        Arrays.sort(times);
+
+        var medianNs = times[rounds / 2];
+        System.out.printf("Next %d rounds: median %.2f ms, min %.2f ms, %.0f characters/ms%n", rounds, medianNs / 1e6,
+                times[0] / 1e6, characters / (medianNs / 1e6));
+
+        // Starts cold again, so the profile shows the decisions that are expensive to build
+        clearDfa();
+        var profileConfig = CompilerConfig.parseArgs(new String[]{"-i=" + files.get(0).getAbsolutePath(), "-g"});
+        parseAll(files, codes, profileConfig);
+
+        System.out.println();
+        System.out.print(ParserProfile.getGlobal().toTable());
+    }
+
+    /**
+     * @return the time to parse every file, in nanoseconds
+     */
+    private static long parseAll(List<File> files, List<String> codes, Map<String, String> config) {
+        var parser = new JmmParserImpl();
+
+        var start = System.nanoTime();
+        for (int i = 0; i < files.size(); i++) {
+            var result = parser.parse(codes.get(i), config);
+
+            if (ReportUtils.anyError(result.getReports())) {
+                throw new RuntimeException("Could not parse '" + files.get(i) + "': " + result.getReports().stream()
+                        .map(Report::toString)
+                        .toList());
+            }
+        }
+
+        return System.nanoTime() - start;
+    }
+
+    private static void clearDfa() {
+        new JavammLexer(null).getInterpreter().clearDFA();
+        new JavammParser(null).getInterpreter().clearDFA();
+    }
+}
@@ -0,0 +1,67 @@
+package pt.up.fe.comp2024.driver;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import pt.up.fe.comp2024.CompilerConfig;
+import pt.up.fe.specs.util.SpecsIo;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Comparator;
+
+import static org.junit.Assert.*;
+
+/**
+ * Compiles a small folder of sources as a batch ('-b'), and checks the results and the written output.
+ */
+public class BatchCompilerTest {
+
+    @Rule
+    public TemporaryFolder temp = new TemporaryFolder();
+
+    @Test
+    public void compilesAFolder() throws IOException {
+        var sources = temp.newFolder("sources");
+        var output = temp.newFolder("output");
+
+        write(sources, "First.jmm", "class First { public static void main(String[] args) { } }");
+        write(sources, "Broken.jmm", "class Broken { public int foo() { return true; } }");
+        write(new File(sources, "nested"), "Second.jmm", "class Second { public int foo() { return 1; } }");
+
+        var config = CompilerConfig.parseArgs(new String[]{"-b=" + sources.getAbsolutePath(),
+                "-d=" + output.getAbsolutePath()});
+
+        var inputs = CompilerConfig.getBatchInputs(config);
+        inputs.sort(Comparator.comparing(File::getName));
+        assertEquals(3, inputs.size());
+
+        var results = new BatchCompiler(config, 2).compile(inputs);
+
+        // In the same order as the inputs
+        assertEquals(inputs.size(), results.size());
+        for (int i = 0; i < inputs.size(); i++) {
+            assertEquals(inputs.get(i), results.get(i).getInputFile());
+        }
+
+        assertFalse(results.get(0).isSuccess());
+        assertTrue(results.get(1).isSuccess());
+        assertTrue(results.get(2).isSuccess());
+        assertEquals(1, BatchCompiler.getExitStatus(results));
+        assertEquals(0, BatchCompiler.getExitStatus(results.subList(1, 3)));
+
+        // Only the sources that compiled are written
+        assertFalse(new File(output, "Broken.j").exists());
+        assertEquals(results.get(1).getJasminCode(), SpecsIo.read(new File(output, "First.j")));
+        assertEquals(results.get(2).getJasminCode(), SpecsIo.read(new File(output, "Second.j")));
+    }
+
+    @Test(expected = RuntimeException.class)
+    public void rejectsMissingInputs() {
+        CompilerConfig.parseArgs(new String[]{"-b=" + new File(temp.getRoot(), "missing").getAbsolutePath()});
+    }
+
+    private static void write(File folder, String name, String code) {
+        SpecsIo.write(new File(SpecsIo.mkdir(folder), name), code);
+    }
+}
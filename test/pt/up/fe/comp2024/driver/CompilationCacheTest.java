@@ -0,0 +1,172 @@
+package pt.up.fe.comp2024.driver;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import pt.up.fe.comp2024.CompilerConfig;
+import pt.up.fe.specs.util.SpecsIo;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Map;
+
+import static org.junit.Assert.*;
+
+/**
+ * Compiles small programs with the compilation cache ('-c'), and checks when entries are reused, written and evicted.
+ */
+public class CompilationCacheTest {
+
+    private static final String CODE = "class Program { public int foo(int a) { return a + 1; } }";
+
+    @Rule
+    public TemporaryFolder temp = new TemporaryFolder();
+
+    @Test
+    public void reusesTheSameCompilation() throws IOException {
+        var cacheDir = temp.newFolder("cache");
+        var inputFile = write("Program.jmm", CODE);
+        var config = newConfig(inputFile, cacheDir);
+
+        var first = new JmmCompiler().compile(inputFile, config);
+        assertTrue(first.isSuccess());
+        assertFalse(first.isCached());
+
+        var second = new JmmCompiler().compile(inputFile, config);
+        assertTrue(second.isCached());
+        assertEquals(first.getClassName(), second.getClassName());
+        assertEquals(first.getOllirCode(), second.getOllirCode());
+        assertEquals(first.getJasminCode(), second.getJasminCode());
+        assertEquals(first.getReports().toString(), second.getReports().toString());
+
+        // Other code is another entry
+        write("Program.jmm", CODE.replace("a + 1", "a + 2"));
+        assertFalse(new JmmCompiler().compile(inputFile, config).isCached());
+    }
+
+    @Test
+    public void optionsThatChangeTheCodeChangeTheKey() throws IOException {
+        var cache = new CompilationCache(temp.newFolder("cache"), Long.MAX_VALUE);
+        var config = CompilerConfig.getDefault();
+        var key = cache.getKey(CODE, config);
+
+        assertEquals(key, cache.getKey(CODE, CompilerConfig.getDefault()));
+        assertNotEquals(key, cache.getKey(CODE + " ", config));
+        assertNotEquals(key, cache.getKey(CODE, with(config, "optimize", "true")));
+        assertNotEquals(key, cache.getKey(CODE, with(config, "registerAllocation", "2")));
+        assertNotEquals(key, cache.getKey(CODE, with(config, "emit", "class")));
+
+        // Options that do not change the code do not change the key
+        assertEquals(key, cache.getKey(CODE, with(config, "profile", "true")));
+    }
+
+    @Test
+    public void writesWholeEntries() throws IOException {
+        var cacheDir = temp.newFolder("cache");
+        var cache = new CompilationCache(cacheDir, Long.MAX_VALUE);
+        var key = cache.getKey(CODE, CompilerConfig.getDefault());
+
+        cache.put(key, compile("Program.jmm", CODE));
+
+        // Only the entry, the temporary file was moved over it
+        var files = cacheDir.list();
+        assertArrayEquals(new String[]{key + ".json"}, files);
+        assertTrue(cache.get(null, key).isPresent());
+    }
+
+    @Test
+    public void doesNotCacheFailedCompilations() throws IOException {
+        var cacheDir = temp.newFolder("cache");
+        var cache = new CompilationCache(cacheDir, Long.MAX_VALUE);
+        var code = "class Broken { public int foo() { return true; } }";
+
+        var result = compile("Broken.jmm", code);
+        assertFalse(result.isSuccess());
+        cache.put(cache.getKey(code, CompilerConfig.getDefault()), result);
+
+        assertEquals(0, cacheDir.list().length);
+    }
+
+    @Test
+    public void evictsTheLeastRecentlyUsed() throws IOException {
+        var cacheDir = temp.newFolder("cache");
+        var unlimited = new CompilationCache(cacheDir, Long.MAX_VALUE);
+        var config = CompilerConfig.getDefault();
+
+        var keys = new String[3];
+        var results = new CompilationResult[3];
+        for (int i = 0; i < keys.length; i++) {
+            var code = CODE.replace("a + 1", "a + " + i);
+            keys[i] = unlimited.getKey(code, config);
+            results[i] = compile("Program.jmm", code);
+        }
+
+        unlimited.put(keys[0], results[0]);
+        unlimited.put(keys[1], results[1]);
+        var first = new File(cacheDir, keys[0] + ".json");
+        var second = new File(cacheDir, keys[1] + ".json");
+        var now = System.currentTimeMillis();
+        assertTrue(first.setLastModified(now - 20_000));
+        assertTrue(second.setLastModified(now - 10_000));
+
+        // Using the first entry makes the second the least recently used
+        assertTrue(unlimited.get(null, keys[0]).isPresent());
+
+        // Room for two entries of about the same size
+        var limited = new CompilationCache(cacheDir, first.length() + second.length() + first.length() / 2);
+        limited.put(keys[2], results[2]);
+
+        assertTrue(limited.get(null, keys[0]).isPresent());
+        assertFalse(limited.get(null, keys[1]).isPresent());
+        assertTrue(limited.get(null, keys[2]).isPresent());
+    }
+
+    @Test
+    public void sizeIsGivenInMegabytes() {
+        var inputFile = write("Program.jmm", CODE);
+        var config = CompilerConfig.parseArgs(new String[]{"-i=" + inputFile.getPath(), "-z=3"});
+
+        assertEquals(3L * 1024 * 1024, CompilerConfig.getCacheSize(config));
+    }
+
+    @Test
+    public void compilesAgainOverACorruptEntry() throws IOException {
+        var cacheDir = temp.newFolder("cache");
+        var inputFile = write("Program.jmm", CODE);
+        var config = newConfig(inputFile, cacheDir);
+
+        var cache = CompilationCache.fromConfig(config).orElseThrow();
+        var entryFile = new File(cacheDir, cache.getKey(CODE, config) + ".json");
+        SpecsIo.write(entryFile, "{\"className\": \"Program\", \"ollir\"");
+        assertTrue(cache.get(inputFile, cache.getKey(CODE, config)).isEmpty());
+
+        var result = new JmmCompiler().compile(inputFile, config);
+        assertTrue(result.isSuccess());
+        assertFalse(result.isCached());
+
+        // The entry was replaced
+        assertTrue(new JmmCompiler().compile(inputFile, config).isCached());
+    }
+
+    private Map<String, String> newConfig(File inputFile, File cacheDir) {
+        return CompilerConfig.parseArgs(new String[]{"-i=" + inputFile.getPath(), "-c=" + cacheDir.getPath()});
+    }
+
+    private static Map<String, String> with(Map<String, String> config, String key, String value) {
+        var copy = CompilerConfig.getDefault();
+        copy.putAll(config);
+        copy.put(key, value);
+        return copy;
+    }
+
+    private CompilationResult compile(String name, String code) {
+        var inputFile = write(name, code);
+        return new JmmCompiler().compile(inputFile, CompilerConfig.forInput(CompilerConfig.getDefault(), inputFile));
+    }
+
+    private File write(String name, String code) {
+        var file = new File(temp.getRoot(), name);
+        SpecsIo.write(file, code);
+        return file;
+    }
+}
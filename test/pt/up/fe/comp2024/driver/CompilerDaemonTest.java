@@ -0,0 +1,109 @@
+package pt.up.fe.comp2024.driver;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import pt.up.fe.comp2024.CompilerConfig;
+import pt.up.fe.specs.util.SpecsIo;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.Assert.*;
+
+/**
+ * Starts a compiler daemon on a free port, and compiles through {@link CompilerClient} like the command line does.
+ */
+public class CompilerDaemonTest {
+
+    @Rule
+    public TemporaryFolder temp = new TemporaryFolder();
+
+    private ServerSocket server;
+    private Thread daemon;
+
+    @Before
+    public void startDaemon() throws IOException {
+        server = new ServerSocket(0, 50, InetAddress.getLoopbackAddress());
+        daemon = new Thread(() -> {
+            try {
+                new CompilerDaemon(server.getLocalPort()).serve(server);
+            } catch (IOException e) {
+                throw new RuntimeException(e);
+            }
+        });
+        daemon.start();
+    }
+
+    @After
+    public void stopDaemon() throws IOException, InterruptedException {
+        server.close();
+        daemon.join();
+    }
+
+    @Test
+    public void compilesThroughTheDaemon() throws IOException {
+        var inputFile = write("Program.jmm", "class Program { public static void main(String[] args) { } }");
+        var output = temp.newFolder("output");
+
+        var out = new ByteArrayOutputStream();
+        var status = compile(out, "-i=" + inputFile.getPath(), "-d=" + output.getPath());
+
+        assertEquals(out.toString(StandardCharsets.UTF_8), 0, status);
+        assertTrue(out.toString(StandardCharsets.UTF_8).contains(".class Program"));
+        // Written by the daemon
+        assertTrue(new File(output, "Program.j").isFile());
+    }
+
+    @Test
+    public void sendsTheErrorsBack() throws IOException {
+        var inputFile = write("Broken.jmm", "class Broken { public int foo() { return true; } }");
+
+        var out = new ByteArrayOutputStream();
+        var status = compile(out, "-i=" + inputFile.getPath());
+
+        assertEquals(1, status);
+        assertTrue(out.toString(StandardCharsets.UTF_8), out.toString(StandardCharsets.UTF_8).contains("ERROR"));
+    }
+
+    @Test
+    public void sendsEveryPathAbsolute() {
+        var inputFile = write("Program.jmm", "class Program { }");
+        var config = CompilerConfig.parseArgs(new String[]{"-i=" + inputFile.getPath(), "-d=out", "-c=cache",
+                "-t=trace.log", "-p=profile.json", "-a=dfa.bin"});
+
+        assertTrue(CompilerConfig.getOutputDir(config).orElseThrow().isAbsolute());
+        assertTrue(CompilerConfig.getCacheDir(config).orElseThrow().isAbsolute());
+        assertTrue(CompilerConfig.getTraceFile(config).orElseThrow().isAbsolute());
+        assertTrue(CompilerConfig.getProfileFile(config).orElseThrow().isAbsolute());
+        assertTrue(CompilerConfig.getDfaSnapshot(config).orElseThrow().isAbsolute());
+
+        // Options without a path keep their meaning
+        config = CompilerConfig.parseArgs(new String[]{"-i=" + inputFile.getPath(), "-p", "-a"});
+        assertTrue(CompilerConfig.isProfile(config));
+        assertTrue(CompilerConfig.getProfileFile(config).isEmpty());
+        assertTrue(CompilerConfig.getDfaSnapshot(config).isEmpty());
+    }
+
+    private int compile(ByteArrayOutputStream out, String... args) throws IOException {
+        var allArgs = new String[args.length + 1];
+        System.arraycopy(args, 0, allArgs, 0, args.length);
+        allArgs[args.length] = "-s=" + server.getLocalPort();
+
+        return CompilerClient.compile(CompilerConfig.parseArgs(allArgs), new PrintStream(out, true,
+                StandardCharsets.UTF_8));
+    }
+
+    private File write(String name, String code) {
+        var file = new File(temp.getRoot(), name);
+        SpecsIo.write(file, code);
+        return file;
+    }
+}
@@ -0,0 +1,126 @@
+package pt.up.fe.comp2024.driver;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import pt.up.fe.comp2024.CompilerConfig;
+import pt.up.fe.specs.util.SpecsIo;
+
+import javax.tools.ToolProvider;
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Executors;
+
+import static org.junit.Assert.*;
+
+/**
+ * Runs compiled programs in the test JVM, including programs that call System.exit and programs that run at the same
+ * time.
+ */
+public class InProcessRunnerTest {
+
+    @Rule
+    public TemporaryFolder temp = new TemporaryFolder();
+
+    @Test
+    public void findsTheRuntimeOfTheInstallation() {
+        assertTrue(InProcessRunner.DEFAULT_RUNTIME_DIR.isAbsolute());
+        assertTrue(new File(InProcessRunner.DEFAULT_RUNTIME_DIR, "Quicksort.class").isFile());
+    }
+
+    @Test
+    public void runsAProgram() {
+        var output = run("""
+                import ioPlus;
+                class Program {
+                    public static void main(String[] args) {
+                        ioPlus.printResult(42);
+                    }
+                }
+                """, new InProcessRunner());
+
+        assertTrue(output.isSuccess());
+        assertTrue(output.output(), output.output().contains("42"));
+    }
+
+    @Test
+    public void trapsSystemExit() {
+        // A runtime class that exits with the given status
+        var runtimeDir = temp.getRoot();
+        var source = new File(runtimeDir, "Exit.java");
+        SpecsIo.write(source, "public class Exit { public static void exit(int status) { System.exit(status); } }");
+        assertEquals(0, ToolProvider.getSystemJavaCompiler().run(null, null, null, source.getPath()));
+        var runner = new InProcessRunner(runtimeDir);
+
+        var code = """
+                import Exit;
+                class Program {
+                    public static void main(String[] args) {
+                        Exit.exit(STATUS);
+                        Exit.exit(1);
+                    }
+                }
+                """;
+
+        var output = run(code.replace("STATUS", "3"), runner);
+        var exit = (InProcessRunner.ProgramExit) output.exception();
+        assertEquals(3, exit.getStatus());
+
+        // Exiting with 0 is a success, and stops the program
+        output = run(code.replace("STATUS", "0"), runner);
+        assertTrue(output.isSuccess());
+    }
+
+    @Test
+    public void runsProgramsConcurrently() throws Exception {
+        var runner = new InProcessRunner();
+        var results = new ArrayList<CompilationResult>();
+        for (int i = 0; i < 8; i++) {
+            results.add(compile("""
+                    import ioPlus;
+                    class Program {
+                        public static void main(String[] args) {
+                            ioPlus.printResult(VALUE);
+                        }
+                    }
+                    """.replace("VALUE", Integer.toString(1000 + i))));
+        }
+
+        var stdout = System.out;
+        var executor = Executors.newFixedThreadPool(results.size());
+        try {
+            var outputs = executor.invokeAll(results.stream()
+                    .map(result -> (Callable<InProcessRunner.ProgramOutput>) () -> runner.run(result, List.of()))
+                    .toList());
+
+            for (int i = 0; i < outputs.size(); i++) {
+                var output = outputs.get(i).get();
+                assertTrue(output.isSuccess());
+                // Each program prints to its own output, and nothing of the others
+                assertTrue(output.output(), output.output().contains(Integer.toString(1000 + i)));
+                assertEquals(output.output(), 1, output.output().split("10\\d\\d", -1).length - 1);
+            }
+        } finally {
+            executor.shutdown();
+        }
+
+        assertSame(stdout, System.out);
+    }
+
+    private InProcessRunner.ProgramOutput run(String code, InProcessRunner runner) {
+        return runner.run(compile(code), List.of());
+    }
+
+    private CompilationResult compile(String code) {
+        var inputFile = new File(temp.getRoot(), "Program.jmm");
+        SpecsIo.write(inputFile, code);
+
+        var config = CompilerConfig.forInput(CompilerConfig.getDefault(), inputFile);
+        var result = new JmmCompiler().compile(inputFile, config);
+        assertTrue(result.getReports().toString(), result.isSuccess());
+
+        return result;
+    }
+}
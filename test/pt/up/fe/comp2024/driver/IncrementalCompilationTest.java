@@ -0,0 +1,161 @@
+package pt.up.fe.comp2024.driver;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import pt.up.fe.comp2024.CompilerConfig;
+import pt.up.fe.specs.util.SpecsIo;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Supplier;
+
+import static org.junit.Assert.*;
+
+/**
+ * Compiles successive versions of a file, and checks which methods are reused and that the programs do the same as
+ * the ones compiled from scratch.
+ */
+public class IncrementalCompilationTest {
+
+    private static final String CODE = """
+            import ioPlus;
+            class A {
+                public int first(int a) {
+                    return a + 1;
+                }
+                public int second(int a) {
+                    return a * 2;
+                }
+                public static void main(String[] args) {
+                    A a;
+                    a = new A();
+                    ioPlus.printResult(a.first(a.second(20)));
+                }
+            }
+            """;
+
+    // Deep enough to overflow the stack of the hand-written parser
+    private static final int DEPTH = 100_000;
+
+    private static final long STACK_SIZE = 1 << 20;
+
+    @Rule
+    public TemporaryFolder temp = new TemporaryFolder();
+
+    @Test
+    public void reusesTheMethodsThatDidNotChange() {
+        var inputFile = new File(temp.getRoot(), "A.jmm");
+        var compilation = new IncrementalCompilation(inputFile, config(inputFile));
+
+        assertSameCompilation(CODE, compilation.compile(CODE), "41");
+        assertEquals(0, compilation.getReusedMethods());
+
+        var edited = CODE.replace("return a + 1;", "int b;\n        b = a + 2;\n        return b;");
+        assertSameCompilation(edited, compilation.compile(edited), "42");
+        assertEquals(2, compilation.getReusedMethods());
+
+        edited = edited.replace("return a * 2;", "return a * 3;");
+        assertSameCompilation(edited, compilation.compile(edited), "62");
+        assertEquals(2, compilation.getReusedMethods());
+    }
+
+    @Test
+    public void recoversFromAStackOverflow() {
+        var inputFile = new File(temp.getRoot(), "A.jmm");
+        var compilation = new IncrementalCompilation(inputFile, config(inputFile));
+        compilation.compile(CODE);
+
+        var deep = CODE.replace("a + 1", "(".repeat(DEPTH) + "a" + ")".repeat(DEPTH) + " + 1");
+        var result = runWithSmallStack(() -> compilation.compile(deep));
+        assertFalse(result.isSuccess());
+        assertTrue(result.getReports().get(0).getException().orElseThrow().getCause() instanceof StackOverflowError);
+
+        // Compiled from scratch
+        assertSameCompilation(CODE, compilation.compile(CODE), "41");
+        assertEquals(0, compilation.getReusedMethods());
+    }
+
+    @Test
+    public void watchSurvivesFilesThatFail() {
+        var deepFile = new File(temp.getRoot(), "Deep.jmm");
+        SpecsIo.write(deepFile, CODE.replace("class A", "class Deep")
+                .replace("a + 1", "(".repeat(DEPTH) + "a" + ")".repeat(DEPTH) + " + 1"));
+        var validFile = new File(temp.getRoot(), "Valid.jmm");
+        SpecsIo.write(validFile, CODE.replace("class A", "class Valid").replace("new A()", "new Valid()")
+                .replace("A a;", "Valid a;"));
+        var removedFile = new File(temp.getRoot(), "Removed.jmm");
+
+        var output = new ByteArrayOutputStream();
+        var out = new PrintStream(output, true, StandardCharsets.UTF_8);
+        var watch = new WatchCompiler(CompilerConfig.getDefault(), out);
+
+        var changed = new TreeSet<Path>();
+        for (var file : List.of(deepFile, removedFile, validFile)) {
+            changed.add(file.toPath());
+        }
+        runWithSmallStack(() -> {
+            watch.compileChanged(changed);
+            return null;
+        });
+
+        var printed = output.toString(StandardCharsets.UTF_8);
+        assertTrue(printed, printed.contains("FAILED " + deepFile.toPath()));
+        assertTrue(printed, printed.contains("OK     " + validFile.toPath()));
+        assertTrue(printed, printed.contains("Compiled 2 files"));
+    }
+
+    private static Map<String, String> config(File inputFile) {
+        return CompilerConfig.forInput(CompilerConfig.getDefault(), inputFile);
+    }
+
+    private void assertSameCompilation(String code, CompilationResult incremental, String expectedOutput) {
+        var inputFile = new File(temp.getRoot(), "Full.jmm");
+        SpecsIo.write(inputFile, code);
+        var full = new JmmCompiler().compile(inputFile, config(inputFile));
+
+        assertTrue(incremental.getReports().toString(), incremental.isSuccess());
+        assertEquals(full.getReports().toString(), incremental.getReports().toString());
+
+        // The temporaries of the reused methods can be numbered differently, the programs must do the same
+        var runner = new InProcessRunner();
+        var output = runner.run(incremental, List.of());
+        assertTrue(output.isSuccess());
+        assertEquals(runner.run(full, List.of()).output(), output.output());
+        assertTrue(output.output(), output.output().contains(expectedOutput));
+    }
+
+    private static <T> T runWithSmallStack(Supplier<T> action) {
+        var result = new AtomicReference<T>();
+        var failure = new AtomicReference<Throwable>();
+
+        var thread = new Thread(null, () -> {
+            try {
+                result.set(action.get());
+            } catch (Throwable e) {
+                failure.set(e);
+            }
+        }, "small-stack", STACK_SIZE);
+        thread.start();
+
+        try {
+            thread.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException(e);
+        }
+
+        if (failure.get() != null) {
+            throw new AssertionError("Did not survive", failure.get());
+        }
+
+        return result.get();
+    }
+}
@@ -0,0 +1,74 @@
+package pt.up.fe.comp2024.driver;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import pt.up.fe.comp.jmm.analysis.JmmSemanticsResult;
+import pt.up.fe.comp.jmm.parser.JmmParserResult;
+import pt.up.fe.comp2024.CompilerConfig;
+import pt.up.fe.specs.util.SpecsIo;
+
+import java.io.File;
+import java.util.ArrayList;
+
+import static org.junit.Assert.*;
+
+/**
+ * Drives files through the pipeline where a stage throws an error for some of them, and checks that the other files
+ * still compile and that the pipeline terminates.
+ */
+public class PipelinedCompilerTest {
+
+    @Rule
+    public TemporaryFolder temp = new TemporaryFolder();
+
+    /**
+     * Throws a stack overflow while analysing the files named Fails*.jmm.
+     */
+    private static class FailingCompiler extends JmmCompiler {
+        @Override
+        JmmSemanticsResult analyse(CompilationResult result, JmmParserResult parserResult) {
+            if (result.getInputFile().getName().startsWith("Fails")) {
+                throw new StackOverflowError();
+            }
+
+            return super.analyse(result, parserResult);
+        }
+    }
+
+    @Test(timeout = 60_000)
+    public void failingJobsDoNotStopThePipeline() {
+        var output = new File(temp.getRoot(), "output");
+
+        var inputs = new ArrayList<File>();
+        for (int i = 0; i < 10; i++) {
+            var name = (i % 3 == 0 ? "Fails" : "Compiles") + i;
+            var inputFile = new File(temp.getRoot(), name + ".jmm");
+            SpecsIo.write(inputFile, "class " + name + " { public int foo() { return " + i + "; } }");
+            inputs.add(inputFile);
+        }
+
+        var config = CompilerConfig.getDefault();
+        config.put("outputDir", output.getAbsolutePath());
+
+        // A single worker per stage, which must survive each failure
+        var results = new PipelinedCompiler(config, 1, new int[]{1, 1, 1, 1}, new FailingCompiler()).compile(inputs);
+
+        assertEquals(inputs.size(), results.size());
+        for (int i = 0; i < inputs.size(); i++) {
+            var result = results.get(i);
+            var name = inputs.get(i).getName().replace(".jmm", "");
+            assertEquals(inputs.get(i), result.getInputFile());
+
+            if (name.startsWith("Fails")) {
+                assertFalse(result.isSuccess());
+                var exception = result.getReports().get(0).getException().orElseThrow();
+                assertTrue(exception.getCause() instanceof StackOverflowError);
+                assertFalse(new File(output, name + ".j").exists());
+            } else {
+                assertTrue(result.getReports().toString(), result.isSuccess());
+                assertEquals(result.getJasminCode(), SpecsIo.read(new File(output, name + ".j")));
+            }
+        }
+    }
+}
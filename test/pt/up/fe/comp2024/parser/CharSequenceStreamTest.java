@@ -0,0 +1,137 @@
+package pt.up.fe.comp2024.parser;
+
+import org.antlr.v4.runtime.ANTLRInputStream;
+import org.antlr.v4.runtime.CharStream;
+import org.antlr.v4.runtime.IntStream;
+import org.antlr.v4.runtime.Token;
+import org.antlr.v4.runtime.misc.Interval;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import pt.up.fe.comp2024.JavammLexer;
+import pt.up.fe.specs.util.SpecsIo;
+
+import java.io.File;
+
+import static org.junit.Assert.*;
+import static pt.up.fe.comp2024.CompilerTestUtils.listCorpus;
+
+/**
+ * Checks that {@link CharSequenceStream} behaves like the ANTLRInputStream it replaces, through the JavammLexer and
+ * call by call.
+ */
+public class CharSequenceStreamTest {
+
+    // Accents, a char outside the BMP (a surrogate pair) and a line break in a comment
+    private static final String NON_ASCII = "class Caf\u00e9 { // \u00e9, \uD83D\uDE00\r\n"
+            + " int a\u00e7\u00facar; /* \u00fc */ }";
+
+    @Rule
+    public TemporaryFolder temp = new TemporaryFolder();
+
+    @Test
+    public void sameTokensOnTestCorpus() {
+        var files = listCorpus();
+
+        for (var file : files) {
+            var code = SpecsIo.read(file);
+
+            assertSameTokens(file.toString(), new ANTLRInputStream(code), new CharSequenceStream(code));
+            assertSameTokens(file.toString(), new ANTLRInputStream(code),
+                    new CharSequenceStream(MappedSource.map(file)));
+        }
+    }
+
+    @Test
+    public void sameTokensOnNonAsciiInput() {
+        var file = new File(temp.getRoot(), "Cafe.jmm");
+        SpecsIo.write(file, NON_ASCII);
+
+        assertSameTokens(NON_ASCII, new ANTLRInputStream(NON_ASCII), new CharSequenceStream(NON_ASCII));
+        assertSameTokens(NON_ASCII, new ANTLRInputStream(NON_ASCII), new CharSequenceStream(MappedSource.map(file)));
+    }
+
+    @Test
+    public void sameLookaheadAndPositions() {
+        for (var code : new String[]{"", "a", "class A { int b; }", NON_ASCII}) {
+            var expected = new ANTLRInputStream(code);
+            var actual = new CharSequenceStream(code);
+            assertEquals(code, expected.size(), actual.size());
+
+            for (int index = 0; index <= code.length(); index++) {
+                expected.seek(index);
+                actual.seek(index);
+                assertEquals(code, expected.index(), actual.index());
+
+                for (int i = -2; i <= 3; i++) {
+                    assertEquals(code + " LA(" + i + ") at " + index, expected.LA(i), actual.LA(i));
+                }
+            }
+
+            // Back to the start, and forward one char at a time
+            expected.seek(0);
+            actual.seek(0);
+            while (expected.LA(1) != IntStream.EOF) {
+                expected.consume();
+                actual.consume();
+                assertEquals(code, expected.index(), actual.index());
+            }
+            assertEquals(code, IntStream.EOF, actual.LA(1));
+            try {
+                actual.consume();
+                fail("Consumed EOF of '" + code + "'");
+            } catch (IllegalStateException e) {
+                // Like ANTLRInputStream
+            }
+
+            // Past the end
+            expected.seek(code.length() + 5);
+            actual.seek(code.length() + 5);
+            assertEquals(code, expected.index(), actual.index());
+        }
+    }
+
+    @Test
+    public void sameText() {
+        for (var code : new String[]{"", "a", "class A { int b; }", NON_ASCII}) {
+            var expected = new ANTLRInputStream(code);
+            var actual = new CharSequenceStream(code);
+
+            for (int start = 0; start <= code.length() + 1; start++) {
+                for (int stop = start - 1; stop <= code.length() + 1; stop++) {
+                    var interval = Interval.of(start, stop);
+                    assertEquals(code + " " + interval, expected.getText(interval), actual.getText(interval));
+                }
+            }
+        }
+    }
+
+    @Test
+    public void namesTheSource() {
+        assertEquals(IntStream.UNKNOWN_SOURCE_NAME, new CharSequenceStream("a").getSourceName());
+        assertEquals(IntStream.UNKNOWN_SOURCE_NAME, new CharSequenceStream("a", "").getSourceName());
+        assertEquals("A.jmm", new CharSequenceStream("a", "A.jmm").getSourceName());
+    }
+
+    private static void assertSameTokens(String name, CharStream expectedInput, CharStream actualInput) {
+        var expected = new JavammLexer(expectedInput);
+        var actual = new JavammLexer(actualInput);
+        expected.removeErrorListeners();
+        actual.removeErrorListeners();
+
+        Token expectedToken;
+        do {
+            expectedToken = expected.nextToken();
+            var actualToken = actual.nextToken();
+            var where = name + ": " + expectedToken;
+
+            assertEquals(where, expectedToken.getType(), actualToken.getType());
+            assertEquals(where, expectedToken.getText(), actualToken.getText());
+            assertEquals(where, expectedToken.getChannel(), actualToken.getChannel());
+            assertEquals(where, expectedToken.getLine(), actualToken.getLine());
+            assertEquals(where, expectedToken.getCharPositionInLine(), actualToken.getCharPositionInLine());
+            assertEquals(where, expectedToken.getStartIndex(), actualToken.getStartIndex());
+            assertEquals(where, expectedToken.getStopIndex(), actualToken.getStopIndex());
+        } while (expectedToken.getType() != Token.EOF);
+    }
+}
@@ -0,0 +1,153 @@
+package pt.up.fe.comp2024.parser;
+
+import org.antlr.v4.runtime.ANTLRInputStream;
+import org.antlr.v4.runtime.BailErrorStrategy;
+import org.antlr.v4.runtime.CommonTokenStream;
+import org.antlr.v4.runtime.DefaultErrorStrategy;
+import org.antlr.v4.runtime.Recognizer;
+import org.antlr.v4.runtime.atn.ATN;
+import org.antlr.v4.runtime.atn.LexerATNSimulator;
+import org.antlr.v4.runtime.atn.ParserATNSimulator;
+import org.antlr.v4.runtime.atn.PredictionContextCache;
+import org.antlr.v4.runtime.atn.PredictionMode;
+import org.antlr.v4.runtime.dfa.DFA;
+import org.antlr.v4.runtime.misc.ParseCancellationException;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import pt.up.fe.comp2024.JavammLexer;
+import pt.up.fe.comp2024.JavammParser;
+import pt.up.fe.specs.util.SpecsIo;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.List;
+
+import static org.junit.Assert.*;
+import static pt.up.fe.comp2024.CompilerTestUtils.listCorpus;
+
+/**
+ * Parses the .jmm files of the tests with a cold DFA, saves it, restores it into a lexer and a parser with a DFA of
+ * their own, and checks that they parse every file to the same tree.
+ */
+public class DfaSnapshotTest {
+
+    @Rule
+    public TemporaryFolder temp = new TemporaryFolder();
+
+    /**
+     * The generated lexer and parser, with a new DFA instead of the static one shared by every instance.
+     */
+    private static class Recognizers {
+        private final JavammLexer lexer;
+        private final JavammParser parser;
+
+        private Recognizers() {
+            lexer = new JavammLexer(new ANTLRInputStream(""));
+            lexer.setInterpreter(new LexerATNSimulator(lexer, lexer.getATN(), newDfas(lexer.getATN()),
+                    new PredictionContextCache()));
+
+            parser = new JavammParser(new CommonTokenStream(lexer));
+            parser.setInterpreter(new ParserATNSimulator(parser, parser.getATN(), newDfas(parser.getATN()),
+                    new PredictionContextCache()));
+            parser.removeErrorListeners();
+            lexer.removeErrorListeners();
+        }
+
+        private static DFA[] newDfas(ATN atn) {
+            var dfas = new DFA[atn.getNumberOfDecisions()];
+            for (int i = 0; i < dfas.length; i++) {
+                dfas[i] = new DFA(atn.getDecisionState(i), i);
+            }
+            return dfas;
+        }
+
+        /**
+         * Parses like {@link JmmParserImpl}, with SLL first and full LL if it fails.
+         */
+        private String parse(String code) {
+            lexer.setInputStream(new ANTLRInputStream(code));
+            parser.setTokenStream(new CommonTokenStream(lexer));
+
+            parser.setErrorHandler(new BailErrorStrategy());
+            parser.getInterpreter().setPredictionMode(PredictionMode.SLL);
+            try {
+                return parser.program().toStringTree(parser);
+            } catch (ParseCancellationException e) {
+                parser.reset();
+                parser.setErrorHandler(new DefaultErrorStrategy());
+                parser.getInterpreter().setPredictionMode(PredictionMode.LL);
+                return parser.program().toStringTree(parser);
+            }
+        }
+
+        private int countStates() {
+            return countStates(lexer) + countStates(parser);
+        }
+
+        private static int countStates(Recognizer<?, ?> recognizer) {
+            var dfas = recognizer instanceof JavammLexer lexer ?
+                    lexer.getInterpreter().decisionToDFA : ((JavammParser) recognizer).getInterpreter().decisionToDFA;
+
+            var count = 0;
+            for (var dfa : dfas) {
+                count += dfa.states.size();
+            }
+            return count;
+        }
+    }
+
+    @Test
+    public void restoredDfaParsesTheSameTrees() throws IOException {
+        var files = listCorpus();
+        var codes = files.stream().map(SpecsIo::read).toList();
+
+        var cold = new Recognizers();
+        var expected = codes.stream().map(cold::parse).toList();
+        var coldStates = cold.countStates();
+
+        var snapshotFile = new File(temp.getRoot(), "dfa.bin");
+        new DfaSnapshot(cold.lexer, cold.parser).save(snapshotFile);
+        assertTrue(snapshotFile.isFile());
+
+        var warm = new Recognizers();
+        var restored = new DfaSnapshot(warm.lexer, warm.parser).restore(snapshotFile);
+        assertTrue(restored > 0);
+        assertEquals(restored, warm.countStates());
+
+        List<String> actual = codes.stream().map(warm::parse).toList();
+        for (int i = 0; i < files.size(); i++) {
+            assertEquals(files.get(i).toString(), expected.get(i), actual.get(i));
+        }
+
+        // Only the states that are not saved are built again
+        assertTrue(warm.countStates() - restored < coldStates);
+    }
+
+    @Test
+    public void skipsSnapshotsThatCannotBeWritten() throws IOException {
+        var recognizers = new Recognizers();
+        recognizers.parse("class A {}");
+
+        // The parent of the snapshot is a file, so the folder cannot be created
+        var parent = temp.newFile("parent");
+        var snapshotFile = new File(parent, "dfa.bin");
+        new DfaSnapshot(recognizers.lexer, recognizers.parser).save(snapshotFile);
+
+        assertFalse(snapshotFile.exists());
+    }
+
+    @Test
+    public void ignoresSnapshotsOfOtherGrammars() throws IOException {
+        var snapshotFile = new File(temp.getRoot(), "dfa.bin");
+        SpecsIo.write(snapshotFile, "not a snapshot");
+
+        var recognizers = new Recognizers();
+        try {
+            new DfaSnapshot(recognizers.lexer, recognizers.parser).restore(snapshotFile);
+            fail("Expected the snapshot to be rejected");
+        } catch (IOException | RuntimeException e) {
+            assertEquals(0, recognizers.countStates());
+        }
+    }
+}
@@ -0,0 +1,74 @@
+package pt.up.fe.comp2024.parser;
+
+import org.junit.Test;
+import pt.up.fe.comp2024.CompilerConfig;
+import pt.up.fe.comp2024.utils.ReportUtils;
+import pt.up.fe.specs.util.SpecsIo;
+
+import java.util.Map;
+
+import static org.junit.Assert.*;
+import static pt.up.fe.comp2024.CompilerTestUtils.assertSameTree;
+import static pt.up.fe.comp2024.CompilerTestUtils.listCorpus;
+
+/**
+ * Checks that the hand-written parser builds the same AST as the ANTLR parser, for every .jmm file of the tests.
+ */
+public class HandwrittenJmmParserTest {
+
+    @Test
+    public void sameTreesOnTestCorpus() {
+        var files = listCorpus();
+
+        var config = CompilerConfig.getDefault();
+        for (var file : files) {
+            var code = SpecsIo.read(file);
+
+            assertSameParse(file.toString(), code, "program", config);
+        }
+    }
+
+    @Test
+    public void sameTreesOnGrammarRules() {
+        var config = CompilerConfig.getDefault();
+
+        assertSameParse("import bar.foo.a;", "importDecl", config);
+        assertSameParse("int foo(int... ints) {return 0;}", "methodDecl", config);
+        assertSameParse("static void main(String[] args) {}", "mainMethodDecl", config);
+        assertSameParse("if(a){a[0]=b;}else{a[0].length;}", "stmt", config);
+        assertSameParse("!a.b(1, c[2])[3].length * 1 + 2 < 3 && new int[4].length < new A().c()", "expr", config);
+        assertSameParse("[1, 2 - 3 - 4, (5 / 6 / 7)]", "expr", config);
+    }
+
+    @Test
+    public void sameErrorsOnInvalidCode() {
+        var config = CompilerConfig.getDefault();
+
+        for (var code : new String[]{"class A { int foo() { return a +; } }", "class A { int[ a; }", "class { }",
+                "class A { int foo() { if (a) { return 1; } }", "class A { int # b; }", "import a.; class A { }",
+                "class A { } class B { }", "class A { int foo() { return 1 } }", "class A { a = 1; }"}) {
+            var expected = new JmmParserImpl().parse(code, config);
+            var actual = new HandwrittenJmmParser().parse(code, config);
+
+            assertNull(code, expected.getRootNode());
+            assertNull(code, actual.getRootNode());
+            assertTrue(code, ReportUtils.anyError(actual.getReports()));
+        }
+    }
+
+    private static void assertSameParse(String code, String rule, Map<String, String> config) {
+        assertSameParse(code, code, rule, config);
+    }
+
+    private static void assertSameParse(String name, String code, String rule, Map<String, String> config) {
+        var expected = new JmmParserImpl().parse(code, rule, config);
+        var actual = new HandwrittenJmmParser().parse(code, rule, config);
+
+        assertEquals(name + ": parsers disagree on whether the code is valid", expected.getRootNode() == null,
+                actual.getRootNode() == null);
+
+        if (expected.getRootNode() != null) {
+            assertSameTree(name, expected.getRootNode(), actual.getRootNode());
+        }
+    }
+}
@@ -0,0 +1,160 @@
+package pt.up.fe.comp2024.parser;
+
+import org.junit.Test;
+import pt.up.fe.comp.jmm.ast.JmmNode;
+import pt.up.fe.comp2024.CompilerConfig;
+import pt.up.fe.specs.util.SpecsIo;
+
+import java.util.ArrayList;
+import java.util.Random;
+import java.util.TreeSet;
+
+import static org.junit.Assert.*;
+import static pt.up.fe.comp2024.CompilerTestUtils.listCorpus;
+import static pt.up.fe.comp2024.CompilerTestUtils.parse;
+
+/**
+ * Applies random edits in sequence to the .jmm files of the tests, and checks that after each edit the tree of the
+ * incremental parser, and the start of its lines, are the same as parsing the edited code from scratch.
+ */
+public class IncrementalJmmParserTest {
+
+    private static final int EDITS_PER_FILE = 20;
+
+    // Text that is inserted, including line breaks and code that does not parse
+    private static final String[] INSERTIONS = {"\n", " ", "x", "1 + ", "\n\n  ", "a;", "}", "{", "/*c*/", "// c\n",
+            "int y;\n", "\r\n", ""};
+
+    @Test
+    public void sameTreesAsFullParse() {
+        assertSameTrees(false);
+    }
+
+    @Test
+    public void sameCompactTreesAsFullParse() {
+        assertSameTrees(true);
+    }
+
+    @Test
+    public void editsInsideAMethodKeepTheOtherNodes() {
+        var code = """
+                class A {
+                    int field;
+                    public int first(int a) {
+                        return a;
+                    }
+                    public int second(int a) {
+                        return a;
+                    }
+                }
+                """;
+        var parser = new IncrementalJmmParser(CompilerConfig.getDefault());
+        var root = parser.parse(code).getRootNode();
+        var classBody = root.getJmmChild(0).getJmmChild(0);
+        var field = classBody.getJmmChild(0);
+        var second = classBody.getJmmChild(2);
+
+        var edited = code.replace("return a;\n    }\n    public int second", "int b;\n        b = a;\n"
+                + "        return b;\n    }\n    public int second");
+        var result = parser.update(edited);
+
+        assertTrue(parser.isLastParseIncremental());
+        assertSame(root, result.getRootNode());
+        assertSame(field, classBody.getJmmChild(0));
+        assertSame(second, classBody.getJmmChild(2));
+        assertSame(parser.getLastParsedMethod(), classBody.getJmmChild(1));
+        assertEquals(dump(parse(edited, false)), dump(result.getRootNode()));
+        assertArrayEquals(lineStarts(edited), parser.getLineStarts());
+
+        // Outside of the methods
+        parser.update(edited.replace("int field;", "boolean field;"));
+        assertFalse(parser.isLastParseIncremental());
+    }
+
+    private static void assertSameTrees(boolean compact) {
+        var files = listCorpus();
+
+        var config = CompilerConfig.getDefault();
+        if (compact) {
+            config.put("compactAst", "true");
+        }
+
+        var random = new Random(42);
+        var edits = 0;
+        var incremental = 0;
+
+        for (var file : files) {
+            var code = SpecsIo.read(file);
+            var parser = new IncrementalJmmParser(config);
+            if (parser.parse(code).getRootNode() == null) {
+                continue;
+            }
+
+            for (int i = 0; i < EDITS_PER_FILE; i++) {
+                var current = parser.getCode();
+                var offset = random.nextInt(current.length() + 1);
+                var length = random.nextInt(3) == 0 ? Math.min(random.nextInt(4), current.length() - offset) : 0;
+                var edit = new TextEdit(offset, length, INSERTIONS[random.nextInt(INSERTIONS.length)]);
+
+                var result = parser.edit(edit);
+                var message = file + ", edit " + i + " " + edit;
+                edits++;
+                if (parser.isLastParseIncremental()) {
+                    incremental++;
+                }
+
+                assertEquals(message, edit.apply(current), parser.getCode());
+                assertArrayEquals(message, lineStarts(parser.getCode()), parser.getLineStarts());
+
+                var expected = parse(parser.getCode(), compact);
+                assertEquals(message, expected == null, result.getRootNode() == null);
+                if (expected == null) {
+                    // Start again from code that parses
+                    parser.parse(code);
+                    continue;
+                }
+
+                assertEquals(message, dump(expected), dump(result.getRootNode()));
+            }
+        }
+
+        assertTrue("Only " + incremental + " of " + edits + " edits were incremental", incremental > edits / 10);
+    }
+
+    private static int[] lineStarts(String code) {
+        var starts = new ArrayList<Integer>();
+        starts.add(0);
+        for (int i = 0; i < code.length(); i++) {
+            if (code.charAt(i) == '\n') {
+                starts.add(i + 1);
+            }
+        }
+
+        return starts.stream().mapToInt(Integer::intValue).toArray();
+    }
+
+    /**
+     * The tree with the hierarchy and every attribute of each node, in a fixed order.
+     */
+    private static String dump(JmmNode root) {
+        var dump = new StringBuilder();
+        var pending = new ArrayList<JmmNode>();
+        pending.add(root);
+
+        while (!pending.isEmpty()) {
+            var node = pending.remove(pending.size() - 1);
+
+            dump.append(node.getKind()).append(node.getHierarchy());
+            for (var attribute : new TreeSet<>(node.getAttributes())) {
+                dump.append(" ").append(attribute).append("=").append(node.getObject(attribute));
+            }
+            dump.append("\n");
+
+            for (int i = node.getNumChildren() - 1; i >= 0; i--) {
+                pending.add(node.getJmmChild(i));
+            }
+        }
+
+        return dump.toString();
+    }
+}
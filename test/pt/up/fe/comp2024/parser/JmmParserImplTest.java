@@ -0,0 +1,130 @@
+package pt.up.fe.comp2024.parser;
+
+import org.antlr.v4.runtime.ANTLRErrorStrategy;
+import org.antlr.v4.runtime.ANTLRInputStream;
+import org.antlr.v4.runtime.BailErrorStrategy;
+import org.antlr.v4.runtime.CommonTokenStream;
+import org.antlr.v4.runtime.Parser;
+import org.antlr.v4.runtime.misc.ParseCancellationException;
+import org.junit.Test;
+import pt.up.fe.comp.jmm.ast.antlr.AntlrParser;
+import pt.up.fe.comp.jmm.parser.JmmParserResult;
+import pt.up.fe.comp2024.CompilerConfig;
+import pt.up.fe.comp2024.JavammLexer;
+import pt.up.fe.comp2024.JavammParser;
+import pt.up.fe.specs.util.SpecsIo;
+
+import java.util.Map;
+
+import static org.junit.Assert.*;
+import static pt.up.fe.comp2024.CompilerTestUtils.assertSameTree;
+import static pt.up.fe.comp2024.CompilerTestUtils.listCorpus;
+
+/**
+ * Checks that parsing with SLL first and falling back to full LL gives the same trees and errors as parsing with full
+ * LL alone, the way the parser did before, including when the SLL parse is cancelled on valid code.
+ */
+public class JmmParserImplTest {
+
+    private static final String[] INVALID = {
+            "class A { int foo() { return a +; } }",
+            "class A { int[ a; }",
+            "class { }",
+            "class A { int foo() { if (a) { return 1; } }",
+            "class A { int # b; }",
+            "import a.; class A { }",
+    };
+
+    /**
+     * Parser whose SLL parse is cancelled halfway through the code, as if SLL had failed there.
+     */
+    private static class FallbackParser extends JmmParserImpl {
+        private int cancelAt;
+        private int cancelled;
+
+        @Override
+        ANTLRErrorStrategy newSllErrorStrategy() {
+            return new BailErrorStrategy() {
+                @Override
+                public void sync(Parser recognizer) {
+                    if (recognizer.getCurrentToken().getStartIndex() >= cancelAt) {
+                        cancelled++;
+                        throw new ParseCancellationException("Cancelled by the test");
+                    }
+
+                    super.sync(recognizer);
+                }
+            };
+        }
+
+        private JmmParserResult parseCancelling(String code, Map<String, String> config) {
+            cancelAt = code.length() / 2;
+            return parse(code, "program", config);
+        }
+    }
+
+    @Test
+    public void sameTreesAfterFallbackOnTestCorpus() {
+        var files = listCorpus();
+
+        var config = CompilerConfig.getDefault();
+        var fallback = new FallbackParser();
+        for (var file : files) {
+            var code = SpecsIo.read(file);
+            var cancelled = fallback.cancelled;
+
+            assertSameResult(file.toString(), parseWithLl(code, config), fallback.parseCancelling(code, config));
+            assertEquals(file + ": SLL parse not cancelled", cancelled + 1, fallback.cancelled);
+
+            // Without cancelling
+            assertSameResult(file.toString(), parseWithLl(code, config), new JmmParserImpl().parse(code, config));
+        }
+    }
+
+    @Test
+    public void sameErrorsAfterFallback() {
+        var config = CompilerConfig.getDefault();
+
+        for (var code : INVALID) {
+            var expected = parseWithLl(code, config);
+            assertNull(code, expected.getRootNode());
+            assertFalse(code, expected.getReports().isEmpty());
+
+            // SLL fails on the error itself, or is cancelled before it
+            assertSameResult(code, expected, new JmmParserImpl().parse(code, config));
+            assertSameResult(code, expected, new FallbackParser().parseCancelling(code, config));
+        }
+    }
+
+    @Test
+    public void reusedParserGivesTheSameResults() {
+        var config = CompilerConfig.getDefault();
+        var parser = new JmmParserImpl();
+        var code = "class A { int foo(int a) { return a * (a + 1) < 2 && !true; } }";
+
+        // A parse that fell back does not change the next ones
+        for (var next : new String[]{code, INVALID[0], code, INVALID[1], code}) {
+            assertSameResult(next, parseWithLl(next, config), parser.parse(next, config));
+        }
+    }
+
+    /**
+     * Parses like the parser did before the SLL parse, with the default prediction mode and error strategy.
+     */
+    private static JmmParserResult parseWithLl(String code, Map<String, String> config) {
+        var lexer = new JavammLexer(new ANTLRInputStream(code));
+        var parser = new JavammParser(new CommonTokenStream(lexer));
+
+        return AntlrParser.parse(lexer, parser, "program", config);
+    }
+
+    private static void assertSameResult(String name, JmmParserResult expected, JmmParserResult actual) {
+        assertEquals(name + ": reports", expected.getReports().toString(), actual.getReports().toString());
+        assertEquals(name + ": parsers disagree on whether the code is valid", expected.getRootNode() == null,
+                actual.getRootNode() == null);
+
+        if (expected.getRootNode() != null) {
+            assertSameTree(name, expected.getRootNode(), actual.getRootNode());
+        }
+    }
+}
@@ -0,0 +1,142 @@
+package pt.up.fe.comp2024.parser;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import pt.up.fe.comp2024.CompilerConfig;
+import pt.up.fe.comp2024.driver.JmmCompiler;
+import pt.up.fe.specs.util.SpecsIo;
+
+import java.io.File;
+
+import static org.junit.Assert.*;
+
+/**
+ * Reads sources through {@link MappedSource}, and compiles with '-m', which must give the same code as reading the
+ * file to a String.
+ */
+public class MappedSourceTest {
+
+    private static final String CODE = """
+            import ioPlus;
+            class Program {
+                int[] a;
+                public int foo(int b) {
+                    // A comment
+                    a = new int[b];
+                    return a.length + 1;
+                }
+                public static void main(String[] args) {
+                    ioPlus.printResult(new Program().foo(2));
+                }
+            }
+            """;
+
+    @Rule
+    public TemporaryFolder temp = new TemporaryFolder();
+
+    @Test
+    public void mapsAsciiFiles() {
+        var file = write("Program.jmm", CODE);
+        var code = MappedSource.map(file);
+
+        // Not copied to a String
+        assertFalse(code instanceof String);
+        assertEquals(CODE.length(), code.length());
+        assertEquals(CODE, code.toString());
+        for (int i = 0; i < CODE.length(); i++) {
+            assertEquals(CODE.charAt(i), code.charAt(i));
+        }
+
+        var start = CODE.indexOf("class");
+        var end = CODE.indexOf('{');
+        var sub = code.subSequence(start, end);
+        assertEquals(CODE.substring(start, end), sub.toString());
+        assertEquals("Program", sub.subSequence(6, 13).toString());
+        assertEquals("", code.subSequence(3, 3).toString());
+
+        assertOutOfBounds(() -> code.charAt(-1));
+        assertOutOfBounds(() -> code.charAt(CODE.length()));
+        assertOutOfBounds(() -> sub.charAt(sub.length()));
+        assertOutOfBounds(() -> code.subSequence(2, 1));
+        assertOutOfBounds(() -> code.subSequence(0, CODE.length() + 1));
+    }
+
+    @Test
+    public void decodesOtherFiles() {
+        var text = CODE.replace("A comment", "Um coment\u00e1rio \uD83D\uDE00");
+        var file = write("Program.jmm", text);
+
+        assertEquals(text, MappedSource.map(file).toString());
+    }
+
+    @Test
+    public void mapsEmptyFiles() {
+        var file = write("Empty.jmm", "");
+
+        assertEquals(0, MappedSource.map(file).length());
+        assertEquals("", MappedSource.map(file).toString());
+    }
+
+    @Test
+    public void failsOnMissingFiles() {
+        try {
+            MappedSource.map(new File(temp.getRoot(), "Missing.jmm"));
+            fail("Mapped a missing file");
+        } catch (RuntimeException e) {
+            assertTrue(e.getMessage(), e.getMessage().contains("Missing.jmm"));
+        }
+    }
+
+    @Test
+    public void compilesTheSameWithMapInput() {
+        for (var text : new String[]{CODE, CODE.replace("A comment", "Um coment\u00e1rio")}) {
+            var file = write("Program.jmm", text);
+            var config = CompilerConfig.parseArgs(new String[]{"-i=" + file.getPath()});
+            var mapped = CompilerConfig.parseArgs(new String[]{"-i=" + file.getPath(), "-m"});
+            assertFalse(CompilerConfig.isMapInput(config));
+            assertTrue(CompilerConfig.isMapInput(mapped));
+
+            for (var parser : new String[]{"antlr", "handwritten"}) {
+                config.put("parser", parser);
+                mapped.put("parser", parser);
+
+                var expected = new JmmCompiler().compile(file, config);
+                var actual = new JmmCompiler().compile(file, mapped);
+
+                assertTrue(expected.getReports().toString(), expected.isSuccess());
+                assertTrue(actual.getReports().toString(), actual.isSuccess());
+                assertEquals(expected.getOllirCode(), actual.getOllirCode());
+                assertEquals(expected.getJasminCode(), actual.getJasminCode());
+            }
+        }
+    }
+
+    @Test
+    public void reportsTheSameErrorsWithMapInput() {
+        var file = write("Broken.jmm", "class Broken {\n    public int foo() {\n        return a +;\n    }\n}\n");
+        var config = CompilerConfig.parseArgs(new String[]{"-i=" + file.getPath()});
+        var mapped = CompilerConfig.parseArgs(new String[]{"-i=" + file.getPath(), "-m"});
+
+        var expected = new JmmCompiler().compile(file, config);
+        var actual = new JmmCompiler().compile(file, mapped);
+
+        assertFalse(actual.isSuccess());
+        assertEquals(expected.getReports().toString(), actual.getReports().toString());
+    }
+
+    private File write(String name, String code) {
+        var file = new File(temp.getRoot(), name);
+        SpecsIo.write(file, code);
+        return file;
+    }
+
+    private static void assertOutOfBounds(Runnable access) {
+        try {
+            access.run();
+            fail("Expected an IndexOutOfBoundsException");
+        } catch (IndexOutOfBoundsException e) {
+            // Like a String
+        }
+    }
+}
@@ -0,0 +1,163 @@
+package pt.up.fe.comp2024.parser;
+
+import org.antlr.v4.runtime.ANTLRInputStream;
+import org.antlr.v4.runtime.CommonTokenStream;
+import org.antlr.v4.runtime.dfa.DFA;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import pt.up.fe.comp2024.JavammLexer;
+import pt.up.fe.comp2024.JavammParser;
+import pt.up.fe.comp.jmm.parser.JmmParserResult;
+import pt.up.fe.comp2024.CompilerConfig;
+import pt.up.fe.specs.util.SpecsIo;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.Supplier;
+
+import static org.junit.Assert.*;
+import static pt.up.fe.comp2024.CompilerTestUtils.listCorpus;
+
+/**
+ * Parses every .jmm file of the tests on many threads at once, in random order, and checks that each parse gives the
+ * same tree (or the same errors) as parsing the file alone with a new parser.
+ */
+public class ParserPoolTest {
+
+    private static final int THREADS = 16;
+    private static final int ROUNDS = 8;
+
+    @Rule
+    public TemporaryFolder temp = new TemporaryFolder();
+
+    @Test
+    public void antlrParsesConcurrently() throws InterruptedException {
+        assertSameConcurrentParses(newConfig("antlr"), JmmParserImpl::new);
+    }
+
+    @Test
+    public void handwrittenParsesConcurrently() throws InterruptedException {
+        assertSameConcurrentParses(newConfig("handwritten"), HandwrittenJmmParser::new);
+    }
+
+    /**
+     * The first of the concurrent parses restores the snapshot into the shared DFA, while the others wait for it.
+     */
+    @Test
+    public void antlrRestoresTheSnapshotWhileParsingConcurrently() throws InterruptedException {
+        var snapshotFile = new File(temp.getRoot(), "dfa.bin");
+        var config = newConfig("antlr");
+        config.put("dfaSnapshot", snapshotFile.getPath());
+
+        // A snapshot of the DFA after parsing every file
+        var files = listCorpus();
+        files.forEach(file -> new JmmParserImpl().parse(SpecsIo.read(file), newConfig("antlr")));
+        JmmParserImpl.saveDfaSnapshot(config);
+        assertTrue(snapshotFile.isFile());
+
+        assertSameConcurrentParses(config, JmmParserImpl::new, () -> {
+            // The interpreters of every instance share the arrays of the generated classes
+            var lexer = new JavammLexer(new ANTLRInputStream(""));
+            clearDfas(lexer.getInterpreter().decisionToDFA);
+            clearDfas(new JavammParser(new CommonTokenStream(lexer)).getInterpreter().decisionToDFA);
+            DfaSnapshot.forgetRestored();
+        });
+    }
+
+    /**
+     * Replaces the DFA shared by the generated lexer or parser with an empty one.
+     */
+    private static void clearDfas(DFA[] dfas) {
+        for (int i = 0; i < dfas.length; i++) {
+            dfas[i] = new DFA(dfas[i].atnStartState, i);
+        }
+    }
+
+    private static Map<String, String> newConfig(String parserName) {
+        var config = CompilerConfig.getDefault();
+        config.put("parser", parserName);
+        return config;
+    }
+
+    private static void assertSameConcurrentParses(Map<String, String> config, Supplier<SourceParser> newParser)
+            throws InterruptedException {
+        assertSameConcurrentParses(config, newParser, () -> {
+        });
+    }
+
+    /**
+     * @param config           the configuration of the concurrent parses, the expected results are parsed without its
+     *                        DFA snapshot
+     * @param beforeConcurrent runs after the expected results are parsed
+     */
+    private static void assertSameConcurrentParses(Map<String, String> config, Supplier<SourceParser> newParser,
+                                                   Runnable beforeConcurrent) throws InterruptedException {
+        var files = listCorpus();
+
+        var expectedConfig = new HashMap<>(config);
+        expectedConfig.remove("dfaSnapshot");
+
+        var codes = files.stream().map(SpecsIo::read).toList();
+        var expected = codes.stream().map(code -> describe(newParser.get().parse(code, expectedConfig))).toList();
+        beforeConcurrent.run();
+
+        // Every file several times, shuffled, so that the threads parse different files with the same parser
+        var order = new ArrayList<Integer>();
+        for (int round = 0; round < ROUNDS; round++) {
+            for (int i = 0; i < files.size(); i++) {
+                order.add(i);
+            }
+        }
+        Collections.shuffle(order, new Random(42));
+
+        var pool = ParserPool.forConfig(config);
+        var executor = Executors.newFixedThreadPool(THREADS);
+        try {
+            var tasks = new ArrayList<Callable<String>>();
+            for (var index : order) {
+                tasks.add(() -> describe(pool.parse(codes.get(index), config)));
+            }
+
+            var results = executor.invokeAll(tasks);
+            for (int i = 0; i < order.size(); i++) {
+                var index = order.get(i);
+                assertEquals(files.get(index) + ": concurrent parse differs", expected.get(index),
+                        getResult(results.get(i)));
+            }
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    private static String getResult(Future<String> future) throws InterruptedException {
+        try {
+            return future.get();
+        } catch (ExecutionException e) {
+            throw new AssertionError("Parse failed", e.getCause());
+        }
+    }
+
+    /**
+     * @return the tree of a successful parse, or its reports
+     */
+    private static String describe(JmmParserResult result) {
+        if (result.getRootNode() != null) {
+            return result.getRootNode().toTree();
+        }
+
+        List<String> reports = result.getReports().stream()
+                .map(report -> report.getLine() + ":" + report.getColumn() + " " + report.getMessage())
+                .toList();
+        return reports.toString();
+    }
+}
@@ -0,0 +1,79 @@
+package pt.up.fe.comp2024.utils;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * Writes more lines than the queue holds, from several threads, and checks that every line reaches the file in the
+ * order each thread wrote it, and that the lines written after closing are counted as dropped.
+ */
+public class AsyncTraceWriterTest {
+
+    private static final int THREADS = 4;
+    private static final int LINES = 5_000;
+
+    @Rule
+    public TemporaryFolder temp = new TemporaryFolder();
+
+    @Test
+    public void waitsWhenTheQueueIsFull() throws Exception {
+        var file = new File(temp.getRoot(), "trace.txt");
+        var writer = new AsyncTraceWriter(file, 8);
+
+        var threads = new ArrayList<Thread>();
+        for (int t = 0; t < THREADS; t++) {
+            var name = "t" + t;
+            threads.add(new Thread(() -> {
+                for (int i = 0; i < LINES; i++) {
+                    writer.write(name + " " + i);
+                }
+            }));
+        }
+        threads.forEach(Thread::start);
+        for (var thread : threads) {
+            thread.join();
+        }
+        writer.close();
+
+        var lines = read(file);
+        assertEquals(THREADS * LINES, lines.size());
+        assertEquals(0, writer.getDroppedLines());
+
+        var next = new int[THREADS];
+        for (var line : lines) {
+            var parts = line.split(" ");
+            var t = Integer.parseInt(parts[0].substring(1));
+            assertEquals(line, next[t]++, Integer.parseInt(parts[1]));
+        }
+    }
+
+    @Test
+    public void countsLinesWrittenAfterClosing() throws IOException {
+        var file = new File(temp.getRoot(), "trace.txt");
+        var writer = new AsyncTraceWriter(file, 2);
+
+        writer.write("a");
+        writer.write("b");
+        writer.write("c");
+        writer.close();
+        writer.write("d");
+        writer.write("e");
+
+        assertEquals(List.of("a", "b", "c"), read(file));
+        assertEquals(2, writer.getDroppedLines());
+    }
+
+    private static List<String> read(File file) throws IOException {
+        return Files.readAllLines(file.toPath(), StandardCharsets.UTF_8);
+    }
+}